@@ -0,0 +1,93 @@
+package com.skty.study.benchmark;
+
+import com.skty.study.bTree.BTree;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 不同阶数下B树查找的性能测试（节点内二分查找）
+ * <p>
+ * 运行：mvn -pl benchmark -am package && java -jar benchmark/target/benchmarks.jar BTreeFindBenchmark -prof gc
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BTreeFindBenchmark {
+
+    /**
+     * 树的阶
+     */
+    @Param({"3", "16", "128", "512"})
+    private int order;
+
+    /**
+     * 树中元素数量
+     */
+    @Param({"100000"})
+    private int size;
+
+    private BTree<Integer, Integer> tree;
+
+    /**
+     * 查找使用的key，提前装箱，避免测试中产生额外的分配
+     */
+    private Integer[] keys;
+
+    /**
+     * 不存在于树中的key
+     */
+    private Integer[] missKeys;
+
+    private int cursor;
+
+    @Setup
+    public void setUp() {
+        tree = new BTree<>(order);
+        Random random = new Random(order);
+        keys = new Integer[size];
+        missKeys = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = i * 2;
+            missKeys[i] = i * 2 + 1;
+        }
+        //乱序插入
+        for (int i = size - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            Integer tmp = keys[i];
+            keys[i] = keys[j];
+            keys[j] = tmp;
+        }
+        for (Integer key : keys) {
+            tree.insert(key, key);
+        }
+    }
+
+    @Benchmark
+    public Integer findHit() {
+        Integer key = keys[cursor];
+        cursor = cursor + 1 == size ? 0 : cursor + 1;
+        return tree.find(key);
+    }
+
+    @Benchmark
+    public Integer findMiss() {
+        Integer key = missKeys[cursor];
+        cursor = cursor + 1 == size ? 0 : cursor + 1;
+        return tree.find(key);
+    }
+}
@@ -0,0 +1,125 @@
+package com.skty.study.benchmark;
+
+import com.skty.study.bTree.BTree;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * B树插入、删除吞吐量测试：每次操作以乱序插入size个key构建一颗树（insert），
+ * 或者构建后再乱序删除全部key（insertThenDelete）；
+ * churn为稳定状态下的滑动窗口，每次删除最小的key并插入一个新的最大key，树的大小不变，分裂与合并交替发生，
+ * 用-prof gc观察gc.alloc.rate.norm，节点从空闲列表复用后每次操作不再分配内存
+ * <p>
+ * 运行：java -jar benchmark/target/benchmarks.jar BTreeMutationBenchmark -prof gc
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BTreeMutationBenchmark {
+
+    /**
+     * 树的阶
+     */
+    @Param({"3", "16", "128"})
+    private int order;
+
+    /**
+     * 每次操作插入（删除）的元素数量
+     */
+    @Param({"10000"})
+    private int size;
+
+    /**
+     * 插入顺序
+     */
+    private Integer[] insertKeys;
+
+    /**
+     * 删除顺序
+     */
+    private Integer[] deleteKeys;
+
+    /**
+     * 滑动窗口使用的key，提前装箱，长度为size的两倍，窗口在其中循环移动
+     */
+    private Integer[] churnKeys;
+
+    private BTree<Integer, Integer> churnTree;
+
+    /**
+     * 滑动窗口的起始位置
+     */
+    private int churnPosition;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(order);
+        insertKeys = shuffledKeys(random);
+        deleteKeys = shuffledKeys(random);
+        churnKeys = new Integer[size * 2];
+        for (int i = 0; i < churnKeys.length; i++) {
+            churnKeys[i] = i;
+        }
+        churnTree = new BTree<>(order);
+        for (int i = 0; i < size; i++) {
+            churnTree.insert(churnKeys[i], churnKeys[i]);
+        }
+        churnPosition = 0;
+    }
+
+    private Integer[] shuffledKeys(Random random) {
+        Integer[] keys = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = i;
+        }
+        for (int i = size - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            Integer tmp = keys[i];
+            keys[i] = keys[j];
+            keys[j] = tmp;
+        }
+        return keys;
+    }
+
+    @Benchmark
+    public BTree<Integer, Integer> insert() {
+        BTree<Integer, Integer> tree = new BTree<>(order);
+        for (Integer key : insertKeys) {
+            tree.insert(key, key);
+        }
+        return tree;
+    }
+
+    @Benchmark
+    public boolean churn() {
+        Integer oldest = churnKeys[churnPosition];
+        Integer newest = churnKeys[(churnPosition + size) % churnKeys.length];
+        churnPosition = churnPosition + 1 == churnKeys.length ? 0 : churnPosition + 1;
+        churnTree.delete(oldest);
+        return churnTree.insert(newest, newest);
+    }
+
+    @Benchmark
+    public BTree<Integer, Integer> insertThenDelete() {
+        BTree<Integer, Integer> tree = insert();
+        for (Integer key : deleteKeys) {
+            tree.delete(key);
+        }
+        return tree;
+    }
+}
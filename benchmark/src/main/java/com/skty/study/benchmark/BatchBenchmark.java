@@ -0,0 +1,94 @@
+package com.skty.study.benchmark;
+
+import com.skty.study.bTree.BTree;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 批量更新：insertAll/deleteAll与逐个insert/delete对比。
+ * 每次操作将一批树中不存在的key新增进去再全部删除，树保持原来的大小
+ * <p>
+ * 运行：java -jar benchmark/target/benchmarks.jar BatchBenchmark -prof gc
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BatchBenchmark {
+
+    @Param({"16", "128"})
+    private int order;
+
+    /**
+     * 树中原有的元素数量
+     */
+    @Param({"1000000"})
+    private int size;
+
+    /**
+     * 每批的key数量
+     */
+    @Param({"100", "10000"})
+    private int batchSize;
+
+    private BTree<Integer, Integer> tree;
+
+    private Map<Integer, Integer> batch;
+
+    private List<Integer> batchKeys;
+
+    @Setup
+    public void setUp() {
+        tree = new BTree<>(order);
+        //树中为偶数key，批量更新的为奇数key
+        for (int i = 0; i < size; i++) {
+            tree.insert(i * 2, i);
+        }
+        Random random = new Random(batchSize);
+        batch = new HashMap<>();
+        while (batch.size() < batchSize) {
+            int key = random.nextInt(size) * 2 + 1;
+            batch.put(key, key);
+        }
+        batchKeys = new ArrayList<>(batch.keySet());
+    }
+
+    @Benchmark
+    public int batchInsertDelete() {
+        return tree.insertAll(batch) + tree.deleteAll(batchKeys);
+    }
+
+    @Benchmark
+    public int perKeyInsertDelete() {
+        int num = 0;
+        for (Map.Entry<Integer, Integer> entry : batch.entrySet()) {
+            if (tree.insert(entry.getKey(), entry.getValue())) {
+                num++;
+            }
+        }
+        for (Integer key : batchKeys) {
+            if (tree.delete(key)) {
+                num++;
+            }
+        }
+        return num;
+    }
+}
@@ -0,0 +1,86 @@
+package com.skty.study.benchmark;
+
+import com.skty.study.bTree.BTree;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.AbstractMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 启动时重建索引的耗时：有序数据bulkLoad与逐个insert对比
+ * <p>
+ * 运行：java -Xmx8g -jar benchmark/target/benchmarks.jar BulkLoadBenchmark -p size=50000000
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class BulkLoadBenchmark {
+
+    /**
+     * 树的阶
+     */
+    @Param({"16", "128"})
+    private int order;
+
+    /**
+     * 元素数量
+     */
+    @Param({"1000000"})
+    private int size;
+
+    @Param({"1.0", "0.7"})
+    private double fillFactor;
+
+    @Benchmark
+    public BTree<Integer, Integer> bulkLoad() {
+        return BTree.fromSorted(order, new SortedEntries(size), fillFactor);
+    }
+
+    @Benchmark
+    public BTree<Integer, Integer> insert() {
+        BTree<Integer, Integer> tree = new BTree<>(order);
+        Iterator<Map.Entry<Integer, Integer>> entries = new SortedEntries(size);
+        while (entries.hasNext()) {
+            Map.Entry<Integer, Integer> entry = entries.next();
+            tree.insert(entry.getKey(), entry.getValue());
+        }
+        return tree;
+    }
+
+    /**
+     * 按key递增生成数据，不提前保存全部数据
+     */
+    private static class SortedEntries implements Iterator<Map.Entry<Integer, Integer>> {
+        private final int size;
+        private int next;
+
+        SortedEntries(int size) {
+            this.size = size;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < size;
+        }
+
+        @Override
+        public Map.Entry<Integer, Integer> next() {
+            Integer key = next++;
+            return new AbstractMap.SimpleImmutableEntry<>(key, key);
+        }
+    }
+}
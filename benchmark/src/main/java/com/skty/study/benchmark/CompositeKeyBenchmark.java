@@ -0,0 +1,154 @@
+package com.skty.study.benchmark;
+
+import com.skty.study.bTree.BTree;
+import com.skty.study.bTree.ByteKeyEncoder;
+import com.skty.study.bTree.ByteKeys;
+import com.skty.study.bTree.LongBTree;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 复合key（region, id）查找的比较开销：
+ * 1.comparable：key对象实现Comparable，逐字段比较
+ * 2.comparator：同样的key对象，使用Comparator.comparingInt().thenComparingInt()链
+ * 3.bytes：ByteKeyEncoder编码为字节数组，比较器为ByteKeys::compare
+ * 4.packed：ByteKeyEncoder.pack打包为long，使用LongBTree，比较时不访问对象
+ * <p>
+ * 运行：java -jar benchmark/target/benchmarks.jar CompositeKeyBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xmx2g"})
+public class CompositeKeyBenchmark {
+
+    /**
+     * 树的阶
+     */
+    @Param({"64"})
+    private int order;
+
+    /**
+     * 树中元素数量
+     */
+    @Param({"1000000"})
+    private int size;
+
+    /**
+     * region的取值个数，相同region的key共享前缀
+     */
+    private static final int REGIONS = 64;
+
+    private BTree<CompositeKey, Integer> comparableTree;
+
+    private BTree<CompositeKey, Integer> comparatorTree;
+
+    private BTree<byte[], Integer> bytesTree;
+
+    private LongBTree<Integer> packedTree;
+
+    /**
+     * 查找使用的key，每种形式提前准备好，避免测试中编码和分配
+     */
+    private CompositeKey[] keys;
+
+    private byte[][] byteKeys;
+
+    private long[] packedKeys;
+
+    private int cursor;
+
+    @Setup
+    public void setUp() {
+        Comparator<CompositeKey> comparator = Comparator.comparingInt(CompositeKey::getRegion).thenComparingInt(CompositeKey::getId);
+        comparableTree = new BTree<>(order);
+        comparatorTree = new BTree<>(order, comparator);
+        bytesTree = new BTree<>(order, ByteKeys::compare);
+        packedTree = new LongBTree<>(order);
+        keys = new CompositeKey[size];
+        byteKeys = new byte[size][];
+        packedKeys = new long[size];
+        ByteKeyEncoder encoder = new ByteKeyEncoder();
+        Random random = new Random(size);
+        for (int i = 0; i < size; i++) {
+            int region = random.nextInt(REGIONS);
+            int id = random.nextInt();
+            keys[i] = new CompositeKey(region, id);
+            byteKeys[i] = encoder.reset().writeInt(region).writeInt(id).toByteArray();
+            packedKeys[i] = ByteKeyEncoder.pack(region, id);
+        }
+        for (int i = 0; i < size; i++) {
+            comparableTree.insert(keys[i], i);
+            comparatorTree.insert(keys[i], i);
+            bytesTree.insert(byteKeys[i], i);
+            packedTree.insert(packedKeys[i], i);
+        }
+    }
+
+    private int next() {
+        int index = cursor;
+        cursor = cursor + 1 == size ? 0 : cursor + 1;
+        return index;
+    }
+
+    @Benchmark
+    public Integer comparable() {
+        return comparableTree.find(keys[next()]);
+    }
+
+    @Benchmark
+    public Integer comparator() {
+        return comparatorTree.find(keys[next()]);
+    }
+
+    @Benchmark
+    public Integer bytes() {
+        return bytesTree.find(byteKeys[next()]);
+    }
+
+    @Benchmark
+    public Integer packed() {
+        return packedTree.find(packedKeys[next()]);
+    }
+
+    public static final class CompositeKey implements Comparable<CompositeKey> {
+
+        private final int region;
+
+        private final int id;
+
+        CompositeKey(int region, int id) {
+            this.region = region;
+            this.id = id;
+        }
+
+        public int getRegion() {
+            return region;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        @Override
+        public int compareTo(CompositeKey other) {
+            int compare = Integer.compare(region, other.region);
+            return compare != 0 ? compare : Integer.compare(id, other.id);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.skty.study.benchmark;
+
+import com.skty.study.bTree.BTree;
+import com.skty.study.bTree.ConcurrentBTree;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 多线程读写混合：ConcurrentBTree（乐观锁耦合）与读写锁保护的BTree对比，分别在1、4、16、64个线程下运行。
+ * 每次操作以writePercent%的概率插入或删除一个key（插入和删除各一半，树的大小基本不变），其余为查找
+ * <p>
+ * 运行：java -jar benchmark/target/benchmarks.jar ConcurrentBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConcurrentBenchmark {
+
+    /**
+     * 树的阶
+     */
+    @Param({"64"})
+    private int order;
+
+    /**
+     * key的范围，初始时插入其中一半（偶数key）
+     */
+    @Param({"1000000"})
+    private int keyRange;
+
+    /**
+     * 写操作所占的百分比
+     */
+    @Param({"10"})
+    private int writePercent;
+
+    private ConcurrentBTree<Integer, Integer> concurrentTree;
+
+    private BTree<Integer, Integer> lockedTree;
+
+    private final ReentrantReadWriteLock treeLock = new ReentrantReadWriteLock();
+
+    /**
+     * 预先装箱的key
+     */
+    private Integer[] keys;
+
+    @Setup
+    public void setUp() {
+        concurrentTree = new ConcurrentBTree<>(order);
+        lockedTree = new BTree<>(order);
+        keys = new Integer[keyRange];
+        for (int i = 0; i < keyRange; i++) {
+            keys[i] = i;
+            if (i % 2 == 0) {
+                concurrentTree.insert(keys[i], i);
+                lockedTree.insert(keys[i], i);
+            }
+        }
+    }
+
+    private Object concurrentOperation() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Integer key = keys[random.nextInt(keyRange)];
+        int operation = random.nextInt(200);
+        if (operation < writePercent) {
+            return concurrentTree.insert(key, key);
+        }
+        if (operation < writePercent * 2) {
+            return concurrentTree.delete(key);
+        }
+        return concurrentTree.find(key);
+    }
+
+    private Object lockedOperation() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Integer key = keys[random.nextInt(keyRange)];
+        int operation = random.nextInt(200);
+        if (operation < writePercent * 2) {
+            treeLock.writeLock().lock();
+            try {
+                return operation < writePercent ? lockedTree.insert(key, key) : lockedTree.delete(key);
+            } finally {
+                treeLock.writeLock().unlock();
+            }
+        }
+        treeLock.readLock().lock();
+        try {
+            return lockedTree.find(key);
+        } finally {
+            treeLock.readLock().unlock();
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Object concurrent01() {
+        return concurrentOperation();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Object concurrent04() {
+        return concurrentOperation();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public Object concurrent16() {
+        return concurrentOperation();
+    }
+
+    @Benchmark
+    @Threads(64)
+    public Object concurrent64() {
+        return concurrentOperation();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Object locked01() {
+        return lockedOperation();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Object locked04() {
+        return lockedOperation();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public Object locked16() {
+        return lockedOperation();
+    }
+
+    @Benchmark
+    @Threads(64)
+    public Object locked64() {
+        return lockedOperation();
+    }
+}
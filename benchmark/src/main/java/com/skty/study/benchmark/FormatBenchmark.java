@@ -0,0 +1,111 @@
+package com.skty.study.benchmark;
+
+import com.skty.study.bTree.BTree;
+import com.skty.study.bTree.Codec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * B树二进制格式保存、加载整棵树的耗时，加载时边读边bulkLoad。
+ * 定长编码（LONG）与变长编码（VAR_LONG）对比，文件大小见setUp中的输出
+ * <p>
+ * 运行：java -jar benchmark/target/benchmarks.jar FormatBenchmark -p size=10000000
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+public class FormatBenchmark {
+
+    /**
+     * 树中元素数量
+     */
+    @Param({"1000000"})
+    private int size;
+
+    @Param({"LONG", "VAR_LONG"})
+    private String codec;
+
+    private Codec<Long> longCodec;
+
+    private BTree<Long, Long> tree;
+
+    /**
+     * writeTo写入的文件
+     */
+    private Path writeFile;
+
+    /**
+     * readFrom读取的文件，setUp时写好
+     */
+    private Path readFile;
+
+    @Setup
+    public void setUp() throws IOException {
+        longCodec = "LONG".equals(codec) ? Codec.LONG : Codec.VAR_LONG;
+        tree = BTree.fromSorted(128, new Iterator<Map.Entry<Long, Long>>() {
+            private long key;
+
+            @Override
+            public boolean hasNext() {
+                return key < size;
+            }
+
+            @Override
+            public Map.Entry<Long, Long> next() {
+                key++;
+                return new AbstractMap.SimpleImmutableEntry<>(key * 3, key);
+            }
+        }, 1.0);
+        writeFile = Files.createTempFile("format-write", ".bin");
+        readFile = Files.createTempFile("format-read", ".bin");
+        try (FileChannel channel = FileChannel.open(readFile, StandardOpenOption.WRITE)) {
+            tree.writeTo(channel, longCodec, longCodec);
+        }
+        System.out.println();
+        System.out.println(codec + ": " + Files.size(readFile) + " bytes");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(writeFile);
+        Files.deleteIfExists(readFile);
+    }
+
+    @Benchmark
+    public long writeTo() throws IOException {
+        try (FileChannel channel = FileChannel.open(writeFile, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            tree.writeTo(channel, longCodec, longCodec);
+            return channel.position();
+        }
+    }
+
+    @Benchmark
+    public BTree<Long, Long> readFrom() throws IOException {
+        try (FileChannel channel = FileChannel.open(readFile, StandardOpenOption.READ)) {
+            return BTree.readFrom(channel, longCodec, longCodec);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.skty.study.benchmark;
+
+import java.util.Random;
+
+/**
+ * 基准测试中访问key的分布，生成[0, n)范围内的下标序列，测试前提前生成好，避免测试中调用随机数
+ */
+public enum KeyDistribution {
+
+    /**
+     * 顺序访问，到末尾后从头开始
+     */
+    SEQUENTIAL {
+        @Override
+        int[] indexes(int n, int length, Random random) {
+            int[] indexes = new int[length];
+            for (int i = 0; i < length; i++) {
+                indexes[i] = i % n;
+            }
+            return indexes;
+        }
+    },
+
+    /**
+     * 均匀随机
+     */
+    RANDOM {
+        @Override
+        int[] indexes(int n, int length, Random random) {
+            int[] indexes = new int[length];
+            for (int i = 0; i < length; i++) {
+                indexes[i] = random.nextInt(n);
+            }
+            return indexes;
+        }
+    },
+
+    /**
+     * Zipf分布（θ=0.99，与YCSB相同），少量热点key占据大部分访问；
+     * 热度排名经过散列后再映射为下标，热点key分散在整颗树中，而不是集中在最左侧的几个叶子节点
+     */
+    ZIPFIAN {
+        @Override
+        int[] indexes(int n, int length, Random random) {
+            //Gray等人的快速生成算法，见YCSB ZipfianGenerator
+            double zetaN = zeta(n);
+            double zeta2 = zeta(2);
+            double alpha = 1 / (1 - THETA);
+            double eta = (1 - Math.pow(2.0 / n, 1 - THETA)) / (1 - zeta2 / zetaN);
+            double secondLimit = 1 + Math.pow(0.5, THETA);
+            int[] indexes = new int[length];
+            for (int i = 0; i < length; i++) {
+                double u = random.nextDouble();
+                double uz = u * zetaN;
+                long rank;
+                if (uz < 1) {
+                    rank = 0;
+                } else if (uz < secondLimit) {
+                    rank = 1;
+                } else {
+                    rank = Math.min(n - 1, (long) (n * Math.pow(eta * u - eta + 1, alpha)));
+                }
+                indexes[i] = (int) Math.floorMod(rank * 0x9E3779B97F4A7C15L, (long) n);
+            }
+            return indexes;
+        }
+    };
+
+    /**
+     * Zipf分布的偏斜参数
+     */
+    private static final double THETA = 0.99;
+
+    /**
+     * 生成下标序列
+     *
+     * @param n      下标范围[0, n)
+     * @param length 序列长度
+     * @param random 随机数
+     */
+    abstract int[] indexes(int n, int length, Random random);
+
+    private static double zeta(long n) {
+        double sum = 0;
+        for (long i = 1; i <= n; i++) {
+            sum += 1 / Math.pow(i, THETA);
+        }
+        return sum;
+    }
+}
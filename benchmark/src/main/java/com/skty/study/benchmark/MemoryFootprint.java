@@ -0,0 +1,114 @@
+package com.skty.study.benchmark;
+
+import com.skty.study.bTree.BPlusTree;
+import com.skty.study.bTree.BTree;
+import com.skty.study.bTree.BytesBPlusTree;
+import com.skty.study.bTree.IntBTree;
+import com.skty.study.bTree.LongBTree;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.function.IntFunction;
+
+/**
+ * 比较泛型BTree与LongBTree/IntBTree在相同数据量下占用的堆内存；
+ * 以及有公共前缀的字符串key在BPlusTree与前缀压缩的BytesBPlusTree中占用的堆内存（元素数量为前者的1/5）
+ * <p>
+ * 运行：java -Xmx4g -cp benchmark/target/benchmarks.jar com.skty.study.benchmark.MemoryFootprint [数量，默认10000000] [阶，默认128]
+ */
+public class MemoryFootprint {
+
+    /**
+     * 所有元素共用的value，只统计树结构本身占用的内存
+     */
+    private static final Object VALUE = new Object();
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        int order = args.length > 1 ? Integer.parseInt(args[1]) : 128;
+        System.out.println("元素数量:" + count + " 阶:" + order);
+
+        measure("BTree<Long, Object>", count, n -> {
+            BTree<Long, Object> tree = new BTree<>(order);
+            for (int i = 0; i < n; i++) {
+                tree.insert(scatter(i), VALUE);
+            }
+            return tree;
+        });
+        measure("BTree<Integer, Object>", count, n -> {
+            BTree<Integer, Object> tree = new BTree<>(order);
+            for (int i = 0; i < n; i++) {
+                tree.insert((int) scatter(i), VALUE);
+            }
+            return tree;
+        });
+        measure("LongBTree<Object>", count, n -> {
+            LongBTree<Object> tree = new LongBTree<>(order);
+            for (int i = 0; i < n; i++) {
+                tree.insert(scatter(i), VALUE);
+            }
+            return tree;
+        });
+        measure("IntBTree<Object>", count, n -> {
+            IntBTree<Object> tree = new IntBTree<>(order);
+            for (int i = 0; i < n; i++) {
+                tree.insert((int) scatter(i), VALUE);
+            }
+            return tree;
+        });
+
+        int stringCount = count / 5;
+        measure("BPlusTree<String, Object>", stringCount, n -> {
+            BPlusTree<String, Object> tree = new BPlusTree<>(order);
+            for (int i = 0; i < n; i++) {
+                tree.insert(stringKey(i), VALUE);
+            }
+            return tree;
+        });
+        measure("BytesBPlusTree<Object>", stringCount, n -> {
+            BytesBPlusTree<Object> tree = new BytesBPlusTree<>(order);
+            for (int i = 0; i < n; i++) {
+                tree.insert(stringKey(i), VALUE);
+            }
+            return tree;
+        });
+    }
+
+    /**
+     * 带公共前缀的字符串ID，例如 tenant-0003/order/2026-10-17/000012345678
+     */
+    private static String stringKey(int i) {
+        long id = scatter(i);
+        return String.format("tenant-%04d/order/2026-10-%02d/%012d", id % 16, id % 28 + 1, id);
+    }
+
+    /**
+     * 将顺序的序号打散为不重复的乱序key（低32位为奇数乘法，在int范围内也不重复）
+     */
+    private static long scatter(int i) {
+        return (i * 0x9E3779B9) & 0xFFFFFFFFL;
+    }
+
+    private static void measure(String name, int count, IntFunction<Object> builder) {
+        long before = usedHeap();
+        long start = System.nanoTime();
+        Object tree = builder.apply(count);
+        long buildMillis = (System.nanoTime() - start) / 1_000_000;
+        long after = usedHeap();
+        long bytes = after - before;
+        System.out.printf("%-26s 构建耗时:%6d ms  占用:%8.1f MB  每个key:%6.1f 字节%n",
+                name, buildMillis, bytes / 1024.0 / 1024.0, (double) bytes / count);
+        //保证统计内存时树仍然可达
+        if (tree.hashCode() == 0) {
+            System.out.println();
+        }
+    }
+
+    private static long usedHeap() {
+        MemoryMXBean memoryMXBean = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memoryMXBean.getHeapMemoryUsage().getUsed();
+    }
+}
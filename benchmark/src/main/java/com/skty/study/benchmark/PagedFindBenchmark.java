@@ -0,0 +1,130 @@
+package com.skty.study.benchmark;
+
+import com.skty.study.bTree.paged.EvictionPolicy;
+import com.skty.study.bTree.paged.PagedBTree;
+import com.skty.study.bTree.paged.Serializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 分页B树在缓冲池容纳不下整棵树时的查找性能，比较不同淘汰策略：
+ * 大部分查找落在少量热点key上，每隔一段时间穿插一次全表扫描式的顺序查找，测试结束时输出缓冲池命中率
+ * <p>
+ * 运行：mvn -pl benchmark -am package && java -jar benchmark/target/benchmarks.jar PagedFindBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PagedFindBenchmark {
+
+    /**
+     * 淘汰策略
+     */
+    @Param({"clock", "lru2"})
+    private String policy;
+
+    /**
+     * 树中元素数量
+     */
+    @Param({"1000000"})
+    private int size;
+
+    /**
+     * 缓冲池内存预算（堆内存字节数）
+     */
+    @Param({"4194304"})
+    private long memoryBudget;
+
+    private Path file;
+
+    private PagedBTree<Long, Long> tree;
+
+    /**
+     * 查找使用的key，提前装箱，避免测试中产生额外的分配
+     */
+    private Long[] keys;
+
+    private int cursor;
+
+    /**
+     * 顺序扫描的位置
+     */
+    private long scanKey;
+
+    @Setup
+    public void setUp() throws IOException {
+        file = Files.createTempFile("paged-find", ".db");
+        Files.delete(file);
+        EvictionPolicy evictionPolicy = "clock".equals(policy) ? EvictionPolicy.clock() : EvictionPolicy.lruK(2);
+        tree = PagedBTree.open(file, PagedBTree.DEFAULT_PAGE_SIZE, Serializer.LONG, Serializer.LONG,
+                memoryBudget, PagedBTree.DEFAULT_PINNED_LEVELS, evictionPolicy);
+        for (long i = 0; i < size; i++) {
+            tree.insert(i, i);
+        }
+        //90%的查找落在1%的热点key上，热点key连续，集中在少量叶子节点中
+        Random random = new Random(size);
+        int hotNum = size / 100;
+        keys = new Long[1 << 20];
+        for (int i = 0; i < keys.length; i++) {
+            long key = random.nextInt(10) < 9 ? random.nextInt(hotNum) : random.nextInt(size);
+            keys[i] = key;
+        }
+        tree.getBufferPool().resetCounters();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        System.out.println();
+        System.out.println(policy + ": " + tree.getBufferPool() + " hitRatio=" + tree.getBufferPool().getHitRatio());
+        tree.close();
+        Files.deleteIfExists(file);
+    }
+
+    @TearDown(Level.Iteration)
+    public void resetScan() {
+        scanKey = 0;
+    }
+
+    @Benchmark
+    public Long findSkewed() {
+        Long key = keys[cursor];
+        cursor = (cursor + 1) & (keys.length - 1);
+        return tree.find(key);
+    }
+
+    /**
+     * 热点查找中每16次穿插一次顺序查找，模拟扫描对热点节点的冲刷
+     */
+    @Benchmark
+    public Long findSkewedWithScan() {
+        Long key;
+        if ((cursor & 15) == 0) {
+            key = scanKey;
+            scanKey = scanKey + 37 >= size ? 0 : scanKey + 37;
+        } else {
+            key = keys[cursor];
+        }
+        cursor = (cursor + 1) & (keys.length - 1);
+        return tree.find(key);
+    }
+}
@@ -0,0 +1,99 @@
+package com.skty.study.benchmark;
+
+import com.skty.study.bTree.BTree;
+import com.skty.study.bTree.Cursor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 范围查询：游标顺序访问与逐个key点查对比，每次操作从随机位置开始查询rangeLength个连续的key
+ * <p>
+ * 运行：java -jar benchmark/target/benchmarks.jar RangeScanBenchmark -prof gc
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RangeScanBenchmark {
+
+    /**
+     * 树的阶
+     */
+    @Param({"16", "128"})
+    private int order;
+
+    /**
+     * 元素数量
+     */
+    @Param({"1000000"})
+    private int size;
+
+    /**
+     * 每次查询的key数量
+     */
+    @Param({"10", "1000"})
+    private int rangeLength;
+
+    private BTree<Integer, Integer> tree;
+
+    /**
+     * 预先装箱的key，点查时不包含装箱开销
+     */
+    private Integer[] keys;
+
+    private Random random;
+
+    @Setup
+    public void setUp() {
+        tree = new BTree<>(order);
+        keys = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = i;
+            tree.insert(keys[i], i);
+        }
+        random = new Random(order);
+    }
+
+    @Benchmark
+    public long cursor() {
+        int from = random.nextInt(size - rangeLength);
+        Cursor<Integer, Integer> cursor = tree.range(keys[from], true, keys[from + rangeLength], false);
+        long sum = 0;
+        while (cursor.next()) {
+            sum += cursor.getValue();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long stream() {
+        int from = random.nextInt(size - rangeLength);
+        return tree.stream(keys[from], true, keys[from + rangeLength], false)
+                .mapToLong(entry -> entry.getValue())
+                .sum();
+    }
+
+    @Benchmark
+    public long pointLookups() {
+        int from = random.nextInt(size - rangeLength);
+        long sum = 0;
+        for (int i = from; i < from + rangeLength; i++) {
+            sum += tree.find(keys[i]);
+        }
+        return sum;
+    }
+}
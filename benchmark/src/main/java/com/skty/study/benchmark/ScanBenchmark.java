@@ -0,0 +1,125 @@
+package com.skty.study.benchmark;
+
+import com.skty.study.bTree.BPlusCursor;
+import com.skty.study.bTree.BPlusTree;
+import com.skty.study.bTree.BTree;
+import com.skty.study.bTree.Cursor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 顺序访问：B树（中序遍历游标）与B+树（叶子链表游标）对比。
+ * fullScan访问全部元素，rangeScan每次从随机位置开始访问rangeLength个连续的key
+ * <p>
+ * 运行：java -jar benchmark/target/benchmarks.jar ScanBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScanBenchmark {
+
+    /**
+     * 树的阶
+     */
+    @Param({"16", "128"})
+    private int order;
+
+    /**
+     * 元素数量
+     */
+    @Param({"1000000"})
+    private int size;
+
+    /**
+     * rangeScan每次访问的key数量
+     */
+    @Param({"1000"})
+    private int rangeLength;
+
+    private BTree<Integer, Integer> bTree;
+
+    private BPlusTree<Integer, Integer> bPlusTree;
+
+    private Integer[] keys;
+
+    private Random random;
+
+    @Setup
+    public void setUp() {
+        bTree = new BTree<>(order);
+        bPlusTree = new BPlusTree<>(order);
+        keys = new Integer[size];
+        Random shuffle = new Random(order);
+        for (int i = 0; i < size; i++) {
+            keys[i] = i;
+        }
+        //乱序插入，节点在内存中的分布不按key顺序
+        for (int i = size - 1; i > 0; i--) {
+            int j = shuffle.nextInt(i + 1);
+            Integer tmp = keys[i];
+            keys[i] = keys[j];
+            keys[j] = tmp;
+        }
+        for (Integer key : keys) {
+            bTree.insert(key, key);
+            bPlusTree.insert(key, key);
+        }
+        for (int i = 0; i < size; i++) {
+            keys[i] = i;
+        }
+        random = new Random(order);
+    }
+
+    @Benchmark
+    public long bTreeFullScan() {
+        return sum(bTree.cursor());
+    }
+
+    @Benchmark
+    public long bPlusTreeFullScan() {
+        return sum(bPlusTree.cursor());
+    }
+
+    @Benchmark
+    public long bTreeRangeScan() {
+        int from = random.nextInt(size - rangeLength);
+        return sum(bTree.range(keys[from], true, keys[from + rangeLength], false));
+    }
+
+    @Benchmark
+    public long bPlusTreeRangeScan() {
+        int from = random.nextInt(size - rangeLength);
+        return sum(bPlusTree.range(keys[from], true, keys[from + rangeLength], false));
+    }
+
+    private static long sum(Cursor<Integer, Integer> cursor) {
+        long sum = 0;
+        while (cursor.next()) {
+            sum += cursor.getValue();
+        }
+        return sum;
+    }
+
+    private static long sum(BPlusCursor<Integer, Integer> cursor) {
+        long sum = 0;
+        while (cursor.next()) {
+            sum += cursor.getValue();
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,193 @@
+package com.skty.study.benchmark;
+
+import com.skty.study.bTree.BTree;
+import com.skty.study.bTree.BTreeMetrics;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.AbstractMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 不同合并阈值下在同一位置反复删除、插入的耗时（{@link BTree#setMergeThreshold(int)}）：
+ * 树中预先存放size个key，按最低填充率批量构建，所有节点的元素数都在下限；每次调用随机删除一个key后再插入回去，
+ * 树的大小不变，一次调用计为两次操作。标准B树删除后节点低于下限，兄弟节点也在下限时合并，
+ * 阶为奇数时合并后的节点正好是满的，插入回去又分裂，稳定后仍然不断地旋转、合并、分裂
+ * 1.STANDARD：合并阈值为节点元素数下限（标准B树）
+ * 2.QUARTER：合并阈值为下限的一半，合并后的节点与分裂点之间留出余量
+ * 3.EMPTY：合并阈值为1，只有节点删空才合并
+ * <p>
+ * deleteInsertCounted开启运行指标，按吞吐量输出，splits、merges、rotations除以调用次数（Score）即为每次调用的结构变化次数
+ * （耗时包含统计本身的开销，只用于对比结构变化）
+ * <p>
+ * 运行：java -jar benchmark/target/benchmarks.jar UnderflowPolicyBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UnderflowPolicyBenchmark {
+
+    /**
+     * 随机序列的长度
+     */
+    private static final int STREAM_LENGTH = 1 << 20;
+
+    /**
+     * 批量构建时的节点填充率，低于下限时每个节点放下限个元素
+     */
+    private static final double MIN_FILL_FACTOR = 0.01;
+
+    public enum Policy {
+        STANDARD,
+        QUARTER,
+        EMPTY;
+
+        int mergeThreshold(int order) {
+            int lowestLimit = (order - 1) / 2;
+            switch (this) {
+                case STANDARD:
+                    return lowestLimit;
+                case QUARTER:
+                    return Math.max(1, lowestLimit / 2);
+                default:
+                    return 1;
+            }
+        }
+    }
+
+    @Param({"STANDARD", "QUARTER", "EMPTY"})
+    private Policy policy;
+
+    /**
+     * 树的阶
+     */
+    @Param({"15", "16", "63", "64"})
+    private int order;
+
+    /**
+     * 树中预先存放的元素数量
+     */
+    @Param({"100000"})
+    private int size;
+
+    private BTree<Integer, Integer> tree;
+
+    private Integer[] keys;
+
+    /**
+     * 随机的下标序列，范围[0, size)
+     */
+    private int[] indexes;
+
+    private int cursor;
+
+    /**
+     * 结构变化次数，由deleteInsertCounted更新
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class StructureCounters {
+
+        public long splits;
+
+        public long merges;
+
+        public long rotations;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            splits = 0;
+            merges = 0;
+            rotations = 0;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(order * 31L + size);
+        keys = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = i;
+        }
+        tree = BTree.fromSorted(order, entries(), MIN_FILL_FACTOR);
+        tree.setMergeThreshold(policy.mergeThreshold(order));
+        indexes = new int[STREAM_LENGTH];
+        for (int i = 0; i < STREAM_LENGTH; i++) {
+            indexes[i] = random.nextInt(size);
+        }
+        cursor = 0;
+    }
+
+    @TearDown
+    public void tearDown() {
+        tree.disableMetrics();
+    }
+
+    private Iterator<Map.Entry<Integer, Integer>> entries() {
+        return new Iterator<Map.Entry<Integer, Integer>>() {
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                return index < size;
+            }
+
+            @Override
+            public Map.Entry<Integer, Integer> next() {
+                Integer key = keys[index++];
+                return new AbstractMap.SimpleImmutableEntry<>(key, key);
+            }
+        };
+    }
+
+    private Integer nextKey() {
+        Integer key = keys[indexes[cursor]];
+        cursor = cursor + 1 == indexes.length ? 0 : cursor + 1;
+        return key;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(2)
+    public boolean deleteInsert() {
+        Integer key = nextKey();
+        tree.delete(key);
+        return tree.insert(key, key);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public boolean deleteInsertCounted(StructureCounters counters) {
+        BTreeMetrics metrics = tree.getMetrics();
+        if (metrics == null) {
+            metrics = tree.enableMetrics();
+        }
+        long splits = metrics.getSplitCount();
+        long merges = metrics.getMergeCount();
+        long rotations = metrics.getRotationCount();
+        boolean result = deleteInsert();
+        counters.splits += metrics.getSplitCount() - splits;
+        counters.merges += metrics.getMergeCount() - merges;
+        counters.rotations += metrics.getRotationCount() - rotations;
+        return result;
+    }
+}
@@ -0,0 +1,96 @@
+package com.skty.study.benchmark;
+
+import com.skty.study.bTree.Codec;
+import com.skty.study.bTree.wal.DurableBTree;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * 持久化写入吞吐量：每次插入在返回前日志已经落盘，分别在1、16、64个线程下运行，
+ * 线程越多，组提交时一次force包含的记录越多。测试结束时输出平均每次force包含的记录数
+ * <p>
+ * 运行：java -jar benchmark/target/benchmarks.jar WalBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class WalBenchmark {
+
+    /**
+     * 树的阶
+     */
+    @Param({"64"})
+    private int order;
+
+    /**
+     * key的范围
+     */
+    @Param({"10000000"})
+    private int keyRange;
+
+    private Path directory;
+
+    private DurableBTree<Long, Long> tree;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("wal-benchmark");
+        tree = DurableBTree.open(directory, order, Codec.LONG, Codec.LONG);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        System.out.println();
+        System.out.println("writes=" + tree.getLastLsn() + " syncs=" + tree.getSyncCount()
+                + " recordsPerSync=" + (double) tree.getLastLsn() / Math.max(1, tree.getSyncCount()));
+        tree.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    private boolean durableInsert() {
+        long key = ThreadLocalRandom.current().nextInt(keyRange);
+        return tree.insert(key, key);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean insert01() {
+        return durableInsert();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public boolean insert16() {
+        return durableInsert();
+    }
+
+    @Benchmark
+    @Threads(64)
+    public boolean insert64() {
+        return durableInsert();
+    }
+}
@@ -0,0 +1,176 @@
+package com.skty.study.benchmark;
+
+import com.skty.study.bTree.BTree;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.AbstractMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 稳定状态下B树的单次操作耗时，覆盖不同的key分布、阶和数据量（1K~10M）：
+ * 树中预先存放size个偶数key（按0.7的填充率批量构建，接近乱序插入后的节点填充率），奇数key不在树中
+ * 1.find：按分布查找存在的key
+ * 2.insertDelete：按分布插入一个不存在的key后再删除，树的大小不变，一次调用计为两次操作
+ * 3.mixed：50%查找偶数key，25%插入奇数key，25%删除奇数key，树的大小在size与2*size之间波动
+ * <p>
+ * 访问序列和操作序列提前生成，key提前装箱，gc.alloc.rate.norm只统计树本身的分配。
+ * 全部组合运行时间很长，可以用-p缩小范围，例如 -p size=1000000 -p distribution=ZIPFIAN
+ * <p>
+ * 运行：java -cp benchmark/target/benchmarks.jar com.skty.study.benchmark.WorkloadBenchmark [JMH参数]（默认启用gc分析）
+ * 或者：java -jar benchmark/target/benchmarks.jar WorkloadBenchmark -prof gc
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xmx3g"})
+public class WorkloadBenchmark {
+
+    /**
+     * 访问序列的最小长度，数据量较小时避免序列过短被分支预测器记住
+     */
+    private static final int MIN_STREAM_LENGTH = 1 << 20;
+
+    /**
+     * 批量构建时的节点填充率
+     */
+    private static final double FILL_FACTOR = 0.7;
+
+    private static final byte FIND = 0;
+
+    private static final byte INSERT = 1;
+
+    private static final byte DELETE = 2;
+
+    @Param({"SEQUENTIAL", "RANDOM", "ZIPFIAN"})
+    private KeyDistribution distribution;
+
+    /**
+     * 树的阶
+     */
+    @Param({"16", "64", "256"})
+    private int order;
+
+    /**
+     * 树中预先存放的元素数量
+     */
+    @Param({"1000", "100000", "1000000", "10000000"})
+    private int size;
+
+    private BTree<Integer, Integer> tree;
+
+    /**
+     * 下标为i的元素是Integer(i)，偶数在树中，奇数不在树中
+     */
+    private Integer[] keys;
+
+    /**
+     * 按分布生成的下标序列，范围[0, size)
+     */
+    private int[] indexes;
+
+    /**
+     * mixed使用的操作序列
+     */
+    private byte[] operations;
+
+    private int cursor;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(order * 31L + size);
+        keys = new Integer[size * 2];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = i;
+        }
+        tree = BTree.fromSorted(order, evenEntries(), FILL_FACTOR);
+        int length = Math.max(size, MIN_STREAM_LENGTH);
+        indexes = distribution.indexes(size, length, random);
+        operations = new byte[length];
+        for (int i = 0; i < length; i++) {
+            int r = random.nextInt(4);
+            operations[i] = r < 2 ? FIND : r == 2 ? INSERT : DELETE;
+        }
+        cursor = 0;
+    }
+
+    private Iterator<Map.Entry<Integer, Integer>> evenEntries() {
+        return new Iterator<Map.Entry<Integer, Integer>>() {
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                return index < size;
+            }
+
+            @Override
+            public Map.Entry<Integer, Integer> next() {
+                Integer key = keys[index++ * 2];
+                return new AbstractMap.SimpleImmutableEntry<>(key, key);
+            }
+        };
+    }
+
+    private int next() {
+        int index = cursor;
+        cursor = cursor + 1 == indexes.length ? 0 : cursor + 1;
+        return index;
+    }
+
+    @Benchmark
+    public Integer find() {
+        return tree.find(keys[indexes[next()] * 2]);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(2)
+    public boolean insertDelete() {
+        Integer key = keys[indexes[next()] * 2 + 1];
+        tree.insert(key, key);
+        return tree.delete(key);
+    }
+
+    @Benchmark
+    public Object mixed() {
+        int position = next();
+        int index = indexes[position];
+        switch (operations[position]) {
+            case FIND:
+                return tree.find(keys[index * 2]);
+            case INSERT:
+                Integer key = keys[index * 2 + 1];
+                return tree.insert(key, key);
+            default:
+                return tree.delete(keys[index * 2 + 1]);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        new Runner(new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .include(WorkloadBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,100 @@
+package com.skty.study.bTree;
+
+import java.util.function.ToLongFunction;
+
+/**
+ * 子树聚合函数（幺半群）：每个元素映射为一个聚合值，相邻的聚合值按key顺序两两合并。
+ * combine需要满足结合律，identity与任意值合并结果不变；不要求交换律（合并时总是保持key的顺序），也不要求可以撤销，
+ * 因此树在子树变化时重新合并该节点，而不是在旧的聚合值上做加减。
+ * <p>
+ * 创建树时指定聚合函数后，内部节点为每个子树保存一个聚合值，{@link BTree#aggregate(Object, Object)}只需要合并
+ * 查找路径两侧的O(log n)个节点，不需要遍历范围内的元素
+ *
+ * @param <K> key类型
+ * @param <V> value类型
+ * @param <A> 聚合值类型，应当是不可变对象（子树的聚合值会被节点和快照共享）
+ * @author skty
+ */
+public interface Aggregator<K, V, A> {
+
+    /**
+     * 空范围的聚合值
+     */
+    A identity();
+
+    /**
+     * 单个元素的聚合值
+     */
+    A of(K key, V value);
+
+    /**
+     * 合并两个相邻范围的聚合值，left中的元素都在right之前
+     */
+    A combine(A left, A right);
+
+    /**
+     * value映射为long后求和
+     */
+    static <K, V> Aggregator<K, V, Long> sum(ToLongFunction<? super V> mapper) {
+        return new Aggregator<K, V, Long>() {
+            @Override
+            public Long identity() {
+                return 0L;
+            }
+
+            @Override
+            public Long of(K key, V value) {
+                return mapper.applyAsLong(value);
+            }
+
+            @Override
+            public Long combine(Long left, Long right) {
+                return left + right;
+            }
+        };
+    }
+
+    /**
+     * value映射为long后的最大值，空范围为Long.MIN_VALUE
+     */
+    static <K, V> Aggregator<K, V, Long> max(ToLongFunction<? super V> mapper) {
+        return new Aggregator<K, V, Long>() {
+            @Override
+            public Long identity() {
+                return Long.MIN_VALUE;
+            }
+
+            @Override
+            public Long of(K key, V value) {
+                return mapper.applyAsLong(value);
+            }
+
+            @Override
+            public Long combine(Long left, Long right) {
+                return left >= right ? left : right;
+            }
+        };
+    }
+
+    /**
+     * value映射为long后的最小值，空范围为Long.MAX_VALUE
+     */
+    static <K, V> Aggregator<K, V, Long> min(ToLongFunction<? super V> mapper) {
+        return new Aggregator<K, V, Long>() {
+            @Override
+            public Long identity() {
+                return Long.MAX_VALUE;
+            }
+
+            @Override
+            public Long of(K key, V value) {
+                return mapper.applyAsLong(value);
+            }
+
+            @Override
+            public Long combine(Long left, Long right) {
+                return left <= right ? left : right;
+            }
+        };
+    }
+}
@@ -0,0 +1,97 @@
+package com.skty.study.bTree;
+
+/**
+ * B+树的有序游标，沿叶子链表按key递增顺序逐个访问元素，直到超出结束位置，移动时不创建对象；
+ * 游标使用期间修改树（插入、删除等）后，游标的结果是不确定的
+ *
+ * @author skty
+ */
+public class BPlusCursor<K extends Comparable<K>, V> {
+
+    /**
+     * 下一个要访问的元素所在的叶子节点，null表示已经结束
+     */
+    private BPlusNode<K, V> leafNode;
+
+    /**
+     * 下一个要访问的元素在叶子节点中的位置
+     */
+    private int nextIndex;
+
+    /**
+     * 结束位置的key，null表示不限制
+     */
+    private final K to;
+
+    /**
+     * 是否包含结束位置的key
+     */
+    private final boolean toInclusive;
+
+    /**
+     * 当前元素所在的叶子节点，null表示还没开始或者已经结束
+     */
+    private BPlusNode<K, V> currentNode;
+
+    /**
+     * 当前元素在叶子节点中的位置
+     */
+    private int currentIndex;
+
+    BPlusCursor(BPlusNode<K, V> leafNode, int nextIndex, K to, boolean toInclusive) {
+        this.leafNode = leafNode;
+        this.nextIndex = nextIndex;
+        this.to = to;
+        this.toInclusive = toInclusive;
+    }
+
+    /**
+     * 移动到下一个元素
+     *
+     * @return true-移动成功，可以通过getKey、getValue获取当前元素/false-已经没有元素（超出结束位置）
+     */
+    public boolean next() {
+        //当前叶子节点访问完，跳到右侧相邻的叶子节点
+        while (leafNode != null && nextIndex >= leafNode.getElementNum()) {
+            leafNode = leafNode.getNextLeaf();
+            nextIndex = 0;
+        }
+        if (leafNode == null) {
+            currentNode = null;
+            return false;
+        }
+        if (to != null) {
+            int compare = leafNode.getKey(nextIndex).compareTo(to);
+            if (compare > 0 || (compare == 0 && !toInclusive)) {
+                leafNode = null;
+                currentNode = null;
+                return false;
+            }
+        }
+        currentNode = leafNode;
+        currentIndex = nextIndex++;
+        return true;
+    }
+
+    /**
+     * 当前元素的key，需要在next返回true之后调用
+     */
+    public K getKey() {
+        checkCurrent();
+        return currentNode.getKey(currentIndex);
+    }
+
+    /**
+     * 当前元素的value，需要在next返回true之后调用
+     */
+    public V getValue() {
+        checkCurrent();
+        return currentNode.getValue(currentIndex);
+    }
+
+    private void checkCurrent() {
+        if (currentNode == null) {
+            throw new IllegalStateException("游标没有指向元素，需要先调用next并返回true");
+        }
+    }
+}
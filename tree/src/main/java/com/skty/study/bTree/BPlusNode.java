@@ -0,0 +1,314 @@
+package com.skty.study.bTree;
+
+import java.util.Arrays;
+
+/**
+ * B+树节点。内部节点只保存分隔key和子节点（第i个子节点中的key都小于keys[i]，不小于keys[i-1]）；
+ * 叶子节点保存全部key和value，并与左右相邻的叶子节点组成双向链表
+ *
+ * @author skty
+ */
+class BPlusNode<K extends Comparable<K>, V> {
+
+    /**
+     * 按层遍历时的访问方式
+     */
+    private static final BTreeDump.NodeAccess<BPlusNode<?, ?>> ACCESS = new BTreeDump.NodeAccess<BPlusNode<?, ?>>() {
+        @Override
+        public boolean isLeafNode(BPlusNode<?, ?> node) {
+            return node.isLeafNode();
+        }
+
+        @Override
+        public int getElementNum(BPlusNode<?, ?> node) {
+            return node.getElementNum();
+        }
+
+        @Override
+        public BPlusNode<?, ?> getChild(BPlusNode<?, ?> node, int index) {
+            return node.getChild(index);
+        }
+    };
+
+    /**
+     * 节点大小，当前节点所能容纳所有元素的大小（多出的一个位置用于分裂前的临时插入）
+     */
+    private final int nodeSize;
+
+    /**
+     * 叶子节点为元素的key，内部节点为分隔key
+     */
+    private final Object[] keys;
+
+    /**
+     * 与keys一一对应的value，内部节点为null
+     */
+    private final Object[] values;
+
+    /**
+     * 子节点，叶子节点为null
+     */
+    private final BPlusNode<K, V>[] children;
+
+    /**
+     * 左侧相邻的叶子节点，内部节点不使用
+     */
+    private BPlusNode<K, V> previousLeaf;
+
+    /**
+     * 右侧相邻的叶子节点，内部节点不使用
+     */
+    private BPlusNode<K, V> nextLeaf;
+
+    /**
+     * 当前节点key的数量
+     */
+    private int elementNum;
+
+    @SuppressWarnings("unchecked")
+    BPlusNode(int nodeSize, boolean leafNode) {
+        this.nodeSize = nodeSize;
+        this.keys = new Object[nodeSize];
+        this.values = leafNode ? new Object[nodeSize] : null;
+        this.children = leafNode ? null : new BPlusNode[nodeSize + 1];
+    }
+
+    int getElementNum() {
+        return elementNum;
+    }
+
+    /**
+     * 按层遍历时的访问方式
+     */
+    @SuppressWarnings("unchecked")
+    static <K extends Comparable<K>, V> BTreeDump.NodeAccess<BPlusNode<K, V>> access() {
+        return (BTreeDump.NodeAccess<BPlusNode<K, V>>) (BTreeDump.NodeAccess<?>) ACCESS;
+    }
+
+    boolean isLeafNode() {
+        return children == null;
+    }
+
+    @SuppressWarnings("unchecked")
+    K getKey(int index) {
+        return (K) keys[index];
+    }
+
+    void setKey(int index, Object key) {
+        keys[index] = key;
+    }
+
+    @SuppressWarnings("unchecked")
+    V getValue(int index) {
+        return (V) values[index];
+    }
+
+    void setValue(int index, V value) {
+        values[index] = value;
+    }
+
+    BPlusNode<K, V> getChild(int index) {
+        return children[index];
+    }
+
+    void setChild(int index, BPlusNode<K, V> child) {
+        children[index] = child;
+    }
+
+    BPlusNode<K, V> getPreviousLeaf() {
+        return previousLeaf;
+    }
+
+    BPlusNode<K, V> getNextLeaf() {
+        return nextLeaf;
+    }
+
+    /**
+     * 在当前节点的有效key中二分查找指定的key
+     *
+     * @param key 要查找的key
+     * @return 找到时返回key所在的索引；没找到时返回 -(插入位置) - 1
+     */
+    @SuppressWarnings("unchecked")
+    int searchKey(K key) {
+        int low = 0;
+        int high = elementNum - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int compare = ((K) keys[mid]).compareTo(key);
+            if (compare < 0) {
+                low = mid + 1;
+            } else if (compare > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * 内部节点中查找key所在的子节点位置（等于分隔key时进入右侧子节点）
+     *
+     * @param key 要查找的key
+     * @return 子节点位置
+     */
+    int childIndexOf(K key) {
+        int index = searchKey(key);
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+
+    boolean needDivide() {
+        return elementNum > nodeSize - 1;
+    }
+
+    int lowestLimit() {
+        return (nodeSize - 1) / 2;
+    }
+
+    boolean lowerThanEleLowestLimit() {
+        return elementNum < lowestLimit();
+    }
+
+    /**
+     * 借出一个key后是否仍然不低于下限
+     */
+    boolean moreThanLowestLimit() {
+        return elementNum > lowestLimit();
+    }
+
+    /**
+     * 在叶子节点的指定位置插入元素
+     */
+    void insertLeafElement(int index, Object key, Object value) {
+        int moveNum = elementNum - index;
+        System.arraycopy(keys, index, keys, index + 1, moveNum);
+        System.arraycopy(values, index, values, index + 1, moveNum);
+        keys[index] = key;
+        values[index] = value;
+        elementNum++;
+    }
+
+    /**
+     * 在内部节点的指定位置插入分隔key以及它的右子树
+     */
+    void insertSeparator(int index, Object key, BPlusNode<K, V> rightChild) {
+        int moveNum = elementNum - index;
+        System.arraycopy(keys, index, keys, index + 1, moveNum);
+        System.arraycopy(children, index + 1, children, index + 2, moveNum);
+        keys[index] = key;
+        children[index + 1] = rightChild;
+        elementNum++;
+    }
+
+    /**
+     * 在内部节点的最前面插入分隔key以及它的左子树
+     */
+    void insertFirstSeparator(Object key, BPlusNode<K, V> leftChild) {
+        System.arraycopy(keys, 0, keys, 1, elementNum);
+        System.arraycopy(children, 0, children, 1, elementNum + 1);
+        keys[0] = key;
+        children[0] = leftChild;
+        elementNum++;
+    }
+
+    /**
+     * 删除指定位置的key（叶子节点同时删除value，内部节点同时删除它的右子树）
+     */
+    void deleteElement(int deleteIndex) {
+        int moveNum = elementNum - deleteIndex - 1;
+        System.arraycopy(keys, deleteIndex + 1, keys, deleteIndex, moveNum);
+        keys[elementNum - 1] = null;
+        if (values != null) {
+            System.arraycopy(values, deleteIndex + 1, values, deleteIndex, moveNum);
+            values[elementNum - 1] = null;
+        } else {
+            System.arraycopy(children, deleteIndex + 2, children, deleteIndex + 1, moveNum);
+            children[elementNum] = null;
+        }
+        elementNum--;
+    }
+
+    /**
+     * 删除内部节点的第一个分隔key以及它的左子树
+     */
+    void deleteFirstSeparator() {
+        System.arraycopy(keys, 1, keys, 0, elementNum - 1);
+        System.arraycopy(children, 1, children, 0, elementNum);
+        keys[elementNum - 1] = null;
+        children[elementNum] = null;
+        elementNum--;
+    }
+
+    /**
+     * 叶子节点分裂：将index及之后的元素移动到空的叶子节点target中，target链接到当前节点的右侧
+     *
+     * @param index  移动的起始位置，target的第一个key作为分隔key上升到父节点
+     * @param target 分裂出的右侧叶子节点
+     */
+    void moveLeafRightHalfTo(int index, BPlusNode<K, V> target) {
+        int moveNum = elementNum - index;
+        System.arraycopy(keys, index, target.keys, 0, moveNum);
+        System.arraycopy(values, index, target.values, 0, moveNum);
+        Arrays.fill(keys, index, elementNum, null);
+        Arrays.fill(values, index, elementNum, null);
+        target.elementNum = moveNum;
+        elementNum = index;
+        target.nextLeaf = nextLeaf;
+        target.previousLeaf = this;
+        if (nextLeaf != null) {
+            nextLeaf.previousLeaf = target;
+        }
+        nextLeaf = target;
+    }
+
+    /**
+     * 内部节点分裂：将index之后的分隔key和对应子树移动到空节点target中，index位置的key由调用方先取出并上升到父节点
+     */
+    void moveInnerRightHalfTo(int index, BPlusNode<K, V> target) {
+        int moveNum = elementNum - index - 1;
+        System.arraycopy(keys, index + 1, target.keys, 0, moveNum);
+        System.arraycopy(children, index + 1, target.children, 0, moveNum + 1);
+        Arrays.fill(keys, index, elementNum, null);
+        Arrays.fill(children, index + 1, elementNum + 1, null);
+        target.elementNum = moveNum;
+        elementNum = index;
+    }
+
+    /**
+     * 叶子节点合并：将右侧相邻叶子节点的全部元素追加到当前节点，并将其从链表中移除
+     */
+    void appendLeaf(BPlusNode<K, V> rightLeaf) {
+        int rightNum = rightLeaf.elementNum;
+        System.arraycopy(rightLeaf.keys, 0, keys, elementNum, rightNum);
+        System.arraycopy(rightLeaf.values, 0, values, elementNum, rightNum);
+        elementNum += rightNum;
+        nextLeaf = rightLeaf.nextLeaf;
+        if (nextLeaf != null) {
+            nextLeaf.previousLeaf = this;
+        }
+    }
+
+    /**
+     * 内部节点合并：将父节点下降的分隔key和右侧节点的全部分隔key（包括子树）追加到当前节点
+     */
+    void appendInner(Object middleKey, BPlusNode<K, V> rightNode) {
+        keys[elementNum] = middleKey;
+        int rightNum = rightNode.elementNum;
+        System.arraycopy(rightNode.keys, 0, keys, elementNum + 1, rightNum);
+        System.arraycopy(rightNode.children, 0, children, elementNum + 1, rightNum + 1);
+        elementNum += rightNum + 1;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < elementNum; i++) {
+            if (i > 0) {
+                builder.append(';');
+            }
+            builder.append(keys[i]);
+        }
+        return builder.toString();
+    }
+}
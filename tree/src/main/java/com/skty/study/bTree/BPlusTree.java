@@ -0,0 +1,349 @@
+package com.skty.study.bTree;
+
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * B+树对象。内部节点只保存分隔key，数据全部保存在叶子节点中，叶子节点组成双向链表；
+ * 内部节点不保存value，扇出更高，顺序访问时从一个叶子节点直接跳到下一个叶子节点
+ *
+ * @author skty
+ */
+public class BPlusTree<K extends Comparable<K>, V> {
+    /**
+     * 树的阶
+     */
+    private final int size;
+
+    /**
+     * 树高
+     */
+    private int height;
+
+    /**
+     * 当前树的根节点
+     */
+    private BPlusNode<K, V> rootNode;
+
+    /**
+     * 最左侧的叶子节点（叶子链表头）
+     */
+    private BPlusNode<K, V> firstLeaf;
+
+    /**
+     * 从根节点向下查找时经过的内部节点，用于分裂和下溢时回到父节点
+     */
+    private BPlusNode<K, V>[] pathNodes;
+
+    /**
+     * 查找路径上每个内部节点中进入下一层子节点的位置
+     */
+    private int[] pathIndexes;
+
+    /**
+     * 创建一颗B+树
+     *
+     * @param size 树的阶。大于2
+     */
+    @SuppressWarnings("unchecked")
+    public BPlusTree(int size) {
+        if (size > 2) {
+            this.size = size;
+            rootNode = new BPlusNode<>(size, true);
+            firstLeaf = rootNode;
+            height = 1;
+            pathNodes = new BPlusNode[4];
+            pathIndexes = new int[4];
+        } else {
+            throw new IllegalArgumentException("B+树的阶必须大于2");
+        }
+    }
+
+    /**
+     * 查找B+树，获取指定key对应的value
+     *
+     * @param key 指定的key
+     * @return 对应的value，没有返回null
+     */
+    public V find(K key) {
+        BPlusNode<K, V> node = rootNode;
+        while (!node.isLeafNode()) {
+            node = node.getChild(node.childIndexOf(key));
+        }
+        int index = node.searchKey(key);
+        return index >= 0 ? node.getValue(index) : null;
+    }
+
+    /**
+     * 新增数据
+     *
+     * @param key   指定key
+     * @param value 指定的value
+     * @return true:不存在该元素，已经新增进去  false:该元素已经存在树中，用新元素替换旧元素
+     */
+    public boolean insert(K key, V value) {
+        int depth = descendToLeaf(key);
+        BPlusNode<K, V> leafNode = pathNodes[depth];
+        int index = leafNode.searchKey(key);
+        if (index >= 0) {//替换模式,只需要替换元素的值
+            leafNode.setValue(index, value);
+            return false;
+        }
+        leafNode.insertLeafElement(-index - 1, key, value);
+        afterElementInsert(leafNode, depth);
+        return true;
+    }
+
+    /**
+     * 删除数据
+     *
+     * @param key 要删除的key
+     * @return true:删除成功  false:不存在该元素
+     */
+    public boolean delete(K key) {
+        int depth = descendToLeaf(key);
+        BPlusNode<K, V> leafNode = pathNodes[depth];
+        int index = leafNode.searchKey(key);
+        if (index < 0) {
+            return false;
+        }
+        //内部节点中等于该key的分隔key不需要修改，仍然可以正确划分左右子树
+        leafNode.deleteElement(index);
+        afterElementDelete(leafNode, depth);
+        return true;
+    }
+
+    /**
+     * 从根节点向下查找key所在的叶子节点，并记录查找路径
+     *
+     * @return 叶子节点在查找路径中的深度（叶子节点为pathNodes[depth]）
+     */
+    private int descendToLeaf(K key) {
+        BPlusNode<K, V> node = rootNode;
+        int depth = 0;
+        while (!node.isLeafNode()) {
+            int childIndex = node.childIndexOf(key);
+            pushPath(depth++, node, childIndex);
+            node = node.getChild(childIndex);
+        }
+        pushPath(depth, node, 0);
+        return depth;
+    }
+
+    /**
+     * 元素插入完成后的操作，节点达到分裂标准时进行分裂
+     * 1.叶子节点分裂时，右半部分移动到新的叶子节点并链接到右侧，新节点的第一个key复制一份作为分隔key上升到父节点
+     * 2.内部节点分裂时，中间的分隔key上升到父节点，不保留在子节点中
+     * 3.父节点新增了分隔key，继续判断父节点是否需要分裂，直到根节点（根节点分裂时树高增加）
+     *
+     * @param node  新增了元素的节点
+     * @param depth node在查找路径中的深度
+     */
+    private void afterElementInsert(BPlusNode<K, V> node, int depth) {
+        while (node.needDivide()) {
+            int middleIndex = node.getElementNum() / 2;
+            BPlusNode<K, V> newRightNode = new BPlusNode<>(size, node.isLeafNode());
+            K middleKey = node.getKey(middleIndex);
+            if (node.isLeafNode()) {
+                node.moveLeafRightHalfTo(middleIndex, newRightNode);
+            } else {
+                node.moveInnerRightHalfTo(middleIndex, newRightNode);
+            }
+            if (depth == 0) {//当前节点是根节点，生成新的根节点
+                BPlusNode<K, V> newRoot = new BPlusNode<>(size, false);
+                newRoot.setChild(0, node);
+                newRoot.insertSeparator(0, middleKey, newRightNode);
+                rootNode = newRoot;
+                height++;
+                return;
+            }
+            depth--;
+            BPlusNode<K, V> parentNode = pathNodes[depth];
+            parentNode.insertSeparator(pathIndexes[depth], middleKey, newRightNode);
+            node = parentNode;
+        }
+    }
+
+    /**
+     * 元素删除后的操作，节点低于下限时进行下溢
+     * 1.兄弟节点丰满时，从兄弟节点借一个元素（叶子节点借元素后更新父节点中的分隔key，内部节点进行旋转），结束
+     * 2.兄弟节点都不丰满时，与兄弟节点合并（叶子节点直接合并，内部节点将父节点中的分隔key下降后合并），父节点继续判断是否需要下溢
+     *
+     * @param currentNode 删除了元素的节点
+     * @param depth       currentNode在查找路径中的深度
+     */
+    private void afterElementDelete(BPlusNode<K, V> currentNode, int depth) {
+        while (depth > 0 && currentNode.lowerThanEleLowestLimit()) {
+            depth--;
+            BPlusNode<K, V> parentNode = pathNodes[depth];
+            int childIndex = pathIndexes[depth];
+            BPlusNode<K, V> leftSibling = childIndex > 0 ? parentNode.getChild(childIndex - 1) : null;
+            BPlusNode<K, V> rightSibling = childIndex < parentNode.getElementNum() ? parentNode.getChild(childIndex + 1) : null;
+            if (leftSibling != null && leftSibling.moreThanLowestLimit()) {
+                borrowFromLeft(leftSibling, parentNode, childIndex - 1, currentNode);
+                return;
+            }
+            if (rightSibling != null && rightSibling.moreThanLowestLimit()) {
+                borrowFromRight(rightSibling, parentNode, childIndex, currentNode);
+                return;
+            }
+            if (leftSibling != null) {
+                merge(leftSibling, parentNode, childIndex - 1, currentNode);
+            } else if (rightSibling != null) {
+                merge(currentNode, parentNode, childIndex, rightSibling);
+            } else {//左右兄弟都为空，表示树的结构有问题
+                throw new IllegalArgumentException("当前树存在问题,无法删除元素");
+            }
+            currentNode = parentNode;
+        }
+    }
+
+    /**
+     * 从左兄弟节点借最大的元素放到目标节点的最前面
+     */
+    private void borrowFromLeft(BPlusNode<K, V> fromNode, BPlusNode<K, V> parentNode, int middleIndex, BPlusNode<K, V> destinationNode) {
+        int maxIndex = fromNode.getElementNum() - 1;
+        if (destinationNode.isLeafNode()) {
+            destinationNode.insertLeafElement(0, fromNode.getKey(maxIndex), fromNode.getValue(maxIndex));
+            parentNode.setKey(middleIndex, destinationNode.getKey(0));
+        } else {//右旋转：父节点的分隔key下降，左兄弟的最大分隔key上升
+            destinationNode.insertFirstSeparator(parentNode.getKey(middleIndex), fromNode.getChild(maxIndex + 1));
+            parentNode.setKey(middleIndex, fromNode.getKey(maxIndex));
+        }
+        fromNode.deleteElement(maxIndex);
+    }
+
+    /**
+     * 从右兄弟节点借最小的元素放到目标节点的最后面
+     */
+    private void borrowFromRight(BPlusNode<K, V> fromNode, BPlusNode<K, V> parentNode, int middleIndex, BPlusNode<K, V> destinationNode) {
+        if (destinationNode.isLeafNode()) {
+            destinationNode.insertLeafElement(destinationNode.getElementNum(), fromNode.getKey(0), fromNode.getValue(0));
+            fromNode.deleteElement(0);
+            parentNode.setKey(middleIndex, fromNode.getKey(0));
+        } else {//左旋转：父节点的分隔key下降，右兄弟的最小分隔key上升
+            destinationNode.insertSeparator(destinationNode.getElementNum(), parentNode.getKey(middleIndex), fromNode.getChild(0));
+            parentNode.setKey(middleIndex, fromNode.getKey(0));
+            fromNode.deleteFirstSeparator();
+        }
+    }
+
+    /**
+     * 合并左右两个相邻节点为左侧节点，并删除父节点中的分隔key
+     */
+    private void merge(BPlusNode<K, V> leftNode, BPlusNode<K, V> parentNode, int middleIndex, BPlusNode<K, V> rightNode) {
+        if (leftNode.isLeafNode()) {
+            leftNode.appendLeaf(rightNode);
+        } else {
+            leftNode.appendInner(parentNode.getKey(middleIndex), rightNode);
+        }
+        parentNode.deleteElement(middleIndex);
+        //根节点没有分隔key后，合并生成的节点升为根节点，降低树高
+        if (parentNode == rootNode && parentNode.getElementNum() == 0) {
+            rootNode = leftNode;
+            height--;
+        }
+    }
+
+    /**
+     * 创建按key递增顺序访问指定范围元素的游标，定位到起始叶子节点后沿叶子链表向后移动
+     *
+     * @param from          起始位置的key，null表示从最小的元素开始
+     * @param fromInclusive 是否包含起始位置的key
+     * @param to            结束位置的key，null表示到最大的元素结束
+     * @param toInclusive   是否包含结束位置的key
+     * @return 定位到第一个元素之前的游标
+     */
+    public BPlusCursor<K, V> range(K from, boolean fromInclusive, K to, boolean toInclusive) {
+        if (from == null) {
+            return new BPlusCursor<>(firstLeaf, 0, to, toInclusive);
+        }
+        BPlusNode<K, V> node = rootNode;
+        while (!node.isLeafNode()) {
+            node = node.getChild(node.childIndexOf(from));
+        }
+        int index = node.searchKey(from);
+        if (index < 0) {
+            index = -index - 1;
+        } else if (!fromInclusive) {
+            index++;
+        }
+        return new BPlusCursor<>(node, index, to, toInclusive);
+    }
+
+    /**
+     * 创建按key递增顺序访问全部元素的游标
+     */
+    public BPlusCursor<K, V> cursor() {
+        return range(null, true, null, true);
+    }
+
+    /**
+     * 指定范围元素的Spliterator（按key有序、不可拆分），参数见{@link #range(Comparable, boolean, Comparable, boolean)}
+     */
+    public Spliterator<Map.Entry<K, V>> spliterator(K from, boolean fromInclusive, K to, boolean toInclusive) {
+        BPlusCursor<K, V> cursor = range(from, fromInclusive, to, toInclusive);
+        int characteristics = Spliterator.ORDERED | Spliterator.SORTED | Spliterator.DISTINCT | Spliterator.NONNULL;
+        return new Spliterators.AbstractSpliterator<Map.Entry<K, V>>(Long.MAX_VALUE, characteristics) {
+            @Override
+            public boolean tryAdvance(Consumer<? super Map.Entry<K, V>> action) {
+                if (!cursor.next()) {
+                    return false;
+                }
+                action.accept(new AbstractMap.SimpleImmutableEntry<>(cursor.getKey(), cursor.getValue()));
+                return true;
+            }
+
+            @Override
+            public Comparator<? super Map.Entry<K, V>> getComparator() {
+                return Map.Entry.comparingByKey();
+            }
+        };
+    }
+
+    /**
+     * 指定范围元素的顺序流，参数见{@link #range(Comparable, boolean, Comparable, boolean)}
+     */
+    public Stream<Map.Entry<K, V>> stream(K from, boolean fromInclusive, K to, boolean toInclusive) {
+        return StreamSupport.stream(spliterator(from, fromInclusive, to, toInclusive), false);
+    }
+
+    /**
+     * 全部元素的顺序流
+     */
+    public Stream<Map.Entry<K, V>> stream() {
+        return stream(null, true, null, true);
+    }
+
+    /**
+     * 将当前B+树的数据结构生成可打印的字符串
+     *
+     * @return 每层节点一行
+     */
+    public String printBPlusTree() {
+        return BTreeDump.printLevels(rootNode, BPlusNode.access());
+    }
+
+    /**
+     * 记录查找路径，路径数组不足时扩容
+     *
+     * @param depth 节点所在深度
+     * @param node  经过的节点
+     * @param index 进入下一层子节点的位置
+     */
+    private void pushPath(int depth, BPlusNode<K, V> node, int index) {
+        if (depth == pathNodes.length) {
+            pathNodes = Arrays.copyOf(pathNodes, depth * 2);
+            pathIndexes = Arrays.copyOf(pathIndexes, depth * 2);
+        }
+        pathNodes[depth] = node;
+        pathIndexes[depth] = index;
+    }
+}
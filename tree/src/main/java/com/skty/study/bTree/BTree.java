@@ -1,14 +1,25 @@
 package com.skty.study.bTree;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Optional;
-import java.util.stream.Collectors;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
- * B树对象
+ * B树对象，key按比较器排序，没有指定比较器时使用key的自然顺序（key需要实现Comparable，否则比较时抛出ClassCastException）
  */
-public class BTree<K extends Comparable<K>, V> {
+public class BTree<K, V> {
     /**
      * b数的阶
      */
@@ -25,696 +36,1519 @@ public class BTree<K extends Comparable<K>, V> {
     private Node<K, V> rootNode;
 
     /**
-     * 创建一颗B树
+     * 从根节点向下查找时经过的节点，用于分裂和下溢时回到父节点（节点中不保存父节点引用）
+     */
+    private Node<K, V>[] pathNodes;
+
+    /**
+     * 查找路径上每个节点中进入下一层子节点的位置
+     */
+    private int[] pathIndexes;
+
+    /**
+     * 最近一次getInsertMode查找到的目标节点在查找路径中的深度（目标节点为pathNodes[insertTargetDepth]）
+     */
+    private int insertTargetDepth;
+
+    /**
+     * 当前写入代数，每次创建快照后加1；节点的代数与之不同时表示节点可能被快照共享，修改前需要先复制
+     */
+    private int generation;
+
+    /**
+     * 合并后被丢弃的叶子节点，分裂时优先复用，最多保留FREE_NODE_LIMIT个
+     */
+    private Node<K, V>[] freeLeafNodes;
+
+    private int freeLeafNum;
+
+    /**
+     * 合并后被丢弃的内部节点
+     */
+    private Node<K, V>[] freeInnerNodes;
+
+    private int freeInnerNum;
+
+    /**
+     * key的比较器，null表示使用key的自然顺序
+     */
+    private final Comparator<? super K> comparator;
+
+    /**
+     * 子树聚合函数，null表示不维护子树聚合值
+     */
+    private final Aggregator<K, V, Object> aggregator;
+
+    /**
+     * 合并阈值：删除后节点的元素数低于该值时才向兄弟节点借元素或者与兄弟节点合并，[1, 节点元素数下限]
+     */
+    private int mergeThreshold;
+
+    /**
+     * 运行指标，null表示没有开启统计
+     */
+    private BTreeMetrics metrics;
+
+    /**
+     * 创建一颗按key的自然顺序排序的B树
      *
      * @param size 树的阶。大于2
      */
     public BTree(int size) {
+        this(size, null);
+    }
+
+    /**
+     * 创建一颗按指定比较器排序的B树
+     *
+     * @param size       树的阶。大于2
+     * @param comparator key的比较器，null表示使用key的自然顺序
+     */
+    public BTree(int size, Comparator<? super K> comparator) {
+        this(size, comparator, null);
+    }
+
+    /**
+     * 创建一颗维护子树聚合值的B树，可以通过{@link #aggregate(Object, Object)}查询范围内元素的聚合值。
+     * 每次修改需要沿查找路径重新合并各层节点，修改的开销与 阶 * 树高 成正比
+     *
+     * @param size       树的阶。大于2
+     * @param comparator key的比较器，null表示使用key的自然顺序
+     * @param aggregator 子树聚合函数，null表示不维护聚合值
+     */
+    @SuppressWarnings("unchecked")
+    public BTree(int size, Comparator<? super K> comparator, Aggregator<? super K, ? super V, ?> aggregator) {
+        this.comparator = comparator;
+        this.aggregator = (Aggregator<K, V, Object>) aggregator;
         if (size > 2) {
             this.size = size;
-            rootNode = new Node<>(size, Node.NodeType.ROOTNODE, null);
+            mergeThreshold = (size - 1) / 2;
+            rootNode = newNode(true);
             height = 1;//树高为1
+            pathNodes = new Node[4];
+            pathIndexes = new int[4];
+            freeLeafNodes = new Node[FREE_NODE_LIMIT];
+            freeInnerNodes = new Node[FREE_NODE_LIMIT];
         } else {
             throw new IllegalArgumentException("B树的阶必须大于2");
         }
     }
 
     /**
-     * 新增数据，这个方法暴露给外部使用
+     * 使用按key严格递增的数据自底向上构建一颗B树，见{@link #bulkLoad(Iterator, double)}
      *
-     * @param key   指定key
-     * @param value 指定的value
-     * @return true:不存在该元素，已经新增进去  false:1.该元素已经存在树中，用新元素替换旧元素
+     * @param size       树的阶。大于2
+     * @param entries    按key严格递增的数据
+     * @param fillFactor 节点填充率，(0, 1]
+     * @return 构建好的B树
      */
-    public boolean insert(K key, V value) {
-        return addElement(new Element<>(key, value));
+    public static <K, V> BTree<K, V> fromSorted(int size, Iterator<? extends Map.Entry<K, V>> entries, double fillFactor) {
+        return fromSorted(size, null, entries, fillFactor);
     }
 
     /**
-     * 删除元素
+     * 使用按比较器严格递增的数据自底向上构建一颗B树，见{@link #bulkLoad(Iterator, double)}
      *
-     * @param key 要删除的key
-     * @return true:找到元素并对其进行了删除 ，false:元素不存在这棵树上
+     * @param size       树的阶。大于2
+     * @param comparator key的比较器，null表示使用key的自然顺序
+     * @param entries    按key严格递增的数据
+     * @param fillFactor 节点填充率，(0, 1]
+     * @return 构建好的B树
      */
-    public boolean delete(K key) {
-        boolean result = false;
-        //查找元素，找到元素，进行删除操作
-        Element<K, V> deleteElement = findElement(key);
-        if (deleteElement != null) {
-            if (deleteElement.getCurrentNode().isLeafNode()) {//叶子节点删除元素
-                deleteLeafElement(deleteElement);
-            } else {//内部节点
-                deleteInnerElement(deleteElement);
+    public static <K, V> BTree<K, V> fromSorted(int size, Comparator<? super K> comparator, Iterator<? extends Map.Entry<K, V>> entries, double fillFactor) {
+        BTree<K, V> tree = new BTree<>(size, comparator);
+        tree.bulkLoad(entries, fillFactor);
+        return tree;
+    }
+
+    /**
+     * 使用按key严格递增的数据重新构建当前树（原有数据会被丢弃），节点填满后再创建下一个节点
+     *
+     * @param entries 按key严格递增的数据
+     */
+    public void bulkLoad(Iterator<? extends Map.Entry<K, V>> entries) {
+        bulkLoad(entries, DEFAULT_FILL_FACTOR);
+    }
+
+    /**
+     * 使用按key严格递增的数据自底向上重新构建当前树（原有数据会被丢弃），每个元素只追加一次，时间复杂度O(n)
+     * 1.每一层只保留最右侧一个正在填充的节点，元素追加到最下层的节点
+     * 2.节点达到填充数量后，下一个元素作为分隔元素追加到上一层节点，并创建新的节点作为它的右子树（上一层不存在时创建新的根节点）
+     * 3.全部追加完后，每一层最右侧的节点可能低于下限，从上往下对其从左兄弟节点借元素或者与左兄弟节点合并
+     *
+     * @param entries    按key严格递增的数据
+     * @param fillFactor 节点填充率，(0, 1]，每个节点填充 阶-1 乘以填充率个元素（不低于节点元素下限），为后续插入预留空间
+     */
+    @SuppressWarnings("unchecked")
+    public void bulkLoad(Iterator<? extends Map.Entry<K, V>> entries, double fillFactor) {
+        if (!(fillFactor > 0 && fillFactor <= 1)) {
+            throw new IllegalArgumentException("填充率必须在(0, 1]之间");
+        }
+        Node<K, V> leafNode = newNode(true);
+        //每层节点的填充数量
+        int fillNum = Math.max((int) Math.round((size - 1) * fillFactor), leafNode.lowestLimit());
+        //每一层最右侧正在填充的节点，下标0为叶子节点层
+        Node<K, V>[] rightmostNodes = new Node[4];
+        rightmostNodes[0] = leafNode;
+        int topLevel = 0;
+        K lastKey = null;
+        while (entries.hasNext()) {
+            Map.Entry<K, V> entry = entries.next();
+            K key = entry.getKey();
+            if (lastKey != null && compare(lastKey, key) >= 0) {
+                throw new IllegalArgumentException("bulkLoad的数据必须按key严格递增,key:" + key);
+            }
+            lastKey = key;
+            Object value = entry.getValue();
+            Node<K, V> rightChild = null;
+            //从叶子节点层开始追加，当前层节点已满时，元素作为分隔元素继续追加到上一层
+            for (int level = 0; ; level++) {
+                Node<K, V> node = rightmostNodes[level];
+                if (node.getElementNum() < fillNum) {
+                    node.insertElement(node.getElementNum(), key, value, rightChild, 0, null);
+                    break;
+                }
+                Node<K, V> siblingNode = newNode(level == 0);
+                if (rightChild != null) {
+                    siblingNode.setChild(0, rightChild);
+                }
+                rightmostNodes[level] = siblingNode;
+                rightChild = siblingNode;
+                if (level == topLevel) {//最上层也已满，创建新的根节点
+                    if (++topLevel == rightmostNodes.length) {
+                        rightmostNodes = Arrays.copyOf(rightmostNodes, topLevel * 2);
+                    }
+                    Node<K, V> newRoot = newNode(false);
+                    newRoot.setChild(0, node);
+                    rightmostNodes[topLevel] = newRoot;
+                }
+            }
+        }
+        rootNode = rightmostNodes[topLevel];
+        height = topLevel + 1;
+        //子节点创建后立即挂到父节点上，之后才继续追加元素，子树元素数和聚合值在全部追加完后统一统计
+        recountChildren(rootNode);
+        //从上往下修复每一层最右侧节点的下溢（最右侧节点可能只有一个子节点，没有元素），
+        //上层修复完成后，下层节点的父节点中一定存在元素，可以按删除后的下溢操作处理
+        for (int depth = 1; depth < height; ) {
+            Node<K, V> node = rootNode;
+            for (int i = 0; i < depth; i++) {
+                pushPath(i, node, node.getElementNum());
+                node = node.getChild(node.getElementNum());
+            }
+            if (!node.lowerThanEleLowestLimit(mergeThreshold)) {
+                depth++;
+                continue;
+            }
+            int lastHeight = height;
+            afterElementDelete(node, depth);
+            if (height != lastHeight) {//根节点合并后树高降低，各层深度发生变化，重新从上往下检查
+                depth = 1;
             }
-            result = true;
         }
-        return result;
+        if (metrics != null) {
+            resetMetricsShape(metrics);
+        }
     }
 
+    /**
+     * 重新统计树高、节点数和元素数
+     */
+    private void resetMetricsShape(BTreeMetrics metrics) {
+        metrics.resetShape(height, countNodes(rootNode), rootNode.totalSize());
+    }
+
+    private static <K, V> long countNodes(Node<K, V> node) {
+        long count = 1;
+        if (!node.isLeafNode()) {
+            for (int i = 0; i <= node.getElementNum(); i++) {
+                count += countNodes(node.getChild(i));
+            }
+        }
+        return count;
+    }
 
     /**
-     * 删除叶子节点中的元素
-     *  叶子节点删除元素
-     *  1.将当前元素从节点中移除
-     *  2.判断是否需要下溢
-     *      2.1：需要下溢：判断两个兄弟节点是否丰满，如果丰满，将该兄弟节点中的符合要求的元素进行上升到父节点，同时将父元素中的元素进行下移到被删除元素的叶子节点
-     *             判断父元素是否需要下溢，继续对父元素执行下溢操作
-     *      2.2:不需要下溢，直接删除元素
+     * 自底向上重新统计子树中每个内部节点记录的子树元素数和子树聚合值
      *
+     * @param node 子树的根节点
+     * @return 子树中的元素总数
+     */
+    private long recountChildren(Node<K, V> node) {
+        long total = node.getElementNum();
+        if (!node.isLeafNode()) {
+            for (int i = 0; i <= node.getElementNum(); i++) {
+                long childSize = recountChildren(node.getChild(i));
+                node.setChildSize(i, childSize);
+                total += childSize;
+                updateChildAggregate(node, i);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * 新增数据，这个方法暴露给外部使用
      *
-     * @param element 要进行删除的元素
+     * @param key   指定key
+     * @param value 指定的value
+     * @return true:不存在该元素，已经新增进去  false:1.该元素已经存在树中，用新元素替换旧元素
      */
-    private void deleteLeafElement(Element<K, V> element) {
-        Node<K, V> currentNode = element.getCurrentNode();
-        //先从叶子节点中删除元素
-        currentNode.deleteElement(element.getIndex());
-        //判断是否下溢，执行下溢操作
-        afterElementDelete(currentNode, null);
+    public boolean insert(K key, V value) {
+        return insertOrReplace(key, value) == ABSENT;
     }
 
     /**
-     * 删除一个叶子节点
+     * 新增数据，key已经存在时替换value并返回原来的value，与insert一样只从根节点向下查找一次
      *
-     * @param node
+     * @param key   指定key
+     * @param value 指定的value
+     * @return 原来的value，key不存在（已经新增进去）时返回null
      */
-    private void deleteLeftNode(Node<K, V> node) {
+    @SuppressWarnings("unchecked")
+    public V put(K key, V value) {
+        Object oldValue = insertOrReplace(key, value);
+        return oldValue == ABSENT ? null : (V) oldValue;
+    }
+
+    private Object insertOrReplace(K key, V value) {
+        BTreeMetrics metrics = this.metrics;
+        if (metrics == null) {
+            return doInsert(key, value);
+        }
+        long start = System.nanoTime();
+        Object oldValue = doInsert(key, value);
+        metrics.recordInsert(System.nanoTime() - start, oldValue == ABSENT);
+        return oldValue;
+    }
 
+    /**
+     * @return 被替换的value，新增元素时返回ABSENT
+     */
+    private Object doInsert(K key, V value) {
+        //先获取可以允许插入模式，在哪个节点插入，插入在节点的哪个位置
+        int insertMode = getInsertMode(key);
+        Node<K, V> targetNode = mutablePath(insertTargetDepth);
+        pathNodes[insertTargetDepth] = targetNode;
+        switch (insertModeOf(insertMode)) {
+            case INSERT_MODE://插入到目标叶子节点的指定位置
+                targetNode.insertElement(insertIndexOf(insertMode), key, value, null, 0, null);
+                addPathChildSizes(insertTargetDepth, 1);
+                updatePathAggregates(insertTargetDepth);
+                afterElementInsert(targetNode, insertTargetDepth);//节点分裂
+                return ABSENT;
+            case REPLACE_MODE://替换模式,只需要替换节点元素的值
+                int index = insertIndexOf(insertMode);
+                V oldValue = targetNode.getValue(index);
+                targetNode.setValue(index, value);
+                updatePathAggregates(insertTargetDepth);
+                return oldValue;
+            default://树不合法
+                throw new IllegalArgumentException("树不合法，无法完成新增元素");
+        }
     }
 
     /**
-     * 删除内部节点中的元素，（实际上是将叶子节点中的元素进行删除）
-     * 1.获取当前元素的后驱，元素的右子树，一直往左子树进行遍历，直到到达叶子节点
-     * 2.判断前驱所在的节点是否丰满，如果丰满就删除该叶子节点的元素，进行返回
-     * 3.后驱无法删除，不管前驱所在节点是否丰满，直接删除前驱，
-     * 4.由于前驱删除可能会出现叶子节点元素下溢，需要对这个节点进行下溢操作
+     * 只替换树中已经存在的key对应的value，key不存在时不插入，树的结构不变
      *
-     * @param element 被删除的元素
+     * @param key   指定的key
+     * @param value 新的value
+     * @return 原来的value，key不存在时返回null
      */
-    private void deleteInnerElement(Element<K, V> element) {
-        Node<K, V> currentNode = element.getCurrentNode();
-        int deleteElementIndex = element.getIndex();//被删除元素所在的索引位置
-        Node<K, V> predecessorNode = element.getLeftNode();//前驱元素所在的节点
-        Node<K, V> successorNode = element.getRightNode();//后继元素所在的节点
-        if (!replaceWithSuccessorElement(currentNode, deleteElementIndex, successorNode)) {
-            if (!replaceWithPredecessorElement(currentNode, deleteElementIndex, predecessorNode)) {
-                throw new IllegalArgumentException("删除内部元素错误,原因：树异常");
-            }
+    public V replace(K key, V value) {
+        int insertMode = getInsertMode(key);
+        if (insertModeOf(insertMode) != REPLACE_MODE) {
+            return null;
         }
+        Node<K, V> targetNode = mutablePath(insertTargetDepth);
+        pathNodes[insertTargetDepth] = targetNode;
+        int index = insertIndexOf(insertMode);
+        V oldValue = targetNode.getValue(index);
+        targetNode.setValue(index, value);
+        updatePathAggregates(insertTargetDepth);
+        return oldValue;
     }
 
     /**
-     * 使用后驱元素替换当前元素
+     * 批量新增数据
+     * 1.先将数据按key排序，再从小到大依次处理，相邻的key从上一次查找路径中仍然包含该key的最深节点开始向下查找，不必每次都从根节点开始
+     * 2.落在同一个叶子节点中的key一次性合并到该叶子节点中
+     * 3.节点超出容量时一次性分裂为多个节点，分隔元素一次性插入到父节点，父节点同样处理
      *
-     * @param currentNode        被删除的元素所在的节点
-     * @param deleteElementIndex 被删除的元素在节点中的位置
-     * @param successorNode      被删除的元素的右子树
-     */
-    private boolean replaceWithSuccessorElement(Node<K, V> currentNode, int deleteElementIndex, Node<K, V> successorNode) {
-        do {
-            if (successorNode.isLeafNode()) {
-                if (successorNode.moreThanLowestLimit()) {
-                    Element<K, V> miniElement = successorNode.getMiniElement();//后驱元素
-                    moveElementToNode(miniElement, currentNode, deleteElementIndex);
-                    return true;
+     * @param entries 要新增的数据
+     * @return 新增的元素数量（树中已经存在的key只替换value，不计入）
+     */
+    @SuppressWarnings("unchecked")
+    public int insertAll(Map<K, V> entries) {
+        Map.Entry<K, V>[] sortedEntries = entries.entrySet().toArray(new Map.Entry[0]);
+        Arrays.sort(sortedEntries, (e1, e2) -> compare(e1.getKey(), e2.getKey()));
+        int insertNum = 0;
+        //查找路径上每个节点对应子树中key的上限（不包含），null表示没有上限
+        Object[] upperBounds = new Object[pathNodes.length];
+        pathNodes[0] = mutableRoot();
+        int depth = 0;
+        int i = 0;
+        while (i < sortedEntries.length) {
+            K key = sortedEntries[i].getKey();
+            //回到查找路径中仍然包含当前key的最深节点
+            while (depth > 0 && upperBounds[depth] != null && compare((K) upperBounds[depth], key) <= 0) {
+                depth--;
+            }
+            Node<K, V> node = pathNodes[depth];
+            int index;
+            while ((index = node.searchKey(key, comparator)) < 0 && !node.isLeafNode()) {
+                int childIndex = -index - 1;
+                Object upperBound = childIndex < node.getElementNum() ? node.getKey(childIndex) : upperBounds[depth];
+                pushPath(depth++, node, childIndex);
+                node = mutableChild(node, childIndex);
+                pushPath(depth, node, 0);
+                if (upperBounds.length < pathNodes.length) {
+                    upperBounds = Arrays.copyOf(upperBounds, pathNodes.length);
+                }
+                upperBounds[depth] = upperBound;
+            }
+            if (index >= 0) {//key已经存在（可能在内部节点中），只替换value
+                node.setValue(index, sortedEntries[i++].getValue());
+                updatePathAggregates(depth);
+                continue;
+            }
+            //收集所有落在当前叶子节点中的key
+            Object upperBound = upperBounds[depth];
+            int end = i + 1;
+            while (end < sortedEntries.length && (upperBound == null || compare((K) upperBound, sortedEntries[end].getKey()) > 0)) {
+                end++;
+            }
+            int elementNum = node.getElementNum();
+            if (elementNum + end - i < size) {//合并后不超出节点容量，直接在节点中插入
+                for (; i < end; i++) {
+                    int insertIndex = node.searchKey(sortedEntries[i].getKey(), comparator);
+                    if (insertIndex >= 0) {
+                        node.setValue(insertIndex, sortedEntries[i].getValue());
+                    } else {
+                        node.insertElement(-insertIndex - 1, sortedEntries[i].getKey(), sortedEntries[i].getValue(), null, 0, null);
+                    }
+                }
+                insertNum += node.getElementNum() - elementNum;
+                addPathChildSizes(depth, node.getElementNum() - elementNum);
+                updatePathAggregates(depth);
+                continue;
+            }
+            //将叶子节点中原有的元素与新的元素合并，再一次性分裂
+            Object[] mergedKeys = new Object[elementNum + end - i];
+            Object[] mergedValues = new Object[mergedKeys.length];
+            int total = 0;
+            int j = 0;
+            while (i < end || j < elementNum) {
+                int compare = i == end ? -1 : j == elementNum ? 1 : compare(node.getKey(j), sortedEntries[i].getKey());
+                if (compare < 0) {
+                    mergedKeys[total] = node.getKey(j);
+                    mergedValues[total++] = node.getValue(j++);
                 } else {
-                    return false;
+                    mergedKeys[total] = sortedEntries[i].getKey();
+                    mergedValues[total++] = sortedEntries[i++].getValue();
+                    if (compare == 0) {//相同的key使用新的value
+                        j++;
+                    }
                 }
-            } else {
-                successorNode = successorNode.getMiniElement().getLeftNode();
             }
-        } while (true);
+            insertNum += total - elementNum;
+            depth = refillNode(depth, mergedKeys, mergedValues, null, null, null, total);
+            addPathChildSizes(depth, total - elementNum);
+            updatePathAggregates(depth);
+        }
+        if (metrics != null) {
+            metrics.addElements(insertNum);
+        }
+        return insertNum;
     }
 
     /**
-     * 使用前驱元素替换当前元素
+     * 使用给定的元素重新填充查找路径中指定深度的节点，元素数量超出节点容量时一次性分裂为多个节点，
+     * 分隔元素和新生成的节点一次性插入到父节点，父节点也超出容量时继续向上处理
      *
-     * @param currentNode        被删除的元素所在的节点
-     * @param deleteElementIndex 被删除的元素在节点中的位置
-     * @param predecessorNode    被删除的元素的左子树
-     */
-    private boolean replaceWithPredecessorElement(Node<K, V> currentNode, int deleteElementIndex, Node<K, V> predecessorNode) {
-        do {
-            if (predecessorNode.isLeafNode()) {
-                Element<K, V> maxElement = predecessorNode.getMaxElement();//前驱元素
-                moveElementToNode(maxElement, currentNode, deleteElementIndex);//移动元素
-                //前驱元素删除后可能会出现下溢操作，需要进行下溢
-                afterElementDelete(predecessorNode, null);
-                return true;
+     * @param depth    节点在查找路径中的深度
+     * @param keys     有序的元素key
+     * @param values   元素value
+     * @param children   子节点（比元素多一个），叶子节点为null
+     * @param childSizes      与children对应的子树元素总数，叶子节点为null
+     * @param childAggregates 与children对应的子树聚合值，叶子节点或者没有聚合函数时为null
+     * @param total           元素数量
+     * @return 最上层被修改的节点在查找路径中的深度，该节点以及它上面的查找路径仍然有效（父节点中记录的子树元素数和聚合值由调用方更新）
+     */
+    private int refillNode(int depth, Object[] keys, Object[] values, Node<K, V>[] children, long[] childSizes, Object[] childAggregates, int total) {
+        while (true) {
+            Node<K, V> node = pathNodes[depth];
+            if (total < size) {//没有超出节点容量
+                node.setElements(keys, values, children, childSizes, childAggregates, 0, total);
+                return depth;
+            }
+            //分裂为chunkNum个节点，每个节点不超过 阶-1 个元素，节点之间为分隔元素
+            int chunkNum = (total + size) / size;
+            int separatorNum = chunkNum - 1;
+            int chunkSize = (total - separatorNum) / chunkNum;
+            int remainder = (total - separatorNum) % chunkNum;
+            Object[] separatorKeys = new Object[separatorNum];
+            Object[] separatorValues = new Object[separatorNum];
+            @SuppressWarnings("unchecked")
+            Node<K, V>[] newNodes = new Node[separatorNum];
+            long[] newSizes = new long[separatorNum];
+            Object[] newAggregates = new Object[separatorNum];
+            int position = 0;
+            for (int chunk = 0; chunk < chunkNum; chunk++) {
+                int length = chunkSize + (chunk < remainder ? 1 : 0);
+                Node<K, V> chunkNode = chunk == 0 ? node : newNode(node.isLeafNode());
+                chunkNode.setElements(keys, values, children, childSizes, childAggregates, position, length);
+                position += length;
+                if (chunk > 0) {
+                    if (metrics != null) {
+                        metrics.recordSplit();
+                    }
+                    newNodes[chunk - 1] = chunkNode;
+                    newSizes[chunk - 1] = chunkNode.totalSize();
+                    newAggregates[chunk - 1] = aggregateOf(chunkNode);
+                }
+                if (chunk < separatorNum) {
+                    separatorKeys[chunk] = keys[position];
+                    separatorValues[chunk] = values[position++];
+                }
+            }
+            Node<K, V> parentNode;
+            int index;
+            if (depth == 0) {//分裂到了根节点，生成新的根节点，树高增加
+                parentNode = newNode(false);
+                parentNode.setChild(0, node);
+                rootNode = parentNode;
+                height++;
+                if (metrics != null) {
+                    metrics.heightChanged(height, 1);
+                }
+                pathNodes[0] = parentNode;
+                index = 0;
             } else {
-                predecessorNode = predecessorNode.getMaxElement().getRightNode();
+                depth--;
+                parentNode = pathNodes[depth];
+                index = pathIndexes[depth];
+            }
+            //将分隔元素和新节点插入到父节点的index位置
+            int parentNum = parentNode.getElementNum();
+            total = parentNum + separatorNum;
+            keys = new Object[total];
+            values = new Object[total];
+            @SuppressWarnings("unchecked")
+            Node<K, V>[] parentChildren = new Node[total + 1];
+            long[] parentChildSizes = new long[total + 1];
+            Object[] parentChildAggregates = aggregator == null ? null : new Object[total + 1];
+            parentChildren[0] = parentNode.getChild(0);
+            parentChildSizes[0] = parentNode.getChildSize(0);
+            parentNode.copyElements(0, index, keys, values, parentChildren, parentChildSizes, parentChildAggregates, 0);
+            System.arraycopy(separatorKeys, 0, keys, index, separatorNum);
+            System.arraycopy(separatorValues, 0, values, index, separatorNum);
+            parentChildren[index] = node;
+            parentChildSizes[index] = node.totalSize();
+            System.arraycopy(newNodes, 0, parentChildren, index + 1, separatorNum);
+            System.arraycopy(newSizes, 0, parentChildSizes, index + 1, separatorNum);
+            if (parentChildAggregates != null) {
+                parentChildAggregates[0] = parentNode.getChildAggregate(0);
+                parentChildAggregates[index] = aggregateOf(node);
+                System.arraycopy(newAggregates, 0, parentChildAggregates, index + 1, separatorNum);
             }
-        } while (true);
+            parentNode.copyElements(index, parentNum - index, keys, values, parentChildren, parentChildSizes, parentChildAggregates, index + separatorNum);
+            children = parentChildren;
+            childSizes = parentChildSizes;
+            childAggregates = parentChildAggregates;
+        }
     }
 
+    /**
+     * 批量删除数据
+     * 1.先将key排序，再从小到大依次处理，相邻的key从上一次查找路径中仍然包含该key的最深节点开始向下查找
+     * 2.落在同一个叶子节点中的key一次性从该叶子节点中删除，删除完成后只对该节点进行一次下溢操作
+     * 3.在内部节点中的key按单个删除处理
+     *
+     * @param keys 要删除的key
+     * @return 删除的元素数量
+     */
+    @SuppressWarnings("unchecked")
+    public int deleteAll(Collection<K> keys) {
+        Object[] sortedKeys = keys.toArray();
+        Arrays.sort(sortedKeys, (Comparator<Object>) (k1, k2) -> compare((K) k1, (K) k2));
+        int deleteNum = 0;
+        Object[] upperBounds = new Object[pathNodes.length];
+        pathNodes[0] = mutableRoot();
+        int depth = 0;
+        int i = 0;
+        while (i < sortedKeys.length) {
+            K key = (K) sortedKeys[i];
+            while (depth > 0 && upperBounds[depth] != null && compare((K) upperBounds[depth], key) <= 0) {
+                depth--;
+            }
+            Node<K, V> node = pathNodes[depth];
+            int index;
+            while ((index = node.searchKey(key, comparator)) < 0 && !node.isLeafNode()) {
+                int childIndex = -index - 1;
+                Object upperBound = childIndex < node.getElementNum() ? node.getKey(childIndex) : upperBounds[depth];
+                pushPath(depth++, node, childIndex);
+                node = mutableChild(node, childIndex);
+                pushPath(depth, node, 0);
+                if (upperBounds.length < pathNodes.length) {
+                    upperBounds = Arrays.copyOf(upperBounds, pathNodes.length);
+                }
+                upperBounds[depth] = upperBound;
+            }
+            if (!node.isLeafNode()) {//key在内部节点中，按单个删除处理，树的结构可能改变，重新从根节点查找
+                doDelete(key);
+                deleteNum++;
+                i++;
+                depth = 0;
+                pathNodes[0] = mutableRoot();
+                continue;
+            }
+            //收集所有落在当前叶子节点中的key，一次性删除
+            Object upperBound = upperBounds[depth];
+            int end = i + 1;
+            while (end < sortedKeys.length && (upperBound == null || compare((K) upperBound, (K) sortedKeys[end]) > 0)) {
+                end++;
+            }
+            int leafDeleteNum = node.deleteKeys(sortedKeys, i, end, comparator);
+            deleteNum += leafDeleteNum;
+            addPathChildSizes(depth, -leafDeleteNum);
+            updatePathAggregates(depth);
+            i = end;
+            if (depth > 0 && node.lowerThanEleLowestLimit(mergeThreshold)) {//下溢后树的结构改变，重新从根节点查找
+                afterElementDelete(node, depth);
+                depth = 0;
+                pathNodes[0] = mutableRoot();
+            }
+        }
+        if (metrics != null) {
+            metrics.addElements(-deleteNum);
+        }
+        return deleteNum;
+    }
 
     /**
-     * 将指定的元素从所在节点移动到指定节点的指定位置
+     * 删除元素
+     * 1.从根节点向下查找元素，记录查找路径
+     * 2.元素在内部节点时，使用前驱元素（左子树中最大的元素）替换被删除元素，实际删除的是叶子节点中的前驱元素
+     * 3.从叶子节点中删除元素后，判断是否需要下溢
      *
-     * @param element    要移动的元素
-     * @param targetNode 移动到的节点
-     * @param index      指定的位置
+     * @param key 要删除的key
+     * @return true:找到元素并对其进行了删除 ，false:元素不存在这棵树上
      */
-    private void moveElementToNode(Element<K, V> element, Node<K, V> targetNode, int index) {
-        element.getCurrentNode().deleteElement(element.getIndex());//将目标元素先从指定节点删除
-        targetNode.replaceElement(element, index);//将当前元素替换到指定节点的指定元素
+    public boolean delete(K key) {
+        BTreeMetrics metrics = this.metrics;
+        if (metrics == null) {
+            return doDelete(key);
+        }
+        long start = System.nanoTime();
+        boolean deleted = doDelete(key);
+        metrics.recordDelete(System.nanoTime() - start, deleted);
+        return deleted;
+    }
+
+    private boolean doDelete(K key) {
+        Node<K, V> node = rootNode;
+        int depth = 0;
+        int index;
+        while ((index = node.searchKey(key, comparator)) < 0) {
+            if (node.isLeafNode()) {//查找到叶子节点了，但是仍然没找到
+                return false;
+            }
+            int childIndex = -index - 1;
+            pushPath(depth++, node, childIndex);
+            node = node.getChild(childIndex);
+        }
+        node = mutablePath(depth);//找到了要删除的元素，复制被快照共享的节点
+        if (!node.isLeafNode()) {//内部节点，实际删除的是叶子节点中的前驱元素
+            index = replaceWithPredecessorElement(node, index, depth);
+            depth = height - 1;//所有叶子节点都在最后一层
+            node = pathNodes[depth];
+        }
+        node.deleteElement(index);
+        addPathChildSizes(depth, -1);
+        updatePathAggregates(depth);
+        afterElementDelete(node, depth);
+        return true;
     }
 
+    /**
+     * 使用前驱元素替换内部节点中被删除的元素，前驱元素为左子树中一直往右子树遍历到叶子节点的最大元素
+     *
+     * @param innerNode          被删除的元素所在的节点
+     * @param deleteElementIndex 被删除的元素在节点中的位置
+     * @param depth              被删除的元素所在的节点在查找路径中的深度
+     * @return 前驱元素在叶子节点中的位置（叶子节点为查找路径中的最后一个节点）
+     */
+    private int replaceWithPredecessorElement(Node<K, V> innerNode, int deleteElementIndex, int depth) {
+        pushPath(depth++, innerNode, deleteElementIndex);
+        Node<K, V> predecessorNode = mutableChild(innerNode, deleteElementIndex);
+        while (!predecessorNode.isLeafNode()) {
+            int last = predecessorNode.getElementNum();
+            pushPath(depth++, predecessorNode, last);
+            predecessorNode = mutableChild(predecessorNode, last);
+        }
+        int maxIndex = predecessorNode.getElementNum() - 1;//前驱元素
+        pushPath(depth, predecessorNode, maxIndex);
+        innerNode.replaceElement(deleteElementIndex, predecessorNode.getKey(maxIndex), predecessorNode.getValue(maxIndex));
+        return maxIndex;
+    }
 
     /**
      * 叶子节点中的元素删除后的操作，判断当前节点删除完元素后是否需要进行下溢操作，如果需要则进行下溢
+     * 1.兄弟节点丰满时，从兄弟节点借缺少的元素（旋转，批量删除时可能缺少多个），结束
+     * 2.兄弟节点都不丰满时，将父节点中的元素下降，与兄弟节点合并，父节点继续判断是否需要下溢
+     *
+     * @param currentNode 删除了元素的节点
+     * @param depth       currentNode在查找路径中的深度
      */
-    private void afterElementDelete(Node<K, V> currentNode, Node<K, V> newNode) {
-        if (currentNode.lowerThanEleLowestLimit()) {//当前删除元素后的节点元素过少，需要进行下溢
-            //获取可以借元素的兄弟节点
-            SiblingNodeChooseMode siblingNodeChooseMode = chooseUpSiblingNode(currentNode);
-            switch (siblingNodeChooseMode.type) {
-                case SiblingNodeChooseMode.LEFT_SIBLING://从左侧借，右旋转
-                    rotateRight(siblingNodeChooseMode.siblingNode, currentNode.getPredecessorElement(), currentNode, newNode);
-                    break;
-                case SiblingNodeChooseMode.RIGHT_SIBLING://从右侧借,左旋转
-                    rotateLeft(siblingNodeChooseMode.siblingNode, currentNode.getSuccessorElement(), currentNode, newNode);
-                    break;
-                case SiblingNodeChooseMode.OVERFLOW_SIBLING_LEFT://无法借兄弟节点，需要进行节点合并，将父节点中的元素进行下溢(与左兄弟节点结合)
-                    elementUnderflow(siblingNodeChooseMode.siblingNode, currentNode.getPredecessorElement(), currentNode, newNode);
-                    break;
-                case SiblingNodeChooseMode.OVERFLOW_SIBLING_RIGHT://无法借兄弟节点，需要进行节点合并，将父节点中的元素进行下溢(与右兄弟节点结合)
-                    elementUnderflow(currentNode, currentNode.getSuccessorElement(), siblingNodeChooseMode.siblingNode, newNode);
-                    break;
-                case SiblingNodeChooseMode.ILLEGAL_MODE:
-                    throw new IllegalArgumentException("当前树存在问题,无法删除元素");
+    private void afterElementDelete(Node<K, V> currentNode, int depth) {
+        //根节点不存在兄弟节点，元素再少也不需要下溢
+        while (depth > 0 && currentNode.lowerThanEleLowestLimit(mergeThreshold)) {
+            depth--;
+            Node<K, V> parentNode = pathNodes[depth];
+            int childIndex = pathIndexes[depth];
+            Node<K, V> leftSibling = childIndex > 0 ? parentNode.getChild(childIndex - 1) : null;
+            Node<K, V> rightSibling = childIndex < parentNode.getElementNum() ? parentNode.getChild(childIndex + 1) : null;
+            int lackNum = mergeThreshold - currentNode.getElementNum();//缺少的元素数量
+            if (leftSibling != null && leftSibling.moreThanLowestLimit(lackNum, mergeThreshold)) {//从左侧借，右旋转
+                leftSibling = mutableChild(parentNode, childIndex - 1);
+                for (int i = 0; i < lackNum; i++) {
+                    rotateRight(leftSibling, parentNode, childIndex - 1, currentNode);
+                }
+                return;
             }
+            if (rightSibling != null && rightSibling.moreThanLowestLimit(lackNum, mergeThreshold)) {//从右侧借,左旋转
+                rightSibling = mutableChild(parentNode, childIndex + 1);
+                for (int i = 0; i < lackNum; i++) {
+                    rotateLeft(rightSibling, parentNode, childIndex, currentNode);
+                }
+                return;
+            }
+            if (leftSibling != null) {//无法借兄弟节点，与左兄弟节点合并（右侧节点只读取，不需要复制）
+                leftSibling = mutableChild(parentNode, childIndex - 1);
+                elementUnderflow(leftSibling, parentNode, childIndex - 1, currentNode);
+            } else if (rightSibling != null) {//无法借兄弟节点，与右兄弟节点合并
+                elementUnderflow(currentNode, parentNode, childIndex, rightSibling);
+            } else {//左右兄弟都为空，表示树的结构有问题
+                throw new IllegalArgumentException("当前树存在问题,无法删除元素");
+            }
+            //由于执行了下溢操作，可能父节点也需要进行下溢
+            currentNode = parentNode;
         }
     }
 
     /**
-     * 执行元素下溢操作
+     * 执行元素下溢操作：父节点中的中间元素下降，与左右两个子节点合并为左侧节点
      *
-     * @param leftChildNode  元素下溢时的左侧左节点
-     * @param middleElement  元素下溢时的中间元素
+     * @param leftChildNode  元素下溢时的左侧子节点
+     * @param parentNode     中间元素所在的节点
+     * @param middleIndex    中间元素在父节点中的位置
      * @param rightChildNode 元素下溢时的右侧子节点
-     * @param lastCombinedNode 上一次下溢操作后生成的新节点
      */
-    private void elementUnderflow(Node<K, V> leftChildNode, Element<K, V> middleElement, Node<K, V> rightChildNode, Node<K, V> lastCombinedNode) {
-        Node<K, V> middleEleCurrentNode = middleElement.getCurrentNode();//中间元素所在的节点
-        Element<K, V> preElement = middleElement.getPreElement();
-        Element<K, V> nextElement = middleElement.getNextElement();
-
-        //使用左子树作为新的节点，将其他节点新增到里面
-        Element<K, V>[] rightChildNodeElements = rightChildNode.getElements();
-
-        //将中间元素从父节点删除
-        middleEleCurrentNode.deleteElement(middleElement.getIndex());
-
-        leftChildNode.appendElements(true, middleElement);
-
-        if (leftChildNode.getElementNum() == 1) {//下降中间元素后，元素为一个，说明之前节点在下溢时导致了节点元素全部删除，所以将将上一次下溢产生的节点设置为中间元素的子树
-            middleElement.setLeftNode(lastCombinedNode);
-        } else if (middleElement.getRightNode() != null && !middleElement.getRightNode().hasElement()) {
-            middleElement.setRightNode(lastCombinedNode);
-            if (lastCombinedNode != null) {
-                lastCombinedNode.setSuccessorElement(null);
-            }
-        } else {
-            middleElement.setRightNode(null);//由于右子树已经合并到左子树，先将右子树置为空，后面再将新的右子树加回去
+    private void elementUnderflow(Node<K, V> leftChildNode, Node<K, V> parentNode, int middleIndex, Node<K, V> rightChildNode) {
+        long rightSize = parentNode.getChildSize(middleIndex + 1);
+        leftChildNode.appendElements(parentNode.getKey(middleIndex), parentNode.getValue(middleIndex), rightChildNode);
+        parentNode.deleteElement(middleIndex);
+        //中间元素和右侧子树都合并到了左侧子树中
+        parentNode.addChildSize(middleIndex, rightSize + 1);
+        updateChildAggregate(parentNode, middleIndex);
+        freeNode(rightChildNode);
+        if (metrics != null) {
+            metrics.recordMerge();
         }
-
-
-        leftChildNode.appendElements(false, rightChildNodeElements);
-
-        //设置元素子节点关联
-        Optional.ofNullable(preElement).ifPresent(pre -> pre.setRightNode(leftChildNode));
-        Optional.ofNullable(nextElement).ifPresent(next -> next.setLeftNode(leftChildNode));
-
-        //将右节点中的所有子节点的parentNode改为左节点
-        changeParentNode(leftChildNode, rightChildNodeElements);
-
-        //如果当前下溢节点为根节点,则不必要再传播下去
-        if (middleEleCurrentNode.isRootNode()) {
-            //根节点下溢后，如果根节点没有元素，则将新生成的节点升为根节点；降低树高
-            if (!middleEleCurrentNode.hasElement()) {
-                leftChildNode.setParentNode(null);
-                leftChildNode.setNodeType(Node.NodeType.ROOTNODE);
-                this.rootNode = leftChildNode;
-                height--;
+        //根节点下溢后，如果根节点没有元素，则将合并生成的节点升为根节点；降低树高
+        if (parentNode == rootNode && !parentNode.hasElement()) {
+            rootNode = leftChildNode;
+            height--;
+            freeNode(parentNode);
+            if (metrics != null) {
+                metrics.heightChanged(height, -1);
             }
-        } else {
-            //由于执行了下溢操作，可能父节点也需要进行下溢（递归操作）
-            afterElementDelete(middleEleCurrentNode, leftChildNode);
         }
     }
 
 
     /**
-     * 执行左旋转
+     * 执行右旋转：左兄弟节点的最大元素上升到父节点，父节点中的中间元素下降到目标节点的最左侧
      *
      * @param fromNode        初始节点（左侧的节点）
-     * @param opElement       操作的中间元素
+     * @param parentNode      中间元素所在的节点
+     * @param middleIndex     中间元素在父节点中的位置
      * @param destinationNode 旋转目的节点(右侧的节点)
      */
-    private void rotateRight(Node<K, V> fromNode, Element<K, V> opElement, Node<K, V> destinationNode, Node<K, V> lastCombinedNode) {
-        Element<K, V> elementMini = fromNode.getMaxElement();//旋转元素中的最小的一个
-        Node<K, V> miniRightNode = elementMini.getRightNode();//最小元素的右子节点
-        miniRightNode.setPredecessorElement(null);
-        elementMini.getLeftNode().setSuccessorElement(null);
-        Node<K, V> middleEleNode = opElement.getCurrentNode();//中间元素所在节点
-        fromNode.deleteElement(fromNode.getElementNum());//删除最大元素
-        middleEleNode.replaceElement(elementMini, opElement.getIndex());//将最小元素与中间元素进行替换
-        destinationNode.insertElement(opElement, 0);//将中间元素插入到目的节点的最左侧（在该节点中最小）
-        if (destinationNode.getElementNum() == 1) {
-            opElement.setRightNode(lastCombinedNode);
+    private void rotateRight(Node<K, V> fromNode, Node<K, V> parentNode, int middleIndex, Node<K, V> destinationNode) {
+        int maxIndex = fromNode.getElementNum() - 1;
+        //最大元素的右子树作为中间元素下移后的左子树
+        Node<K, V> maxRightNode = fromNode.isLeafNode() ? null : fromNode.getChild(maxIndex + 1);
+        long maxRightSize = fromNode.isLeafNode() ? 0 : fromNode.getChildSize(maxIndex + 1);
+        Object maxRightAggregate = fromNode.getChildAggregate(maxIndex + 1);
+        destinationNode.insertFirstElement(parentNode.getKey(middleIndex), parentNode.getValue(middleIndex), maxRightNode, maxRightSize, maxRightAggregate);
+        parentNode.replaceElement(middleIndex, fromNode.getKey(maxIndex), fromNode.getValue(maxIndex));
+        fromNode.deleteElement(maxIndex);//删除最大元素
+        //左侧子树减少的元素（最大元素和它的右子树）等于右侧子树增加的元素（中间元素和移动过来的子树）
+        parentNode.addChildSize(middleIndex, -(maxRightSize + 1));
+        parentNode.addChildSize(middleIndex + 1, maxRightSize + 1);
+        updateChildAggregate(parentNode, middleIndex);
+        updateChildAggregate(parentNode, middleIndex + 1);
+        if (metrics != null) {
+            metrics.recordRotation();
         }
-        opElement.setLeftNode(miniRightNode);//将最小元素的右节点作为中间元素下移后得到元素的左子树
     }
 
     /**
-     * 执行右旋转
+     * 执行左旋转：右兄弟节点的最小元素上升到父节点，父节点中的中间元素下降到目标节点的最右侧
      *
      * @param fromNode        初始节点(右边的节点)
-     * @param opElement       执行操作的中间节点
+     * @param parentNode      中间元素所在的节点
+     * @param middleIndex     中间元素在父节点中的位置
      * @param destinationNode 旋转后的目标节点（左侧节点）
      */
-    private void rotateLeft(Node<K, V> fromNode, Element<K, V> opElement, Node<K, V> destinationNode, Node<K, V> lastCombinedNode) {
-        Element<K, V> maxElement = fromNode.getMiniElement();
-        Node<K, V> maxEleLeftNode = maxElement.getLeftNode();
-        maxEleLeftNode.setSuccessorElement(null);
-        maxElement.getRightNode().setPredecessorElement(null);
-        Node<K, V> middleEleNode = opElement.getCurrentNode();
-        middleEleNode.replaceElement(maxElement, opElement.getIndex());
-        fromNode.deleteElement(0);//删除最小元素
-        destinationNode.insertElement(opElement, destinationNode.getElementNum());
-        if (destinationNode.getElementNum() == 1) {
-            opElement.setLeftNode(lastCombinedNode);
+    private void rotateLeft(Node<K, V> fromNode, Node<K, V> parentNode, int middleIndex, Node<K, V> destinationNode) {
+        //最小元素的左子树作为中间元素下移后的右子树
+        Node<K, V> miniLeftNode = fromNode.isLeafNode() ? null : fromNode.getChild(0);
+        long miniLeftSize = fromNode.isLeafNode() ? 0 : fromNode.getChildSize(0);
+        Object miniLeftAggregate = fromNode.getChildAggregate(0);
+        destinationNode.insertElement(destinationNode.getElementNum(), parentNode.getKey(middleIndex), parentNode.getValue(middleIndex),
+                miniLeftNode, miniLeftSize, miniLeftAggregate);
+        parentNode.replaceElement(middleIndex, fromNode.getKey(0), fromNode.getValue(0));
+        fromNode.deleteFirstElement();//删除最小元素
+        parentNode.addChildSize(middleIndex + 1, -(miniLeftSize + 1));
+        parentNode.addChildSize(middleIndex, miniLeftSize + 1);
+        updateChildAggregate(parentNode, middleIndex);
+        updateChildAggregate(parentNode, middleIndex + 1);
+        if (metrics != null) {
+            metrics.recordRotation();
         }
-        opElement.setRightNode(maxEleLeftNode);
     }
 
+
     /**
-     * 从当前节点的左右兄弟节点中选择能够上升元素到父节的节点
+     * 将当前B树的数据结构生成可打印的字符串，树很大时使用{@link #dump(Appendable, DumpFormat, int, int)}直接写入输出并限制深度和宽度
      *
-     * @return 从左兄弟节点开始查找, 查完左，之后查右，如果查到一个符合的就进行返回，如果都没有，就返回null
+     * @return 每层节点一行
      */
-    private SiblingNodeChooseMode chooseUpSiblingNode(Node<K, V> currentNode) {
-        Element<K, V> predecessorElement = currentNode.getPredecessorElement();
-        Element<K, V> successorElement = currentNode.getSuccessorElement();
+    public String printBTree() {
+        StringBuilder builder = new StringBuilder();
+        try {
+            dump(builder, DumpFormat.TEXT, Integer.MAX_VALUE, Integer.MAX_VALUE);
+        } catch (IOException e) {//StringBuilder不会抛出IOException
+            throw new UncheckedIOException(e);
+        }
+        return builder.toString();
+    }
 
-        Node<K, V> leftSibling = null;
-        Node<K, V> rightSibling = null;
+    /**
+     * 按层流式输出树的结构，不拼接整层的字符串，额外内存与树高成正比
+     *
+     * @param out      输出目标
+     * @param format   输出格式
+     * @param maxDepth 最多输出的层数（从根节点开始），大于0
+     * @param maxWidth 每层最多输出的节点数，大于0，超出部分用省略号表示
+     */
+    public void dump(Appendable out, DumpFormat format, int maxDepth, int maxWidth) throws IOException {
+        BTreeDump.dump(rootNode, height, size, out, format, maxDepth, maxWidth);
+    }
 
-        if (predecessorElement != null) {//先查丰满的左兄弟节点
-            leftSibling = predecessorElement.getLeftNode();
-            if (leftSibling != null && leftSibling.moreThanLowestLimit()) {
-                return new SiblingNodeChooseMode(leftSibling, SiblingNodeChooseMode.LEFT_SIBLING);
-            }
+    /**
+     * 按层流式输出树的结构到channel（UTF-8编码），参数见{@link #dump(Appendable, DumpFormat, int, int)}
+     */
+    public void dump(WritableByteChannel channel, DumpFormat format, int maxDepth, int maxWidth) throws IOException {
+        Writer writer = Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), DUMP_BUFFER_SIZE);
+        dump(writer, format, maxDepth, maxWidth);
+        writer.flush();
+    }
+
+
+    /**
+     * 查找B树，获取指定key对应的value
+     *
+     * @param key 指定的key
+     * @return 对应的value，没有返回null
+     */
+    public V find(K key) {
+        BTreeMetrics metrics = this.metrics;
+        if (metrics == null) {
+            return find(rootNode, key, comparator);
         }
+        long start = System.nanoTime();
+        V value = find(rootNode, key, comparator);
+        metrics.recordFind(System.nanoTime() - start);
+        return value;
+    }
 
-        if (successorElement != null) {//再查丰满的右兄弟节点
-            rightSibling = successorElement.getRightNode();
-            if (rightSibling != null && rightSibling.moreThanLowestLimit()) {
-                return new SiblingNodeChooseMode(rightSibling, SiblingNodeChooseMode.RIGHT_SIBLING);
+    /**
+     * 从指定的根节点开始查找key对应的value，不修改节点
+     *
+     * @param node       根节点
+     * @param key        指定的key
+     * @param comparator key的比较器，null表示使用key的自然顺序
+     * @return 对应的value，没有返回null
+     */
+    static <K, V> V find(Node<K, V> node, K key, Comparator<? super K> comparator) {
+        while (true) {
+            int index = node.searchKey(key, comparator);
+            if (index >= 0) {//找到了与查找的元素相等的数据
+                return node.getValue(index);
+            }
+            if (node.isLeafNode()) {//查找到叶子节点了，但是仍然没找到
+                return null;
             }
+            //在插入位置对应的子树中继续查找
+            node = node.getChild(-index - 1);
         }
+    }
 
-        if (leftSibling == null && rightSibling != null) {//没有丰满的兄弟节点，则返回非空的兄弟节点
-            return new SiblingNodeChooseMode(rightSibling, SiblingNodeChooseMode.OVERFLOW_SIBLING_RIGHT);
-        }
-        if (rightSibling == null && leftSibling != null) {//没有丰满的兄弟节点，则返回非空的兄弟节点
-            return new SiblingNodeChooseMode(leftSibling, SiblingNodeChooseMode.OVERFLOW_SIBLING_LEFT);
-        }
+    /**
+     * 树中的元素总数
+     */
+    public long count() {
+        return rootNode.totalSize();
+    }
 
-        //左右兄弟都为空，表示树的结构有问题
-        return new SiblingNodeChooseMode(null, SiblingNodeChooseMode.ILLEGAL_MODE);
+    /**
+     * [from, to)范围内的元素数量，见{@link #count(Object, boolean, Object, boolean)}
+     */
+    public long count(K from, K to) {
+        return count(from, true, to, false);
     }
 
+    /**
+     * 指定范围内的元素数量，只沿两个边界各查找一次，不遍历范围内的元素，时间复杂度O(log n)
+     *
+     * @param from          起始位置的key，null表示从最小的元素开始
+     * @param fromInclusive 是否包含起始位置的key
+     * @param to            结束位置的key，null表示到最大的元素结束
+     * @param toInclusive   是否包含结束位置的key
+     * @return 范围内的元素数量，起始位置大于结束位置时为0
+     */
+    public long count(K from, boolean fromInclusive, K to, boolean toInclusive) {
+        return count(rootNode, from, fromInclusive, to, toInclusive, comparator);
+    }
 
     /**
-     * 将当前B树的数据结构生成可打印的字符串
+     * 小于指定key的元素数量（key在树中时即为它按顺序的位置，从0开始）
      *
-     * @return
+     * @param key 指定的key，可以不在树中
+     * @return 小于key的元素数量
      */
-    public String printBTree() {
-        List<Node<K, V>> list = new ArrayList<>(1);
-        list.add(rootNode);
-        return print(list);
-    }
-
-    private String print(List<Node<K, V>> nodeList) {
-        String str = nodeList.stream().map(Node::toString).collect(Collectors.joining("\t\t"));
-        List<Node<K, V>> nextNodeList = new ArrayList<>();
-        for (Node<K, V> node : nodeList) {
-            for (Element<K, V> e : node.getElements()) {
-                if (e.hasLeftNode()) {
-                    nextNodeList.add(e.getLeftNode());
-                }
-                if (e.isNodeLastElement() && e.hasRightLeft()) {//最后一个元素需要将左右子树同时打印
-                    nextNodeList.add(e.getRightNode());
-                }
+    public long rank(K key) {
+        return rank(rootNode, key, false, comparator);
+    }
+
+    /**
+     * 按顺序获取第index个元素的key（从0开始），用于分页时直接定位到指定位置
+     *
+     * @param index 元素的位置，[0, count())
+     * @return 该位置的key
+     */
+    public K select(long index) {
+        return select(rootNode, index);
+    }
+
+    /**
+     * 在指定的子树中统计指定范围内的元素数量
+     */
+    static <K, V> long count(Node<K, V> node, K from, boolean fromInclusive, K to, boolean toInclusive, Comparator<? super K> comparator) {
+        long toRank = to == null ? node.totalSize() : rank(node, to, toInclusive, comparator);
+        long fromRank = from == null ? 0 : rank(node, from, !fromInclusive, comparator);
+        return Math.max(toRank - fromRank, 0);
+    }
+
+    /**
+     * 在指定的子树中统计小于（inclusive为true时为小于等于）key的元素数量：
+     * 从根节点向下查找，每一层累加查找位置左侧的元素数和左侧子树的元素总数
+     *
+     * @param node       子树的根节点
+     * @param key        指定的key
+     * @param inclusive  是否统计与key相等的元素
+     * @param comparator key的比较器，null表示使用key的自然顺序
+     * @return 元素数量
+     */
+    static <K, V> long rank(Node<K, V> node, K key, boolean inclusive, Comparator<? super K> comparator) {
+        long rank = 0;
+        while (true) {
+            int index = node.searchKey(key, comparator);
+            if (index >= 0) {//找到了key，它左侧的元素和左侧的子树（包括第index个子树）都小于它
+                return rank + index + node.childSizesBefore(index + 1) + (inclusive ? 1 : 0);
             }
+            int insertIndex = -index - 1;
+            rank += insertIndex + node.childSizesBefore(insertIndex);
+            if (node.isLeafNode()) {
+                return rank;
+            }
+            node = node.getChild(insertIndex);
         }
-        if (!nextNodeList.isEmpty()) {
-            str = str + "\n" + print(nextNodeList);
+    }
+
+    /**
+     * 在指定的子树中获取第index个元素的key：从根节点向下查找，每一层依次跳过子树中的元素总数和节点中的元素
+     */
+    static <K, V> K select(Node<K, V> node, long index) {
+        if (index < 0 || index >= node.totalSize()) {
+            throw new IllegalArgumentException("位置超出范围,index:" + index);
         }
-        return str;
+        long remain = index;
+        while (!node.isLeafNode()) {
+            int i = 0;
+            while (remain >= node.getChildSize(i)) {
+                remain -= node.getChildSize(i);
+                if (remain == 0) {//跳过第i个子树后正好是第i个元素
+                    return node.getKey(i);
+                }
+                remain--;
+                i++;
+            }
+            node = node.getChild(i);
+        }
+        return node.getKey((int) remain);
     }
 
+    /**
+     * [from, to)范围内元素的聚合值，见{@link #aggregate(Object, boolean, Object, boolean)}
+     */
+    public <A> A aggregate(K from, K to) {
+        return aggregate(from, true, to, false);
+    }
 
     /**
-     * 新增元素
+     * 指定范围内元素按key顺序合并的聚合值，只合并两个边界查找路径上的节点，范围内部完整的子树直接使用记录的聚合值，
+     * 时间复杂度O(阶 * log n)
      *
-     * @param e 要新增的元素
-     * @return true:不存在该元素，已经新增进去  false:1.该元素已经存在树中，用新元素替换旧元素
+     * @param from          起始位置的key，null表示从最小的元素开始
+     * @param fromInclusive 是否包含起始位置的key
+     * @param to            结束位置的key，null表示到最大的元素结束
+     * @param toInclusive   是否包含结束位置的key
+     * @param <A>           聚合值类型，与创建树时指定的聚合函数一致
+     * @return 聚合值，范围内没有元素时为聚合函数的identity
      */
-    private boolean addElement(Element<K, V> e) {
-        boolean insertResult = false;
-        //先获取可以允许插入模式，在哪个节点插入，插入在元素的哪边
-        InsertMode insertMode = getInsertMode(rootNode, e.getKey());
-        Element<K, V> targetElement = insertMode.targetElement;
-        switch (insertMode.mode) {
-            case InsertMode.LEFT_INSERT_MODE://左侧插入
-                Node<K, V> currentNode = targetElement.getCurrentNode();
-                currentNode.insertElement(e, targetElement.getIndex());
-                afterElementInsert(currentNode);//节点分裂
-                insertResult = true;
-                break;
-            case InsertMode.RIGHT_INSERT_MODE://右侧插入
-                Node<K, V> currentNode1 = targetElement.getCurrentNode();
-                currentNode1.insertElement(e, targetElement.getIndex() + 1);
-                afterElementInsert(currentNode1);//节点分裂
-                insertResult = true;
-                break;
-            case InsertMode.REPLACE_MODE://替换模式,只需要替换节点元素的值
-                targetElement.setValue(e.getValue());
-                insertResult = false;
-                break;
-            case InsertMode.FIRST_INSERT://首次插入
-                rootNode.insertElement(e, 0);
-                insertResult = true;
-                break;
-            case InsertMode.ILLEGAL_MODE://树不合法
-                throw new IllegalArgumentException("树不合法，无法完成新增元素");
+    @SuppressWarnings("unchecked")
+    public <A> A aggregate(K from, boolean fromInclusive, K to, boolean toInclusive) {
+        if (aggregator == null) {
+            throw new IllegalStateException("创建树时没有指定聚合函数");
         }
-        return insertResult;
+        return (A) aggregate(rootNode, from, fromInclusive, to, toInclusive, comparator, aggregator);
     }
 
+    /**
+     * 在指定的子树中合并指定范围内元素的聚合值
+     */
+    @SuppressWarnings("unchecked")
+    static <K, V> Object aggregate(Node<K, V> node, K from, boolean fromInclusive, K to, boolean toInclusive,
+                                   Comparator<? super K> comparator, Aggregator<K, V, Object> aggregator) {
+        if (from != null && to != null) {
+            int compare = comparator == null ? ((Comparable<? super K>) from).compareTo(to) : comparator.compare(from, to);
+            if (compare > 0 || (compare == 0 && !(fromInclusive && toInclusive))) {
+                return aggregator.identity();
+            }
+        }
+        return aggregateRange(node, from, fromInclusive, to, toInclusive, comparator, aggregator);
+    }
 
     /**
-     * 查找B树，获取指定key对应的value
-     *
-     * @param key 指定的key
-     * @return 对应的value，没有返回null
+     * 节点中落在范围内的元素为[low, high)，它们之间的子树完整地在范围内，只有两侧的children[low]、children[high]需要继续向下查找；
+     * 两个边界分开后，每一侧只有一个边界，每层只会进入一个子节点
      */
-    public V find(K key) {
-        Element<K, V> element = findElement(key);
-        if (element != null) {
-            return element.getValue();
+    private static <K, V> Object aggregateRange(Node<K, V> node, K from, boolean fromInclusive, K to, boolean toInclusive,
+                                                Comparator<? super K> comparator, Aggregator<K, V, Object> aggregator) {
+        int low = from == null ? 0 : boundIndex(node, from, !fromInclusive, comparator);
+        int high = to == null ? node.getElementNum() : boundIndex(node, to, toInclusive, comparator);
+        if (node.isLeafNode()) {
+            return node.aggregateElements(aggregator, low, high);
         }
-        return null;
+        if (low == high) {//两个边界在同一个子树中
+            return aggregateRange(node.getChild(low), from, fromInclusive, to, toInclusive, comparator, aggregator);
+        }
+        Object left = from == null ? node.getChildAggregate(low)
+                : aggregateRange(node.getChild(low), from, fromInclusive, null, true, comparator, aggregator);
+        Object right = to == null ? node.getChildAggregate(high)
+                : aggregateRange(node.getChild(high), null, true, to, toInclusive, comparator, aggregator);
+        return aggregator.combine(aggregator.combine(left, node.aggregateElements(aggregator, low, high)), right);
     }
 
     /**
-     * 通过指定key查找元素
-     *
-     * @param key 指定的key
-     * @return 返回对应的元素，不存在则返回null
+     * 节点中第一个大于等于（after为true时为大于）key的元素位置
      */
-    private Element<K, V> findElement(K key) {
-        return findElement(rootNode, key);
+    private static <K, V> int boundIndex(Node<K, V> node, K key, boolean after, Comparator<? super K> comparator) {
+        int index = node.searchKey(key, comparator);
+        if (index >= 0) {
+            return after ? index + 1 : index;
+        }
+        return -index - 1;
     }
 
     /**
-     * 递归调用节点查询
+     * 开启运行指标统计，已经开启时返回原有的指标。开启时遍历一次树统计节点数，之后随修改增量更新；
+     * 开启后每次insert、find、delete额外调用两次System.nanoTime
      *
-     * @param node 当前节点
-     * @param key  要进行查找的key
-     * @return 查询到的元素，否则返回null
+     * @return 运行指标，可以注册到JMX或者通过snapshot复制
      */
-    private Element<K, V> findElement(Node<K, V> node, K key) {
-        Element<K, V>[] elements = node.getElements();
-        boolean leafNode = node.isLeafNode();
-        for (int i = 0; i < elements.length; i++) {
-            Element<K, V> e = elements[i];
-            int compareResult = e.keyCompareWith(key);
-            if (compareResult > 0) {//查找元素小于当前遍历元素，表示查找的元素可能在当前元素的左子树上
-                return leafNode ? null : findElement(e.getLeftNode(), key);
-            } else if (compareResult < 0) {//当前元素小于查找的key，表示查找的元素可能在右子树或者下一个元素中
-                if (i == elements.length - 1) {//如果当前元素是节点最后一个元素,则只可能在当前元素的右子树中
-                    return leafNode ? null : findElement(e.getRightNode(), key);
-                } else {//不是最后一个元素，要判断当前元素后面的元素是否也比查找的key要小，如果要小，就必须继续往后找，如果后面元素比查找的元素要大，则在当前元素的右节点上查找
-                    if (elements[i + 1].keyGreaterThan(key)) {
-                        return leafNode ? null : findElement(e.getRightNode(), key);
-                    }
-                }
-            } else {//找到了与查找的元素相等的数据
-                return e;
-            }
+    public BTreeMetrics enableMetrics() {
+        if (metrics == null) {
+            BTreeMetrics metrics = new BTreeMetrics(size);
+            resetMetricsShape(metrics);
+            this.metrics = metrics;
         }
-        return null;//查找到叶子节点了，但是仍然没找到，返回null
+        return metrics;
+    }
+
+    /**
+     * 关闭运行指标统计，已经注册到JMX的指标不会自动注销，之后也不再更新
+     */
+    public void disableMetrics() {
+        metrics = null;
+    }
+
+    /**
+     * 运行指标，没有开启统计时为null
+     */
+    public BTreeMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * key的比较器，null表示使用key的自然顺序
+     */
+    public Comparator<? super K> getComparator() {
+        return comparator;
     }
 
     /**
-     * 递归查找可以允许当前元素插入的节点
+     * 设置合并阈值：删除后非根节点的元素数低于该值时，才向兄弟节点借元素或者与兄弟节点合并。
+     * 默认为节点元素数下限（ 阶/2 取上限-1），即标准的B树；调小后节点满时分裂、低于阈值才合并，两者之间留出余量，
+     * 在同一位置反复插入、删除时不会来回分裂和合并，代价是节点的平均填充率降低、树可能变高。设置为1时只有节点删空才处理
+     * <p>
+     * 合并时当前节点少于阈值个元素、兄弟节点少于 2*阈值-当前元素数 个元素，合并后不超过 2*阈值 ≤ 阶-1，不会溢出。
+     * 调小阈值对已有的节点总是成立；调大阈值时已有节点不会立即调整，在下次删除经过时才借元素或者合并，在此之前{@link #analyze()}会报告元素数低于下限
      *
-     * @param insertKey 要插入的元素对应的key值
-     * @return 返回允许插入当前元素的节点, 如果在搜索的过程中发现元素已经存在，则返回null
-     */
-    private InsertMode getInsertMode(Node<K, V> startNode, K insertKey) {
-        if (startNode.hasElement()) {
-            Element<K, V>[] elements = startNode.getElements();
-            int length = elements.length;
-            //是否可以在当前节点上进行插入操作（1.当前节点是叶子节点   2.当前树高为1，且当前节点为根节点）
-            boolean nodeCanInsert = startNode.isLeafNode() || (height == 1);
-            for (int i = 0; i < length; i++) {
-                Element<K, V> e = elements[i];
-                int compareResult = e.keyCompareWith(insertKey);
-                if (compareResult > 0) {//查找元素小于当前遍历元素，表示查找的元素可能在当前元素的左子树上
-                    return nodeCanInsert ? leftInsertMode(e) : getInsertMode(e.getLeftNode(), insertKey);
-                } else if (compareResult < 0) {//当前元素小于查找的key，表示查找的元素可能在右子树或者下一个元素中
-                    if (i == elements.length - 1) {//如果当前元素是当前节点的最后一个元素，当前节点为叶子节点，则直接插入到当前节点后，不是叶子节点，则去右子树上找
-                        return nodeCanInsert ? rightInsertMode(e) : getInsertMode(e.getRightNode(), insertKey);
-                    } else {//不是最后一个元素，判断当前元素后面的元素是否也比查找的key要小，如果要小，就必须继续往后找，如果后面元素比查找的元素要大，则在当前元素的右节点上查找
-                        if (elements[i + 1].keyGreaterThan(insertKey)) {//后置元素比插入元素大，则表示插入在当前元素的后面或者右子树
-                            return nodeCanInsert ? rightInsertMode(e) : getInsertMode(e.getRightNode(), insertKey);
-                        }
-                    }
-                } else {//找到了与查找的元素相等的数据,不需要进行插入,进行元素替换
-                    return replaceMode(e);
-                }
-            }
-            return illegalMode();//树有问题，不合法操作
-        } else {//没有元素，初始状态
-            return firstInsertMode();
+     * @param mergeThreshold 合并阈值，[1, 阶/2 取上限-1]
+     */
+    public void setMergeThreshold(int mergeThreshold) {
+        int lowestLimit = (size - 1) / 2;
+        if (mergeThreshold < 1 || mergeThreshold > lowestLimit) {
+            throw new IllegalArgumentException("合并阈值必须在[1, " + lowestLimit + "]之间");
         }
+        this.mergeThreshold = mergeThreshold;
     }
 
     /**
-     * 元素插入完成后的操作，判断元素是否达到分裂标准，达到执行分裂
-     * 1.获取中间节点
-     * 2.将左边元素构造成一个节点，将右边元素构造成一个节点
-     * 3.将中间节点上升到父节点（如果当前节点已经是根节点了，就新建一个节点作为当前节点的父节点）
-     * 4.将新生成的两个节点分别作为中间节点的左右子树
-     * 5.将生成的两颗子树注册为父节点的子节点
-     * 6，将生成的左右子树中的每个元素的左右子树对应的节点修改为新的父节点（到这一步就相当于完成了对旧分裂节点的删除）
-     */
-    private void afterElementInsert(Node<K, V> node) {
-        if (node.needDivide()) {
-            //中间元素
-            Element<K, V> middleElement = node.getMiddleElement();
-            //中间元素所在的索引数
-            int middleElementIndex = middleElement.getIndex();
-            final int nodeSize = node.getNodeSize();
-            //左边节点构成的数组
-            Element<K, V>[] leftElements = node.getLeftElementFromIndex(middleElementIndex);
-            //右边节点构成的节点
-            Element<K, V>[] rightElements = node.getRightElementFromIndex(middleElementIndex);
-
-            //如果当前节点是叶子节点(或者当前数的高度为1，只有一层)，则新生成的两个节点也是在叶子节点；不是的话表示当前为中间节点或者根节点，则需要将新生成的节点作为中间节点
-            Node.NodeType nodeType = node.isLeafNode() || height == 1 ? Node.NodeType.LEAFNODE : Node.NodeType.MIDDLENODE;
-
-            //新生成的左子节点
-            Node<K, V> newLeftChildNode = new Node<>(nodeSize, nodeType, leftElements);
-            //新生成的右子节点
-            Node<K, V> newRightChildNode = new Node<>(nodeSize, nodeType, rightElements);
+     * 合并阈值，见{@link #setMergeThreshold(int)}
+     */
+    public int getMergeThreshold() {
+        return mergeThreshold;
+    }
 
-            Node<K, V> parentNode;
-            if (node.isRootNode()) {//当前节点是根节点，则需要生成一个新节点作为根节点
-                parentNode = new Node<>(nodeSize, Node.NodeType.ROOTNODE, null);//将中间节点提升作为根节点
-                rootNode = parentNode;//重置根节点
-                height++;//一直分裂到了根节点，树高进行增加
-            } else {
-                parentNode = node.getParentNode();
-            }
+    /**
+     * 按树的顺序比较两个key
+     */
+    @SuppressWarnings("unchecked")
+    private int compare(K k1, K k2) {
+        return comparator == null ? ((Comparable<? super K>) k1).compareTo(k2) : comparator.compare(k1, k2);
+    }
 
-            //由于中间元素上升，之前的子节点的前驱和后驱都需要进行修改
-            Optional.ofNullable(middleElement.getLeftNode()).ifPresent(left -> left.setSuccessorElement(null));//后驱元素上升了，设置其为空
-            Optional.ofNullable(middleElement.getRightNode()).ifPresent(right -> right.setPredecessorElement(null));//前驱元素为空，设置其为空
+    /**
+     * 创建按key递增顺序访问指定范围元素的游标，不复制结果，每次next时才向后移动
+     *
+     * @param from          起始位置的key，null表示从最小的元素开始
+     * @param fromInclusive 是否包含起始位置的key
+     * @param to            结束位置的key，null表示到最大的元素结束
+     * @param toInclusive   是否包含结束位置的key
+     * @return 定位到第一个元素之前的游标
+     */
+    public Cursor<K, V> range(K from, boolean fromInclusive, K to, boolean toInclusive) {
+        return new Cursor<>(rootNode, height, from, fromInclusive, to, toInclusive, comparator);
+    }
 
-            //将当前节点上升到父节点
-            parentNode.insertElement(middleElement);
+    /**
+     * 创建按key递增顺序访问全部元素的游标
+     */
+    public Cursor<K, V> cursor() {
+        return range(null, true, null, true);
+    }
 
-            //将新生成的两个叶子节点放到中间元素的左右子节点,同时重新设置前后元素的子节点
-            middleElement.setLeftNode(newLeftChildNode);
-            Optional.ofNullable(middleElement.getPreElement()).ifPresent(pre -> pre.setRightNode(newLeftChildNode));
-            middleElement.setRightNode(newRightChildNode);
-            Optional.ofNullable(middleElement.getNextElement()).ifPresent(next -> next.setLeftNode(newRightChildNode));
+    /**
+     * 指定范围元素的Spliterator（按key有序、不可拆分），参数见{@link #range(Object, boolean, Object, boolean)}
+     */
+    public Spliterator<Map.Entry<K, V>> spliterator(K from, boolean fromInclusive, K to, boolean toInclusive) {
+        return range(from, fromInclusive, to, toInclusive).spliterator();
+    }
 
-            //将生成的两颗子树设置为父节点的子节点
-            newLeftChildNode.setParentNode(parentNode);
-            newRightChildNode.setParentNode(parentNode);
+    /**
+     * 指定范围元素的顺序流，参数见{@link #range(Object, boolean, Object, boolean)}
+     */
+    public Stream<Map.Entry<K, V>> stream(K from, boolean fromInclusive, K to, boolean toInclusive) {
+        return StreamSupport.stream(spliterator(from, fromInclusive, to, toInclusive), false);
+    }
 
-            //将左边元素的所有子节点的父节点修改为新生成的左子树,右边也是一样
-            changeParentNode(newLeftChildNode, leftElements);
-            changeParentNode(newRightChildNode, rightElements);
-            //对新增完元素的父节点进行递归处理，判断其是否需要进行节点分裂
-            afterElementInsert(parentNode);
-        }
+    /**
+     * 全部元素的顺序流
+     */
+    public Stream<Map.Entry<K, V>> stream() {
+        return stream(null, true, null, true);
+    }
+
+    /**
+     * 以二进制格式保存全部元素（见{@link BTreeFormat}），不关闭channel
+     *
+     * @param channel    目标
+     * @param keyCodec   key编解码器
+     * @param valueCodec value编解码器
+     * @throws IOException 写入失败
+     */
+    public void writeTo(WritableByteChannel channel, Codec<K> keyCodec, Codec<V> valueCodec) throws IOException {
+        BTreeFormat.write(channel, size, cursor(), keyCodec, valueCodec);
     }
 
+    /**
+     * 读取writeTo保存的数据，使用保存时的阶自底向上构建B树，见{@link #readFrom(ReadableByteChannel, int, Codec, Codec)}
+     */
+    public static <K, V> BTree<K, V> readFrom(ReadableByteChannel channel, Codec<K> keyCodec, Codec<V> valueCodec) throws IOException {
+        return BTreeFormat.read(channel, 0, null, keyCodec, valueCodec);
+    }
 
     /**
-     * 为元素下的所有子节点(左右子节点)指定新的节点为父节点
+     * 读取writeTo保存的数据，元素边读取边追加到bulkLoad中，不逐个插入。
+     * 会多读取数据之后的内容，读取完成后channel的位置不确定
      *
-     * @param newNode 要修改到的新节点
+     * @param channel    来源
+     * @param size       树的阶，可以与保存时不同
+     * @param keyCodec   key编解码器，与保存时一致
+     * @param valueCodec value编解码器，与保存时一致
+     * @return 构建好的B树
+     * @throws IOException 读取失败、格式错误或者校验失败
      */
-    @SafeVarargs
-    private final void changeParentNode(Node<K, V> newNode, Element<K, V>... elements) {
-        for (Element<K, V> e : elements) {
-            Optional.ofNullable(e.getLeftNode()).ifPresent(left -> left.setParentNode(newNode));
-            Optional.ofNullable(e.getRightNode()).ifPresent(right -> right.setParentNode(newNode));
+    public static <K, V> BTree<K, V> readFrom(ReadableByteChannel channel, int size, Codec<K> keyCodec, Codec<V> valueCodec) throws IOException {
+        return readFrom(channel, size, null, keyCodec, valueCodec);
+    }
+
+    /**
+     * 读取按指定比较器排序的树保存的数据，参数见{@link #readFrom(ReadableByteChannel, int, Codec, Codec)}
+     *
+     * @param comparator key的比较器，与保存时的树一致，null表示使用key的自然顺序
+     */
+    public static <K, V> BTree<K, V> readFrom(ReadableByteChannel channel, int size, Comparator<? super K> comparator,
+                                              Codec<K> keyCodec, Codec<V> valueCodec) throws IOException {
+        if (size <= 2) {
+            throw new IllegalArgumentException("B树的阶必须大于2");
         }
+        return BTreeFormat.read(channel, size, comparator, keyCodec, valueCodec);
     }
 
+    /**
+     * 遍历整颗树检查结构，统计每一层的节点数和填充率分布，见{@link BTreeAnalyzer}。直接检查当前的树，期间不能修改树
+     *
+     * @return 检查结果
+     */
+    public BTreeHealth<K> analyze() {
+        return analyze(1, 0);
+    }
 
     /**
-     * 左插入模式
+     * 检查树的结构，叶子节点按比例抽样检查，内部节点全部检查
      *
-     * @param element 操作的元素
-     * @return 左插入模式
+     * @param sampleRate 叶子节点的抽样比例，(0, 1]
+     * @param seed       抽样使用的随机数种子
+     * @return 检查结果
      */
-    private InsertMode leftInsertMode(Element<K, V> element) {
-        return new InsertMode(element, InsertMode.LEFT_INSERT_MODE);
+    public BTreeHealth<K> analyze(double sampleRate, long seed) {
+        return new BTreeAnalyzer<>(rootNode, height, size, mergeThreshold, comparator, aggregator, sampleRate, seed).run();
     }
 
     /**
-     * 右插入模式
+     * 对当前树创建快照，返回检查快照的检查器，可以分多次执行（{@link BTreeAnalyzer#step(int)}），期间树可以继续修改。
+     * 创建快照后写入代数加1，之后的修改需要先复制被共享的节点，见{@link #snapshot()}
      *
-     * @param element 操作的元素
-     * @return 右插入模式
+     * @param sampleRate 叶子节点的抽样比例，(0, 1]
+     * @param seed       抽样使用的随机数种子
      */
-    private InsertMode rightInsertMode(Element<K, V> element) {
-        return new InsertMode(element, InsertMode.RIGHT_INSERT_MODE);
+    public BTreeAnalyzer<K, V> analyzer(double sampleRate, long seed) {
+        return snapshot().analyzer(sampleRate, seed);
     }
 
     /**
-     * 替换模式
+     * 创建当前树的只读快照，快照与树共享全部节点，不复制数据。
+     * 创建快照后写入代数加1，之后的插入、删除在修改旧代数的节点前先复制该节点以及从根节点到它的路径（路径复制），
+     * 快照中的节点不再被修改，可以交给其他线程无锁读取（树本身仍然只能由一个线程修改）
      *
-     * @param element 操作的元素
-     * @return 替换模式
+     * @return 只读快照
      */
-    private InsertMode replaceMode(Element<K, V> element) {
-        return new InsertMode(element, InsertMode.REPLACE_MODE);
+    public BTreeSnapshot<K, V> snapshot() {
+        generation++;
+        return new BTreeSnapshot<>(rootNode, height, size, mergeThreshold, comparator, aggregator);
+    }
+
+    /**
+     * 从根节点开始逐层查找可以允许当前元素插入的节点，并记录查找路径，查找到的节点为pathNodes[insertTargetDepth]
+     *
+     * @param insertKey 要插入的元素对应的key值
+     * @return 编码后的插入模式，通过insertModeOf获取模式，通过insertIndexOf获取目标节点中的位置
+     */
+    private int getInsertMode(K insertKey) {
+        Node<K, V> node = rootNode;
+        //最多向下查找树高层，超出表示树的结构有问题
+        for (int depth = 0; depth < height; depth++) {
+            int index = node.searchKey(insertKey, comparator);
+            if (index >= 0) {//找到了与查找的元素相等的数据,不需要进行插入,进行元素替换
+                pushPath(depth, node, index);
+                insertTargetDepth = depth;
+                return encodeInsertMode(index, REPLACE_MODE);
+            }
+            int insertIndex = -index - 1;
+            pushPath(depth, node, insertIndex);
+            if (node.isLeafNode()) {//只能在叶子节点上进行插入操作
+                insertTargetDepth = depth;
+                return encodeInsertMode(insertIndex, INSERT_MODE);
+            }
+            node = node.getChild(insertIndex);
+        }
+        //树有问题，不合法操作
+        insertTargetDepth = 0;
+        return ILLEGAL_MODE;
     }
 
     /**
-     * 第一次插入模式
+     * 将插入模式和插入位置编码为一个int，低两位为模式，其余位为元素在节点中的位置
      *
-     * @return 第一次插入模式
+     * @param index 插入（替换）的位置
+     * @param mode  插入模式
+     * @return 编码后的插入模式
      */
-    private InsertMode firstInsertMode() {
-        return new InsertMode(null, InsertMode.FIRST_INSERT);
+    private static int encodeInsertMode(int index, int mode) {
+        return (index << 2) | mode;
     }
 
+    /**
+     * 获取编码中的插入模式
+     */
+    private static int insertModeOf(int insertMode) {
+        return insertMode < 0 ? ILLEGAL_MODE : insertMode & 3;
+    }
+
+    /**
+     * 获取编码中的插入（替换）位置
+     */
+    private static int insertIndexOf(int insertMode) {
+        return insertMode >>> 2;
+    }
 
     /**
-     * 替换模式
+     * 元素插入完成后的操作，判断元素是否达到分裂标准，达到执行分裂
+     * 1.获取中间元素
+     * 2.将中间元素右边的元素（以及子树）移动到新生成的右节点，左边元素留在当前节点
+     * 3.将中间元素上升到父节点（如果当前节点已经是根节点了，就新建一个节点作为当前节点的父节点）
+     * 4.将新生成的右节点作为中间元素的右子树
+     * 5.父节点新增了元素，继续判断父节点是否需要分裂，直到不再分裂
      *
-     * @return 替换模式
+     * @param node  新增了元素的节点
+     * @param depth node在查找路径中的深度
      */
-    private InsertMode illegalMode() {
-        return new InsertMode(null, InsertMode.ILLEGAL_MODE);
+    private void afterElementInsert(Node<K, V> node, int depth) {
+        while (node.needDivide()) {
+            //中间元素
+            int middleIndex = node.getElementNum() / 2;
+            K middleKey = node.getKey(middleIndex);
+            V middleValue = node.getValue(middleIndex);
+            //新生成的右子节点
+            Node<K, V> newRightChildNode = newNode(node.isLeafNode());
+            node.moveRightHalfTo(middleIndex, newRightChildNode);
+            if (metrics != null) {
+                metrics.recordSplit();
+            }
+
+            Node<K, V> parentNode;
+            if (depth == 0) {//当前节点是根节点，则需要生成一个新节点作为根节点
+                parentNode = newNode(false);
+                parentNode.setChild(0, node);
+                parentNode.setChildSize(0, node.totalSize());
+                parentNode.insertElement(0, middleKey, middleValue, newRightChildNode, newRightChildNode.totalSize(), aggregateOf(newRightChildNode));
+                updateChildAggregate(parentNode, 0);
+                rootNode = parentNode;//重置根节点
+                height++;//一直分裂到了根节点，树高进行增加
+                if (metrics != null) {
+                    metrics.heightChanged(height, 1);
+                }
+                return;
+            }
+            depth--;
+            parentNode = pathNodes[depth];
+            //将中间元素上升到父节点，新生成的右节点作为中间元素的右子树，父节点子树中的元素总数不变
+            parentNode.setChildSize(pathIndexes[depth], node.totalSize());
+            updateChildAggregate(parentNode, pathIndexes[depth]);
+            parentNode.insertElement(pathIndexes[depth], middleKey, middleValue, newRightChildNode,
+                    newRightChildNode.totalSize(), aggregateOf(newRightChildNode));
+            //对新增完元素的父节点继续处理，判断其是否需要进行节点分裂
+            node = parentNode;
+        }
     }
 
+    /**
+     * 创建属于当前写入代数的节点，空闲列表中有同类节点时直接复用，避免插入、删除交替时反复分配和回收节点
+     */
+    private Node<K, V> newNode(boolean leafNode) {
+        Node<K, V> node;
+        if (leafNode && freeLeafNum > 0) {
+            node = freeLeafNodes[--freeLeafNum];
+            freeLeafNodes[freeLeafNum] = null;
+        } else if (!leafNode && freeInnerNum > 0) {
+            node = freeInnerNodes[--freeInnerNum];
+            freeInnerNodes[freeInnerNum] = null;
+        } else {
+            return new Node<>(size, leafNode, aggregator != null, generation);
+        }
+        node.setGeneration(generation);
+        return node;
+    }
 
     /**
-     * 插入元素时的模式，用来指示当前要插入的元素，和插入操作的模式，插入在指定元素的左边/右边，还是不进行插入，更新查找到的元素
+     * 回收已经从树中移除的节点。只回收当前写入代数的节点：旧代数的节点可能仍然被快照引用，不能修改
      */
-    private class InsertMode {
-        /**
-         * 左侧插入模式，将当前元素插入到指定元素的左侧
-         */
-        static final int LEFT_INSERT_MODE = -1;
+    private void freeNode(Node<K, V> node) {
+        if (node.getGeneration() != generation) {
+            return;
+        }
+        if (node.isLeafNode()) {
+            if (freeLeafNum < FREE_NODE_LIMIT) {
+                node.clear();
+                freeLeafNodes[freeLeafNum++] = node;
+            }
+        } else if (freeInnerNum < FREE_NODE_LIMIT) {
+            node.clear();
+            freeInnerNodes[freeInnerNum++] = node;
+        }
+    }
 
-        /**
-         * 替换模式，使用当前元素替换查询到的元素
-         */
-        static final int REPLACE_MODE = 0;
+    /**
+     * 获取可以修改的根节点，根节点被快照共享时先复制
+     */
+    private Node<K, V> mutableRoot() {
+        if (rootNode.getGeneration() != generation) {
+            rootNode = rootNode.copy(generation);
+        }
+        return rootNode;
+    }
 
-        /**
-         * 右侧插入模式，将当前元素插入到指定元素的右侧
-         */
-        static final int RIGHT_INSERT_MODE = 1;
+    /**
+     * 获取可以修改的子节点，子节点被快照共享时先复制并替换父节点中的引用（父节点必须已经是可以修改的节点）
+     *
+     * @param parentNode 可以修改的父节点
+     * @param index      子节点位置
+     * @return 可以修改的子节点
+     */
+    private Node<K, V> mutableChild(Node<K, V> parentNode, int index) {
+        Node<K, V> child = parentNode.getChild(index);
+        if (child.getGeneration() != generation) {
+            child = child.copy(generation);
+            parentNode.setChild(index, child);
+        }
+        return child;
+    }
 
-        /**
-         * 第一次插入模式
-         */
-        static final int FIRST_INSERT = 9;
+    /**
+     * 将查找路径中0 ~ depth-1层的节点替换为可以修改的节点（路径复制），只读查找完成、确定需要修改后调用
+     *
+     * @param depth 要修改的节点的深度
+     * @return 可以修改的第depth层节点（pathNodes[depth-1]中pathIndexes[depth-1]位置的子节点，depth为0时为根节点）
+     */
+    private Node<K, V> mutablePath(int depth) {
+        Node<K, V> node = mutableRoot();
+        for (int i = 0; i < depth; i++) {
+            pathNodes[i] = node;
+            node = mutableChild(node, pathIndexes[i]);
+        }
+        return node;
+    }
 
-        /**
-         * 不合法插入模式
-         */
-        static final int ILLEGAL_MODE = -9;
+    /**
+     * 记录查找路径，路径数组不足时扩容
+     *
+     * @param depth 节点所在深度
+     * @param node  经过的节点
+     * @param index 进入下一层子节点的位置
+     */
+    private void pushPath(int depth, Node<K, V> node, int index) {
+        if (depth == pathNodes.length) {
+            pathNodes = Arrays.copyOf(pathNodes, depth * 2);
+            pathIndexes = Arrays.copyOf(pathIndexes, depth * 2);
+        }
+        pathNodes[depth] = node;
+        pathIndexes[depth] = index;
+    }
 
-        /**
-         * 目标元素
-         */
-        Element<K, V> targetElement;
+    /**
+     * 查找路径中depth之下的节点增加（delta为负数时减少）了元素，更新0 ~ depth-1层节点中记录的子树元素数
+     *
+     * @param depth 元素数量变化的节点的深度
+     * @param delta 元素数量的变化
+     */
+    private void addPathChildSizes(int depth, long delta) {
+        for (int i = 0; i < depth; i++) {
+            pathNodes[i].addChildSize(pathIndexes[i], delta);
+        }
+    }
 
-        /**
-         * 当前插入的模式
-         */
-        int mode;
+    /**
+     * 查找路径中第depth层的节点（或者它下面的子树）发生了变化，从下往上重新合并0 ~ depth-1层节点中记录的子树聚合值
+     *
+     * @param depth 发生变化的节点的深度
+     */
+    private void updatePathAggregates(int depth) {
+        if (aggregator == null) {
+            return;
+        }
+        for (int i = depth - 1; i >= 0; i--) {
+            updateChildAggregate(pathNodes[i], pathIndexes[i]);
+        }
+    }
 
-        InsertMode(Element<K, V> targetElement, int mode) {
-            this.targetElement = targetElement;
-            this.mode = mode;
+    /**
+     * 重新合并父节点中指定子树的聚合值（子树自身记录的聚合值需要已经是最新的）
+     */
+    private void updateChildAggregate(Node<K, V> parentNode, int index) {
+        if (aggregator != null) {
+            parentNode.setChildAggregate(index, parentNode.getChild(index).aggregate(aggregator));
         }
     }
 
+    /**
+     * 子树的聚合值，没有聚合函数时为null
+     */
+    private Object aggregateOf(Node<K, V> node) {
+        return aggregator == null ? null : node.aggregate(aggregator);
+    }
+
 
     /**
-     * 兄弟节点选择模式
+     * 每种节点（叶子节点、内部节点）空闲列表的容量
      */
-    private class SiblingNodeChooseMode {
-        /**
-         * 左侧兄弟节点
-         */
-        static final int LEFT_SIBLING = -1;
-        /**
-         * 右侧兄弟节点
-         */
-        static final int RIGHT_SIBLING = 1;
+    private static final int FREE_NODE_LIMIT = 16;
 
-        /**
-         * 使用左兄弟节点进行下溢操作
-         */
-        static final int OVERFLOW_SIBLING_LEFT = -9;
+    /**
+     * dump写入channel时的缓冲区大小
+     */
+    private static final int DUMP_BUFFER_SIZE = 8192;
 
-        /**
-         * 使用右兄弟节点进行下溢操作
-         */
-        static final int OVERFLOW_SIBLING_RIGHT = 9;
+    /**
+     * bulkLoad默认的节点填充率
+     */
+    private static final double DEFAULT_FILL_FACTOR = 1.0;
 
-        /**
-         * 异常
-         */
-        static final int ILLEGAL_MODE = -99;
+    /**
+     * 插入模式：替换模式，使用当前元素替换查询到的元素
+     */
+    private static final int REPLACE_MODE = 0;
 
+    /**
+     * 插入模式：将当前元素插入到目标节点的指定位置
+     */
+    private static final int INSERT_MODE = 1;
 
-        Node<K, V> siblingNode;
-        int type;
+    /**
+     * 插入模式：不合法插入模式
+     */
+    private static final int ILLEGAL_MODE = -1;
 
-        SiblingNodeChooseMode(Node<K, V> siblingNode, int type) {
-            this.siblingNode = siblingNode;
-            this.type = type;
-        }
-    }
+    /**
+     * doInsert新增了元素（没有被替换的value）
+     */
+    private static final Object ABSENT = new Object();
 
 }
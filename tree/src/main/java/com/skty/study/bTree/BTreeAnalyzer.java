@@ -0,0 +1,242 @@
+package com.skty.study.bTree;
+
+import java.util.Comparator;
+import java.util.Objects;
+import java.util.Random;
+
+/**
+ * B树结构检查器：深度优先遍历一次，只记录计数，不生成字符串（只有违反约束时才生成描述），检查以下约束
+ * 1.所有叶子节点都在最后一层，内部节点不出现在最后一层
+ * 2.非根节点的元素数在[合并阈值, 阶-1]之间（默认的合并阈值为 阶/2 取上限-1），内部根节点至少有一个元素
+ * 3.节点内key严格递增，并且在父节点的两个分隔元素之间（代替父节点引用和前驱、后继元素引用的检查）
+ * 4.父节点记录的子树元素数、子树聚合值与子节点一致（代替元素索引的检查），每个节点只检查自己和直接子节点，不需要重新统计整颗子树
+ * 5.elementNum之后的位置没有残留已经移除的引用
+ * <p>
+ * 遍历状态保存在显式的栈中，可以通过{@link #step(int)}分多次执行，每次检查有限个节点；
+ * 叶子节点可以按比例抽样（内部节点数量约为叶子节点的1/阶，总是全部检查），在很大的树上也能在有限时间内完成。
+ * 分多次执行时检查的是快照（{@link BTree#analyzer(double, long)}、{@link BTreeSnapshot#analyzer(double, long)}），
+ * 检查期间树可以继续修改，检查也可以交给其他线程
+ *
+ * @param <K> key类型
+ * @param <V> value类型
+ * @author skty
+ */
+public final class BTreeAnalyzer<K, V> {
+
+    private final int height;
+
+    private final int size;
+
+    /**
+     * 非根节点元素数的下限（树的合并阈值）
+     */
+    private final int mergeThreshold;
+
+    private final Comparator<? super K> comparator;
+
+    private final Aggregator<K, V, Object> aggregator;
+
+    /**
+     * 叶子节点的抽样比例
+     */
+    private final double sampleRate;
+
+    private final Random random;
+
+    private final BTreeHealth<K> health;
+
+    /**
+     * 遍历栈，下标为节点深度
+     */
+    private final Node<K, V>[] stackNodes;
+
+    /**
+     * 栈中每个节点下一个要访问的子节点位置
+     */
+    private final int[] nextChildren;
+
+    /**
+     * 栈中每个节点子树的key下限（不包含），null表示没有下限
+     */
+    private final Object[] lowerBounds;
+
+    /**
+     * 栈中每个节点子树的key上限（不包含），null表示没有上限
+     */
+    private final Object[] upperBounds;
+
+    /**
+     * 栈顶深度，-1表示遍历完成
+     */
+    private int top;
+
+    @SuppressWarnings("unchecked")
+    BTreeAnalyzer(Node<K, V> rootNode, int height, int size, int mergeThreshold, Comparator<? super K> comparator,
+                  Aggregator<K, V, Object> aggregator, double sampleRate, long seed) {
+        if (!(sampleRate > 0 && sampleRate <= 1)) {
+            throw new IllegalArgumentException("抽样比例必须在(0, 1]之间");
+        }
+        this.height = height;
+        this.size = size;
+        this.mergeThreshold = mergeThreshold;
+        this.comparator = comparator;
+        this.aggregator = aggregator;
+        this.sampleRate = sampleRate;
+        this.random = new Random(seed);
+        health = new BTreeHealth<>(height, size - 1, sampleRate, rootNode.totalSize(), edgeKey(rootNode, false), edgeKey(rootNode, true));
+        stackNodes = new Node[height];
+        nextChildren = new int[height];
+        lowerBounds = new Object[height];
+        upperBounds = new Object[height];
+        health.addLevelNodes(0, 1);
+        stackNodes[0] = rootNode;
+        top = 0;
+        visit(rootNode, 0, null, null);
+    }
+
+    /**
+     * 继续检查，最多检查maxNodes个节点
+     *
+     * @param maxNodes 本次最多检查的节点数
+     * @return 是否已经全部检查完
+     */
+    public boolean step(int maxNodes) {
+        if (maxNodes <= 0) {
+            throw new IllegalArgumentException("每次检查的节点数必须大于0");
+        }
+        int visitedNum = 0;
+        while (top >= 0 && visitedNum < maxNodes) {
+            Node<K, V> node = stackNodes[top];
+            //叶子节点、子节点已经访问完、或者内部节点出现在最后一层（已经记录为违反约束）时出栈
+            if (node.isLeafNode() || nextChildren[top] > node.getElementNum() || top == height - 1) {
+                stackNodes[top--] = null;
+                continue;
+            }
+            int childIndex = nextChildren[top]++;
+            Node<K, V> child = node.getChild(childIndex);
+            if (child == null) {
+                violation(top, "子节点" + childIndex + "为null");
+                continue;
+            }
+            if (child.isLeafNode() && sampleRate < 1 && random.nextDouble() >= sampleRate) {
+                continue;
+            }
+            Object lower = childIndex == 0 ? lowerBounds[top] : node.getKey(childIndex - 1);
+            Object upper = childIndex == node.getElementNum() ? upperBounds[top] : node.getKey(childIndex);
+            if (node.getChildSize(childIndex) != child.totalSize()) {
+                violation(top, "子树" + childIndex + "记录的元素数" + node.getChildSize(childIndex) + "与实际" + child.totalSize() + "不一致");
+            }
+            if (aggregator != null && !Objects.equals(node.getChildAggregate(childIndex), child.aggregate(aggregator))) {
+                violation(top, "子树" + childIndex + "记录的聚合值" + node.getChildAggregate(childIndex) + "与实际" + child.aggregate(aggregator) + "不一致");
+            }
+            top++;
+            stackNodes[top] = child;
+            nextChildren[top] = 0;
+            lowerBounds[top] = lower;
+            upperBounds[top] = upper;
+            visit(child, top, lower, upper);
+            visitedNum++;
+        }
+        if (top < 0) {
+            health.markComplete();
+        }
+        return top < 0;
+    }
+
+    /**
+     * 检查剩余的全部节点
+     */
+    public BTreeHealth<K> run() {
+        while (!step(Integer.MAX_VALUE)) {
+            //继续检查
+        }
+        return health;
+    }
+
+    /**
+     * 是否已经全部检查完
+     */
+    public boolean isFinished() {
+        return top < 0;
+    }
+
+    /**
+     * 目前为止的检查结果，检查完之前只包含已经检查过的节点
+     */
+    public BTreeHealth<K> getHealth() {
+        return health;
+    }
+
+    /**
+     * 检查单个节点自身的约束，节点与父节点之间的约束在入栈前检查
+     */
+    @SuppressWarnings("unchecked")
+    private void visit(Node<K, V> node, int depth, Object lower, Object upper) {
+        int elementNum = node.getElementNum();
+        health.nodeVisited(depth, elementNum);
+        if (node.isLeafNode() != (depth == height - 1)) {
+            violation(depth, node.isLeafNode() ? "叶子节点不在最后一层" : "内部节点出现在最后一层");
+        }
+        if (elementNum > size - 1) {
+            violation(depth, "元素数" + elementNum + "超过上限" + (size - 1));
+        }
+        if (depth > 0 && elementNum < mergeThreshold) {
+            violation(depth, "元素数" + elementNum + "低于下限" + mergeThreshold);
+        }
+        if (depth == 0 && !node.isLeafNode() && elementNum == 0) {
+            violation(depth, "内部根节点没有元素");
+        }
+        K lastKey = (K) lower;
+        for (int i = 0; i < elementNum; i++) {
+            K key = node.getKey(i);
+            if (key == null) {
+                violation(depth, "位置" + i + "的key为null");
+                continue;
+            }
+            if (lastKey != null && compare(lastKey, key) >= 0) {
+                violation(depth, i == 0 ? "key " + key + "不大于父节点中的分隔元素" + lastKey : "key " + key + "不大于前一个key " + lastKey);
+            }
+            lastKey = key;
+        }
+        if (upper != null && lastKey != null && elementNum > 0 && compare(lastKey, (K) upper) >= 0) {
+            violation(depth, "key " + lastKey + "不小于父节点中的分隔元素" + upper);
+        }
+        int staleSlot = node.firstStaleSlot();
+        if (staleSlot >= 0) {
+            violation(depth, "位置" + staleSlot + "残留已经移除的引用");
+        }
+        if (!node.isLeafNode() && depth + 1 < height) {
+            health.addLevelNodes(depth + 1, elementNum + 1);
+        }
+    }
+
+    /**
+     * 记录违反约束的位置：从根节点到该节点经过的子节点位置
+     */
+    private void violation(int depth, String message) {
+        StringBuilder path = new StringBuilder("root");
+        for (int i = 0; i < depth; i++) {
+            path.append('/').append(nextChildren[i] - 1);
+        }
+        health.addViolation("第" + depth + "层 " + path + ": " + message);
+    }
+
+    /**
+     * 最左（最右）叶子节点中的最小（最大）key，空树为null
+     */
+    private static <K, V> K edgeKey(Node<K, V> node, boolean last) {
+        while (!node.isLeafNode()) {
+            Node<K, V> child = node.getChild(last ? node.getElementNum() : 0);
+            if (child == null) {
+                return null;
+            }
+            node = child;
+        }
+        return node.hasElement() ? node.getKey(last ? node.getElementNum() - 1 : 0) : null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private int compare(K k1, K k2) {
+        return comparator == null ? ((Comparable<? super K>) k1).compareTo(k2) : comparator.compare(k1, k2);
+    }
+}
@@ -0,0 +1,352 @@
+package com.skty.study.bTree;
+
+import java.io.IOException;
+
+/**
+ * 按层流式输出树的结构，直接写入Appendable，不拼接整层（整颗树）的字符串。
+ * 每一层使用{@link LevelIterator}从根节点重新向下遍历，只保存从根节点到当前节点的路径，额外内存与树高成正比；
+ * 宽度限制之后的节点不再遍历，深度限制之下的层不再输出，输出时间与输出的节点数成正比。
+ * 其他节点类型的树通过{@link NodeAccess}复用按层遍历，见{@link #printLevels(Object, NodeAccess)}
+ *
+ * @author skty
+ */
+final class BTreeDump {
+
+    /**
+     * BTree节点的访问方式
+     */
+    private static final NodeAccess<Node<?, ?>> NODE_ACCESS = new NodeAccess<Node<?, ?>>() {
+        @Override
+        public boolean isLeafNode(Node<?, ?> node) {
+            return node.isLeafNode();
+        }
+
+        @Override
+        public int getElementNum(Node<?, ?> node) {
+            return node.getElementNum();
+        }
+
+        @Override
+        public Node<?, ?> getChild(Node<?, ?> node, int index) {
+            return node.getChild(index);
+        }
+    };
+
+    private BTreeDump() {
+    }
+
+    /**
+     * 按层输出树的结构：每层一行，节点之间用两个制表符分隔，节点内容为节点的toString
+     *
+     * @param rootNode 根节点
+     * @param access   节点的访问方式
+     * @return 每层节点一行
+     */
+    static <N> String printLevels(N rootNode, NodeAccess<N> access) {
+        StringBuilder builder = new StringBuilder();
+        for (int level = 0; ; level++) {
+            LevelIterator<N> iterator = new LevelIterator<>(rootNode, level, access);
+            if (!iterator.hasNext()) {
+                break;
+            }
+            if (level > 0) {
+                builder.append('\n');
+            }
+            for (int width = 0; iterator.hasNext(); width++) {
+                if (width > 0) {
+                    builder.append("\t\t");
+                }
+                builder.append(iterator.next());
+            }
+        }
+        return builder.toString();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K, V> LevelIterator<Node<K, V>> levelIterator(Node<K, V> rootNode, int level) {
+        return new LevelIterator<>(rootNode, level, (NodeAccess<Node<K, V>>) (NodeAccess<?>) NODE_ACCESS);
+    }
+
+    /**
+     * 输出树的结构
+     *
+     * @param rootNode 根节点
+     * @param height   树高
+     * @param size     树的阶
+     * @param out      输出目标
+     * @param format   输出格式
+     * @param maxDepth 最多输出的层数，大于0
+     * @param maxWidth 每层最多输出的节点数，大于0
+     */
+    static <K, V> void dump(Node<K, V> rootNode, int height, int size, Appendable out, DumpFormat format,
+                            int maxDepth, int maxWidth) throws IOException {
+        if (maxDepth <= 0 || maxWidth <= 0) {
+            throw new IllegalArgumentException("深度和宽度限制必须大于0");
+        }
+        int levels = Math.min(height, maxDepth);
+        switch (format) {
+            case TEXT:
+                text(rootNode, levels, out, maxWidth);
+                break;
+            case DOT:
+                dot(rootNode, levels, out, maxWidth);
+                break;
+            case JSON:
+                json(rootNode, height, size, levels, out, maxWidth);
+                break;
+            default:
+                throw new IllegalArgumentException("不支持的输出格式:" + format);
+        }
+    }
+
+    private static <K, V> void text(Node<K, V> rootNode, int levels, Appendable out, int maxWidth) throws IOException {
+        for (int level = 0; level < levels; level++) {
+            if (level > 0) {
+                out.append('\n');
+            }
+            LevelIterator<Node<K, V>> iterator = levelIterator(rootNode, level);
+            for (int width = 0; iterator.hasNext(); width++) {
+                Node<K, V> node = iterator.next();
+                if (width > 0) {
+                    out.append("\t\t");
+                }
+                if (width == maxWidth) {
+                    out.append("...");
+                    break;
+                }
+                for (int i = 0; i < node.getElementNum(); i++) {
+                    if (i > 0) {
+                        out.append(';');
+                    }
+                    out.append(String.valueOf(node.getKey(i)));
+                }
+            }
+        }
+    }
+
+    /**
+     * 节点编号为"层_层内序号"，第level层第j个节点的子节点在下一层中的序号，等于本层前面所有节点的子节点数之和加上子节点位置
+     */
+    private static <K, V> void dot(Node<K, V> rootNode, int levels, Appendable out, int maxWidth) throws IOException {
+        out.append("digraph BTree {\n  node [shape=record];\n");
+        for (int level = 0; level < levels; level++) {
+            LevelIterator<Node<K, V>> iterator = levelIterator(rootNode, level);
+            long childBase = 0;
+            for (int width = 0; iterator.hasNext(); width++) {
+                Node<K, V> node = iterator.next();
+                if (width == maxWidth) {
+                    out.append("  \"").append(Integer.toString(level)).append("_more\" [label=\"...\", shape=plaintext];\n");
+                    break;
+                }
+                out.append("  \"").append(Integer.toString(level)).append('_').append(Integer.toString(width)).append("\" [label=\"");
+                for (int i = 0; i < node.getElementNum(); i++) {
+                    if (i > 0) {
+                        out.append('|');
+                    }
+                    appendDotEscaped(out, String.valueOf(node.getKey(i)));
+                }
+                out.append("\"];\n");
+                if (!node.isLeafNode() && level + 1 < levels) {
+                    for (int i = 0; i <= node.getElementNum() && childBase + i < maxWidth; i++) {
+                        out.append("  \"").append(Integer.toString(level)).append('_').append(Integer.toString(width))
+                                .append("\" -> \"").append(Integer.toString(level + 1)).append('_')
+                                .append(Long.toString(childBase + i)).append("\";\n");
+                    }
+                }
+                if (!node.isLeafNode()) {
+                    childBase += node.getElementNum() + 1;
+                }
+            }
+        }
+        out.append("}\n");
+    }
+
+    private static <K, V> void json(Node<K, V> rootNode, int height, int size, int levels, Appendable out, int maxWidth) throws IOException {
+        out.append("{\"order\":").append(Integer.toString(size))
+                .append(",\"height\":").append(Integer.toString(height))
+                .append(",\"elements\":").append(Long.toString(rootNode.totalSize()))
+                .append(",\"levels\":[");
+        for (int level = 0; level < levels; level++) {
+            if (level > 0) {
+                out.append(',');
+            }
+            out.append("\n{\"level\":").append(Integer.toString(level)).append(",\"nodes\":[");
+            LevelIterator<Node<K, V>> iterator = levelIterator(rootNode, level);
+            boolean truncated = false;
+            for (int width = 0; iterator.hasNext(); width++) {
+                Node<K, V> node = iterator.next();
+                if (width == maxWidth) {
+                    truncated = true;
+                    break;
+                }
+                if (width > 0) {
+                    out.append(',');
+                }
+                out.append("{\"keys\":[");
+                for (int i = 0; i < node.getElementNum(); i++) {
+                    if (i > 0) {
+                        out.append(',');
+                    }
+                    appendJsonValue(out, node.getKey(i));
+                }
+                out.append("],\"children\":").append(Integer.toString(node.isLeafNode() ? 0 : node.getElementNum() + 1)).append('}');
+            }
+            out.append("],\"truncated\":").append(Boolean.toString(truncated)).append('}');
+        }
+        out.append("]}\n");
+    }
+
+    /**
+     * 有限的整数、浮点数和布尔值原样输出，其他key按toString输出为字符串
+     */
+    private static void appendJsonValue(Appendable out, Object value) throws IOException {
+        if (value instanceof Boolean || value instanceof Integer || value instanceof Long
+                || value instanceof Short || value instanceof Byte) {
+            out.append(value.toString());
+            return;
+        }
+        if ((value instanceof Double || value instanceof Float) && Double.isFinite(((Number) value).doubleValue())) {
+            out.append(value.toString());
+            return;
+        }
+        String text = String.valueOf(value);
+        out.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+        out.append('"');
+    }
+
+    /**
+     * record标签中的特殊字符需要转义，换行输出为DOT的换行转义
+     */
+    private static void appendDotEscaped(Appendable out, String text) throws IOException {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\n') {
+                out.append("\\n");
+                continue;
+            }
+            if (c == '\r') {
+                continue;
+            }
+            if ("|{}<>\"\\".indexOf(c) >= 0) {
+                out.append('\\');
+            }
+            out.append(c);
+        }
+    }
+
+    /**
+     * 节点结构的访问方式，各种节点类型的内部节点都有 元素数+1 个子节点
+     *
+     * @param <N> 节点类型
+     */
+    interface NodeAccess<N> {
+
+        boolean isLeafNode(N node);
+
+        int getElementNum(N node);
+
+        N getChild(N node, int index);
+    }
+
+    /**
+     * 从左到右遍历指定层的节点，只保存从根节点到当前节点的路径
+     */
+    static final class LevelIterator<N> {
+
+        private final int level;
+
+        private final NodeAccess<N> access;
+
+        /**
+         * 从根节点到当前节点的路径，下标为深度
+         */
+        private final Object[] pathNodes;
+
+        /**
+         * 路径上每个节点中进入下一层的子节点位置
+         */
+        private final int[] pathIndexes;
+
+        private N next;
+
+        LevelIterator(N rootNode, int level, NodeAccess<N> access) {
+            this.level = level;
+            this.access = access;
+            pathNodes = new Object[level + 1];
+            pathIndexes = new int[level + 1];
+            pathNodes[0] = rootNode;
+            next = descend(0);
+        }
+
+        boolean hasNext() {
+            return next != null;
+        }
+
+        N next() {
+            N node = next;
+            advance();
+            return node;
+        }
+
+        @SuppressWarnings("unchecked")
+        private N pathNode(int depth) {
+            return (N) pathNodes[depth];
+        }
+
+        /**
+         * 从路径中指定深度的节点沿最左侧的子节点向下到目标层
+         */
+        private N descend(int depth) {
+            for (; depth < level; depth++) {
+                N node = pathNode(depth);
+                if (access.isLeafNode(node)) {//树高不足，目标层不存在
+                    return null;
+                }
+                pathIndexes[depth] = 0;
+                pathNodes[depth + 1] = access.getChild(node, 0);
+            }
+            return pathNode(level);
+        }
+
+        /**
+         * 回到路径中最深的还有右侧子节点的节点，进入下一个子节点后再向下
+         */
+        private void advance() {
+            for (int depth = level - 1; depth >= 0; depth--) {
+                N node = pathNode(depth);
+                if (pathIndexes[depth] < access.getElementNum(node)) {
+                    pathNodes[depth + 1] = access.getChild(node, ++pathIndexes[depth]);
+                    next = descend(depth + 1);
+                    return;
+                }
+            }
+            next = null;
+        }
+    }
+}
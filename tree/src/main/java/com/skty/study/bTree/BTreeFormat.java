@@ -0,0 +1,284 @@
+package com.skty.study.bTree;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.zip.CRC32;
+
+/**
+ * B树的二进制保存格式：只保存按key递增的元素，不保存节点结构，加载时用bulkLoad自底向上构建。
+ * 元素分块写入，每块带有长度和校验和，块之间没有依赖，写入和读取时只需要缓存一块
+ * <pre>
+ * 文件头：magic(4) version(4) order(4)
+ * 数据块：entryNum(4) length(4) crc32(4) payload(length)，payload为entryNum个 key value
+ * 结束：entryNum为0的块（length、crc32为0）
+ * </pre>
+ * key、value的编码由{@link Codec}决定
+ *
+ * @author skty
+ */
+final class BTreeFormat {
+
+    private static final int MAGIC = 0x4254534E;
+
+    private static final int VERSION = 1;
+
+    /**
+     * 每块最多包含的元素数量
+     */
+    private static final int BLOCK_ENTRIES = 4096;
+
+    private BTreeFormat() {
+    }
+
+    /**
+     * 把游标中的元素写入channel，不关闭channel
+     *
+     * @param channel    目标
+     * @param order      树的阶，加载时默认使用
+     * @param cursor     按key递增的元素
+     * @param keyCodec   key编解码器
+     * @param valueCodec value编解码器
+     */
+    static <K, V> void write(WritableByteChannel channel, int order, Cursor<K, V> cursor,
+                             Codec<K> keyCodec, Codec<V> valueCodec) throws IOException {
+        BlockOutput block = new BlockOutput();
+        DataOutputStream out = new DataOutputStream(block);
+        CRC32 crc = new CRC32();
+        ByteBuffer header = ByteBuffer.allocate(12);
+        header.putInt(MAGIC).putInt(VERSION).putInt(order).flip();
+        writeFully(channel, header);
+        boolean hasNext = cursor.next();
+        while (hasNext) {
+            block.reset();
+            int entryNum = 0;
+            do {
+                keyCodec.write(out, cursor.getKey());
+                valueCodec.write(out, cursor.getValue());
+                entryNum++;
+                hasNext = cursor.next();
+            } while (hasNext && entryNum < BLOCK_ENTRIES);
+            crc.reset();
+            crc.update(block.buf, 0, block.count);
+            header.clear();
+            header.putInt(entryNum).putInt(block.count).putInt((int) crc.getValue()).flip();
+            writeFully(channel, header);
+            writeFully(channel, ByteBuffer.wrap(block.buf, 0, block.count));
+        }
+        header.clear();
+        header.putInt(0).putInt(0).putInt(0).flip();
+        writeFully(channel, header);
+    }
+
+    private static void writeFully(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * 从channel读取元素并自底向上构建B树，读到结束块为止，不关闭channel
+     *
+     * @param channel    来源
+     * @param size       树的阶，小于等于0时使用保存时的阶
+     * @param comparator key的比较器，与保存时的顺序一致，null表示使用key的自然顺序
+     * @param keyCodec   key编解码器
+     * @param valueCodec value编解码器
+     * @return 构建好的B树
+     * @throws IOException 读取失败、格式错误或者校验失败
+     */
+    static <K, V> BTree<K, V> read(ReadableByteChannel channel, int size, Comparator<? super K> comparator,
+                                   Codec<K> keyCodec, Codec<V> valueCodec) throws IOException {
+        //BufferedInputStream可能多读结束块之后的数据，读取完成后channel的位置不确定
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), 1 << 16));
+        if (in.readInt() != MAGIC) {
+            throw new IOException("不是B树数据");
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("不支持的B树数据版本:" + version);
+        }
+        int order = in.readInt();
+        BTree<K, V> tree = new BTree<>(size > 0 ? size : order, comparator);
+        try {
+            tree.bulkLoad(new EntryReader<>(in, keyCodec, valueCodec));
+            return tree;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * 逐块读取并校验，逐个解码元素，供bulkLoad消费
+     */
+    private static final class EntryReader<K, V> implements Iterator<Map.Entry<K, V>> {
+
+        private final DataInputStream in;
+
+        private final Codec<K> keyCodec;
+
+        private final Codec<V> valueCodec;
+
+        private final BlockInput block = new BlockInput();
+
+        private final DataInputStream blockIn = new DataInputStream(block);
+
+        private final CRC32 crc = new CRC32();
+
+        /**
+         * 当前块中剩余的元素数量
+         */
+        private int remaining;
+
+        private boolean finished;
+
+        EntryReader(DataInputStream in, Codec<K> keyCodec, Codec<V> valueCodec) {
+            this.in = in;
+            this.keyCodec = keyCodec;
+            this.valueCodec = valueCodec;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (remaining == 0 && !finished) {
+                try {
+                    readBlock();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return remaining > 0;
+        }
+
+        private void readBlock() throws IOException {
+            if (block.position != block.limit) {
+                throw new IOException("数据块长度与元素数量不一致");
+            }
+            int entryNum = in.readInt();
+            int length = in.readInt();
+            int checksum = in.readInt();
+            if (entryNum == 0) {
+                finished = true;
+                return;
+            }
+            if (entryNum < 0 || length < 0) {
+                throw new IOException("数据块头错误,entryNum:" + entryNum + ",length:" + length);
+            }
+            block.fill(in, length);
+            crc.reset();
+            crc.update(block.buf, 0, length);
+            if ((int) crc.getValue() != checksum) {
+                throw new IOException("数据块校验失败");
+            }
+            remaining = entryNum;
+        }
+
+        @Override
+        public Map.Entry<K, V> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            try {
+                K key = keyCodec.read(blockIn);
+                V value = valueCodec.read(blockIn);
+                remaining--;
+                return new AbstractMap.SimpleImmutableEntry<>(key, value);
+            } catch (EOFException e) {
+                throw new UncheckedIOException(new IOException("数据块长度与元素数量不一致", e));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * 不加锁、可以直接访问缓冲区的输出流，用于编码一个数据块
+     */
+    private static final class BlockOutput extends OutputStream {
+
+        private byte[] buf = new byte[1 << 16];
+
+        private int count;
+
+        void reset() {
+            count = 0;
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(capacity, buf.length * 2));
+            }
+        }
+
+        @Override
+        public void write(int b) {
+            ensureCapacity(count + 1);
+            buf[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            ensureCapacity(count + len);
+            System.arraycopy(b, off, buf, count, len);
+            count += len;
+        }
+    }
+
+    /**
+     * 不加锁的块输入流，从一个数据块中解码元素
+     */
+    private static final class BlockInput extends InputStream {
+
+        private byte[] buf = new byte[1 << 16];
+
+        private int position;
+
+        private int limit;
+
+        /**
+         * 从in中读取length个字节作为新的数据块
+         */
+        void fill(DataInputStream in, int length) throws IOException {
+            if (length > buf.length) {
+                buf = new byte[length];
+            }
+            in.readFully(buf, 0, length);
+            position = 0;
+            limit = length;
+        }
+
+        @Override
+        public int read() {
+            return position < limit ? buf[position++] & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (position >= limit) {
+                return -1;
+            }
+            int n = Math.min(len, limit - position);
+            System.arraycopy(buf, position, b, off, n);
+            position += n;
+            return n;
+        }
+    }
+}
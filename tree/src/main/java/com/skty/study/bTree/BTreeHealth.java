@@ -0,0 +1,210 @@
+package com.skty.study.bTree;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * B树结构检查的结果，由{@link BTreeAnalyzer}生成：每一层的节点数、填充率分布，树中key的范围，以及违反B树约束的位置。
+ * 内部节点总是全部检查，叶子节点可以按比例抽样，抽样时叶子层的节点总数仍然是准确的（由父节点的子节点数统计），
+ * 填充率分布只统计实际检查过的节点
+ *
+ * @param <K> key类型
+ * @author skty
+ */
+public final class BTreeHealth<K> {
+
+    /**
+     * 填充率分布的桶数，第i个桶为[i/10, (i+1)/10)，元素数达到上限的节点计入最后一个桶
+     */
+    public static final int FILL_BUCKETS = 10;
+
+    /**
+     * 最多保留的违反约束描述，超出部分只计数
+     */
+    private static final int MAX_VIOLATIONS = 100;
+
+    private final int height;
+
+    /**
+     * 节点元素数上限（阶-1）
+     */
+    private final int maxElements;
+
+    private final double sampleRate;
+
+    /**
+     * 根节点记录的元素总数
+     */
+    private final long elementCount;
+
+    private final K minKey;
+
+    private final K maxKey;
+
+    private final long[] levelNodes;
+
+    private final long[] visitedNodes;
+
+    private final long[] visitedElements;
+
+    private final long[][] fillHistogram;
+
+    private final List<String> violations;
+
+    private long violationCount;
+
+    private boolean complete;
+
+    BTreeHealth(int height, int maxElements, double sampleRate, long elementCount, K minKey, K maxKey) {
+        this.height = height;
+        this.maxElements = maxElements;
+        this.sampleRate = sampleRate;
+        this.elementCount = elementCount;
+        this.minKey = minKey;
+        this.maxKey = maxKey;
+        levelNodes = new long[height];
+        visitedNodes = new long[height];
+        visitedElements = new long[height];
+        fillHistogram = new long[height][FILL_BUCKETS];
+        violations = new ArrayList<>();
+    }
+
+    /**
+     * 记录检查过的一个节点
+     */
+    void nodeVisited(int level, int elementNum) {
+        visitedNodes[level]++;
+        visitedElements[level] += elementNum;
+        fillHistogram[level][Math.min(FILL_BUCKETS - 1, elementNum * FILL_BUCKETS / maxElements)]++;
+    }
+
+    /**
+     * 记录某一层的节点数（由上一层节点的子节点数统计）
+     */
+    void addLevelNodes(int level, long nodes) {
+        levelNodes[level] += nodes;
+    }
+
+    void addViolation(String violation) {
+        violationCount++;
+        if (violations.size() < MAX_VIOLATIONS) {
+            violations.add(violation);
+        }
+    }
+
+    void markComplete() {
+        complete = true;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    public long getElementCount() {
+        return elementCount;
+    }
+
+    /**
+     * 树中最小的key，空树为null
+     */
+    public K getMinKey() {
+        return minKey;
+    }
+
+    /**
+     * 树中最大的key，空树为null
+     */
+    public K getMaxKey() {
+        return maxKey;
+    }
+
+    /**
+     * 指定层（0为根节点）的节点总数
+     */
+    public long getLevelNodes(int level) {
+        return levelNodes[level];
+    }
+
+    /**
+     * 指定层实际检查过的节点数
+     */
+    public long getVisitedNodes(int level) {
+        return visitedNodes[level];
+    }
+
+    /**
+     * 指定层检查过的节点的平均填充率，没有检查过节点时为0
+     */
+    public double getAverageFill(int level) {
+        return visitedNodes[level] == 0 ? 0 : (double) visitedElements[level] / (visitedNodes[level] * maxElements);
+    }
+
+    /**
+     * 指定层检查过的节点的填充率分布（复制），长度为FILL_BUCKETS
+     */
+    public long[] getFillHistogram(int level) {
+        return fillHistogram[level].clone();
+    }
+
+    /**
+     * 违反约束的总数
+     */
+    public long getViolationCount() {
+        return violationCount;
+    }
+
+    /**
+     * 前MAX_VIOLATIONS个违反约束的描述
+     */
+    public List<String> getViolations() {
+        return Collections.unmodifiableList(violations);
+    }
+
+    /**
+     * 是否已经检查完（增量检查时可能只完成了一部分）
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * 检查过的部分没有违反约束
+     */
+    public boolean isHealthy() {
+        return violationCount == 0;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("BTreeHealth{height=").append(height)
+                .append(", elements=").append(elementCount)
+                .append(", keys=[").append(minKey).append(", ").append(maxKey).append(']')
+                .append(", sampleRate=").append(sampleRate)
+                .append(", complete=").append(complete)
+                .append(", violations=").append(violationCount).append('}');
+        for (int level = 0; level < height; level++) {
+            builder.append("\n  level ").append(level)
+                    .append(": nodes=").append(levelNodes[level])
+                    .append(", visited=").append(visitedNodes[level])
+                    .append(", fill=").append(String.format("%.3f", getAverageFill(level)))
+                    .append(", histogram=[");
+            for (int i = 0; i < FILL_BUCKETS; i++) {
+                if (i > 0) {
+                    builder.append(' ');
+                }
+                builder.append(fillHistogram[level][i]);
+            }
+            builder.append(']');
+        }
+        for (String violation : violations) {
+            builder.append("\n  ").append(violation);
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,307 @@
+package com.skty.study.bTree;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+/**
+ * BTree的运行指标：insert、find、delete的次数和耗时直方图，节点分裂、合并、旋转次数，以及树高、节点数、元素数、平均填充率。
+ * 通过{@link BTree#enableMetrics()}开启，关闭时树中只保留一次null判断，不计时也不计数
+ * <p>
+ * 指标由修改树的线程更新，没有同步：JMX等其他线程读取到的数据可能略有滞后，需要一致的数据时使用{@link #snapshot()}在修改线程中复制
+ *
+ * @author skty
+ */
+public final class BTreeMetrics implements BTreeMetricsMXBean {
+
+    /**
+     * 树的阶，用于计算填充率
+     */
+    private final int order;
+
+    private final LatencyHistogram insertLatency;
+
+    private final LatencyHistogram findLatency;
+
+    private final LatencyHistogram deleteLatency;
+
+    private long splitCount;
+
+    private long mergeCount;
+
+    private long rotationCount;
+
+    private int height;
+
+    private long nodeCount;
+
+    private long elementCount;
+
+    /**
+     * 注册到MBeanServer时使用的名称，没有注册时为null
+     */
+    private ObjectName objectName;
+
+    BTreeMetrics(int order) {
+        this.order = order;
+        insertLatency = new LatencyHistogram();
+        findLatency = new LatencyHistogram();
+        deleteLatency = new LatencyHistogram();
+    }
+
+    private BTreeMetrics(BTreeMetrics source) {
+        order = source.order;
+        insertLatency = source.insertLatency.copy();
+        findLatency = source.findLatency.copy();
+        deleteLatency = source.deleteLatency.copy();
+        splitCount = source.splitCount;
+        mergeCount = source.mergeCount;
+        rotationCount = source.rotationCount;
+        height = source.height;
+        nodeCount = source.nodeCount;
+        elementCount = source.elementCount;
+    }
+
+    void recordInsert(long nanos, boolean inserted) {
+        insertLatency.record(nanos);
+        if (inserted) {
+            elementCount++;
+        }
+    }
+
+    void recordFind(long nanos) {
+        findLatency.record(nanos);
+    }
+
+    void recordDelete(long nanos, boolean deleted) {
+        deleteLatency.record(nanos);
+        if (deleted) {
+            elementCount--;
+        }
+    }
+
+    /**
+     * 批量操作新增（delta为负数时删除）了元素
+     */
+    void addElements(long delta) {
+        elementCount += delta;
+    }
+
+    /**
+     * 节点分裂，生成了一个新节点
+     */
+    void recordSplit() {
+        splitCount++;
+        nodeCount++;
+    }
+
+    /**
+     * 两个节点合并为一个节点
+     */
+    void recordMerge() {
+        mergeCount++;
+        nodeCount--;
+    }
+
+    void recordRotation() {
+        rotationCount++;
+    }
+
+    /**
+     * 根节点分裂（新增了根节点）或者根节点被移除后的树高
+     *
+     * @param height 新的树高
+     * @param nodes  节点数的变化
+     */
+    void heightChanged(int height, int nodes) {
+        this.height = height;
+        nodeCount += nodes;
+    }
+
+    /**
+     * 重新设置树的整体状态，开启统计或者树被整体重建后调用
+     */
+    void resetShape(int height, long nodeCount, long elementCount) {
+        this.height = height;
+        this.nodeCount = nodeCount;
+        this.elementCount = elementCount;
+    }
+
+    /**
+     * 复制当前的全部指标，返回的对象不再随树变化（不能注册到MBeanServer）
+     */
+    public BTreeMetrics snapshot() {
+        return new BTreeMetrics(this);
+    }
+
+    /**
+     * 注册到平台MBeanServer，名称为 com.skty.study.bTree:type=BTree,name=指定名称
+     *
+     * @param name 区分不同树的名称
+     * @return 注册使用的ObjectName
+     */
+    public synchronized ObjectName register(String name) throws JMException {
+        if (objectName != null) {
+            throw new IllegalStateException("指标已经注册:" + objectName);
+        }
+        ObjectName objectName = new ObjectName("com.skty.study.bTree:type=BTree,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        this.objectName = objectName;
+        return objectName;
+    }
+
+    /**
+     * 从平台MBeanServer注销，没有注册时不做任何操作
+     */
+    public synchronized void unregister() throws JMException {
+        if (objectName == null) {
+            return;
+        }
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        if (server.isRegistered(objectName)) {
+            server.unregisterMBean(objectName);
+        }
+        objectName = null;
+    }
+
+    public LatencyHistogram getInsertLatency() {
+        return insertLatency;
+    }
+
+    public LatencyHistogram getFindLatency() {
+        return findLatency;
+    }
+
+    public LatencyHistogram getDeleteLatency() {
+        return deleteLatency;
+    }
+
+    @Override
+    public long getInsertCount() {
+        return insertLatency.getCount();
+    }
+
+    @Override
+    public double getInsertMeanNanos() {
+        return insertLatency.getMeanNanos();
+    }
+
+    @Override
+    public long getInsertP50Nanos() {
+        return insertLatency.getPercentileNanos(0.5);
+    }
+
+    @Override
+    public long getInsertP99Nanos() {
+        return insertLatency.getPercentileNanos(0.99);
+    }
+
+    @Override
+    public long getInsertMaxNanos() {
+        return insertLatency.getMaxNanos();
+    }
+
+    @Override
+    public long getFindCount() {
+        return findLatency.getCount();
+    }
+
+    @Override
+    public double getFindMeanNanos() {
+        return findLatency.getMeanNanos();
+    }
+
+    @Override
+    public long getFindP50Nanos() {
+        return findLatency.getPercentileNanos(0.5);
+    }
+
+    @Override
+    public long getFindP99Nanos() {
+        return findLatency.getPercentileNanos(0.99);
+    }
+
+    @Override
+    public long getFindMaxNanos() {
+        return findLatency.getMaxNanos();
+    }
+
+    @Override
+    public long getDeleteCount() {
+        return deleteLatency.getCount();
+    }
+
+    @Override
+    public double getDeleteMeanNanos() {
+        return deleteLatency.getMeanNanos();
+    }
+
+    @Override
+    public long getDeleteP50Nanos() {
+        return deleteLatency.getPercentileNanos(0.5);
+    }
+
+    @Override
+    public long getDeleteP99Nanos() {
+        return deleteLatency.getPercentileNanos(0.99);
+    }
+
+    @Override
+    public long getDeleteMaxNanos() {
+        return deleteLatency.getMaxNanos();
+    }
+
+    @Override
+    public long getSplitCount() {
+        return splitCount;
+    }
+
+    @Override
+    public long getMergeCount() {
+        return mergeCount;
+    }
+
+    @Override
+    public long getRotationCount() {
+        return rotationCount;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public long getNodeCount() {
+        return nodeCount;
+    }
+
+    @Override
+    public long getElementCount() {
+        return elementCount;
+    }
+
+    @Override
+    public double getAverageFillFactor() {
+        return nodeCount == 0 ? 0 : (double) elementCount / (nodeCount * (order - 1));
+    }
+
+    @Override
+    public void resetCounters() {
+        insertLatency.reset();
+        findLatency.reset();
+        deleteLatency.reset();
+        splitCount = 0;
+        mergeCount = 0;
+        rotationCount = 0;
+    }
+
+    @Override
+    public String toString() {
+        return "BTreeMetrics{insert=" + insertLatency + ", find=" + findLatency + ", delete=" + deleteLatency
+                + ", splits=" + splitCount + ", merges=" + mergeCount + ", rotations=" + rotationCount
+                + ", height=" + height + ", nodes=" + nodeCount + ", elements=" + elementCount
+                + ", fillFactor=" + String.format("%.3f", getAverageFillFactor()) + "}";
+    }
+}
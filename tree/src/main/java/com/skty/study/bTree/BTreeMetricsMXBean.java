@@ -0,0 +1,71 @@
+package com.skty.study.bTree;
+
+/**
+ * BTree运行指标的JMX接口，通过{@link BTreeMetrics#register(String)}注册到平台MBeanServer，
+ * 耗时单位均为纳秒，分位数为直方图桶的上限
+ *
+ * @author skty
+ */
+public interface BTreeMetricsMXBean {
+
+    long getInsertCount();
+
+    double getInsertMeanNanos();
+
+    long getInsertP50Nanos();
+
+    long getInsertP99Nanos();
+
+    long getInsertMaxNanos();
+
+    long getFindCount();
+
+    double getFindMeanNanos();
+
+    long getFindP50Nanos();
+
+    long getFindP99Nanos();
+
+    long getFindMaxNanos();
+
+    long getDeleteCount();
+
+    double getDeleteMeanNanos();
+
+    long getDeleteP50Nanos();
+
+    long getDeleteP99Nanos();
+
+    long getDeleteMaxNanos();
+
+    /**
+     * 节点分裂次数（批量新增时一个节点分裂为多个节点，按新增的节点数计）
+     */
+    long getSplitCount();
+
+    /**
+     * 节点合并次数
+     */
+    long getMergeCount();
+
+    /**
+     * 与兄弟节点之间的旋转（借元素）次数
+     */
+    long getRotationCount();
+
+    int getHeight();
+
+    long getNodeCount();
+
+    long getElementCount();
+
+    /**
+     * 平均节点填充率：元素总数 / (节点数 * (阶 - 1))
+     */
+    double getAverageFillFactor();
+
+    /**
+     * 清空计数和耗时统计，树高、节点数等当前状态不受影响
+     */
+    void resetCounters();
+}
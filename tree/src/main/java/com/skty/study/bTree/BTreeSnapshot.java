@@ -0,0 +1,167 @@
+package com.skty.study.bTree;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * B树的只读快照，由{@link BTree#snapshot()}创建。
+ * 快照与创建它的树共享节点，树之后的修改都在复制出的新节点上进行，快照中的节点不会再被修改，
+ * 任意线程都可以不加锁地读取快照，不会看到修改了一半的节点
+ *
+ * @author skty
+ */
+public class BTreeSnapshot<K, V> {
+
+    /**
+     * 创建快照时树的根节点
+     */
+    private final Node<K, V> rootNode;
+
+    /**
+     * 创建快照时的树高
+     */
+    private final int height;
+
+    /**
+     * 树的阶
+     */
+    private final int size;
+
+    /**
+     * 创建快照时树的合并阈值，结构检查时作为节点元素数的下限
+     */
+    private final int mergeThreshold;
+
+    /**
+     * key的比较器，null表示使用key的自然顺序
+     */
+    private final Comparator<? super K> comparator;
+
+    /**
+     * 子树聚合函数，null表示没有维护子树聚合值
+     */
+    private final Aggregator<K, V, Object> aggregator;
+
+    BTreeSnapshot(Node<K, V> rootNode, int height, int size, int mergeThreshold, Comparator<? super K> comparator, Aggregator<K, V, Object> aggregator) {
+        this.rootNode = rootNode;
+        this.height = height;
+        this.size = size;
+        this.mergeThreshold = mergeThreshold;
+        this.comparator = comparator;
+        this.aggregator = aggregator;
+    }
+
+    /**
+     * 查找快照中指定key对应的value
+     *
+     * @param key 指定的key
+     * @return 对应的value，没有返回null
+     */
+    public V find(K key) {
+        return BTree.find(rootNode, key, comparator);
+    }
+
+    /**
+     * 快照中的元素总数
+     */
+    public long count() {
+        return rootNode.totalSize();
+    }
+
+    /**
+     * 快照中指定范围内的元素数量，参数见{@link BTree#count(Object, boolean, Object, boolean)}
+     */
+    public long count(K from, boolean fromInclusive, K to, boolean toInclusive) {
+        return BTree.count(rootNode, from, fromInclusive, to, toInclusive, comparator);
+    }
+
+    /**
+     * 快照中小于指定key的元素数量，见{@link BTree#rank(Object)}
+     */
+    public long rank(K key) {
+        return BTree.rank(rootNode, key, false, comparator);
+    }
+
+    /**
+     * 按顺序获取快照中第index个元素的key，见{@link BTree#select(long)}
+     */
+    public K select(long index) {
+        return BTree.select(rootNode, index);
+    }
+
+    /**
+     * 快照中指定范围内元素的聚合值，参数见{@link BTree#aggregate(Object, boolean, Object, boolean)}
+     */
+    @SuppressWarnings("unchecked")
+    public <A> A aggregate(K from, boolean fromInclusive, K to, boolean toInclusive) {
+        if (aggregator == null) {
+            throw new IllegalStateException("创建树时没有指定聚合函数");
+        }
+        return (A) BTree.aggregate(rootNode, from, fromInclusive, to, toInclusive, comparator, aggregator);
+    }
+
+    /**
+     * 创建按key递增顺序访问快照中指定范围元素的游标，参数见{@link BTree#range(Object, boolean, Object, boolean)}
+     */
+    public Cursor<K, V> range(K from, boolean fromInclusive, K to, boolean toInclusive) {
+        return new Cursor<>(rootNode, height, from, fromInclusive, to, toInclusive, comparator);
+    }
+
+    /**
+     * 创建按key递增顺序访问快照中全部元素的游标
+     */
+    public Cursor<K, V> cursor() {
+        return range(null, true, null, true);
+    }
+
+    /**
+     * 快照中指定范围元素的Spliterator，参数见{@link BTree#range(Object, boolean, Object, boolean)}
+     */
+    public Spliterator<Map.Entry<K, V>> spliterator(K from, boolean fromInclusive, K to, boolean toInclusive) {
+        return range(from, fromInclusive, to, toInclusive).spliterator();
+    }
+
+    /**
+     * 快照中指定范围元素的顺序流，参数见{@link BTree#range(Object, boolean, Object, boolean)}
+     */
+    public Stream<Map.Entry<K, V>> stream(K from, boolean fromInclusive, K to, boolean toInclusive) {
+        return StreamSupport.stream(spliterator(from, fromInclusive, to, toInclusive), false);
+    }
+
+    /**
+     * 快照中全部元素的顺序流
+     */
+    public Stream<Map.Entry<K, V>> stream() {
+        return stream(null, true, null, true);
+    }
+
+    /**
+     * 以二进制格式保存快照中的全部元素，见{@link BTree#writeTo(WritableByteChannel, Codec, Codec)}。
+     * 快照不会被修改，可以在其他线程中保存，不阻塞树的写入
+     */
+    public void writeTo(WritableByteChannel channel, Codec<K> keyCodec, Codec<V> valueCodec) throws IOException {
+        BTreeFormat.write(channel, size, cursor(), keyCodec, valueCodec);
+    }
+
+    /**
+     * 按层流式输出快照的结构，参数见{@link BTree#dump(Appendable, DumpFormat, int, int)}，可以在其他线程中输出
+     */
+    public void dump(Appendable out, DumpFormat format, int maxDepth, int maxWidth) throws IOException {
+        BTreeDump.dump(rootNode, height, size, out, format, maxDepth, maxWidth);
+    }
+
+    /**
+     * 创建检查快照结构的检查器，可以分多次执行，也可以交给其他线程执行
+     *
+     * @param sampleRate 叶子节点的抽样比例，(0, 1]
+     * @param seed       抽样使用的随机数种子
+     */
+    public BTreeAnalyzer<K, V> analyzer(double sampleRate, long seed) {
+        return new BTreeAnalyzer<>(rootNode, height, size, mergeThreshold, comparator, aggregator, sampleRate, seed);
+    }
+}
@@ -0,0 +1,129 @@
+package com.skty.study.bTree;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * 把多个字段组成的复合key编码为保持顺序的字节数组：编码结果按{@link ByteKeys#compare(byte[], byte[])}（无符号字节字典序）比较，
+ * 与依次按各字段比较的结果一致。编码后的key可以直接用于BytesBPlusTree，或者配合ByteKeys::compare作为BTree的比较器，
+ * 比较时只需要逐字节比较，不再逐字段拆箱、虚调用compareTo
+ * <p>
+ * 编码规则：
+ * 1.int、long翻转符号位后大端写入，负数排在正数之前
+ * 2.字符串按UTF-8编码（顺序与码点顺序一致；含有增补字符时与String.compareTo的UTF-16顺序可能不同），字节数组原样写入，
+ * 两者的0x00转义为0x00 0xFF，末尾追加结束符0x00 0x01，保证较短的字段（前缀）排在前面且不会与后面的字段混淆
+ * <p>
+ * 同一个编码器可以通过reset重复使用，不是线程安全的
+ *
+ * @author skty
+ */
+public final class ByteKeyEncoder {
+
+    /**
+     * 变长字段中0x00的转义字节
+     */
+    private static final byte ESCAPE = (byte) 0xFF;
+
+    /**
+     * 变长字段的结束字节（前面是0x00）
+     */
+    private static final byte TERMINATOR = 0x01;
+
+    private byte[] buffer;
+
+    private int length;
+
+    public ByteKeyEncoder() {
+        this(32);
+    }
+
+    /**
+     * @param capacity 初始缓冲区大小
+     */
+    public ByteKeyEncoder(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("缓冲区大小必须大于0");
+        }
+        buffer = new byte[capacity];
+    }
+
+    /**
+     * 清空已经写入的字段，开始编码下一个key
+     */
+    public ByteKeyEncoder reset() {
+        length = 0;
+        return this;
+    }
+
+    public ByteKeyEncoder writeInt(int value) {
+        ensureCapacity(4);
+        int flipped = value ^ Integer.MIN_VALUE;
+        buffer[length++] = (byte) (flipped >>> 24);
+        buffer[length++] = (byte) (flipped >>> 16);
+        buffer[length++] = (byte) (flipped >>> 8);
+        buffer[length++] = (byte) flipped;
+        return this;
+    }
+
+    public ByteKeyEncoder writeLong(long value) {
+        ensureCapacity(8);
+        long flipped = value ^ Long.MIN_VALUE;
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            buffer[length++] = (byte) (flipped >>> shift);
+        }
+        return this;
+    }
+
+    public ByteKeyEncoder writeString(String value) {
+        return writeBytes(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public ByteKeyEncoder writeBytes(byte[] value) {
+        //最坏情况每个字节都需要转义
+        ensureCapacity(value.length * 2 + 2);
+        for (byte b : value) {
+            buffer[length++] = b;
+            if (b == 0) {
+                buffer[length++] = ESCAPE;
+            }
+        }
+        buffer[length++] = 0;
+        buffer[length++] = TERMINATOR;
+        return this;
+    }
+
+    /**
+     * 已经写入的字段编码结果（复制）
+     */
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer, length);
+    }
+
+    /**
+     * 把两个int字段打包为一个long，按long的大小比较与依次比较high、low的结果一致，
+     * 可以作为LongBTree的key，比较时不需要访问对象
+     */
+    public static long pack(int high, int low) {
+        return ((long) high << 32) | ((low ^ Integer.MIN_VALUE) & 0xFFFFFFFFL);
+    }
+
+    /**
+     * pack打包结果中的high字段
+     */
+    public static int unpackHigh(long packed) {
+        return (int) (packed >> 32);
+    }
+
+    /**
+     * pack打包结果中的low字段
+     */
+    public static int unpackLow(long packed) {
+        return (int) packed ^ Integer.MIN_VALUE;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (length + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + extra));
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.skty.study.bTree;
+
+/**
+ * 字节数组key的比较工具，字节按无符号数逐个比较，较短的数组是较长数组的前缀时较小（与Java 9的Arrays.compareUnsigned一致）
+ *
+ * @author skty
+ */
+public final class ByteKeys {
+
+    private ByteKeys() {
+    }
+
+    /**
+     * 按无符号字节字典序比较两个字节数组
+     *
+     * @return 负数、0、正数分别表示a小于、等于、大于b
+     */
+    public static int compare(byte[] a, byte[] b) {
+        return compare(a, 0, a.length, b, 0, b.length);
+    }
+
+    /**
+     * 按无符号字节字典序比较a[aFrom, aTo)与b[bFrom, bTo)
+     */
+    static int compare(byte[] a, int aFrom, int aTo, byte[] b, int bFrom, int bTo) {
+        int aLength = aTo - aFrom;
+        int bLength = bTo - bFrom;
+        int length = Math.min(aLength, bLength);
+        for (int i = 0; i < length; i++) {
+            int x = a[aFrom + i] & 0xFF;
+            int y = b[bFrom + i] & 0xFF;
+            if (x != y) {
+                return x - y;
+            }
+        }
+        return aLength - bLength;
+    }
+
+    /**
+     * a[aFrom, aTo)与b[bFrom, bTo)的公共前缀长度
+     */
+    static int commonPrefix(byte[] a, int aFrom, int aTo, byte[] b, int bFrom, int bTo) {
+        int length = Math.min(aTo - aFrom, bTo - bFrom);
+        for (int i = 0; i < length; i++) {
+            if (a[aFrom + i] != b[bFrom + i]) {
+                return i;
+            }
+        }
+        return length;
+    }
+}
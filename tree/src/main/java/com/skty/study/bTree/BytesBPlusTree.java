@@ -0,0 +1,390 @@
+package com.skty.study.bTree;
+
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * key为字节数组的B+树，key按无符号字节字典序比较，用于有大量公共前缀的长key（例如带固定前缀的字符串ID）：
+ * 1.前缀压缩：每个节点中所有key的公共前缀只保存一份，key只保存后缀，见{@link BytesNode}
+ * 2.后缀截断：叶子节点分裂时，上升到父节点的分隔key不是右侧节点的第一个key，而是能区分左侧最大key和右侧最小key的最短前缀，
+ * 内部节点中保存的分隔key更短
+ * <p>
+ * 字符串key使用UTF-8编码，UTF-8的字节顺序与Unicode码点顺序一致（与String.compareTo只在代理对字符上有区别）
+ *
+ * @author skty
+ */
+public class BytesBPlusTree<V> {
+    /**
+     * 树的阶
+     */
+    private final int size;
+
+    /**
+     * 树高
+     */
+    private int height;
+
+    /**
+     * 当前树的根节点
+     */
+    private BytesNode<V> rootNode;
+
+    /**
+     * 最左侧的叶子节点（叶子链表头）
+     */
+    private BytesNode<V> firstLeaf;
+
+    /**
+     * 从根节点向下查找时经过的内部节点，用于分裂和下溢时回到父节点
+     */
+    private BytesNode<V>[] pathNodes;
+
+    /**
+     * 查找路径上每个内部节点中进入下一层子节点的位置
+     */
+    private int[] pathIndexes;
+
+    /**
+     * 创建一颗B+树
+     *
+     * @param size 树的阶。大于2
+     */
+    @SuppressWarnings("unchecked")
+    public BytesBPlusTree(int size) {
+        if (size > 2) {
+            this.size = size;
+            rootNode = new BytesNode<>(size, true);
+            firstLeaf = rootNode;
+            height = 1;
+            pathNodes = new BytesNode[4];
+            pathIndexes = new int[4];
+        } else {
+            throw new IllegalArgumentException("B+树的阶必须大于2");
+        }
+    }
+
+    /**
+     * 查找指定key对应的value
+     *
+     * @param key 指定的key
+     * @return 对应的value，没有返回null
+     */
+    public V find(byte[] key) {
+        BytesNode<V> node = rootNode;
+        while (!node.isLeafNode()) {
+            node = node.getChild(node.childIndexOf(key));
+        }
+        int index = node.searchKey(key);
+        return index >= 0 ? node.getValue(index) : null;
+    }
+
+    /**
+     * 查找UTF-8编码后的字符串key对应的value
+     */
+    public V find(String key) {
+        return find(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 新增数据，树中保存的是key的副本
+     *
+     * @param key   指定key
+     * @param value 指定的value
+     * @return true:不存在该元素，已经新增进去  false:该元素已经存在树中，用新元素替换旧元素
+     */
+    public boolean insert(byte[] key, V value) {
+        int depth = descendToLeaf(key);
+        BytesNode<V> leafNode = pathNodes[depth];
+        int index = leafNode.searchKey(key);
+        if (index >= 0) {//替换模式,只需要替换元素的值
+            leafNode.setValue(index, value);
+            return false;
+        }
+        leafNode.insertLeafElement(-index - 1, key, value);
+        afterElementInsert(leafNode, depth);
+        return true;
+    }
+
+    /**
+     * 以UTF-8编码后的字符串为key新增数据
+     */
+    public boolean insert(String key, V value) {
+        return insert(key.getBytes(StandardCharsets.UTF_8), value);
+    }
+
+    /**
+     * 删除数据
+     *
+     * @param key 要删除的key
+     * @return true:删除成功  false:不存在该元素
+     */
+    public boolean delete(byte[] key) {
+        int depth = descendToLeaf(key);
+        BytesNode<V> leafNode = pathNodes[depth];
+        int index = leafNode.searchKey(key);
+        if (index < 0) {
+            return false;
+        }
+        leafNode.deleteElement(index);
+        afterElementDelete(leafNode, depth);
+        return true;
+    }
+
+    /**
+     * 删除UTF-8编码后的字符串key
+     */
+    public boolean delete(String key) {
+        return delete(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * 全部节点中前缀和后缀占用的字节数（不包括数组对象头），用于对比压缩效果
+     */
+    public long keyBytes() {
+        long bytes = 0;
+        for (int level = 0; level < height; level++) {
+            BTreeDump.LevelIterator<BytesNode<V>> iterator = new BTreeDump.LevelIterator<>(rootNode, level, BytesNode.access());
+            while (iterator.hasNext()) {
+                bytes += iterator.next().keyBytes();
+            }
+        }
+        return bytes;
+    }
+
+    private int descendToLeaf(byte[] key) {
+        BytesNode<V> node = rootNode;
+        int depth = 0;
+        while (!node.isLeafNode()) {
+            int childIndex = node.childIndexOf(key);
+            pushPath(depth++, node, childIndex);
+            node = node.getChild(childIndex);
+        }
+        pushPath(depth, node, 0);
+        return depth;
+    }
+
+    /**
+     * 左右相邻两个叶子节点之间最短的分隔key：右侧最小key中比左侧最大key多一个字节的前缀，
+     * 满足 leftMax < 分隔key <= rightMin
+     */
+    static byte[] shortestSeparator(byte[] leftMax, byte[] rightMin) {
+        int common = ByteKeys.commonPrefix(leftMax, 0, leftMax.length, rightMin, 0, rightMin.length);
+        return Arrays.copyOf(rightMin, common + 1);
+    }
+
+    /**
+     * 元素插入完成后的操作，节点达到分裂标准时进行分裂（与BPlusTree相同，叶子节点分裂时上升截断后的分隔key）
+     */
+    private void afterElementInsert(BytesNode<V> node, int depth) {
+        while (node.needDivide()) {
+            int middleIndex = node.getElementNum() / 2;
+            BytesNode<V> newRightNode = new BytesNode<>(size, node.isLeafNode());
+            byte[] middleKey;
+            if (node.isLeafNode()) {
+                middleKey = shortestSeparator(node.getKey(middleIndex - 1), node.getKey(middleIndex));
+                node.moveLeafRightHalfTo(middleIndex, newRightNode);
+            } else {
+                middleKey = node.getKey(middleIndex);
+                node.moveInnerRightHalfTo(middleIndex, newRightNode);
+            }
+            if (depth == 0) {//当前节点是根节点，生成新的根节点
+                BytesNode<V> newRoot = new BytesNode<>(size, false);
+                newRoot.setChild(0, node);
+                newRoot.insertSeparator(0, middleKey, newRightNode);
+                rootNode = newRoot;
+                height++;
+                return;
+            }
+            depth--;
+            BytesNode<V> parentNode = pathNodes[depth];
+            parentNode.insertSeparator(pathIndexes[depth], middleKey, newRightNode);
+            node = parentNode;
+        }
+    }
+
+    /**
+     * 元素删除后的操作，节点低于下限时从兄弟节点借元素或者合并（与BPlusTree相同）
+     */
+    private void afterElementDelete(BytesNode<V> currentNode, int depth) {
+        while (depth > 0 && currentNode.lowerThanEleLowestLimit()) {
+            depth--;
+            BytesNode<V> parentNode = pathNodes[depth];
+            int childIndex = pathIndexes[depth];
+            BytesNode<V> leftSibling = childIndex > 0 ? parentNode.getChild(childIndex - 1) : null;
+            BytesNode<V> rightSibling = childIndex < parentNode.getElementNum() ? parentNode.getChild(childIndex + 1) : null;
+            if (leftSibling != null && leftSibling.moreThanLowestLimit()) {
+                borrowFromLeft(leftSibling, parentNode, childIndex - 1, currentNode);
+                return;
+            }
+            if (rightSibling != null && rightSibling.moreThanLowestLimit()) {
+                borrowFromRight(rightSibling, parentNode, childIndex, currentNode);
+                return;
+            }
+            if (leftSibling != null) {
+                merge(leftSibling, parentNode, childIndex - 1, currentNode);
+            } else if (rightSibling != null) {
+                merge(currentNode, parentNode, childIndex, rightSibling);
+            } else {//左右兄弟都为空，表示树的结构有问题
+                throw new IllegalArgumentException("当前树存在问题,无法删除元素");
+            }
+            currentNode = parentNode;
+        }
+    }
+
+    /**
+     * 从左兄弟节点借最大的元素放到目标节点的最前面，叶子节点重新计算截断后的分隔key
+     */
+    private void borrowFromLeft(BytesNode<V> fromNode, BytesNode<V> parentNode, int middleIndex, BytesNode<V> destinationNode) {
+        int maxIndex = fromNode.getElementNum() - 1;
+        if (destinationNode.isLeafNode()) {
+            destinationNode.insertLeafElement(0, fromNode.getKey(maxIndex), fromNode.getValue(maxIndex));
+            fromNode.deleteElement(maxIndex);
+            parentNode.setSeparator(middleIndex, shortestSeparator(fromNode.getKey(maxIndex - 1), destinationNode.getKey(0)));
+        } else {//右旋转：父节点的分隔key下降，左兄弟的最大分隔key上升
+            destinationNode.insertFirstSeparator(parentNode.getKey(middleIndex), fromNode.getChild(maxIndex + 1));
+            parentNode.setSeparator(middleIndex, fromNode.getKey(maxIndex));
+            fromNode.deleteElement(maxIndex);
+        }
+    }
+
+    /**
+     * 从右兄弟节点借最小的元素放到目标节点的最后面，叶子节点重新计算截断后的分隔key
+     */
+    private void borrowFromRight(BytesNode<V> fromNode, BytesNode<V> parentNode, int middleIndex, BytesNode<V> destinationNode) {
+        if (destinationNode.isLeafNode()) {
+            int lastIndex = destinationNode.getElementNum();
+            destinationNode.insertLeafElement(lastIndex, fromNode.getKey(0), fromNode.getValue(0));
+            fromNode.deleteElement(0);
+            parentNode.setSeparator(middleIndex, shortestSeparator(destinationNode.getKey(lastIndex), fromNode.getKey(0)));
+        } else {//左旋转：父节点的分隔key下降，右兄弟的最小分隔key上升
+            destinationNode.insertSeparator(destinationNode.getElementNum(), parentNode.getKey(middleIndex), fromNode.getChild(0));
+            parentNode.setSeparator(middleIndex, fromNode.getKey(0));
+            fromNode.deleteFirstSeparator();
+        }
+    }
+
+    /**
+     * 合并左右两个相邻节点为左侧节点，并删除父节点中的分隔key
+     */
+    private void merge(BytesNode<V> leftNode, BytesNode<V> parentNode, int middleIndex, BytesNode<V> rightNode) {
+        if (leftNode.isLeafNode()) {
+            leftNode.appendLeaf(rightNode);
+        } else {
+            leftNode.appendInner(parentNode.getKey(middleIndex), rightNode);
+        }
+        parentNode.deleteElement(middleIndex);
+        //根节点没有分隔key后，合并生成的节点升为根节点，降低树高
+        if (parentNode == rootNode && parentNode.getElementNum() == 0) {
+            rootNode = leftNode;
+            height--;
+        }
+    }
+
+    /**
+     * 指定范围元素的Spliterator（按key有序、不可拆分），定位到起始叶子节点后沿叶子链表向后移动
+     *
+     * @param from          起始位置的key，null表示从最小的元素开始
+     * @param fromInclusive 是否包含起始位置的key
+     * @param to            结束位置的key，null表示到最大的元素结束
+     * @param toInclusive   是否包含结束位置的key
+     */
+    public Spliterator<Map.Entry<byte[], V>> spliterator(byte[] from, boolean fromInclusive, byte[] to, boolean toInclusive) {
+        BytesNode<V> startNode = firstLeaf;
+        int startIndex = 0;
+        if (from != null) {
+            startNode = rootNode;
+            while (!startNode.isLeafNode()) {
+                startNode = startNode.getChild(startNode.childIndexOf(from));
+            }
+            startIndex = startNode.searchKey(from);
+            if (startIndex < 0) {
+                startIndex = -startIndex - 1;
+            } else if (!fromInclusive) {
+                startIndex++;
+            }
+        }
+        BytesNode<V> firstNode = startNode;
+        int firstIndex = startIndex;
+        int characteristics = Spliterator.ORDERED | Spliterator.SORTED | Spliterator.DISTINCT | Spliterator.NONNULL;
+        return new Spliterators.AbstractSpliterator<Map.Entry<byte[], V>>(Long.MAX_VALUE, characteristics) {
+            private BytesNode<V> node = firstNode;
+
+            private int index = firstIndex;
+
+            @Override
+            public boolean tryAdvance(Consumer<? super Map.Entry<byte[], V>> action) {
+                while (node != null && index >= node.getElementNum()) {
+                    node = node.getNextLeaf();
+                    index = 0;
+                }
+                if (node == null) {
+                    return false;
+                }
+                byte[] key = node.getKey(index);
+                if (to != null) {
+                    int compare = ByteKeys.compare(key, to);
+                    if (compare > 0 || (compare == 0 && !toInclusive)) {
+                        node = null;
+                        return false;
+                    }
+                }
+                action.accept(new AbstractMap.SimpleImmutableEntry<>(key, node.getValue(index)));
+                index++;
+                return true;
+            }
+
+            @Override
+            public Comparator<? super Map.Entry<byte[], V>> getComparator() {
+                return (a, b) -> ByteKeys.compare(a.getKey(), b.getKey());
+            }
+        };
+    }
+
+    /**
+     * 指定范围元素的顺序流，参数见{@link #spliterator(byte[], boolean, byte[], boolean)}
+     */
+    public Stream<Map.Entry<byte[], V>> stream(byte[] from, boolean fromInclusive, byte[] to, boolean toInclusive) {
+        return StreamSupport.stream(spliterator(from, fromInclusive, to, toInclusive), false);
+    }
+
+    /**
+     * 全部元素的顺序流
+     */
+    public Stream<Map.Entry<byte[], V>> stream() {
+        return stream(null, true, null, true);
+    }
+
+    /**
+     * 将当前B+树的数据结构生成可打印的字符串，key按UTF-8解码显示
+     *
+     * @return 每层节点一行
+     */
+    public String printBPlusTree() {
+        return BTreeDump.printLevels(rootNode, BytesNode.access());
+    }
+
+    static String toDisplayString(byte[] key) {
+        return new String(key, StandardCharsets.UTF_8);
+    }
+
+    private void pushPath(int depth, BytesNode<V> node, int index) {
+        if (depth == pathNodes.length) {
+            pathNodes = Arrays.copyOf(pathNodes, depth * 2);
+            pathIndexes = Arrays.copyOf(pathIndexes, depth * 2);
+        }
+        pathNodes[depth] = node;
+        pathIndexes[depth] = index;
+    }
+}
@@ -0,0 +1,416 @@
+package com.skty.study.bTree;
+
+import java.util.Arrays;
+
+/**
+ * 字节数组key的B+树节点，key按前缀压缩保存：节点中所有key的公共前缀只保存一份（prefix），每个key只保存去掉前缀后的后缀。
+ * 插入的key与前缀不一致时缩短前缀（后缀补上缩短的部分），分裂后重新计算两个节点各自的最长公共前缀。
+ * 节点中的key有序，公共前缀只需要比较第一个和最后一个key
+ *
+ * @author skty
+ */
+class BytesNode<V> {
+
+    /**
+     * 按层遍历时的访问方式
+     */
+    private static final BTreeDump.NodeAccess<BytesNode<?>> ACCESS = new BTreeDump.NodeAccess<BytesNode<?>>() {
+        @Override
+        public boolean isLeafNode(BytesNode<?> node) {
+            return node.isLeafNode();
+        }
+
+        @Override
+        public int getElementNum(BytesNode<?> node) {
+            return node.getElementNum();
+        }
+
+        @Override
+        public BytesNode<?> getChild(BytesNode<?> node, int index) {
+            return node.getChild(index);
+        }
+    };
+
+    private static final byte[] EMPTY = new byte[0];
+
+    /**
+     * 节点大小，当前节点所能容纳所有元素的大小（多出的一个位置用于分裂前的临时插入）
+     */
+    private final int nodeSize;
+
+    /**
+     * 节点中所有key的公共前缀，不在原数组上修改（分裂出的节点可以共用同一个数组）
+     */
+    private byte[] prefix = EMPTY;
+
+    /**
+     * 每个key去掉公共前缀后的后缀，叶子节点为元素的key，内部节点为分隔key
+     */
+    private final byte[][] suffixes;
+
+    /**
+     * 与key一一对应的value，内部节点为null
+     */
+    private final Object[] values;
+
+    /**
+     * 子节点，叶子节点为null
+     */
+    private final BytesNode<V>[] children;
+
+    private BytesNode<V> previousLeaf;
+
+    private BytesNode<V> nextLeaf;
+
+    private int elementNum;
+
+    @SuppressWarnings("unchecked")
+    BytesNode(int nodeSize, boolean leafNode) {
+        this.nodeSize = nodeSize;
+        this.suffixes = new byte[nodeSize][];
+        this.values = leafNode ? new Object[nodeSize] : null;
+        this.children = leafNode ? null : new BytesNode[nodeSize + 1];
+    }
+
+    int getElementNum() {
+        return elementNum;
+    }
+
+    /**
+     * 按层遍历时的访问方式
+     */
+    @SuppressWarnings("unchecked")
+    static <V> BTreeDump.NodeAccess<BytesNode<V>> access() {
+        return (BTreeDump.NodeAccess<BytesNode<V>>) (BTreeDump.NodeAccess<?>) ACCESS;
+    }
+
+    boolean isLeafNode() {
+        return children == null;
+    }
+
+    /**
+     * 指定位置的完整key（前缀 + 后缀），每次调用都会创建新数组
+     */
+    byte[] getKey(int index) {
+        byte[] suffix = suffixes[index];
+        byte[] key = Arrays.copyOf(prefix, prefix.length + suffix.length);
+        System.arraycopy(suffix, 0, key, prefix.length, suffix.length);
+        return key;
+    }
+
+    @SuppressWarnings("unchecked")
+    V getValue(int index) {
+        return (V) values[index];
+    }
+
+    void setValue(int index, V value) {
+        values[index] = value;
+    }
+
+    BytesNode<V> getChild(int index) {
+        return children[index];
+    }
+
+    void setChild(int index, BytesNode<V> child) {
+        children[index] = child;
+    }
+
+    BytesNode<V> getPreviousLeaf() {
+        return previousLeaf;
+    }
+
+    BytesNode<V> getNextLeaf() {
+        return nextLeaf;
+    }
+
+    /**
+     * 前缀与后缀占用的字节数（不包括数组对象头）
+     */
+    long keyBytes() {
+        long bytes = prefix.length;
+        for (int i = 0; i < elementNum; i++) {
+            bytes += suffixes[i].length;
+        }
+        return bytes;
+    }
+
+    /**
+     * 查找指定的key，先与公共前缀比较：不以前缀开头时key小于或大于节点中全部的key，不需要二分查找；
+     * 以前缀开头时只比较后缀部分
+     *
+     * @param key 要查找的key
+     * @return 找到时返回key所在的索引；没找到时返回 -(插入位置) - 1
+     */
+    int searchKey(byte[] key) {
+        int prefixLength = prefix.length;
+        int common = ByteKeys.commonPrefix(key, 0, key.length, prefix, 0, prefixLength);
+        if (common < prefixLength) {
+            //key是前缀的前缀，或者在common位置小于前缀，都小于节点中全部的key
+            if (common == key.length || (key[common] & 0xFF) < (prefix[common] & 0xFF)) {
+                return -1;
+            }
+            return -(elementNum + 1);
+        }
+        int low = 0;
+        int high = elementNum - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            byte[] suffix = suffixes[mid];
+            int compare = ByteKeys.compare(suffix, 0, suffix.length, key, prefixLength, key.length);
+            if (compare < 0) {
+                low = mid + 1;
+            } else if (compare > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * 内部节点中查找key所在的子节点位置（等于分隔key时进入右侧子节点）
+     */
+    int childIndexOf(byte[] key) {
+        int index = searchKey(key);
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+
+    boolean needDivide() {
+        return elementNum > nodeSize - 1;
+    }
+
+    int lowestLimit() {
+        return (nodeSize - 1) / 2;
+    }
+
+    boolean lowerThanEleLowestLimit() {
+        return elementNum < lowestLimit();
+    }
+
+    boolean moreThanLowestLimit() {
+        return elementNum > lowestLimit();
+    }
+
+    /**
+     * 把key转换为当前节点中的后缀，key与前缀不一致时先缩短前缀
+     */
+    private byte[] suffixOf(byte[] key) {
+        if (elementNum == 0) {//空节点，key本身就是前缀
+            prefix = key.clone();
+            return EMPTY;
+        }
+        shrinkPrefix(ByteKeys.commonPrefix(prefix, 0, prefix.length, key, 0, key.length));
+        return Arrays.copyOfRange(key, prefix.length, key.length);
+    }
+
+    /**
+     * 把前缀缩短到指定长度，去掉的部分补到每个后缀的前面
+     */
+    private void shrinkPrefix(int length) {
+        if (length == prefix.length) {
+            return;
+        }
+        int removed = prefix.length - length;
+        for (int i = 0; i < elementNum; i++) {
+            byte[] suffix = suffixes[i];
+            byte[] newSuffix = new byte[removed + suffix.length];
+            System.arraycopy(prefix, length, newSuffix, 0, removed);
+            System.arraycopy(suffix, 0, newSuffix, removed, suffix.length);
+            suffixes[i] = newSuffix;
+        }
+        prefix = Arrays.copyOf(prefix, length);
+    }
+
+    /**
+     * 把前缀延长为节点中全部key的最长公共前缀（第一个和最后一个后缀的公共前缀），每个后缀去掉延长的部分
+     */
+    private void extendPrefix() {
+        if (elementNum == 0) {
+            prefix = EMPTY;
+            return;
+        }
+        byte[] first = suffixes[0];
+        byte[] last = suffixes[elementNum - 1];
+        int extra = ByteKeys.commonPrefix(first, 0, first.length, last, 0, last.length);
+        if (extra == 0) {
+            return;
+        }
+        byte[] newPrefix = Arrays.copyOf(prefix, prefix.length + extra);
+        System.arraycopy(first, 0, newPrefix, prefix.length, extra);
+        for (int i = 0; i < elementNum; i++) {
+            suffixes[i] = Arrays.copyOfRange(suffixes[i], extra, suffixes[i].length);
+        }
+        prefix = newPrefix;
+    }
+
+    /**
+     * 在叶子节点的指定位置插入元素
+     */
+    void insertLeafElement(int index, byte[] key, Object value) {
+        byte[] suffix = suffixOf(key);
+        int moveNum = elementNum - index;
+        System.arraycopy(suffixes, index, suffixes, index + 1, moveNum);
+        System.arraycopy(values, index, values, index + 1, moveNum);
+        suffixes[index] = suffix;
+        values[index] = value;
+        elementNum++;
+    }
+
+    /**
+     * 在内部节点的指定位置插入分隔key以及它的右子树
+     */
+    void insertSeparator(int index, byte[] key, BytesNode<V> rightChild) {
+        byte[] suffix = suffixOf(key);
+        int moveNum = elementNum - index;
+        System.arraycopy(suffixes, index, suffixes, index + 1, moveNum);
+        System.arraycopy(children, index + 1, children, index + 2, moveNum);
+        suffixes[index] = suffix;
+        children[index + 1] = rightChild;
+        elementNum++;
+    }
+
+    /**
+     * 在内部节点的最前面插入分隔key以及它的左子树
+     */
+    void insertFirstSeparator(byte[] key, BytesNode<V> leftChild) {
+        byte[] suffix = suffixOf(key);
+        System.arraycopy(suffixes, 0, suffixes, 1, elementNum);
+        System.arraycopy(children, 0, children, 1, elementNum + 1);
+        suffixes[0] = suffix;
+        children[0] = leftChild;
+        elementNum++;
+    }
+
+    /**
+     * 替换内部节点指定位置的分隔key
+     */
+    void setSeparator(int index, byte[] key) {
+        suffixes[index] = suffixOf(key);
+    }
+
+    /**
+     * 删除指定位置的key（叶子节点同时删除value，内部节点同时删除它的右子树），前缀保持不变
+     */
+    void deleteElement(int deleteIndex) {
+        int moveNum = elementNum - deleteIndex - 1;
+        System.arraycopy(suffixes, deleteIndex + 1, suffixes, deleteIndex, moveNum);
+        suffixes[elementNum - 1] = null;
+        if (values != null) {
+            System.arraycopy(values, deleteIndex + 1, values, deleteIndex, moveNum);
+            values[elementNum - 1] = null;
+        } else {
+            System.arraycopy(children, deleteIndex + 2, children, deleteIndex + 1, moveNum);
+            children[elementNum] = null;
+        }
+        elementNum--;
+    }
+
+    /**
+     * 删除内部节点的第一个分隔key以及它的左子树
+     */
+    void deleteFirstSeparator() {
+        System.arraycopy(suffixes, 1, suffixes, 0, elementNum - 1);
+        System.arraycopy(children, 1, children, 0, elementNum);
+        suffixes[elementNum - 1] = null;
+        children[elementNum] = null;
+        elementNum--;
+    }
+
+    /**
+     * 叶子节点分裂：将index及之后的元素移动到空的叶子节点target中，target链接到当前节点的右侧，两个节点重新计算公共前缀
+     */
+    void moveLeafRightHalfTo(int index, BytesNode<V> target) {
+        int moveNum = elementNum - index;
+        target.prefix = prefix;
+        System.arraycopy(suffixes, index, target.suffixes, 0, moveNum);
+        System.arraycopy(values, index, target.values, 0, moveNum);
+        Arrays.fill(suffixes, index, elementNum, null);
+        Arrays.fill(values, index, elementNum, null);
+        target.elementNum = moveNum;
+        elementNum = index;
+        target.nextLeaf = nextLeaf;
+        target.previousLeaf = this;
+        if (nextLeaf != null) {
+            nextLeaf.previousLeaf = target;
+        }
+        nextLeaf = target;
+        extendPrefix();
+        target.extendPrefix();
+    }
+
+    /**
+     * 内部节点分裂：将index之后的分隔key和对应子树移动到空节点target中，index位置的key由调用方先取出并上升到父节点
+     */
+    void moveInnerRightHalfTo(int index, BytesNode<V> target) {
+        int moveNum = elementNum - index - 1;
+        target.prefix = prefix;
+        System.arraycopy(suffixes, index + 1, target.suffixes, 0, moveNum);
+        System.arraycopy(children, index + 1, target.children, 0, moveNum + 1);
+        Arrays.fill(suffixes, index, elementNum, null);
+        Arrays.fill(children, index + 1, elementNum + 1, null);
+        target.elementNum = moveNum;
+        elementNum = index;
+        extendPrefix();
+        target.extendPrefix();
+    }
+
+    /**
+     * 把另一个节点的全部key追加到当前节点的后面，两个节点的前缀不同时当前节点的前缀缩短为两者的公共前缀
+     */
+    private void appendKeys(BytesNode<V> source) {
+        byte[] sourcePrefix = source.prefix;
+        if (elementNum == 0) {
+            prefix = sourcePrefix;
+        } else {
+            shrinkPrefix(ByteKeys.commonPrefix(prefix, 0, prefix.length, sourcePrefix, 0, sourcePrefix.length));
+        }
+        int removed = sourcePrefix.length - prefix.length;
+        for (int i = 0; i < source.elementNum; i++) {
+            byte[] suffix = source.suffixes[i];
+            if (removed > 0) {
+                byte[] newSuffix = new byte[removed + suffix.length];
+                System.arraycopy(sourcePrefix, prefix.length, newSuffix, 0, removed);
+                System.arraycopy(suffix, 0, newSuffix, removed, suffix.length);
+                suffix = newSuffix;
+            }
+            suffixes[elementNum + i] = suffix;
+        }
+    }
+
+    /**
+     * 叶子节点合并：将右侧相邻叶子节点的全部元素追加到当前节点，并将其从链表中移除
+     */
+    void appendLeaf(BytesNode<V> rightLeaf) {
+        appendKeys(rightLeaf);
+        System.arraycopy(rightLeaf.values, 0, values, elementNum, rightLeaf.elementNum);
+        elementNum += rightLeaf.elementNum;
+        nextLeaf = rightLeaf.nextLeaf;
+        if (nextLeaf != null) {
+            nextLeaf.previousLeaf = this;
+        }
+    }
+
+    /**
+     * 内部节点合并：将父节点下降的分隔key和右侧节点的全部分隔key（包括子树）追加到当前节点
+     */
+    void appendInner(byte[] middleKey, BytesNode<V> rightNode) {
+        suffixes[elementNum] = suffixOf(middleKey);
+        elementNum++;
+        appendKeys(rightNode);
+        System.arraycopy(rightNode.children, 0, children, elementNum, rightNode.elementNum + 1);
+        elementNum += rightNode.elementNum;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < elementNum; i++) {
+            if (i > 0) {
+                builder.append(';');
+            }
+            builder.append(BytesBPlusTree.toDisplayString(getKey(i)));
+        }
+        return builder.toString();
+    }
+}
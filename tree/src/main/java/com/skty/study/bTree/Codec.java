@@ -0,0 +1,133 @@
+package com.skty.study.bTree;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 变长二进制编解码器，用于把key、value写入日志或者数据文件。
+ * 与分页B树使用的定长序列化器不同，编码后的长度可以不固定，由编解码器自己记录需要的长度信息
+ *
+ * @author skty
+ */
+public interface Codec<T> {
+
+    /**
+     * 写入对象
+     */
+    void write(DataOutput out, T value) throws IOException;
+
+    /**
+     * 读取write写入的对象
+     */
+    T read(DataInput in) throws IOException;
+
+    Codec<Long> LONG = new Codec<Long>() {
+        @Override
+        public void write(DataOutput out, Long value) throws IOException {
+            out.writeLong(value);
+        }
+
+        @Override
+        public Long read(DataInput in) throws IOException {
+            return in.readLong();
+        }
+    };
+
+    Codec<Integer> INTEGER = new Codec<Integer>() {
+        @Override
+        public void write(DataOutput out, Integer value) throws IOException {
+            out.writeInt(value);
+        }
+
+        @Override
+        public Integer read(DataInput in) throws IOException {
+            return in.readInt();
+        }
+    };
+
+    /**
+     * 字节数组：长度(4) + 内容
+     */
+    Codec<byte[]> BYTES = new Codec<byte[]>() {
+        @Override
+        public void write(DataOutput out, byte[] value) throws IOException {
+            out.writeInt(value.length);
+            out.write(value);
+        }
+
+        @Override
+        public byte[] read(DataInput in) throws IOException {
+            int length = in.readInt();
+            if (length < 0) {
+                throw new IOException("字节数组长度错误:" + length);
+            }
+            byte[] value = new byte[length];
+            in.readFully(value);
+            return value;
+        }
+    };
+
+    /**
+     * UTF-8字符串：编码后的长度(4) + 内容，没有DataOutput.writeUTF的64KB限制
+     */
+    Codec<String> STRING = new Codec<String>() {
+        @Override
+        public void write(DataOutput out, String value) throws IOException {
+            BYTES.write(out, value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public String read(DataInput in) throws IOException {
+            return new String(BYTES.read(in), StandardCharsets.UTF_8);
+        }
+    };
+
+    /**
+     * 变长long：zigzag编码后每7位一个字节，最高位表示后面还有字节，绝对值小的数占用的字节少（1~10个字节）
+     */
+    Codec<Long> VAR_LONG = new Codec<Long>() {
+        @Override
+        public void write(DataOutput out, Long value) throws IOException {
+            long v = (value << 1) ^ (value >> 63);
+            while ((v & ~0x7FL) != 0) {
+                out.writeByte((int) (v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            out.writeByte((int) v);
+        }
+
+        @Override
+        public Long read(DataInput in) throws IOException {
+            long v = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = in.readByte();
+                v |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return (v >>> 1) ^ -(v & 1);
+                }
+            }
+            throw new IOException("变长long超过10个字节");
+        }
+    };
+
+    /**
+     * 变长int，编码方式同{@link #VAR_LONG}（1~5个字节）
+     */
+    Codec<Integer> VAR_INT = new Codec<Integer>() {
+        @Override
+        public void write(DataOutput out, Integer value) throws IOException {
+            VAR_LONG.write(out, (long) value);
+        }
+
+        @Override
+        public Integer read(DataInput in) throws IOException {
+            long v = VAR_LONG.read(in);
+            if (v != (int) v) {
+                throw new IOException("变长int超出范围:" + v);
+            }
+            return (int) v;
+        }
+    };
+}
@@ -0,0 +1,303 @@
+package com.skty.study.bTree;
+
+import java.util.Arrays;
+
+/**
+ * 线程安全的B树，使用乐观锁耦合（optimistic lock coupling）：
+ * 1.每个节点带一个版本锁，读操作不加锁，只记录版本号，读完节点内容、进入子节点前校验版本号，版本号变化时从根节点重新开始
+ * 2.写操作同样乐观地向下查找，只在需要修改的节点上把读到的版本号升级为写锁（版本号已经变化时升级失败，重新开始）
+ * 3.插入时向下查找过程中遇到已满的节点就先分裂（同时锁住父节点和当前节点），保证叶子节点分裂时父节点一定有空位，
+ * 分裂只需要锁住两层节点
+ * <p>
+ * 4.删除通常只锁住叶子节点；删除叶子节点中最后一个元素时，同时锁住父节点和叶子节点，把空的叶子节点连同父节点中的分隔key
+ * 从树中摘除（父节点只剩这一个子节点时继续向上，一起摘除），父节点只剩一个子节点的根节点降低树高
+ * 5.被摘除的节点标记为失效：保持写锁不再释放，乐观读拿不到版本号、写操作升级写锁失败，都会从根节点重新开始；
+ * 没有线程再引用之后由GC回收
+ * <p>
+ * 节点布局与{@link BPlusTree}相同（value只保存在叶子节点）。删除不进行借元素和部分合并，
+ * 没有删空的节点可能低于元素下限，删空的节点会被摘除回收
+ *
+ * @author skty
+ */
+public class ConcurrentBTree<K extends Comparable<K>, V> {
+    /**
+     * 树的阶
+     */
+    private final int size;
+
+    /**
+     * 当前树的根节点，只在持有旧根节点写锁时替换
+     */
+    private volatile ConcurrentNode<K, V> rootNode;
+
+    /**
+     * 树高，只在持有根节点写锁时修改
+     */
+    private volatile int height;
+
+    /**
+     * 创建一颗线程安全的B树
+     *
+     * @param size 树的阶。大于3（节点满了之后先分裂再插入，阶为3时分裂出的内部节点会没有分隔key）
+     */
+    public ConcurrentBTree(int size) {
+        if (size > 3) {
+            this.size = size;
+            rootNode = new ConcurrentNode<>(size, true);
+            height = 1;
+        } else {
+            throw new IllegalArgumentException("ConcurrentBTree的阶必须大于3");
+        }
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * 查找指定key对应的value，不加锁
+     *
+     * @param key 指定的key
+     * @return 对应的value，没有返回null
+     */
+    public V find(K key) {
+        restart:
+        while (true) {
+            ConcurrentNode<K, V> node = rootNode;
+            long stamp = node.lock.tryOptimisticRead();
+            if (stamp == 0 || node != rootNode) {//根节点正在修改，或者已经被替换
+                continue;
+            }
+            while (!node.isLeafNode()) {
+                ConcurrentNode<K, V> child = node.childFor(key);
+                long childStamp = child == null ? 0 : child.lock.tryOptimisticRead();
+                //读到子节点的版本号之后再校验父节点，保证子节点仍然是父节点中对应的子节点
+                if (childStamp == 0 || !node.lock.validate(stamp)) {
+                    continue restart;
+                }
+                node = child;
+                stamp = childStamp;
+            }
+            int index = node.searchKey(key);
+            V value = index >= 0 ? node.getValue(index) : null;
+            if (index == ConcurrentNode.RETRY || !node.lock.validate(stamp)) {
+                continue;
+            }
+            return value;
+        }
+    }
+
+    /**
+     * 新增数据
+     *
+     * @param key   指定key
+     * @param value 指定的value
+     * @return true:不存在该元素，已经新增进去  false:该元素已经存在树中，用新元素替换旧元素
+     */
+    public boolean insert(K key, V value) {
+        restart:
+        while (true) {
+            ConcurrentNode<K, V> node = rootNode;
+            long stamp = node.lock.tryOptimisticRead();
+            if (stamp == 0 || node != rootNode) {
+                continue;
+            }
+            ConcurrentNode<K, V> parentNode = null;
+            long parentStamp = 0;
+            while (true) {
+                if (node.isFull()) {//先分裂已满的节点，分裂完从根节点重新开始
+                    divide(parentNode, parentStamp, node, stamp);
+                    continue restart;
+                }
+                if (node.isLeafNode()) {
+                    break;
+                }
+                ConcurrentNode<K, V> child = node.childFor(key);
+                long childStamp = child == null ? 0 : child.lock.tryOptimisticRead();
+                if (childStamp == 0 || !node.lock.validate(stamp)) {
+                    continue restart;
+                }
+                parentNode = node;
+                parentStamp = stamp;
+                node = child;
+                stamp = childStamp;
+            }
+            //只锁住叶子节点：叶子节点的版本号没变，说明它负责的key范围也没变
+            long writeStamp = node.lock.tryConvertToWriteLock(stamp);
+            if (writeStamp == 0) {
+                continue;
+            }
+            try {
+                int index = node.searchKey(key);
+                if (index >= 0) {
+                    node.setValue(index, value);
+                    return false;
+                }
+                node.insertLeafElement(-index - 1, key, value);
+                return true;
+            } finally {
+                node.lock.unlockWrite(writeStamp);
+            }
+        }
+    }
+
+    /**
+     * 分裂已满的节点：将父节点和当前节点读到的版本号升级为写锁，任何一个失败都放弃分裂（由调用方重新开始）
+     *
+     * @param parentNode  父节点，当前节点为根节点时为null
+     * @param parentStamp 父节点的版本号
+     * @param node        已满的节点
+     * @param stamp       当前节点的版本号
+     */
+    private void divide(ConcurrentNode<K, V> parentNode, long parentStamp, ConcurrentNode<K, V> node, long stamp) {
+        long parentWriteStamp = 0;
+        if (parentNode != null && (parentWriteStamp = parentNode.lock.tryConvertToWriteLock(parentStamp)) == 0) {
+            return;
+        }
+        long writeStamp = node.lock.tryConvertToWriteLock(stamp);
+        if (writeStamp == 0) {
+            if (parentNode != null) {
+                parentNode.lock.unlockWrite(parentWriteStamp);
+            }
+            return;
+        }
+        try {
+            int middleIndex = node.getElementNum() / 2;
+            K middleKey = node.getKey(middleIndex);
+            ConcurrentNode<K, V> newRightNode = new ConcurrentNode<>(size, node.isLeafNode());
+            node.moveRightHalfTo(middleIndex, newRightNode);
+            if (parentNode == null) {//当前节点是根节点（持有写锁，期间根节点不会被替换），生成新的根节点
+                ConcurrentNode<K, V> newRoot = new ConcurrentNode<>(size, false);
+                newRoot.setChild(0, node);
+                newRoot.insertSeparator(0, middleKey, newRightNode);
+                height++;
+                rootNode = newRoot;
+            } else {
+                //父节点的版本号没变，说明当前节点仍然是它的子节点；向下查找时已满的父节点已经先分裂过，一定有空位
+                int index = parentNode.searchKey(middleKey);
+                parentNode.insertSeparator(index >= 0 ? index + 1 : -index - 1, middleKey, newRightNode);
+            }
+        } finally {
+            node.lock.unlockWrite(writeStamp);
+            if (parentNode != null) {
+                parentNode.lock.unlockWrite(parentWriteStamp);
+            }
+        }
+    }
+
+    /**
+     * 删除数据，通常只锁住元素所在的叶子节点；删空叶子节点时摘除该节点，见{@link #removeEmptyLeaf}
+     *
+     * @param key 要删除的key
+     * @return true:删除成功  false:不存在该元素
+     */
+    @SuppressWarnings("unchecked")
+    public boolean delete(K key) {
+        //查找路径上的内部节点和读到的版本号，摘除空叶子节点时使用
+        ConcurrentNode<K, V>[] pathNodes = new ConcurrentNode[height];
+        long[] pathStamps = new long[pathNodes.length];
+        restart:
+        while (true) {
+            ConcurrentNode<K, V> node = rootNode;
+            long stamp = node.lock.tryOptimisticRead();
+            if (stamp == 0 || node != rootNode) {
+                continue;
+            }
+            int depth = 0;
+            while (!node.isLeafNode()) {
+                ConcurrentNode<K, V> child = node.childFor(key);
+                long childStamp = child == null ? 0 : child.lock.tryOptimisticRead();
+                if (childStamp == 0 || !node.lock.validate(stamp)) {
+                    continue restart;
+                }
+                if (depth == pathNodes.length) {//查找期间树变高了
+                    pathNodes = Arrays.copyOf(pathNodes, depth + 1);
+                    pathStamps = Arrays.copyOf(pathStamps, depth + 1);
+                }
+                pathNodes[depth] = node;
+                pathStamps[depth] = stamp;
+                depth++;
+                node = child;
+                stamp = childStamp;
+            }
+            long writeStamp = node.lock.tryConvertToWriteLock(stamp);
+            if (writeStamp == 0) {
+                continue;
+            }
+            int index = node.searchKey(key);
+            if (index < 0) {
+                node.lock.unlockWrite(writeStamp);
+                return false;
+            }
+            if (depth == 0 || node.getElementNum() > 1) {
+                node.deleteLeafElement(index);
+                node.lock.unlockWrite(writeStamp);
+                return true;
+            }
+            if (removeEmptyLeaf(pathNodes, pathStamps, depth, node, index, key)) {
+                return true;
+            }
+            node.lock.unlockWrite(writeStamp);
+        }
+    }
+
+    /**
+     * 删除叶子节点中的最后一个元素，并把删空的叶子节点从树中摘除。调用时持有叶子节点的写锁：
+     * 从叶子节点向上找到第一个分隔key数量不为0的祖先节点，把查找路径上从该祖先到叶子节点父节点的版本号升级为写锁，
+     * 任何一个失败都放弃（释放已经获得的祖先节点写锁，由调用方释放叶子节点的写锁后重新开始）。
+     * 成功后从祖先节点中删除通向叶子节点的子树和相邻的分隔key，子树中的节点（只有一个子节点的内部节点和叶子节点）标记为失效；
+     * 所有祖先都只有一个子节点时整颗树为空，替换为新的空叶子根节点
+     *
+     * @param pathNodes  查找路径上的内部节点
+     * @param pathStamps 查找时读到的内部节点版本号
+     * @param depth      叶子节点的深度
+     * @param leaf       持有写锁、只剩一个元素的叶子节点
+     * @param index      要删除的元素位置
+     * @param key        要删除的key，用于在祖先节点中定位子树
+     * @return 是否删除成功，失败时叶子节点仍然持有写锁
+     */
+    private boolean removeEmptyLeaf(ConcurrentNode<K, V>[] pathNodes, long[] pathStamps, int depth,
+                                    ConcurrentNode<K, V> leaf, int index, K key) {
+        int top = depth - 1;
+        while (top > 0 && pathNodes[top].getElementNum() == 0) {
+            top--;
+        }
+        long[] writeStamps = new long[depth];
+        for (int i = top; i < depth; i++) {
+            writeStamps[i] = pathNodes[i].lock.tryConvertToWriteLock(pathStamps[i]);
+            if (writeStamps[i] == 0) {
+                for (int j = top; j < i; j++) {
+                    pathNodes[j].lock.unlockWrite(writeStamps[j]);
+                }
+                return false;
+            }
+        }
+        //版本号都没有变化，上面读到的分隔key数量仍然有效
+        leaf.deleteLeafElement(index);
+        ConcurrentNode<K, V> parent = pathNodes[top];
+        if (parent.getElementNum() == 0) {//top只能是根节点，整颗树为空，路径上的节点全部失效
+            height = 1;
+            rootNode = new ConcurrentNode<>(size, true);
+            return true;
+        }
+        int childIndex = parent.searchKey(key);
+        parent.removeChild(childIndex >= 0 ? childIndex + 1 : -childIndex - 1);
+        //top之下的节点和叶子节点保持写锁，标记为失效
+        if (top == 0 && parent.getElementNum() == 0) {//根节点只剩一个子节点，降低树高，旧的根节点失效
+            height--;
+            rootNode = parent.getChild(0);
+            return true;
+        }
+        parent.lock.unlockWrite(writeStamps[top]);
+        return true;
+    }
+
+    /**
+     * 将当前树的数据结构生成可打印的字符串，不加锁，需要在没有并发修改时调用
+     *
+     * @return 每层节点一行
+     */
+    public String printBTree() {
+        return BTreeDump.printLevels(rootNode, ConcurrentNode.access());
+    }
+}
@@ -0,0 +1,250 @@
+package com.skty.study.bTree;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * ConcurrentBTree的节点，布局与B+树节点相同：内部节点只保存分隔key和子节点，叶子节点保存key和value。
+ * 每个节点带一个版本锁（StampedLock），读操作不加锁，读取前后校验版本号，版本号变化时从根节点重新开始；
+ * 写操作在校验版本号的同时升级为写锁；从树中摘除的节点保持写锁不再释放，表示节点已经失效
+ * <p>
+ * 乐观读期间节点可能正在被修改，读到的元素数量和数组内容可能不一致，所有读方法都不能因此抛出异常，
+ * 读到不一致的数据时返回{@link #RETRY}，由调用方重新开始
+ *
+ * @author skty
+ */
+class ConcurrentNode<K extends Comparable<K>, V> {
+
+    /**
+     * 乐观读时读到不一致的数据，需要重新开始
+     */
+    static final int RETRY = Integer.MIN_VALUE;
+
+    /**
+     * 按层遍历时的访问方式
+     */
+    private static final BTreeDump.NodeAccess<ConcurrentNode<?, ?>> ACCESS = new BTreeDump.NodeAccess<ConcurrentNode<?, ?>>() {
+        @Override
+        public boolean isLeafNode(ConcurrentNode<?, ?> node) {
+            return node.isLeafNode();
+        }
+
+        @Override
+        public int getElementNum(ConcurrentNode<?, ?> node) {
+            return node.getElementNum();
+        }
+
+        @Override
+        public ConcurrentNode<?, ?> getChild(ConcurrentNode<?, ?> node, int index) {
+            return node.getChild(index);
+        }
+    };
+
+    /**
+     * 节点的版本锁
+     */
+    final StampedLock lock = new StampedLock();
+
+    /**
+     * 叶子节点为元素的key，内部节点为分隔key；节点最多容纳 阶-1 个key，满了之后先分裂再插入
+     */
+    private final Object[] keys;
+
+    /**
+     * 与keys一一对应的value，内部节点为null
+     */
+    private final Object[] values;
+
+    /**
+     * 子节点，叶子节点为null
+     */
+    private final ConcurrentNode<K, V>[] children;
+
+    /**
+     * 当前节点key的数量
+     */
+    private int elementNum;
+
+    @SuppressWarnings("unchecked")
+    ConcurrentNode(int nodeSize, boolean leafNode) {
+        this.keys = new Object[nodeSize - 1];
+        this.values = leafNode ? new Object[nodeSize - 1] : null;
+        this.children = leafNode ? null : new ConcurrentNode[nodeSize];
+    }
+
+    /**
+     * 按层遍历时的访问方式
+     */
+    @SuppressWarnings("unchecked")
+    static <K extends Comparable<K>, V> BTreeDump.NodeAccess<ConcurrentNode<K, V>> access() {
+        return (BTreeDump.NodeAccess<ConcurrentNode<K, V>>) (BTreeDump.NodeAccess<?>) ACCESS;
+    }
+
+    boolean isLeafNode() {
+        return children == null;
+    }
+
+    /**
+     * 节点是否已满，已满的节点需要先分裂才能插入
+     */
+    boolean isFull() {
+        return elementNum >= keys.length;
+    }
+
+    int getElementNum() {
+        return elementNum;
+    }
+
+    @SuppressWarnings("unchecked")
+    K getKey(int index) {
+        return (K) keys[index];
+    }
+
+    @SuppressWarnings("unchecked")
+    V getValue(int index) {
+        return (V) values[index];
+    }
+
+    void setValue(int index, V value) {
+        values[index] = value;
+    }
+
+    ConcurrentNode<K, V> getChild(int index) {
+        return children[index];
+    }
+
+    void setChild(int index, ConcurrentNode<K, V> child) {
+        children[index] = child;
+    }
+
+    /**
+     * 二分查找指定的key，乐观读期间也可以调用
+     *
+     * @param key 要查找的key
+     * @return 找到时返回key所在的索引；没找到时返回 -(插入位置) - 1；读到不一致的数据时返回RETRY
+     */
+    @SuppressWarnings("unchecked")
+    int searchKey(K key) {
+        int low = 0;
+        int high = Math.min(elementNum, keys.length) - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            K midKey = (K) keys[mid];
+            if (midKey == null) {//正在移动元素
+                return RETRY;
+            }
+            int compare = midKey.compareTo(key);
+            if (compare < 0) {
+                low = mid + 1;
+            } else if (compare > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * 内部节点中查找key所在的子节点（等于分隔key时进入右侧子节点），乐观读期间也可以调用
+     *
+     * @param key 要查找的key
+     * @return 子节点，读到不一致的数据时返回null
+     */
+    ConcurrentNode<K, V> childFor(K key) {
+        int index = searchKey(key);
+        if (index == RETRY) {
+            return null;
+        }
+        return children[index >= 0 ? index + 1 : -index - 1];
+    }
+
+    /**
+     * 在叶子节点的指定位置插入元素，需要持有写锁
+     */
+    void insertLeafElement(int index, Object key, Object value) {
+        int moveNum = elementNum - index;
+        System.arraycopy(keys, index, keys, index + 1, moveNum);
+        System.arraycopy(values, index, values, index + 1, moveNum);
+        keys[index] = key;
+        values[index] = value;
+        elementNum++;
+    }
+
+    /**
+     * 在内部节点的指定位置插入分隔key以及它的右子树，需要持有写锁
+     */
+    void insertSeparator(int index, Object key, ConcurrentNode<K, V> rightChild) {
+        int moveNum = elementNum - index;
+        System.arraycopy(keys, index, keys, index + 1, moveNum);
+        System.arraycopy(children, index + 1, children, index + 2, moveNum);
+        keys[index] = key;
+        children[index + 1] = rightChild;
+        elementNum++;
+    }
+
+    /**
+     * 删除叶子节点中指定位置的元素，需要持有写锁
+     */
+    void deleteLeafElement(int deleteIndex) {
+        int moveNum = elementNum - deleteIndex - 1;
+        System.arraycopy(keys, deleteIndex + 1, keys, deleteIndex, moveNum);
+        System.arraycopy(values, deleteIndex + 1, values, deleteIndex, moveNum);
+        keys[elementNum - 1] = null;
+        values[elementNum - 1] = null;
+        elementNum--;
+    }
+
+    /**
+     * 删除内部节点中指定位置的子树以及相邻的分隔key（不是第一个子树时删除左侧的分隔key，否则删除第一个分隔key），
+     * 相邻子树接管被删除子树的key范围，需要持有写锁
+     *
+     * @param childIndex 要删除的子树位置
+     */
+    void removeChild(int childIndex) {
+        int keyIndex = childIndex > 0 ? childIndex - 1 : 0;
+        System.arraycopy(keys, keyIndex + 1, keys, keyIndex, elementNum - keyIndex - 1);
+        System.arraycopy(children, childIndex + 1, children, childIndex, elementNum - childIndex);
+        keys[elementNum - 1] = null;
+        children[elementNum] = null;
+        elementNum--;
+    }
+
+    /**
+     * 节点分裂，需要持有当前节点的写锁。叶子节点将index及之后的元素移动到target中；
+     * 内部节点将index之后的分隔key和子树移动到target中，index位置的分隔key由调用方先取出并上升到父节点
+     *
+     * @param index  分裂位置
+     * @param target 分裂出的右侧节点（还没有发布，不需要加锁）
+     */
+    void moveRightHalfTo(int index, ConcurrentNode<K, V> target) {
+        if (isLeafNode()) {
+            int moveNum = elementNum - index;
+            System.arraycopy(keys, index, target.keys, 0, moveNum);
+            System.arraycopy(values, index, target.values, 0, moveNum);
+            Arrays.fill(keys, index, elementNum, null);
+            Arrays.fill(values, index, elementNum, null);
+            target.elementNum = moveNum;
+        } else {
+            int moveNum = elementNum - index - 1;
+            System.arraycopy(keys, index + 1, target.keys, 0, moveNum);
+            System.arraycopy(children, index + 1, target.children, 0, moveNum + 1);
+            Arrays.fill(keys, index, elementNum, null);
+            Arrays.fill(children, index + 1, elementNum + 1, null);
+            target.elementNum = moveNum;
+        }
+        elementNum = index;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < elementNum; i++) {
+            if (i > 0) {
+                builder.append(';');
+            }
+            builder.append(keys[i]);
+        }
+        return builder.toString();
+    }
+}
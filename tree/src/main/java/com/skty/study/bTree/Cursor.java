@@ -0,0 +1,229 @@
+package com.skty.study.bTree;
+
+import java.util.AbstractMap;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+
+/**
+ * B树的有序游标，从起始位置开始按key递增顺序逐个访问元素，直到超出结束位置。
+ * 节点中不保存父节点引用，游标使用数组记录从根节点到当前节点的路径，移动时不创建对象；
+ * 游标使用期间修改树（插入、删除等）后，游标的结果是不确定的
+ * <pre>
+ * Cursor&lt;K, V&gt; cursor = tree.range(from, true, to, false);
+ * while (cursor.next()) {
+ *     cursor.getKey();
+ *     cursor.getValue();
+ * }
+ * </pre>
+ *
+ * @author skty
+ */
+public class Cursor<K, V> {
+
+    /**
+     * 路径上的节点，nodes[0]为根节点，nodes[depth]为路径最下层的节点
+     */
+    private final Node<K, V>[] nodes;
+
+    /**
+     * 每一层节点中下一个要访问的元素位置，对于depth之上的节点，表示下层子节点访问完后要访问的元素
+     */
+    private final int[] indexes;
+
+    /**
+     * 路径最下层的深度
+     */
+    private int depth;
+
+    /**
+     * 结束位置的key，null表示不限制
+     */
+    private final K to;
+
+    /**
+     * 是否包含结束位置的key
+     */
+    private final boolean toInclusive;
+
+    /**
+     * key的比较器，null表示使用key的自然顺序
+     */
+    private final Comparator<? super K> comparator;
+
+    /**
+     * 当前元素所在的节点，null表示还没开始或者已经结束
+     */
+    private Node<K, V> currentNode;
+
+    /**
+     * 当前元素在节点中的位置
+     */
+    private int currentIndex;
+
+    /**
+     * 是否已经访问结束
+     */
+    private boolean finished;
+
+    /**
+     * 创建游标并定位到第一个不小于（不包含时为大于）from的元素之前
+     *
+     * @param rootNode      根节点
+     * @param height        树高
+     * @param from          起始位置的key，null表示从最小的元素开始
+     * @param fromInclusive 是否包含起始位置的key
+     * @param to            结束位置的key，null表示到最大的元素结束
+     * @param toInclusive   是否包含结束位置的key
+     * @param comparator    key的比较器，null表示使用key的自然顺序
+     */
+    @SuppressWarnings("unchecked")
+    Cursor(Node<K, V> rootNode, int height, K from, boolean fromInclusive, K to, boolean toInclusive, Comparator<? super K> comparator) {
+        this.nodes = new Node[height];
+        this.indexes = new int[height];
+        this.to = to;
+        this.toInclusive = toInclusive;
+        this.comparator = comparator;
+        if (from == null) {
+            descendLeftmost(rootNode, 0);
+        } else {
+            seek(rootNode, from, fromInclusive);
+        }
+    }
+
+    /**
+     * 从根节点向下查找起始位置，记录路径
+     */
+    private void seek(Node<K, V> node, K from, boolean fromInclusive) {
+        for (int level = 0; level < nodes.length; level++) {
+            nodes[level] = node;
+            depth = level;
+            int index = node.searchKey(from, comparator);
+            if (index >= 0) {//找到了起始key
+                if (fromInclusive) {
+                    indexes[level] = index;
+                } else {//从起始key的下一个元素开始，即右子树的最左侧元素
+                    indexes[level] = index + 1;
+                    if (!node.isLeafNode()) {
+                        descendLeftmost(node.getChild(index + 1), level + 1);
+                    }
+                }
+                return;
+            }
+            int insertIndex = -index - 1;
+            indexes[level] = insertIndex;//子树访问完后，下一个元素为插入位置的元素
+            if (node.isLeafNode()) {
+                return;
+            }
+            node = node.getChild(insertIndex);
+        }
+    }
+
+    /**
+     * 从指定的节点一直向下到最左侧的叶子节点，路径上每个节点都从第一个元素开始
+     */
+    private void descendLeftmost(Node<K, V> node, int level) {
+        while (true) {
+            nodes[level] = node;
+            indexes[level] = 0;
+            depth = level;
+            if (node.isLeafNode()) {
+                return;
+            }
+            node = node.getChild(0);
+            level++;
+        }
+    }
+
+    /**
+     * 移动到下一个元素
+     *
+     * @return true-移动成功，可以通过getKey、getValue获取当前元素/false-已经没有元素（超出结束位置）
+     */
+    @SuppressWarnings("unchecked")
+    public boolean next() {
+        if (finished) {
+            return false;
+        }
+        //当前节点的元素已经访问完，回到父节点
+        while (indexes[depth] >= nodes[depth].getElementNum()) {
+            if (depth == 0) {
+                return finish();
+            }
+            depth--;
+        }
+        Node<K, V> node = nodes[depth];
+        int index = indexes[depth];
+        if (to != null) {
+            int compare = comparator == null ? ((Comparable<? super K>) node.getKey(index)).compareTo(to)
+                    : comparator.compare(node.getKey(index), to);
+            if (compare > 0 || (compare == 0 && !toInclusive)) {
+                return finish();
+            }
+        }
+        currentNode = node;
+        currentIndex = index;
+        //下一个元素为当前元素的下一个位置，内部节点需要先访问当前元素的右子树
+        indexes[depth] = index + 1;
+        if (!node.isLeafNode()) {
+            descendLeftmost(node.getChild(index + 1), depth + 1);
+        }
+        return true;
+    }
+
+    private boolean finish() {
+        finished = true;
+        currentNode = null;
+        return false;
+    }
+
+    /**
+     * 当前元素的key，需要在next返回true之后调用
+     */
+    public K getKey() {
+        checkCurrent();
+        return currentNode.getKey(currentIndex);
+    }
+
+    /**
+     * 当前元素的value，需要在next返回true之后调用
+     */
+    public V getValue() {
+        checkCurrent();
+        return currentNode.getValue(currentIndex);
+    }
+
+    /**
+     * 将游标剩余的元素包装为Spliterator（按key有序、不可拆分），每个元素创建一个不可变的Entry
+     */
+    Spliterator<Map.Entry<K, V>> spliterator() {
+        int characteristics = Spliterator.ORDERED | Spliterator.SORTED | Spliterator.DISTINCT | Spliterator.NONNULL;
+        return new Spliterators.AbstractSpliterator<Map.Entry<K, V>>(Long.MAX_VALUE, characteristics) {
+            @Override
+            public boolean tryAdvance(Consumer<? super Map.Entry<K, V>> action) {
+                if (!next()) {
+                    return false;
+                }
+                action.accept(new AbstractMap.SimpleImmutableEntry<>(getKey(), getValue()));
+                return true;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public Comparator<? super Map.Entry<K, V>> getComparator() {
+                if (comparator != null) {
+                    return Map.Entry.comparingByKey(comparator);
+                }
+                return (e1, e2) -> ((Comparable<? super K>) e1.getKey()).compareTo(e2.getKey());
+            }
+        };
+    }
+
+    private void checkCurrent() {
+        if (currentNode == null) {
+            throw new IllegalStateException("游标没有指向元素，需要先调用next并返回true");
+        }
+    }
+}
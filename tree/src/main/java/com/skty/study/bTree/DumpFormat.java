@@ -0,0 +1,24 @@
+package com.skty.study.bTree;
+
+/**
+ * 树结构的输出格式，见{@link BTree#dump(Appendable, DumpFormat, int, int)}
+ *
+ * @author skty
+ */
+public enum DumpFormat {
+
+    /**
+     * 与printBTree相同：每层一行，节点之间用两个制表符分隔，节点内的key用分号分隔
+     */
+    TEXT,
+
+    /**
+     * Graphviz DOT格式，每个节点为一个record，父节点指向子节点，可以用dot -Tsvg生成图片
+     */
+    DOT,
+
+    /**
+     * JSON格式，按层输出每个节点的key和子节点数
+     */
+    JSON
+}
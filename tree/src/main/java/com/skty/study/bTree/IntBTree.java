@@ -0,0 +1,250 @@
+package com.skty.study.bTree;
+
+import java.util.Arrays;
+
+/**
+ * key为int的B树，节点中的key保存在int[]中，value和子节点保存在并列的数组中，
+ * 不再为每个元素创建Element对象和装箱的key
+ *
+ * @author skty
+ */
+public class IntBTree<V> {
+    /**
+     * b数的阶
+     */
+    private final int size;
+
+    /**
+     * 树高
+     */
+    private int height;
+
+    /**
+     * 当前数的根节点
+     */
+    private IntNode<V> rootNode;
+
+    /**
+     * 从根节点向下查找时经过的节点，用于分裂和下溢时回到父节点（节点中不保存父节点引用）
+     */
+    private IntNode<V>[] pathNodes;
+
+    /**
+     * 查找路径上每个节点中进入下一层子节点的位置
+     */
+    private int[] pathIndexes;
+
+    /**
+     * 创建一颗B树
+     *
+     * @param size 树的阶。大于2
+     */
+    @SuppressWarnings("unchecked")
+    public IntBTree(int size) {
+        if (size > 2) {
+            this.size = size;
+            rootNode = new IntNode<>(size, true);
+            height = 1;//树高为1
+            pathNodes = new IntNode[4];
+            pathIndexes = new int[4];
+        } else {
+            throw new IllegalArgumentException("B树的阶必须大于2");
+        }
+    }
+
+    /**
+     * 新增数据
+     *
+     * @param key   指定key
+     * @param value 指定的value
+     * @return true:不存在该元素，已经新增进去  false:该元素已经存在树中，用新的value替换旧的value
+     */
+    public boolean insert(int key, V value) {
+        IntNode<V> node = rootNode;
+        int depth = 0;
+        while (true) {
+            int index = node.searchKey(key);
+            if (index >= 0) {//元素已经存在，替换value
+                node.setValue(index, value);
+                return false;
+            }
+            int insertIndex = -index - 1;
+            if (node.isLeafNode()) {
+                node.insertElement(insertIndex, key, value, null);
+                afterElementInsert(node, depth);
+                return true;
+            }
+            pushPath(depth++, node, insertIndex);
+            node = node.getChild(insertIndex);
+        }
+    }
+
+    /**
+     * 查找B树，获取指定key对应的value
+     *
+     * @param key 指定的key
+     * @return 对应的value，没有返回null
+     */
+    public V find(int key) {
+        IntNode<V> node = rootNode;
+        while (true) {
+            int index = node.searchKey(key);
+            if (index >= 0) {
+                return node.getValue(index);
+            }
+            if (node.isLeafNode()) {
+                return null;
+            }
+            node = node.getChild(-index - 1);
+        }
+    }
+
+    /**
+     * 删除元素
+     *
+     * @param key 要删除的key
+     * @return true:找到元素并对其进行了删除 ，false:元素不存在这棵树上
+     */
+    public boolean delete(int key) {
+        IntNode<V> node = rootNode;
+        int depth = 0;
+        int index;
+        while ((index = node.searchKey(key)) < 0) {
+            if (node.isLeafNode()) {
+                return false;
+            }
+            int childIndex = -index - 1;
+            pushPath(depth++, node, childIndex);
+            node = node.getChild(childIndex);
+        }
+        if (!node.isLeafNode()) {
+            //内部节点，使用前驱元素（左子树中最大的元素）替换被删除元素，再从叶子节点中删除前驱元素
+            IntNode<V> innerNode = node;
+            pushPath(depth++, node, index);
+            node = node.getChild(index);
+            while (!node.isLeafNode()) {
+                int last = node.getElementNum();
+                pushPath(depth++, node, last);
+                node = node.getChild(last);
+            }
+            int last = node.getElementNum() - 1;
+            innerNode.setElement(index, node.getKey(last), node.getValue(last));
+            index = last;
+        }
+        node.deleteElement(index);
+        afterElementDelete(node, depth);
+        return true;
+    }
+
+    /**
+     * 元素插入完成后判断节点是否需要分裂，分裂后中间元素上升到父节点，父节点继续判断，直到不再分裂
+     *
+     * @param node  新增了元素的节点
+     * @param depth node在查找路径中的深度
+     */
+    private void afterElementInsert(IntNode<V> node, int depth) {
+        while (node.needDivide()) {
+            int middleIndex = node.getElementNum() / 2;
+            int middleKey = node.getKey(middleIndex);
+            V middleValue = node.getValue(middleIndex);
+            IntNode<V> newRightNode = new IntNode<>(size, node.isLeafNode());
+            node.moveRightHalfTo(middleIndex, newRightNode);
+            if (depth == 0) {//分裂到了根节点，生成新的根节点，树高增加
+                IntNode<V> newRoot = new IntNode<>(size, false);
+                newRoot.setChild(0, node);
+                newRoot.insertElement(0, middleKey, middleValue, newRightNode);
+                rootNode = newRoot;
+                height++;
+                return;
+            }
+            depth--;
+            IntNode<V> parentNode = pathNodes[depth];
+            parentNode.insertElement(pathIndexes[depth], middleKey, middleValue, newRightNode);
+            node = parentNode;
+        }
+    }
+
+    /**
+     * 元素删除后判断节点是否需要下溢，优先从兄弟节点借元素，无法借时与兄弟节点合并，合并后父节点继续判断
+     *
+     * @param node  删除了元素的节点
+     * @param depth node在查找路径中的深度
+     */
+    private void afterElementDelete(IntNode<V> node, int depth) {
+        while (depth > 0 && node.lowerThanEleLowestLimit()) {
+            depth--;
+            IntNode<V> parentNode = pathNodes[depth];
+            int childIndex = pathIndexes[depth];
+            IntNode<V> leftSibling = childIndex > 0 ? parentNode.getChild(childIndex - 1) : null;
+            IntNode<V> rightSibling = childIndex < parentNode.getElementNum() ? parentNode.getChild(childIndex + 1) : null;
+            if (leftSibling != null && leftSibling.moreThanLowestLimit()) {//从左侧借，右旋转
+                rotateRight(leftSibling, parentNode, childIndex - 1, node);
+                return;
+            }
+            if (rightSibling != null && rightSibling.moreThanLowestLimit()) {//从右侧借,左旋转
+                rotateLeft(rightSibling, parentNode, childIndex, node);
+                return;
+            }
+            if (leftSibling != null) {//与左兄弟节点合并
+                elementUnderflow(leftSibling, parentNode, childIndex - 1, node);
+            } else {//与右兄弟节点合并
+                elementUnderflow(node, parentNode, childIndex, rightSibling);
+            }
+            node = parentNode;
+        }
+        if (!rootNode.hasElement() && !rootNode.isLeafNode()) {//根节点的元素全部下溢，唯一的子节点成为根节点，降低树高
+            rootNode = rootNode.getChild(0);
+            height--;
+        }
+    }
+
+    /**
+     * 执行右旋转：左兄弟节点的最大元素上升到父节点，父节点中的元素下降到目标节点的最左侧
+     */
+    private void rotateRight(IntNode<V> fromNode, IntNode<V> parentNode, int middleIndex, IntNode<V> destinationNode) {
+        int last = fromNode.getElementNum() - 1;
+        IntNode<V> movedChild = fromNode.isLeafNode() ? null : fromNode.getChild(last + 1);
+        destinationNode.insertFirstElement(parentNode.getKey(middleIndex), parentNode.getValue(middleIndex), movedChild);
+        parentNode.setElement(middleIndex, fromNode.getKey(last), fromNode.getValue(last));
+        fromNode.deleteElement(last);
+    }
+
+    /**
+     * 执行左旋转：右兄弟节点的最小元素上升到父节点，父节点中的元素下降到目标节点的最右侧
+     */
+    private void rotateLeft(IntNode<V> fromNode, IntNode<V> parentNode, int middleIndex, IntNode<V> destinationNode) {
+        IntNode<V> movedChild = fromNode.isLeafNode() ? null : fromNode.getChild(0);
+        destinationNode.insertElement(destinationNode.getElementNum(), parentNode.getKey(middleIndex), parentNode.getValue(middleIndex), movedChild);
+        parentNode.setElement(middleIndex, fromNode.getKey(0), fromNode.getValue(0));
+        fromNode.deleteFirstElement();
+    }
+
+    /**
+     * 执行元素下溢：父节点中的中间元素下降，与左右两个子节点合并为一个节点
+     */
+    private void elementUnderflow(IntNode<V> leftChildNode, IntNode<V> parentNode, int middleIndex, IntNode<V> rightChildNode) {
+        leftChildNode.appendElements(parentNode.getKey(middleIndex), parentNode.getValue(middleIndex), rightChildNode);
+        parentNode.deleteElement(middleIndex);
+    }
+
+    /**
+     * 记录查找路径，路径数组不足时扩容
+     */
+    private void pushPath(int depth, IntNode<V> node, int index) {
+        if (depth == pathNodes.length) {
+            pathNodes = Arrays.copyOf(pathNodes, depth * 2);
+            pathIndexes = Arrays.copyOf(pathIndexes, depth * 2);
+        }
+        pathNodes[depth] = node;
+        pathIndexes[depth] = index;
+    }
+
+    /**
+     * 将当前B树的数据结构生成可打印的字符串
+     *
+     * @return 每层节点一行
+     */
+    public String printBTree() {
+        return BTreeDump.printLevels(rootNode, IntNode.access());
+    }
+}
@@ -0,0 +1,123 @@
+package com.skty.study.bTree;
+
+import java.util.Arrays;
+
+/**
+ * 耗时直方图：按纳秒数的二进制位数分桶（第i个桶记录[2^(i-1), 2^i)纳秒），记录时只需要一次numberOfLeadingZeros，不分配内存。
+ * 分位数返回所在桶的上限，误差在2倍以内，足够观察长尾和回归
+ * <p>
+ * 只能由一个线程记录，其他线程读取到的数据可能略有滞后
+ *
+ * @author skty
+ */
+public final class LatencyHistogram {
+
+    /**
+     * 桶的数量，long的每个二进制位一个桶，再加上0纳秒
+     */
+    private static final int BUCKET_NUM = 65;
+
+    private final long[] buckets;
+
+    private long count;
+
+    private long totalNanos;
+
+    private long maxNanos;
+
+    public LatencyHistogram() {
+        buckets = new long[BUCKET_NUM];
+    }
+
+    private LatencyHistogram(LatencyHistogram source) {
+        buckets = source.buckets.clone();
+        count = source.count;
+        totalNanos = source.totalNanos;
+        maxNanos = source.maxNanos;
+    }
+
+    /**
+     * 记录一次耗时
+     *
+     * @param nanos 耗时（纳秒），负数按0处理
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        buckets[64 - Long.numberOfLeadingZeros(nanos)]++;
+        count++;
+        totalNanos += nanos;
+        if (nanos > maxNanos) {
+            maxNanos = nanos;
+        }
+    }
+
+    /**
+     * 记录的次数
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * 平均耗时（纳秒），没有记录时为0
+     */
+    public double getMeanNanos() {
+        return count == 0 ? 0 : (double) totalNanos / count;
+    }
+
+    /**
+     * 最大耗时（纳秒）
+     */
+    public long getMaxNanos() {
+        return maxNanos;
+    }
+
+    /**
+     * 指定分位数的耗时上限（纳秒），没有记录时为0
+     *
+     * @param percentile 分位数，[0, 1]，例如0.99
+     */
+    public long getPercentileNanos(double percentile) {
+        if (!(percentile >= 0 && percentile <= 1)) {
+            throw new IllegalArgumentException("分位数必须在[0, 1]之间");
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(count * percentile));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_NUM; i++) {
+            seen += buckets[i];
+            if (seen >= target) {
+                //桶的上限不超过实际的最大值
+                return i == 0 ? 0 : Math.min(maxNanos, i == 64 ? Long.MAX_VALUE : (1L << i) - 1);
+            }
+        }
+        return maxNanos;
+    }
+
+    /**
+     * 复制当前的统计数据
+     */
+    public LatencyHistogram copy() {
+        return new LatencyHistogram(this);
+    }
+
+    /**
+     * 清空统计数据
+     */
+    public void reset() {
+        Arrays.fill(buckets, 0);
+        count = 0;
+        totalNanos = 0;
+        maxNanos = 0;
+    }
+
+    @Override
+    public String toString() {
+        return "{count=" + count + ", mean=" + Math.round(getMeanNanos()) + "ns, p50=" + getPercentileNanos(0.5)
+                + "ns, p99=" + getPercentileNanos(0.99) + "ns, max=" + maxNanos + "ns}";
+    }
+}
@@ -0,0 +1,369 @@
+package com.skty.study.bTree;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * 延迟删除的B树：删除只把元素的value替换为墓碑标记（不移动元素，不旋转、合并节点），find和遍历跳过墓碑；
+ * 墓碑数量达到阈值后，由后台整理线程按批调用{@link BTree#deleteAll(java.util.Collection)}真正删除并完成下溢处理。
+ * 删除的耗时与查找相同，合并节点的开销转移到整理线程，每批只持有一次写锁，批大小决定对读写的最长阻塞时间
+ * <p>
+ * 墓碑直接保存在元素的value位置，不需要额外的标记数组；value不能为null（null表示key不存在）。
+ * 删除后再次插入同一个key时直接覆盖墓碑，等待整理的key不重复，反复删除、插入同一批key时队列不会增长。
+ * 可以被多个线程同时使用，查找使用读锁
+ *
+ * @author skty
+ */
+public class LazyDeleteBTree<K, V> implements Closeable {
+
+    /**
+     * 墓碑标记，被删除元素的value
+     */
+    private static final Object TOMBSTONE = new Object();
+
+    /**
+     * 默认的整理阈值：墓碑数量
+     */
+    private static final int DEFAULT_COMPACT_THRESHOLD = 4096;
+
+    /**
+     * 默认的整理阈值：墓碑占全部元素的比例
+     */
+    private static final double DEFAULT_COMPACT_RATIO = 0.2;
+
+    /**
+     * 默认的每批整理数量
+     */
+    private static final int DEFAULT_BATCH_SIZE = 256;
+
+    private final BTree<K, Object> tree;
+
+    private final ReentrantReadWriteLock treeLock = new ReentrantReadWriteLock();
+
+    /**
+     * 墓碑数量达到该值时开始整理
+     */
+    private final int compactThreshold;
+
+    /**
+     * 墓碑占全部元素（包括墓碑）的比例达到该值时开始整理
+     */
+    private final double compactRatio;
+
+    /**
+     * 每次持有写锁时最多真正删除的key数量
+     */
+    private final int batchSize;
+
+    /**
+     * 等待整理的key，按删除顺序排列；整理时跳过已经重新插入的key
+     */
+    private final ArrayDeque<K> pendingKeys = new ArrayDeque<>();
+
+    /**
+     * pendingKeys中的key（按树的比较器判断相等），已经在队列中的key再次删除时不重复加入
+     */
+    private final TreeSet<K> pendingKeySet;
+
+    /**
+     * 树中的墓碑数量
+     */
+    private long tombstoneCount;
+
+    /**
+     * 整理线程等待和唤醒使用的监视器
+     */
+    private final Object compactorSignal = new Object();
+
+    private Thread compactor;
+
+    private volatile boolean running;
+
+    /**
+     * 使用默认的整理阈值创建按key的自然顺序排序的树
+     *
+     * @param size 树的阶。大于2
+     */
+    public LazyDeleteBTree(int size) {
+        this(size, null, DEFAULT_COMPACT_THRESHOLD, DEFAULT_COMPACT_RATIO, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * @param size             树的阶。大于2
+     * @param comparator       key的比较器，null表示使用key的自然顺序
+     * @param compactThreshold 墓碑数量达到该值时开始整理，大于0
+     * @param compactRatio     墓碑占全部元素的比例达到该值时开始整理，(0, 1]
+     * @param batchSize        每次持有写锁时最多真正删除的key数量，大于0
+     */
+    public LazyDeleteBTree(int size, Comparator<? super K> comparator, int compactThreshold, double compactRatio, int batchSize) {
+        if (compactThreshold <= 0) {
+            throw new IllegalArgumentException("整理阈值必须大于0");
+        }
+        if (!(compactRatio > 0 && compactRatio <= 1)) {
+            throw new IllegalArgumentException("整理比例必须在(0, 1]之间");
+        }
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("每批整理数量必须大于0");
+        }
+        this.tree = new BTree<>(size, comparator);
+        this.pendingKeySet = new TreeSet<>(comparator);
+        this.compactThreshold = compactThreshold;
+        this.compactRatio = compactRatio;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * 查找指定key对应的value，已经删除（墓碑）的key返回null
+     *
+     * @param key 指定的key
+     * @return 对应的value，没有返回null
+     */
+    @SuppressWarnings("unchecked")
+    public V find(K key) {
+        treeLock.readLock().lock();
+        try {
+            Object value = tree.find(key);
+            return value == TOMBSTONE ? null : (V) value;
+        } finally {
+            treeLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 新增数据，key已经被删除（墓碑）时直接覆盖墓碑
+     *
+     * @param key   指定key
+     * @param value 指定的value，不能为null
+     * @return true:不存在该元素（或者已经被删除），已经新增进去  false:该元素已经存在树中，用新元素替换旧元素
+     */
+    public boolean insert(K key, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("value不能为null");
+        }
+        treeLock.writeLock().lock();
+        try {
+            Object oldValue = tree.put(key, value);
+            if (oldValue == TOMBSTONE) {
+                tombstoneCount--;
+            }
+            return oldValue == null || oldValue == TOMBSTONE;
+        } finally {
+            treeLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 删除数据：只把value替换为墓碑，不改变树的结构，真正的删除由整理完成
+     *
+     * @param key 要删除的key
+     * @return true:删除成功  false:不存在该元素（或者已经被删除）
+     */
+    public boolean delete(K key) {
+        boolean deleted;
+        boolean compact;
+        treeLock.writeLock().lock();
+        try {
+            Object oldValue = tree.replace(key, TOMBSTONE);
+            deleted = oldValue != null && oldValue != TOMBSTONE;
+            if (deleted) {
+                tombstoneCount++;
+                if (pendingKeySet.add(key)) {
+                    pendingKeys.addLast(key);
+                }
+            }
+            compact = deleted && needCompact();
+        } finally {
+            treeLock.writeLock().unlock();
+        }
+        if (compact && running) {
+            synchronized (compactorSignal) {
+                compactorSignal.notify();
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * 未删除的元素数量
+     */
+    public long count() {
+        treeLock.readLock().lock();
+        try {
+            return tree.count() - tombstoneCount;
+        } finally {
+            treeLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 等待整理的墓碑数量
+     */
+    public long getTombstoneCount() {
+        treeLock.readLock().lock();
+        try {
+            return tombstoneCount;
+        } finally {
+            treeLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 等待整理的key数量（包括已经重新插入、整理时会跳过的key）
+     */
+    public int getPendingKeyCount() {
+        treeLock.readLock().lock();
+        try {
+            return pendingKeys.size();
+        } finally {
+            treeLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 在当前状态的快照上按key递增顺序遍历指定范围内未删除的元素，遍历期间不持有锁，参数见{@link BTree#stream(Object, boolean, Object, boolean)}
+     */
+    public Stream<Map.Entry<K, V>> stream(K from, boolean fromInclusive, K to, boolean toInclusive) {
+        return withoutTombstones(snapshot().stream(from, fromInclusive, to, toInclusive));
+    }
+
+    /**
+     * 在当前状态的快照上按key递增顺序遍历全部未删除的元素
+     */
+    public Stream<Map.Entry<K, V>> stream() {
+        return withoutTombstones(snapshot().stream());
+    }
+
+    @SuppressWarnings("unchecked")
+    private Stream<Map.Entry<K, V>> withoutTombstones(Stream<Map.Entry<K, Object>> entries) {
+        return entries.filter(entry -> entry.getValue() != TOMBSTONE).map(entry -> (Map.Entry<K, V>) (Map.Entry<K, ?>) entry);
+    }
+
+    private BTreeSnapshot<K, Object> snapshot() {
+        treeLock.writeLock().lock();
+        try {
+            return tree.snapshot();
+        } finally {
+            treeLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 在当前线程中整理全部墓碑，每批单独持有写锁
+     *
+     * @return 真正删除的元素数量
+     */
+    public long compact() {
+        long total = 0;
+        int deleted;
+        while ((deleted = compactBatch()) >= 0) {
+            total += deleted;
+        }
+        return total;
+    }
+
+    /**
+     * 整理一批墓碑：取出最多batchSize个等待整理的key，跳过已经重新插入的key，其余的一次性批量删除
+     *
+     * @return 真正删除的元素数量，没有等待整理的key时返回-1
+     */
+    private int compactBatch() {
+        treeLock.writeLock().lock();
+        try {
+            if (pendingKeys.isEmpty()) {
+                return -1;
+            }
+            List<K> keys = new ArrayList<>(Math.min(batchSize, pendingKeys.size()));
+            while (keys.size() < batchSize && !pendingKeys.isEmpty()) {
+                K key = pendingKeys.pollFirst();
+                pendingKeySet.remove(key);
+                if (tree.find(key) == TOMBSTONE) {
+                    keys.add(key);
+                }
+            }
+            int deleted = keys.isEmpty() ? 0 : tree.deleteAll(keys);
+            tombstoneCount -= deleted;
+            return deleted;
+        } finally {
+            treeLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 墓碑数量或者比例是否达到整理阈值，调用时需要持有锁
+     */
+    private boolean needCompact() {
+        return tombstoneCount >= compactThreshold || (tombstoneCount > 0 && tombstoneCount >= tree.count() * compactRatio);
+    }
+
+    private boolean compactionPending() {
+        treeLock.readLock().lock();
+        try {
+            return needCompact();
+        } finally {
+            treeLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 启动后台整理线程（守护线程）：墓碑达到阈值时被删除操作唤醒，按批整理到低于阈值；
+     * 另外每隔checkIntervalMillis检查一次
+     *
+     * @param checkIntervalMillis 定期检查的间隔（毫秒），大于0
+     */
+    public synchronized void startCompactor(long checkIntervalMillis) {
+        if (checkIntervalMillis <= 0) {
+            throw new IllegalArgumentException("检查间隔必须大于0");
+        }
+        if (compactor != null) {
+            throw new IllegalStateException("整理线程已经启动");
+        }
+        running = true;
+        compactor = new Thread(() -> {
+            while (running) {
+                //每批之间释放写锁，读写可以插入执行
+                if (compactionPending() && compactBatch() >= 0) {
+                    continue;
+                }
+                synchronized (compactorSignal) {
+                    try {
+                        if (running && !compactionPending()) {
+                            compactorSignal.wait(checkIntervalMillis);
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+        }, "btree-compactor");
+        compactor.setDaemon(true);
+        compactor.start();
+    }
+
+    /**
+     * 停止后台整理线程，剩余的墓碑保留在树中（仍然可以通过compact整理）
+     */
+    @Override
+    public synchronized void close() {
+        if (compactor == null) {
+            return;
+        }
+        running = false;
+        synchronized (compactorSignal) {
+            compactorSignal.notifyAll();
+        }
+        try {
+            compactor.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        compactor = null;
+    }
+}
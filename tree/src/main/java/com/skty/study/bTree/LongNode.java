@@ -0,0 +1,252 @@
+package com.skty.study.bTree;
+
+import java.util.Arrays;
+
+/**
+ * LongBTree的节点，key、value、子节点分别保存在连续的数组中，不再为每个元素创建Element对象
+ *
+ * @author skty
+ */
+class LongNode<V> {
+
+    /**
+     * 按层遍历时的访问方式
+     */
+    private static final BTreeDump.NodeAccess<LongNode<?>> ACCESS = new BTreeDump.NodeAccess<LongNode<?>>() {
+        @Override
+        public boolean isLeafNode(LongNode<?> node) {
+            return node.isLeafNode();
+        }
+
+        @Override
+        public int getElementNum(LongNode<?> node) {
+            return node.getElementNum();
+        }
+
+        @Override
+        public LongNode<?> getChild(LongNode<?> node, int index) {
+            return node.getChild(index);
+        }
+    };
+
+    /**
+     * 节点大小（树的阶），节点最多容纳nodeSize-1个元素，多出的一个位置用于分裂前的临时插入
+     */
+    private final int nodeSize;
+
+    /**
+     * 当前节点上所有元素的key
+     */
+    private final long[] keys;
+
+    /**
+     * 与keys一一对应的value
+     */
+    private final Object[] values;
+
+    /**
+     * 子节点，第i个子节点中的key都小于keys[i]，大于keys[i-1]；叶子节点为null
+     */
+    private final LongNode<V>[] children;
+
+    /**
+     * 当前节点元素数
+     */
+    private int elementNum;
+
+    @SuppressWarnings("unchecked")
+    LongNode(int nodeSize, boolean leafNode) {
+        this.nodeSize = nodeSize;
+        this.keys = new long[nodeSize];
+        this.values = new Object[nodeSize];
+        this.children = leafNode ? null : new LongNode[nodeSize + 1];
+    }
+
+    int getElementNum() {
+        return elementNum;
+    }
+
+    /**
+     * 按层遍历时的访问方式
+     */
+    @SuppressWarnings("unchecked")
+    static <V> BTreeDump.NodeAccess<LongNode<V>> access() {
+        return (BTreeDump.NodeAccess<LongNode<V>>) (BTreeDump.NodeAccess<?>) ACCESS;
+    }
+
+    boolean isLeafNode() {
+        return children == null;
+    }
+
+    boolean hasElement() {
+        return elementNum > 0;
+    }
+
+    long getKey(int index) {
+        return keys[index];
+    }
+
+    @SuppressWarnings("unchecked")
+    V getValue(int index) {
+        return (V) values[index];
+    }
+
+    void setValue(int index, V value) {
+        values[index] = value;
+    }
+
+    void setElement(int index, long key, Object value) {
+        keys[index] = key;
+        values[index] = value;
+    }
+
+    LongNode<V> getChild(int index) {
+        return children[index];
+    }
+
+    void setChild(int index, LongNode<V> child) {
+        children[index] = child;
+    }
+
+    /**
+     * 二分查找指定的key
+     *
+     * @return 找到时返回元素所在的索引；没找到时返回 -(插入位置) - 1
+     */
+    int searchKey(long key) {
+        return Arrays.binarySearch(keys, 0, elementNum, key);
+    }
+
+    /**
+     * 判断节点是否需要进行分裂
+     */
+    boolean needDivide() {
+        return elementNum > nodeSize - 1;
+    }
+
+    /**
+     * 元素数量的下限（阶/2 取上限-1）
+     */
+    int lowestLimit() {
+        return (nodeSize - 1) / 2;
+    }
+
+    /**
+     * 判断节点中的元素数量是否低于下限
+     */
+    boolean lowerThanEleLowestLimit() {
+        return elementNum < lowestLimit();
+    }
+
+    /**
+     * 判断节点中的元素数量是否大于下限（可以借出元素）
+     */
+    boolean moreThanLowestLimit() {
+        return elementNum > lowestLimit();
+    }
+
+    /**
+     * 在指定位置插入元素，rightChild作为新元素的右子树
+     */
+    void insertElement(int index, long key, Object value, LongNode<V> rightChild) {
+        int moveNum = elementNum - index;
+        if (moveNum > 0) {
+            System.arraycopy(keys, index, keys, index + 1, moveNum);
+            System.arraycopy(values, index, values, index + 1, moveNum);
+        }
+        keys[index] = key;
+        values[index] = value;
+        if (children != null) {
+            System.arraycopy(children, index + 1, children, index + 2, moveNum);
+            children[index + 1] = rightChild;
+        }
+        elementNum++;
+    }
+
+    /**
+     * 在最前面插入元素，leftChild作为新元素的左子树
+     */
+    void insertFirstElement(long key, Object value, LongNode<V> leftChild) {
+        System.arraycopy(keys, 0, keys, 1, elementNum);
+        System.arraycopy(values, 0, values, 1, elementNum);
+        keys[0] = key;
+        values[0] = value;
+        if (children != null) {
+            System.arraycopy(children, 0, children, 1, elementNum + 1);
+            children[0] = leftChild;
+        }
+        elementNum++;
+    }
+
+    /**
+     * 删除指定位置的元素以及它的右子树
+     */
+    void deleteElement(int index) {
+        int moveNum = elementNum - index - 1;
+        System.arraycopy(keys, index + 1, keys, index, moveNum);
+        System.arraycopy(values, index + 1, values, index, moveNum);
+        values[elementNum - 1] = null;
+        if (children != null) {
+            System.arraycopy(children, index + 2, children, index + 1, moveNum);
+            children[elementNum] = null;
+        }
+        elementNum--;
+    }
+
+    /**
+     * 删除第一个元素以及它的左子树
+     */
+    void deleteFirstElement() {
+        System.arraycopy(keys, 1, keys, 0, elementNum - 1);
+        System.arraycopy(values, 1, values, 0, elementNum - 1);
+        values[elementNum - 1] = null;
+        if (children != null) {
+            System.arraycopy(children, 1, children, 0, elementNum);
+            children[elementNum] = null;
+        }
+        elementNum--;
+    }
+
+    /**
+     * 将当前节点从index开始的元素（不包含index）和对应子树移动到空节点target中，index位置的元素由调用方上升到父节点
+     */
+    void moveRightHalfTo(int index, LongNode<V> target) {
+        int moveNum = elementNum - index - 1;
+        System.arraycopy(keys, index + 1, target.keys, 0, moveNum);
+        System.arraycopy(values, index + 1, target.values, 0, moveNum);
+        Arrays.fill(values, index, elementNum, null);
+        if (children != null) {
+            System.arraycopy(children, index + 1, target.children, 0, moveNum + 1);
+            Arrays.fill(children, index + 1, elementNum + 1, null);
+        }
+        target.elementNum = moveNum;
+        elementNum = index;
+    }
+
+    /**
+     * 将中间元素和右侧节点的所有元素追加到当前节点后面（节点合并）
+     */
+    void appendElements(long middleKey, Object middleValue, LongNode<V> rightNode) {
+        keys[elementNum] = middleKey;
+        values[elementNum] = middleValue;
+        int rightNum = rightNode.elementNum;
+        System.arraycopy(rightNode.keys, 0, keys, elementNum + 1, rightNum);
+        System.arraycopy(rightNode.values, 0, values, elementNum + 1, rightNum);
+        if (children != null) {
+            System.arraycopy(rightNode.children, 0, children, elementNum + 1, rightNum + 1);
+        }
+        elementNum += rightNum + 1;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < elementNum; i++) {
+            if (i > 0) {
+                builder.append(';');
+            }
+            builder.append(keys[i]);
+        }
+        return builder.toString();
+    }
+}
@@ -1,31 +1,48 @@
 package com.skty.study.bTree;
 
 import java.util.Arrays;
-import java.util.Objects;
-import java.util.Optional;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.Comparator;
+
+/**
+ * B树节点，key、value、子节点分别保存在连续的数组中（第i个元素的左子树为children[i]，右子树为children[i+1]），
+ * 元素移动只需要对数组进行System.arraycopy，不需要维护每个元素的索引和所在节点。
+ * 内部节点同时在childSizes中记录每个子树的元素总数（与children一起移动），用于按排名查找；
+ * 子树内部的元素数量变化时，由树负责更新查找路径上各节点中对应的子树元素数。
+ * 树指定了聚合函数时，内部节点还在childAggregates中记录每个子树的聚合值，维护方式与子树元素数相同
+ *
+ * @author skty
+ */
+class Node<K, V> {
 
-class Node<K extends Comparable<K>, V> {
+    /**
+     * 节点大小，当前节点所能容纳所有元素的大小（多出的一个位置用于分裂前的临时插入）
+     */
+    private final int nodeSize;
+
+    /**
+     * 当前节点上所有元素的key
+     */
+    private final Object[] keys;
 
     /**
-     * 节点大小，当前节点所能容纳所有元素的大小
+     * 与keys一一对应的value
      */
-    private int nodeSize;
+    private final Object[] values;
+
     /**
-     * 当前节点上的所有元素
+     * 子节点，第i个子节点中的key都小于keys[i]，大于keys[i-1]；叶子节点为null
      */
-    private Element<K, V>[] elements;
+    private final Node<K, V>[] children;
 
     /**
-     * 父节点
+     * 子树中的元素总数，childSizes[i]为children[i]子树中的元素数量；叶子节点为null
      */
-    private Node<K, V> parentNode;
+    private final long[] childSizes;
 
     /**
-     * 子节点
+     * 子树的聚合值，childAggregates[i]为children[i]子树中所有元素按顺序合并的结果；叶子节点或者树没有聚合函数时为null
      */
-    private Node<K, V> childNode;
+    private final Object[] childAggregates;
 
     /**
      * 当前节点元素数
@@ -33,435 +50,586 @@ class Node<K extends Comparable<K>, V> {
     private int elementNum;
 
     /**
-     * 当前节点类型
+     * 创建（或者从空闲列表复用）节点时树的写入代数，小于树当前代数的节点可能被快照共享，修改前需要先复制
      */
-    private NodeType nodeType;
+    private int generation;
 
     /**
-     * 当前节点的前驱左侧元素（第一个小于当前节点中所有元素的元素）
+     * @param nodeSize   节点大小
+     * @param leafNode   是否为叶子节点
+     * @param aggregated 是否记录子树的聚合值
+     * @param generation 树当前的写入代数
      */
-    private Element<K, V> predecessorElement;
+    @SuppressWarnings("unchecked")
+    Node(int nodeSize, boolean leafNode, boolean aggregated, int generation) {
+        this.nodeSize = nodeSize;
+        this.keys = new Object[nodeSize];
+        this.values = new Object[nodeSize];
+        this.children = leafNode ? null : new Node[nodeSize + 1];
+        this.childSizes = leafNode ? null : new long[nodeSize + 1];
+        this.childAggregates = leafNode || !aggregated ? null : new Object[nodeSize + 1];
+        this.generation = generation;
+    }
 
     /**
-     * 当前节点的后继右侧元素（第一个大于当前节点中所有元素的元素）
+     * 复制节点，子节点只复制引用
      */
-    private Element<K, V> successorElement;
+    private Node(Node<K, V> source, int generation) {
+        this.nodeSize = source.nodeSize;
+        this.keys = source.keys.clone();
+        this.values = source.values.clone();
+        this.children = source.children == null ? null : source.children.clone();
+        this.childSizes = source.childSizes == null ? null : source.childSizes.clone();
+        this.childAggregates = source.childAggregates == null ? null : source.childAggregates.clone();
+        this.elementNum = source.elementNum;
+        this.generation = generation;
+    }
+
+    int getGeneration() {
+        return generation;
+    }
 
     /**
-     * 节点类型
+     * 复制出一个属于指定代数的节点，用于修改被快照共享的节点（写时复制）
+     *
+     * @param generation 树当前的写入代数
+     * @return 内容相同的新节点
      */
-    enum NodeType {
-        ROOTNODE, LEAFNODE, MIDDLENODE;
+    Node<K, V> copy(int generation) {
+        return new Node<>(this, generation);
     }
 
-    @SuppressWarnings("unchecked")
-    Node(int nodeSize, NodeType nodeType, Element<K, V>[] elements) {
-        this.elements = new Element[nodeSize];//声名空间
-        this.nodeSize = nodeSize;
-        this.nodeType = nodeType;
-        if (elements != null) {
-            this.elementNum = elements.length;
-            //将传入元素与当前节点关联
-            for (int i = 0; i < elementNum; i++) {
-                this.elements[i] = elements[i];
-                elements[i].setCurrentNode(this);
-                elements[i].setIndex(i);
+    /**
+     * 清空节点中的元素和子树引用，放入空闲列表前调用（被合并的节点中仍然保留着已经移走的元素）
+     */
+    void clear() {
+        Arrays.fill(keys, 0, elementNum, null);
+        Arrays.fill(values, 0, elementNum, null);
+        if (children != null) {
+            Arrays.fill(children, 0, elementNum + 1, null);
+            Arrays.fill(childSizes, 0, elementNum + 1, 0);
+            if (childAggregates != null) {
+                Arrays.fill(childAggregates, 0, elementNum + 1, null);
             }
         }
-    }
-
-    int getNodeSize() {
-        return nodeSize;
+        elementNum = 0;
     }
 
     /**
-     * 获取所有有值的元素
+     * 第一个没有清空的空闲位置：elementNum之后的key、value以及elementNum+1之后的子节点都应当为null，
+     * 残留的引用会让已经删除的元素无法被回收
      *
-     * @return elementNum数量的元素
+     * @return 残留引用的位置，全部清空时返回-1
      */
-    Element<K, V>[] getElements() {
-        return Arrays.copyOf(elements, elementNum);
+    int firstStaleSlot() {
+        for (int i = elementNum; i < keys.length; i++) {
+            if (keys[i] != null || values[i] != null) {
+                return i;
+            }
+        }
+        if (children != null) {
+            for (int i = elementNum + 1; i < children.length; i++) {
+                if (children[i] != null) {
+                    return i;
+                }
+            }
+        }
+        return -1;
     }
 
-    Node<K, V> getParentNode() {
-        return parentNode;
+    /**
+     * 从空闲列表中取出复用时，设置为树当前的写入代数
+     */
+    void setGeneration(int generation) {
+        this.generation = generation;
     }
 
-    void setParentNode(Node<K, V> parentNode) {
-        this.parentNode = parentNode;
+    int getElementNum() {
+        return elementNum;
     }
 
-    Node<K, V> getChildNode() {
-        return childNode;
+    /**
+     * 是否为叶子节点
+     *
+     * @return true/false
+     */
+    boolean isLeafNode() {
+        return children == null;
     }
 
-    void setChildNode(Node<K, V> childNode) {
-        this.childNode = childNode;
+    /**
+     * 判断当前节点是否存在元素
+     *
+     * @return true/false
+     */
+    boolean hasElement() {
+        return elementNum > 0;
     }
 
-    int getElementNum() {
-        return elementNum;
+    @SuppressWarnings("unchecked")
+    K getKey(int index) {
+        return (K) keys[index];
     }
 
-    void setElementNum(int elementNum) {
-        this.elementNum = elementNum;
+    @SuppressWarnings("unchecked")
+    V getValue(int index) {
+        return (V) values[index];
     }
 
-    Element<K, V> getElement(int index) {
-        if (index < elementNum) {
-            return elements[index];
-        } else {
-            throw new IndexOutOfBoundsException("当前所取得节点超出节点元素大小");
-        }
+    void setValue(int index, V value) {
+        values[index] = value;
     }
 
     /**
-     * 获取指定节点索引的左边节点
-     *
-     * @param index 目标索引
-     * @return 所有左边子节点构成的数组
+     * 使用指定的key和value替换指定位置的元素，子树保持不变
      */
-    Element<K, V>[] getLeftElementFromIndex(int index) {
-        return Arrays.copyOfRange(elements, 0, index);
+    void replaceElement(int index, Object key, Object value) {
+        keys[index] = key;
+        values[index] = value;
     }
 
-    /**
-     * 获取指定节点索引的右边节点
-     *
-     * @param index 目标索引
-     * @return 所有右边子节点构成的数组
-     */
-    Element<K, V>[] getRightElementFromIndex(int index) {
-        return Arrays.copyOfRange(elements, index + 1, elementNum);
+    Node<K, V> getChild(int index) {
+        return children[index];
     }
 
     /**
-     * 获取节点的逻辑大小
-     *
-     * @return 返回当前实际大小-1
+     * 替换子节点引用，不修改记录的子树元素数（用于复制出的内容相同的节点，新子树需要另外调用setChildSize）
      */
-    int getLogicSize() {
-        return nodeSize - 1;
+    void setChild(int index, Node<K, V> child) {
+        children[index] = child;
     }
 
-    NodeType getNodeType() {
-        return nodeType;
+    long getChildSize(int index) {
+        return childSizes[index];
+    }
+
+    void setChildSize(int index, long childSize) {
+        childSizes[index] = childSize;
     }
 
     /**
-     * 是否为叶子节点
-     *
-     * @return true/false
+     * 子树中的元素增加（delta为负数时减少）后，更新记录的子树元素数
      */
-    boolean isLeafNode() {
-        return nodeType == NodeType.LEAFNODE;
+    void addChildSize(int index, long delta) {
+        childSizes[index] += delta;
     }
 
-    boolean isRootNode() {
-        return nodeType == NodeType.ROOTNODE;
+    /**
+     * 前index个子树的元素总数，叶子节点为0
+     */
+    long childSizesBefore(int index) {
+        if (childSizes == null) {
+            return 0;
+        }
+        long sum = 0;
+        for (int i = 0; i < index; i++) {
+            sum += childSizes[i];
+        }
+        return sum;
     }
 
-    boolean isMiddleNode() {
-        return nodeType == NodeType.MIDDLENODE;
+    /**
+     * 以当前节点为根的子树中的元素总数
+     */
+    long totalSize() {
+        return elementNum + childSizesBefore(elementNum + 1);
     }
 
     /**
-     * 判断节点是否需要进行分裂（节点元素数等于阶数减一，需要进行分裂，其他情况不需要）
-     *
-     * @return 是否需要分裂
+     * 记录的子树聚合值，不记录聚合值的节点返回null
      */
-    boolean needDivide() {
-        return elementNum > nodeSize - 1;
+    Object getChildAggregate(int index) {
+        return childAggregates == null ? null : childAggregates[index];
+    }
+
+    void setChildAggregate(int index, Object aggregate) {
+        childAggregates[index] = aggregate;
     }
 
     /**
-     * 判断节点中的元素数量是否符合下限（ 阶/2 取上限-1）
+     * 以当前节点为根的子树中所有元素的聚合值，内部节点直接使用记录的子树聚合值，不访问子节点
      *
-     * @return true-低于下限/false
+     * @param aggregator 树的聚合函数
+     * @return 按key顺序合并的结果
      */
-    boolean lowerThanEleLowestLimit() {
-        //阶/2 取上限-1
-        int limit = (int) (Math.ceil((double) nodeSize / 2) - 1);
-        return elementNum < limit;
+    Object aggregate(Aggregator<K, V, Object> aggregator) {
+        if (childAggregates == null) {
+            return aggregateElements(aggregator, 0, elementNum);
+        }
+        if (elementNum == 0) {//没有元素（bulkLoad过程中最右侧的节点），只有一个子树
+            return childAggregates[0];
+        }
+        Object result = aggregator.combine(childAggregates[0], aggregateElements(aggregator, 0, elementNum));
+        return aggregator.combine(result, childAggregates[elementNum]);
     }
 
     /**
-     * 判断节点中的元素数量是否丰满（元素数量大于 阶/2 取上限-1）大于元素最小限制
-     *
-     * @return true-低于下限/false
+     * 第from ~ to-1个元素以及它们之间的子树（children[from+1] ~ children[to-1]）的聚合值，不包含两侧的子树
      */
-    boolean moreThanLowestLimit() {
-        //阶/2 取上限-1
-        int limit = (int) (Math.ceil((double) nodeSize / 2) - 1);
-        return elementNum > limit;
+    @SuppressWarnings("unchecked")
+    Object aggregateElements(Aggregator<K, V, Object> aggregator, int from, int to) {
+        Object result = aggregator.identity();
+        for (int i = from; i < to; i++) {
+            if (i > from && childAggregates != null) {
+                result = aggregator.combine(result, childAggregates[i]);
+            }
+            result = aggregator.combine(result, aggregator.of((K) keys[i], (V) values[i]));
+        }
+        return result;
     }
 
     /**
-     * 获取当前节点中的中间元素, 如果为偶数，就直接取上限
+     * 在当前节点的有效元素（0 ~ elementNum-1）中二分查找指定的key，直接访问内部数组，不进行复制
      *
-     * @return 返回中间元素
+     * @param key        要查找的key
+     * @param comparator key的比较器，null表示使用key的自然顺序
+     * @return 找到时返回元素所在的索引；没找到时返回 -(插入位置) - 1，插入位置为第一个大于key的元素的索引，也是继续向下查找的子节点位置
      */
-    Element<K, V> getMiddleElement() {
-        //上面这种是取前面的，要先除以2取上限，之后再减一，比较麻烦，用下面的取后面的将会更方便些
-       /* int limit = (int) (Math.ceil((double) nodeSize / 2) - 1);
-        return getElement(limit);*/
-        return getElement(elementNum / 2);
+    int searchKey(K key, Comparator<? super K> comparator) {
+        return searchKey(key, 0, elementNum, comparator);
     }
 
-
     /**
-     * 在指定的位置插入元素
+     * 在指定范围的元素中二分查找指定的key
      *
-     * @param element 要插入的元素
-     * @param index   指定的位置
+     * @param key        要查找的key
+     * @param from       起始位置
+     * @param to         结束位置（不包含）
+     * @param comparator key的比较器，null表示使用key的自然顺序
+     * @return 找到时返回元素所在的索引；没找到时返回 -(插入位置) - 1
      */
-    void insertElement(Element<K, V> element, int index) {
-        if (index < nodeSize) {
-            if (index >= elementNum) {//插到当前最后一个元素后面
-                elements[index] = element;
+    @SuppressWarnings("unchecked")
+    int searchKey(K key, int from, int to, Comparator<? super K> comparator) {
+        if (comparator != null) {
+            return searchKeyUsing(key, from, to, comparator);
+        }
+        //自然顺序单独一个循环，compareTo调用点只会看到key的实际类型，方便JIT内联
+        int low = from;
+        int high = to - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int compare = ((Comparable<? super K>) keys[mid]).compareTo(key);
+            if (compare < 0) {
+                low = mid + 1;
+            } else if (compare > 0) {
+                high = mid - 1;
             } else {
-                Element<K, V>[] moveElements = Arrays.copyOfRange(elements, index, elementNum);
-                Stream.of(moveElements).forEach(e -> e.setIndex(e.getIndex() + 1));//将后移的元素的索引位置也进行+1
-                System.arraycopy(moveElements, 0, elements, index + 1, moveElements.length);
-                elements[index] = element;
+                return mid;
             }
-            element.setIndex(index);
-            element.setCurrentNode(this);
+        }
+        return -(low + 1);
+    }
 
-            //复制左右子树
-            if (index == 0) {//第一个元素
-                if (elements[index + 1] != null) {
-                    element.setRightNode(elements[index + 1].getLeftNode());
-                }
-            } else if (index == elementNum) {//最后一个元素
-                if (elements[index - 1] != null) {
-                    element.setLeftNode(elements[index - 1].getRightNode());
-                }
-            } else {//中间元素
-                if (elements[index + 1] != null) {
-                    element.setRightNode(elements[index + 1].getLeftNode());
-                }
-                if (elements[index - 1] != null) {
-                    element.setLeftNode(elements[index - 1].getRightNode());
-                }
+    @SuppressWarnings("unchecked")
+    private int searchKeyUsing(K key, int from, int to, Comparator<? super K> comparator) {
+        int low = from;
+        int high = to - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int compare = comparator.compare((K) keys[mid], key);
+            if (compare < 0) {
+                low = mid + 1;
+            } else if (compare > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
             }
-
-            elementNum++;
-        } else {
-            throw new IllegalArgumentException("向节点插入元素时，不合法的插入的位置");
         }
+        return -(low + 1);
     }
 
     /**
-     * 将多个元素插入到指定的位置，如果指定位置上存在元素，则会将原有元素和后面元素后移
+     * 判断节点是否需要进行分裂（节点元素数等于阶数，需要进行分裂，其他情况不需要）
      *
-     * @param elements       要插入的元素数组
-     * @param index          指定要插入的位置
-     * @param useCurrentNode 对连接位置的元素是否使用当前节点的子树
-     */
-    void insertElement(Element<K, V>[] elements, int index, boolean useCurrentNode) {
-        int length = elements.length;
-        if (length + elementNum > nodeSize) {
-            throw new IllegalArgumentException("插入多个元素到指定节点后，节点数据超出最大值");
-        }
-        if (index > elementNum) {
-            throw new IllegalArgumentException("不允许间隔空值进行插入");
-        }
-
-        if (index == elementNum) {//插入到最后面
-            appendElements(useCurrentNode, elements);
-        } else {
-            int i = index;
-            for (Element<K, V> e : elements) {
-                e.setCurrentNode(this);
-                e.setIndex(i);
-                //左右子树的父节点也进行修改
-                Optional.ofNullable(e.getLeftNode()).ifPresent(left -> left.setParentNode(this));
-                Optional.ofNullable(e.getRightNode()).ifPresent(right -> right.setParentNode(this));
-                i++;
-            }
-            Element<K, V>[] moveElements = Arrays.copyOfRange(this.elements, index, elementNum);
-            Stream.of(moveElements).forEach(e -> e.setIndex(e.getIndex() + length));//将后移的元素的索引位置也进行移动
-            System.arraycopy(elements, 0, this.elements, index, length);//先将插入的元素进行先插入
-            System.arraycopy(moveElements, 0, this.elements, index + length, moveElements.length);//将后面需要移动的元素也进行转移
-
-            Element<K, V> endElement = elements[length - 1];//最后一个插入的元素
-            Element<K, V> firstElement = elements[0];//第一个插入的元素
-            if (index == 0) {//插入到最前面
-                if (useCurrentNode) {
-                    endElement.setRightNode(endElement.getNextElement().getLeftNode());
-                } else {
-                    endElement.getNextElement().setLeftNode(endElement.getRightNode());
-                }
-            } else {//插入到中间位置
-                if (useCurrentNode) {
-                    firstElement.setLeftNode(firstElement.getPreElement().getRightNode());
-                    endElement.setRightNode(endElement.getNextElement().getLeftNode());
-                } else {
-                    firstElement.getPreElement().setRightNode(firstElement.getLeftNode());
-                    endElement.getNextElement().setLeftNode(endElement.getRightNode());
-                }
-            }
-        }
+     * @return 是否需要分裂
+     */
+    boolean needDivide() {
+        return elementNum > nodeSize - 1;
     }
 
+    /**
+     * 节点中元素数量的下限（ 阶/2 取上限-1），也是合并阈值的最大值
+     */
+    int lowestLimit() {
+        return (nodeSize - 1) / 2;
+    }
 
     /**
-     * 使用指定的元素替换指定索引位置的元素
+     * 判断节点中的元素数量是否低于合并阈值（默认为下限 阶/2 取上限-1，放宽时更小）
      *
-     * @param element 操作的元素
-     * @param index   要替换元素的索引
+     * @param mergeThreshold 合并阈值
+     * @return true-低于阈值/false
      */
-    void replaceElement(Element<K, V> element, int index) {
-        Element<K, V> oldElement = elements[index];
-        element.setLeftNode(oldElement.getLeftNode());
-        element.setRightNode(oldElement.getRightNode());
-        element.setIndex(index);
-        element.setCurrentNode(this);
-        elements[index] = element;
+    boolean lowerThanEleLowestLimit(int mergeThreshold) {
+        return elementNum < mergeThreshold;
     }
 
+    /**
+     * 判断节点中的元素数量是否丰满，借出指定数量的元素后仍然不低于合并阈值
+     *
+     * @param lendNum        要借出的元素数量
+     * @param mergeThreshold 合并阈值
+     * @return true-可以借出元素/false
+     */
+    boolean moreThanLowestLimit(int lendNum, int mergeThreshold) {
+        return elementNum - lendNum >= mergeThreshold;
+    }
 
     /**
-     * 在当前节点插入指定元素,选择适当的顺序进行排序操作
+     * 在指定的位置插入元素，原有元素和后面元素后移
      *
-     * @param element 要插入的元素
-     */
-    void insertElement(Element<K, V> element) {
-        if (elementNum == 0) {
-            insertElement(element, 0);
-        } else {
-            for (int i = 0; i < elementNum; i++) {
-                K key = element.getKey();
-                int compare = element.compareWith(elements[i]);
-                if (compare > 0) {//值大于当前元素
-                    if (i == elementNum - 1) {//已经比当前节点的最后一个元素都大，直接插入到最后
-                        insertElement(element, elementNum);
-                        return;
-                    } else {//中间元素，需要判断要插入的元素是不是比当前元素大，比当前元素的后面元素小，如果是则插入到当前元素的后面，否则继续对下一个元素进行判断
-                        if (elements[i + 1].keyGreaterThan(key)) {
-                            insertElement(element, i + 1);
-                            return;
-                        }
-                    }
-                } else if (compare < 0) {//值小于当前元素,则表示要将元素插入到当前元素的左侧，要将当前元素以及后面的元素全部后移(可能当前元素为第一个元素，则插入到索引为0的地方)
-                    insertElement(element, Math.max(i - 1, 0));
-                    return;
-                } else {//元素相等，直接替换当前元素(当前节点元素数量保持不变)
-                    this.replaceElement(element, i);
-                    return;
-                }
+     * @param index          指定的位置
+     * @param key            插入元素的key
+     * @param value          插入元素的value
+     * @param rightChild     插入元素的右子树（叶子节点为null）
+     * @param rightSize      右子树中的元素总数（叶子节点为0）
+     * @param rightAggregate 右子树的聚合值（叶子节点或者没有聚合函数时为null）
+     */
+    void insertElement(int index, Object key, Object value, Node<K, V> rightChild, long rightSize, Object rightAggregate) {
+        int moveNum = elementNum - index;
+        if (moveNum > 0) {
+            System.arraycopy(keys, index, keys, index + 1, moveNum);
+            System.arraycopy(values, index, values, index + 1, moveNum);
+        }
+        keys[index] = key;
+        values[index] = value;
+        if (children != null) {
+            System.arraycopy(children, index + 1, children, index + 2, moveNum);
+            System.arraycopy(childSizes, index + 1, childSizes, index + 2, moveNum);
+            children[index + 1] = rightChild;
+            childSizes[index + 1] = rightSize;
+            if (childAggregates != null) {
+                System.arraycopy(childAggregates, index + 1, childAggregates, index + 2, moveNum);
+                childAggregates[index + 1] = rightAggregate;
             }
         }
+        elementNum++;
     }
 
     /**
-     * 判断当前节点是否存在元素
+     * 在最前面插入元素
      *
-     * @return true/false
+     * @param key           插入元素的key
+     * @param value         插入元素的value
+     * @param leftChild     插入元素的左子树（叶子节点为null）
+     * @param leftSize      左子树中的元素总数（叶子节点为0）
+     * @param leftAggregate 左子树的聚合值（叶子节点或者没有聚合函数时为null）
      */
-    boolean hasElement() {
-        return elementNum > 0;
+    void insertFirstElement(Object key, Object value, Node<K, V> leftChild, long leftSize, Object leftAggregate) {
+        System.arraycopy(keys, 0, keys, 1, elementNum);
+        System.arraycopy(values, 0, values, 1, elementNum);
+        keys[0] = key;
+        values[0] = value;
+        if (children != null) {
+            System.arraycopy(children, 0, children, 1, elementNum + 1);
+            System.arraycopy(childSizes, 0, childSizes, 1, elementNum + 1);
+            children[0] = leftChild;
+            childSizes[0] = leftSize;
+            if (childAggregates != null) {
+                System.arraycopy(childAggregates, 0, childAggregates, 1, elementNum + 1);
+                childAggregates[0] = leftAggregate;
+            }
+        }
+        elementNum++;
     }
 
     /**
-     * 删除当前节点中指定索引位置的元素
+     * 删除当前节点中指定索引位置的元素以及它的右子树
      *
      * @param deleteIndex 要删除的位置
      */
     void deleteElement(int deleteIndex) {
-        if (deleteIndex >= 0 && deleteIndex < elementNum) {
-            //删除最后一个元素,直接将最后一个元素置空；删除中间元素需要进行元素移动
-            if (deleteIndex == elementNum - 1) {
-                elements[deleteIndex] = null;
-            } else {
-                Element<K, V>[] elements = Arrays.copyOfRange(this.elements, deleteIndex + 1, elementNum);
-                Stream.of(elements).forEach(element -> element.setIndex(element.getIndex() - 1));//将移动的元素索引位置进行减一操作
-                System.arraycopy(elements, 0, this.elements, deleteIndex, elements.length);
-                this.elements[elementNum - 1] = null;//将最后一个元素进行删除
+        int moveNum = elementNum - deleteIndex - 1;
+        System.arraycopy(keys, deleteIndex + 1, keys, deleteIndex, moveNum);
+        System.arraycopy(values, deleteIndex + 1, values, deleteIndex, moveNum);
+        keys[elementNum - 1] = null;
+        values[elementNum - 1] = null;
+        if (children != null) {
+            System.arraycopy(children, deleteIndex + 2, children, deleteIndex + 1, moveNum);
+            System.arraycopy(childSizes, deleteIndex + 2, childSizes, deleteIndex + 1, moveNum);
+            children[elementNum] = null;
+            childSizes[elementNum] = 0;
+            if (childAggregates != null) {
+                System.arraycopy(childAggregates, deleteIndex + 2, childAggregates, deleteIndex + 1, moveNum);
+                childAggregates[elementNum] = null;
             }
-            elementNum--;
-        } else {
-            throw new IllegalArgumentException("删除节点的索引位置不合法,位置:" + deleteIndex + " ;当前元素数:" + elementNum);
         }
+        elementNum--;
     }
 
-    public Element<K, V> getPredecessorElement() {
-        return predecessorElement;
-    }
-
-    public void setPredecessorElement(Element<K, V> predecessorElement) {
-        this.predecessorElement = predecessorElement;
-    }
-
-    public Element<K, V> getSuccessorElement() {
-        return successorElement;
+    /**
+     * 删除第一个元素以及它的左子树
+     */
+    void deleteFirstElement() {
+        System.arraycopy(keys, 1, keys, 0, elementNum - 1);
+        System.arraycopy(values, 1, values, 0, elementNum - 1);
+        keys[elementNum - 1] = null;
+        values[elementNum - 1] = null;
+        if (children != null) {
+            System.arraycopy(children, 1, children, 0, elementNum);
+            System.arraycopy(childSizes, 1, childSizes, 0, elementNum);
+            children[elementNum] = null;
+            childSizes[elementNum] = 0;
+            if (childAggregates != null) {
+                System.arraycopy(childAggregates, 1, childAggregates, 0, elementNum);
+                childAggregates[elementNum] = null;
+            }
+        }
+        elementNum--;
     }
 
-    public void setSuccessorElement(Element<K, V> successorElement) {
-        this.successorElement = successorElement;
+    /**
+     * 使用给定数组中的一段元素重新填充当前节点，原有元素全部丢弃
+     *
+     * @param srcKeys       元素key
+     * @param srcValues     元素value
+     * @param srcChildren   子节点（比元素多一个），叶子节点为null
+     * @param srcSizes      与srcChildren对应的子树元素总数，叶子节点为null
+     * @param srcAggregates 与srcChildren对应的子树聚合值，叶子节点或者没有聚合函数时为null
+     * @param from          起始位置
+     * @param num           元素数量
+     */
+    void setElements(Object[] srcKeys, Object[] srcValues, Node<K, V>[] srcChildren, long[] srcSizes, Object[] srcAggregates, int from, int num) {
+        System.arraycopy(srcKeys, from, keys, 0, num);
+        System.arraycopy(srcValues, from, values, 0, num);
+        Arrays.fill(keys, num, nodeSize, null);
+        Arrays.fill(values, num, nodeSize, null);
+        if (children != null) {
+            System.arraycopy(srcChildren, from, children, 0, num + 1);
+            System.arraycopy(srcSizes, from, childSizes, 0, num + 1);
+            Arrays.fill(children, num + 1, nodeSize + 1, null);
+            Arrays.fill(childSizes, num + 1, nodeSize + 1, 0);
+            if (childAggregates != null) {
+                System.arraycopy(srcAggregates, from, childAggregates, 0, num + 1);
+                Arrays.fill(childAggregates, num + 1, nodeSize + 1, null);
+            }
+        }
+        elementNum = num;
     }
 
     /**
-     * 获取节点最小的一个元素，最左侧的元素
+     * 将当前节点中的一段元素复制到给定数组中，同时复制每个元素的右子树（叶子节点不复制子树）
      *
-     * @return 当前节点最小的元素
+     * @param from                起始位置
+     * @param num                 元素数量
+     * @param destKeys            目标key数组
+     * @param destValues          目标value数组
+     * @param destRightChildren   目标子节点数组，第i个元素的右子树复制到destPos+i+1
+     * @param destRightSizes      目标子树元素总数数组，与destRightChildren对应
+     * @param destRightAggregates 目标子树聚合值数组，与destRightChildren对应，没有聚合函数时为null
+     * @param destPos             目标起始位置
      */
-    Element<K, V> getMiniElement() {
-        return elements[0];
+    void copyElements(int from, int num, Object[] destKeys, Object[] destValues, Node<K, V>[] destRightChildren,
+                      long[] destRightSizes, Object[] destRightAggregates, int destPos) {
+        System.arraycopy(keys, from, destKeys, destPos, num);
+        System.arraycopy(values, from, destValues, destPos, num);
+        if (children != null) {
+            System.arraycopy(children, from + 1, destRightChildren, destPos + 1, num);
+            System.arraycopy(childSizes, from + 1, destRightSizes, destPos + 1, num);
+            if (childAggregates != null) {
+                System.arraycopy(childAggregates, from + 1, destRightAggregates, destPos + 1, num);
+            }
+        }
     }
 
     /**
-     * 返回当前节点最大的一个元素（最右边的一个元素）
+     * 从叶子节点中删除有序key数组中[from, to)范围内存在于当前节点的key，每个key在剩余范围内二分查找，
+     * 被删除元素之间的元素整段前移
      *
-     * @return 当前节点最大的元素
+     * @param sortedKeys 有序的key
+     * @param from       起始位置
+     * @param to         结束位置（不包含）
+     * @param comparator key的比较器，null表示使用key的自然顺序
+     * @return 删除的元素数量
      */
-    Element<K, V> getMaxElement() {
-        return elements[elementNum - 1];
+    @SuppressWarnings("unchecked")
+    int deleteKeys(Object[] sortedKeys, int from, int to, Comparator<? super K> comparator) {
+        int retainNum = 0;//已经保留的元素数量（前移后的写入位置）
+        int low = 0;//还未处理的元素起始位置
+        for (int i = from; i < to && low < elementNum; i++) {
+            int index = searchKey((K) sortedKeys[i], low, elementNum, comparator);
+            if (index >= 0) {
+                System.arraycopy(keys, low, keys, retainNum, index - low);
+                System.arraycopy(values, low, values, retainNum, index - low);
+                retainNum += index - low;
+                low = index + 1;
+            } else {
+                int insertIndex = -index - 1;
+                System.arraycopy(keys, low, keys, retainNum, insertIndex - low);
+                System.arraycopy(values, low, values, retainNum, insertIndex - low);
+                retainNum += insertIndex - low;
+                low = insertIndex;
+            }
+        }
+        System.arraycopy(keys, low, keys, retainNum, elementNum - low);
+        System.arraycopy(values, low, values, retainNum, elementNum - low);
+        retainNum += elementNum - low;
+        int deleteNum = elementNum - retainNum;
+        Arrays.fill(keys, retainNum, elementNum, null);
+        Arrays.fill(values, retainNum, elementNum, null);
+        elementNum = retainNum;
+        return deleteNum;
     }
 
     /**
-     * 将元素追加到节点后面
+     * 节点分裂：将index之后的元素和对应子树移动到空节点target中，index位置的元素由调用方先取出并上升到父节点
      *
-     * @param useCurrentNode 是否使用当前节点最后一个元素的右节点作为新加入元素列表的第一个元素的左子树,false：使用新加的元素
-     * @param elements       要追加的元素
+     * @param index  中间元素的位置
+     * @param target 分裂出的右侧节点
      */
-    @SafeVarargs
-    final void appendElements(boolean useCurrentNode, Element<K, V>... elements) {
-        if (elements.length + elementNum > nodeSize) {
-            throw new IllegalArgumentException("超出节点元素数量");
-        }
-        if (elements.length > 0) {
-            int i = 0;
-            for (Element<K, V> e : elements) {
-                e.setCurrentNode(this);
-                e.setIndex(elementNum + i);
-            /*    //左右子树的父节点也进行修改
-                Optional.ofNullable(e.getLeftNode()).filter(n -> !this.equals(n)).ifPresent(left -> left.setParentNode(this));
-                Optional.ofNullable(e.getRightNode()).filter(n -> !this.equals(n)).ifPresent(right -> right.setParentNode(this));*/
-                i++;
+    void moveRightHalfTo(int index, Node<K, V> target) {
+        int moveNum = elementNum - index - 1;
+        System.arraycopy(keys, index + 1, target.keys, 0, moveNum);
+        System.arraycopy(values, index + 1, target.values, 0, moveNum);
+        Arrays.fill(keys, index, elementNum, null);
+        Arrays.fill(values, index, elementNum, null);
+        if (children != null) {
+            System.arraycopy(children, index + 1, target.children, 0, moveNum + 1);
+            System.arraycopy(childSizes, index + 1, target.childSizes, 0, moveNum + 1);
+            Arrays.fill(children, index + 1, elementNum + 1, null);
+            Arrays.fill(childSizes, index + 1, elementNum + 1, 0);
+            if (childAggregates != null) {
+                System.arraycopy(childAggregates, index + 1, target.childAggregates, 0, moveNum + 1);
+                Arrays.fill(childAggregates, index + 1, elementNum + 1, null);
             }
-            if (elementNum > 0) {
-                if (useCurrentNode) {
-                    elements[0].setLeftNode(this.elements[elementNum - 1].getRightNode());
-                } else {
-                    this.elements[elementNum - 1].setRightNode(elements[0].getLeftNode());
-                }
-            }
-            System.arraycopy(elements, 0, this.elements, elementNum, elements.length);
-            this.elementNum++;
         }
+        target.elementNum = moveNum;
+        elementNum = index;
     }
 
-    public void setNodeType(NodeType nodeType) {
-        this.nodeType = nodeType;
+    /**
+     * 节点合并：将父节点下降的中间元素和右侧节点的所有元素（包括子树）追加到当前节点后面
+     *
+     * @param middleKey   中间元素的key
+     * @param middleValue 中间元素的value
+     * @param rightNode   被合并的右侧节点
+     */
+    void appendElements(Object middleKey, Object middleValue, Node<K, V> rightNode) {
+        keys[elementNum] = middleKey;
+        values[elementNum] = middleValue;
+        int rightNum = rightNode.elementNum;
+        System.arraycopy(rightNode.keys, 0, keys, elementNum + 1, rightNum);
+        System.arraycopy(rightNode.values, 0, values, elementNum + 1, rightNum);
+        if (children != null) {
+            System.arraycopy(rightNode.children, 0, children, elementNum + 1, rightNum + 1);
+            System.arraycopy(rightNode.childSizes, 0, childSizes, elementNum + 1, rightNum + 1);
+            if (childAggregates != null) {
+                System.arraycopy(rightNode.childAggregates, 0, childAggregates, elementNum + 1, rightNum + 1);
+            }
+        }
+        elementNum += rightNum + 1;
     }
 
     @Override
     public String toString() {
-        String collect = Stream.of(Arrays.copyOfRange(elements, 0, elementNum)).map(Element::getKey).map(Objects::toString).collect(Collectors.joining(";"));
-        return collect + "[" + (predecessorElement == null ? "null" : predecessorElement.getKey()) +
-                "," + (successorElement == null ? "null" : successorElement.getKey()) + "]";
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < elementNum; i++) {
+            if (i > 0) {
+                builder.append(';');
+            }
+            builder.append(keys[i]);
+        }
+        return builder.toString();
     }
 
 }
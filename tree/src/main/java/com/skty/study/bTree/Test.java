@@ -5,6 +5,7 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
@@ -13,22 +14,33 @@ import java.util.stream.Collectors;
 
 public class Test {
 
+    /**
+     * 测试数据所在目录（相对于项目根目录），使用系统的路径分隔符
+     */
+    private static final String DATA_DIR = Paths.get("tree", "src", "main", "java", "com", "skty", "study", "bTree").toString();
+
+    private static final String LAST_INSERT = Paths.get(DATA_DIR, "lastInsert.txt").toString();
+
+    private static final String LAST_DELETE = Paths.get(DATA_DIR, "lastDelete.txt").toString();
+
+    private static final String TREE_PRINT = Paths.get(DATA_DIR, "treePrint.txt").toString();
+
     public static void main(String[] args) throws IOException {
         BTree<Integer, String> tree = new BTree<>(3);
         List<Integer> addedElement = new ArrayList<>();
-        generateElement(3, "tree\\src\\main\\java\\com\\skty\\study\\bTree\\lastInsert.txt", 30).forEach(e -> {
+        generateElement(3, LAST_INSERT, 30).forEach(e -> {
             addedElement.add(e);
             tree.insert(e, e.toString());
         });
-        writeToFile(tree.printBTree() + "\n\n\n\n\n\n", "tree\\src\\main\\java\\com\\skty\\study\\bTree\\treePrint.txt", false);
+        writeToFile(tree.printBTree() + "\n\n\n\n\n\n", TREE_PRINT, false);
         writeToFile(addedElement.stream().map(Objects::toString).collect(Collectors.joining(";")),
-                "tree\\src\\main\\java\\com\\skty\\study\\bTree\\lastInsert.txt", false);
+                LAST_INSERT, false);
         System.out.println(tree.printBTree());
         System.out.println("==================================删除开始======================================");
 
-        generateElement(3, "tree\\src\\main\\java\\com\\skty\\study\\bTree\\lastDelete.txt", 20).forEach(e -> {
+        generateElement(3, LAST_DELETE, 20).forEach(e -> {
             try {
-                writeToFile(e + ";", "tree\\src\\main\\java\\com\\skty\\study\\bTree\\lastDelete.txt", true);
+                writeToFile(e + ";", LAST_DELETE, true);
             } catch (IOException ex) {
                 ex.printStackTrace();
             }
@@ -38,7 +50,7 @@ public class Test {
             System.out.println(tree.printBTree());
             System.out.println("==================================end======================================");
         });
-        writeToFile(tree.printBTree(), "tree\\src\\main\\java\\com\\skty\\study\\bTree\\treePrint.txt", true);
+        writeToFile(tree.printBTree(), TREE_PRINT, true);
     }
 
 
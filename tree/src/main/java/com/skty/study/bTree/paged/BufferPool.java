@@ -0,0 +1,290 @@
+package com.skty.study.bTree.paged;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 分页B树和页面文件之间的节点缓存，缓存解码后的节点：
+ * 1.上层节点（深度小于pinnedLevels）常驻内存，不参与淘汰，不计入内存预算
+ * 2.其他节点保存在固定数量的帧中，帧的数量由内存预算除以每帧的堆内存估计值得到（解码后的装满节点，
+ * 由树的阶和序列化器的{@link Serializer#heapSize()}估计，见{@link PagedNode#heapSizeOf}），帧满时按淘汰策略淘汰
+ * 3.节点修改后只标记为脏节点，淘汰时或者flush时才编码写回页面
+ * 4.当前操作正在使用的节点不会被淘汰，操作结束时调用endOperation
+ *
+ * @author skty
+ */
+public class BufferPool<K extends Comparable<K>, V> {
+
+    /**
+     * 帧数量的下限，保证一次操作用到的节点都能放下
+     */
+    private static final int MIN_FRAMES = 64;
+
+    /**
+     * 每帧在节点之外的额外开销：页号到帧的映射项、帧的操作序号、空闲帧栈和淘汰策略的状态
+     */
+    private static final int FRAME_OVERHEAD = 64;
+
+    private final PageFile pageFile;
+
+    private final Serializer<K> keySerializer;
+
+    private final Serializer<V> valueSerializer;
+
+    /**
+     * 树的阶
+     */
+    private final int nodeSize;
+
+    /**
+     * 常驻内存的层数
+     */
+    private final int pinnedLevels;
+
+    /**
+     * 常驻内存的上层节点：页号 -> 节点
+     */
+    private final Map<Integer, PagedNode<K, V>> pinnedNodes = new HashMap<>();
+
+    /**
+     * 树高变化后上层节点的深度改变，当前操作结束时将常驻节点全部写回并移出，之后按新的深度重新装入
+     */
+    private boolean unpinPending;
+
+    private final EvictionPolicy policy;
+
+    /**
+     * 帧中的节点，null表示空闲帧
+     */
+    private final PagedNode<K, V>[] frames;
+
+    /**
+     * 每帧最近一次被使用时的操作序号，等于当前操作序号的帧不能淘汰
+     */
+    private final long[] frameOperations;
+
+    /**
+     * 页号 -> 帧
+     */
+    private final Map<Integer, Integer> frameOfPage = new HashMap<>();
+
+    /**
+     * 空闲帧栈
+     */
+    private final int[] freeFrames;
+
+    private int freeFrameNum;
+
+    /**
+     * 当前操作序号
+     */
+    private long operation = 1;
+
+    private long hitCount;
+
+    private long missCount;
+
+    private long evictionCount;
+
+    private long writeBackCount;
+
+    @SuppressWarnings("unchecked")
+    BufferPool(PageFile pageFile, Serializer<K> keySerializer, Serializer<V> valueSerializer, int nodeSize,
+               long memoryBudget, int pinnedLevels, EvictionPolicy policy) {
+        if (pinnedLevels < 0) {
+            throw new IllegalArgumentException("常驻层数不能小于0");
+        }
+        this.pageFile = pageFile;
+        this.keySerializer = keySerializer;
+        this.valueSerializer = valueSerializer;
+        this.nodeSize = nodeSize;
+        this.pinnedLevels = pinnedLevels;
+        this.policy = policy;
+        long frameBytes = PagedNode.heapSizeOf(nodeSize, keySerializer.heapSize(), valueSerializer.heapSize()) + FRAME_OVERHEAD;
+        int frameNum = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(MIN_FRAMES, memoryBudget / frameBytes));
+        this.frames = new PagedNode[frameNum];
+        this.frameOperations = new long[frameNum];
+        this.freeFrames = new int[frameNum];
+        for (int i = 0; i < frameNum; i++) {
+            freeFrames[i] = frameNum - 1 - i;
+        }
+        this.freeFrameNum = frameNum;
+        policy.init(frameNum);
+    }
+
+    /**
+     * 获取指定页面中的节点，不在缓存中时从页面解码并放入缓存
+     *
+     * @param pageId 页号
+     * @param depth  节点在树中的深度，用于判断是否常驻
+     * @return 节点
+     */
+    PagedNode<K, V> get(int pageId, int depth) {
+        PagedNode<K, V> node = pinnedNodes.get(pageId);
+        if (node != null) {
+            hitCount++;
+            return node;
+        }
+        Integer frame = frameOfPage.get(pageId);
+        if (frame != null) {
+            hitCount++;
+            frameOperations[frame] = operation;
+            policy.accessed(frame);
+            return frames[frame];
+        }
+        missCount++;
+        node = PagedNode.decode(pageId, pageFile.page(pageId), nodeSize, keySerializer, valueSerializer);
+        add(node, depth);
+        return node;
+    }
+
+    /**
+     * 将节点放入缓存（新分配的节点，或者刚解码的节点）
+     *
+     * @param node  节点
+     * @param depth 节点在树中的深度
+     */
+    void add(PagedNode<K, V> node, int depth) {
+        if (depth < pinnedLevels && !unpinPending) {
+            pinnedNodes.put(node.getPageId(), node);
+            return;
+        }
+        int frame = freeFrameNum > 0 ? freeFrames[--freeFrameNum] : evict();
+        frames[frame] = node;
+        frameOperations[frame] = operation;
+        frameOfPage.put(node.getPageId(), frame);
+        policy.accessed(frame);
+    }
+
+    /**
+     * 按淘汰策略淘汰一帧，脏节点先写回页面
+     *
+     * @return 空出的帧
+     */
+    private int evict() {
+        int frame = policy.victim(f -> frameOperations[f] != operation);
+        if (frame < 0) {
+            throw new IllegalStateException("缓冲池中的节点都在使用中，无法淘汰");
+        }
+        PagedNode<K, V> node = frames[frame];
+        writeBack(node);
+        frameOfPage.remove(node.getPageId());
+        frames[frame] = null;
+        evictionCount++;
+        return frame;
+    }
+
+    /**
+     * 节点的页面被释放，从缓存中移除，不写回
+     */
+    void remove(PagedNode<K, V> node) {
+        if (pinnedNodes.remove(node.getPageId()) != null) {
+            return;
+        }
+        Integer frame = frameOfPage.remove(node.getPageId());
+        if (frame != null) {
+            frames[frame] = null;
+            policy.removed(frame);
+            freeFrames[freeFrameNum++] = frame;
+        }
+    }
+
+    /**
+     * 树高发生变化，常驻节点在当前操作结束时移出
+     */
+    void heightChanged() {
+        unpinPending = true;
+    }
+
+    /**
+     * 当前操作结束，之后这次操作使用的节点可以被淘汰
+     */
+    void endOperation() {
+        operation++;
+        if (unpinPending) {
+            for (PagedNode<K, V> node : pinnedNodes.values()) {
+                writeBack(node);
+            }
+            pinnedNodes.clear();
+            unpinPending = false;
+        }
+    }
+
+    private void writeBack(PagedNode<K, V> node) {
+        if (node.isDirty()) {
+            node.encode(pageFile.page(node.getPageId()), keySerializer, valueSerializer);
+            writeBackCount++;
+        }
+    }
+
+    /**
+     * 将缓存中所有的脏节点写回页面
+     */
+    void flush() {
+        for (PagedNode<K, V> node : pinnedNodes.values()) {
+            writeBack(node);
+        }
+        for (PagedNode<K, V> node : frames) {
+            if (node != null) {
+                writeBack(node);
+            }
+        }
+    }
+
+    /**
+     * 帧的数量（不包括常驻节点）
+     */
+    public int getFrameNum() {
+        return frames.length;
+    }
+
+    /**
+     * 常驻内存的节点数量
+     */
+    public int getPinnedNum() {
+        return pinnedNodes.size();
+    }
+
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    public long getMissCount() {
+        return missCount;
+    }
+
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * 脏节点写回页面的次数
+     */
+    public long getWriteBackCount() {
+        return writeBackCount;
+    }
+
+    /**
+     * 命中率，没有访问时为0
+     */
+    public double getHitRatio() {
+        long total = hitCount + missCount;
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    /**
+     * 计数清零，例如在装载数据之后只统计查找的命中率
+     */
+    public void resetCounters() {
+        hitCount = 0;
+        missCount = 0;
+        evictionCount = 0;
+        writeBackCount = 0;
+    }
+
+    @Override
+    public String toString() {
+        return "BufferPool{frames=" + frames.length + ", pinned=" + pinnedNodes.size() + ", hits=" + hitCount
+                + ", misses=" + missCount + ", evictions=" + evictionCount + ", writeBacks=" + writeBackCount + "}";
+    }
+}
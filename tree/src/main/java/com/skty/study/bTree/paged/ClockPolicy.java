@@ -0,0 +1,55 @@
+package com.skty.study.bTree.paged;
+
+import java.util.function.IntPredicate;
+
+/**
+ * CLOCK淘汰策略，见{@link EvictionPolicy#clock()}
+ *
+ * @author skty
+ */
+class ClockPolicy implements EvictionPolicy {
+
+    /**
+     * 每帧的访问位
+     */
+    private boolean[] referenced;
+
+    /**
+     * 时钟指针
+     */
+    private int hand;
+
+    @Override
+    public void init(int frameNum) {
+        referenced = new boolean[frameNum];
+    }
+
+    @Override
+    public void accessed(int frame) {
+        referenced[frame] = true;
+    }
+
+    @Override
+    public void removed(int frame) {
+        referenced[frame] = false;
+    }
+
+    @Override
+    public int victim(IntPredicate evictable) {
+        int frameNum = referenced.length;
+        //最多扫描两圈：第一圈清除访问位，第二圈一定能找到访问位为0的可淘汰帧
+        for (int i = 0; i < frameNum * 2; i++) {
+            int frame = hand;
+            hand = hand + 1 == frameNum ? 0 : hand + 1;
+            if (!evictable.test(frame)) {
+                continue;
+            }
+            if (referenced[frame]) {
+                referenced[frame] = false;
+                continue;
+            }
+            return frame;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,53 @@
+package com.skty.study.bTree.paged;
+
+import java.util.function.IntPredicate;
+
+/**
+ * 缓冲池的淘汰策略，以缓冲池中的帧（缓存位置）为单位记录访问，缓冲池满时选出要淘汰的帧
+ *
+ * @author skty
+ */
+public interface EvictionPolicy {
+
+    /**
+     * 缓冲池创建时调用一次
+     *
+     * @param frameNum 帧的数量
+     */
+    void init(int frameNum);
+
+    /**
+     * 帧被访问（命中或者新装入节点）
+     */
+    void accessed(int frame);
+
+    /**
+     * 帧中的节点被移除（页面释放），帧变为空闲
+     */
+    void removed(int frame);
+
+    /**
+     * 选出要淘汰的帧，只在所有帧都被占用时调用
+     *
+     * @param evictable 帧是否可以被淘汰（当前操作正在使用的帧不能淘汰）
+     * @return 要淘汰的帧，没有可以淘汰的帧时返回-1
+     */
+    int victim(IntPredicate evictable);
+
+    /**
+     * CLOCK策略：每帧一个访问位，指针循环扫描，访问位为1时清零跳过，为0时淘汰
+     */
+    static EvictionPolicy clock() {
+        return new ClockPolicy();
+    }
+
+    /**
+     * LRU-K策略：淘汰倒数第K次访问时间最早的帧，访问次数不足K次的帧优先淘汰（其中按最近一次访问时间淘汰）；
+     * 只访问过一次的叶子节点（扫描）不会挤掉被反复访问的节点
+     *
+     * @param k 记录最近k次访问，大于等于1（k为1时即LRU）
+     */
+    static EvictionPolicy lruK(int k) {
+        return new LruKPolicy(k);
+    }
+}
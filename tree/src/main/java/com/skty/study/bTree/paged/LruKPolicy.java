@@ -0,0 +1,114 @@
+package com.skty.study.bTree.paged;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.TreeMap;
+import java.util.function.IntPredicate;
+
+/**
+ * LRU-K淘汰策略，见{@link EvictionPolicy#lruK(int)}。
+ * 访问时间使用递增的逻辑时钟，访问次数不足K次的帧按最近一次访问时间排序，达到K次的帧按倒数第K次访问时间排序
+ *
+ * @author skty
+ */
+class LruKPolicy implements EvictionPolicy {
+
+    private final int k;
+
+    /**
+     * 逻辑时钟，每次访问加1
+     */
+    private long clock;
+
+    /**
+     * 每帧最近k次访问时间，第frame帧为history[frame * k] ~ history[frame * k + k - 1]，按时间从近到远
+     */
+    private long[] history;
+
+    /**
+     * 访问次数不足k次的帧：最近一次访问时间 -> 帧
+     */
+    private final TreeMap<Long, Integer> coldFrames = new TreeMap<>();
+
+    /**
+     * 访问次数达到k次的帧：倒数第k次访问时间 -> 帧
+     */
+    private final TreeMap<Long, Integer> hotFrames = new TreeMap<>();
+
+    LruKPolicy(int k) {
+        if (k < 1) {
+            throw new IllegalArgumentException("LRU-K的K必须大于等于1");
+        }
+        this.k = k;
+    }
+
+    @Override
+    public void init(int frameNum) {
+        history = new long[frameNum * k];
+    }
+
+    @Override
+    public void accessed(int frame) {
+        unindex(frame);
+        //访问时间后移一位，丢弃最早的一次
+        int base = frame * k;
+        System.arraycopy(history, base, history, base + 1, k - 1);
+        history[base] = ++clock;
+        index(frame);
+    }
+
+    @Override
+    public void removed(int frame) {
+        unindex(frame);
+        Arrays.fill(history, frame * k, frame * k + k, 0);
+    }
+
+    /**
+     * 把帧从排序集合中移除
+     */
+    private void unindex(int frame) {
+        int base = frame * k;
+        long kth = history[base + k - 1];
+        if (kth != 0) {
+            hotFrames.remove(kth);
+        } else if (history[base] != 0) {
+            coldFrames.remove(history[base]);
+        }
+    }
+
+    /**
+     * 按访问历史把帧放入对应的排序集合
+     */
+    private void index(int frame) {
+        int base = frame * k;
+        long kth = history[base + k - 1];
+        if (kth != 0) {
+            hotFrames.put(kth, frame);
+        } else {
+            coldFrames.put(history[base], frame);
+        }
+    }
+
+    @Override
+    public int victim(IntPredicate evictable) {
+        int frame = firstEvictable(coldFrames, evictable);
+        if (frame < 0) {
+            frame = firstEvictable(hotFrames, evictable);
+        }
+        if (frame >= 0) {//帧将用于装入新的页面，清空访问历史
+            removed(frame);
+        }
+        return frame;
+    }
+
+    private static int firstEvictable(TreeMap<Long, Integer> frames, IntPredicate evictable) {
+        Iterator<Integer> iterator = frames.values().iterator();
+        while (iterator.hasNext()) {
+            int frame = iterator.next();
+            if (evictable.test(frame)) {
+                return frame;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,220 @@
+package com.skty.study.bTree.paged;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 按固定大小页面组织的文件，通过内存映射读写。文件按段映射（每段包含多个页面），页面数量增加时映射新的段；
+ * 第0页为文件头，保存页面大小、根节点页号、树高、页面数量和空闲页链表头，释放的页面通过空闲页链表重新分配
+ * <pre>
+ * 文件头：magic(4) version(4) pageSize(4) keySize(4) valueSize(4) rootPage(4) height(4) pageCount(4) freePage(4)
+ * </pre>
+ *
+ * @author skty
+ */
+class PageFile implements Closeable {
+
+    private static final int MAGIC = 0x42545245;
+
+    private static final int VERSION = 1;
+
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION_OFFSET = 4;
+    private static final int PAGE_SIZE_OFFSET = 8;
+    private static final int KEY_SIZE_OFFSET = 12;
+    private static final int VALUE_SIZE_OFFSET = 16;
+    private static final int ROOT_PAGE_OFFSET = 20;
+    private static final int HEIGHT_OFFSET = 24;
+    private static final int PAGE_COUNT_OFFSET = 28;
+    private static final int FREE_PAGE_OFFSET = 32;
+
+    /**
+     * 文件头占用的字节数，页面不能小于文件头
+     */
+    static final int HEADER_SIZE = 36;
+
+    /**
+     * 没有页面（空闲页链表结束、叶子节点没有子节点），第0页为文件头，不会被当作节点使用
+     */
+    static final int NO_PAGE = 0;
+
+    /**
+     * 每段映射的最大字节数
+     */
+    private static final int SEGMENT_BYTES = 64 << 20;
+
+    private final FileChannel channel;
+
+    private final int pageSize;
+
+    /**
+     * 每段包含的页面数量
+     */
+    private final int segmentPages;
+
+    /**
+     * 已经映射的段
+     */
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+
+    /**
+     * 文件头所在的段（第0段）
+     */
+    private final MappedByteBuffer header;
+
+    /**
+     * 是否是新创建的文件
+     */
+    private final boolean created;
+
+    /**
+     * 打开页面文件，文件不存在或为空时创建新文件
+     *
+     * @param file     文件路径
+     * @param pageSize 页面大小，打开已有文件时必须与文件中记录的一致
+     * @throws IOException 读写文件失败
+     */
+    PageFile(Path file, int pageSize) throws IOException {
+        if (pageSize < HEADER_SIZE) {
+            throw new IllegalArgumentException("页面大小不能小于" + HEADER_SIZE);
+        }
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.pageSize = pageSize;
+        this.segmentPages = Math.max(1, SEGMENT_BYTES / pageSize);
+        this.created = channel.size() == 0;
+        this.header = segment(0);
+        if (created) {
+            header.putInt(MAGIC_OFFSET, MAGIC);
+            header.putInt(VERSION_OFFSET, VERSION);
+            header.putInt(PAGE_SIZE_OFFSET, pageSize);
+            header.putInt(PAGE_COUNT_OFFSET, 1);
+            header.putInt(FREE_PAGE_OFFSET, NO_PAGE);
+        } else {
+            if (header.getInt(MAGIC_OFFSET) != MAGIC) {
+                throw new IllegalArgumentException("不是B树页面文件:" + file);
+            }
+            if (header.getInt(VERSION_OFFSET) != VERSION) {
+                throw new IllegalArgumentException("不支持的页面文件版本:" + header.getInt(VERSION_OFFSET));
+            }
+            if (header.getInt(PAGE_SIZE_OFFSET) != pageSize) {
+                throw new IllegalArgumentException("页面大小与文件不一致,文件中为:" + header.getInt(PAGE_SIZE_OFFSET));
+            }
+        }
+    }
+
+    boolean isCreated() {
+        return created;
+    }
+
+    int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * 获取指定页面的视图（position为0，limit为页面大小），读写视图即读写映射的文件
+     *
+     * @param pageId 页号
+     * @return 页面视图
+     */
+    ByteBuffer page(int pageId) {
+        MappedByteBuffer segment = segment(pageId / segmentPages);
+        ByteBuffer page = segment.duplicate();
+        int offset = (pageId % segmentPages) * pageSize;
+        page.position(offset);
+        page.limit(offset + pageSize);
+        return page.slice();
+    }
+
+    /**
+     * 获取指定的段，还没有映射时进行映射（超出文件大小时文件自动扩展）
+     */
+    private MappedByteBuffer segment(int index) {
+        while (segments.size() <= index) {
+            long position = (long) segments.size() * segmentPages * pageSize;
+            try {
+                segments.add(channel.map(FileChannel.MapMode.READ_WRITE, position, (long) segmentPages * pageSize));
+            } catch (IOException e) {
+                throw new IllegalStateException("映射页面文件失败", e);
+            }
+        }
+        return segments.get(index);
+    }
+
+    /**
+     * 分配一个页面，优先使用空闲页链表中的页面
+     *
+     * @return 页号
+     */
+    int allocate() {
+        int freePage = header.getInt(FREE_PAGE_OFFSET);
+        if (freePage != NO_PAGE) {
+            header.putInt(FREE_PAGE_OFFSET, page(freePage).getInt(0));
+            return freePage;
+        }
+        int pageCount = header.getInt(PAGE_COUNT_OFFSET);
+        header.putInt(PAGE_COUNT_OFFSET, pageCount + 1);
+        return pageCount;
+    }
+
+    /**
+     * 释放页面，页面的前4个字节记录空闲页链表中的下一页
+     *
+     * @param pageId 页号
+     */
+    void free(int pageId) {
+        page(pageId).putInt(0, header.getInt(FREE_PAGE_OFFSET));
+        header.putInt(FREE_PAGE_OFFSET, pageId);
+    }
+
+    int getPageCount() {
+        return header.getInt(PAGE_COUNT_OFFSET);
+    }
+
+    int getKeySize() {
+        return header.getInt(KEY_SIZE_OFFSET);
+    }
+
+    int getValueSize() {
+        return header.getInt(VALUE_SIZE_OFFSET);
+    }
+
+    void setEntrySize(int keySize, int valueSize) {
+        header.putInt(KEY_SIZE_OFFSET, keySize);
+        header.putInt(VALUE_SIZE_OFFSET, valueSize);
+    }
+
+    int getRootPage() {
+        return header.getInt(ROOT_PAGE_OFFSET);
+    }
+
+    int getHeight() {
+        return header.getInt(HEIGHT_OFFSET);
+    }
+
+    void setRoot(int rootPage, int height) {
+        header.putInt(ROOT_PAGE_OFFSET, rootPage);
+        header.putInt(HEIGHT_OFFSET, height);
+    }
+
+    /**
+     * 将所有映射段中修改过的内容写入磁盘
+     */
+    void force() {
+        for (MappedByteBuffer segment : segments) {
+            segment.force();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        force();
+        channel.close();
+    }
+}
@@ -0,0 +1,409 @@
+package com.skty.study.bTree.paged;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * 保存在磁盘上的B树，每个节点对应页面文件中的一个定长页面，页面通过内存映射读写。
+ * 节点通过缓冲池访问，不在缓冲池中时从页面解码，修改后只标记为脏节点，被淘汰或者flush时才写回页面；
+ * 合并后不再使用的页面放入空闲页链表。树的阶由页面大小和key、value序列化后的长度计算得到（最大为65536）
+ *
+ * @author skty
+ */
+public class PagedBTree<K extends Comparable<K>, V> implements Closeable {
+
+    /**
+     * 默认页面大小
+     */
+    public static final int DEFAULT_PAGE_SIZE = 4096;
+
+    /**
+     * 默认缓冲池内存预算
+     */
+    public static final long DEFAULT_MEMORY_BUDGET = 64L << 20;
+
+    /**
+     * 默认常驻内存的层数（根节点和第二层）
+     */
+    public static final int DEFAULT_PINNED_LEVELS = 2;
+
+    private final PageFile pageFile;
+
+    private final Serializer<K> keySerializer;
+
+    private final Serializer<V> valueSerializer;
+
+    /**
+     * 树的阶，由页面大小计算得到
+     */
+    private final int size;
+
+    /**
+     * 根节点页号
+     */
+    private int rootPage;
+
+    /**
+     * 树高
+     */
+    private int height;
+
+    /**
+     * 从根节点向下查找时经过的节点
+     */
+    private PagedNode<K, V>[] pathNodes;
+
+    /**
+     * 查找路径上每个节点中进入下一层子节点的位置
+     */
+    private int[] pathIndexes;
+
+    /**
+     * 节点缓存
+     */
+    private final BufferPool<K, V> bufferPool;
+
+    @SuppressWarnings("unchecked")
+    private PagedBTree(PageFile pageFile, Serializer<K> keySerializer, Serializer<V> valueSerializer,
+                       long memoryBudget, int pinnedLevels, EvictionPolicy evictionPolicy) {
+        this.pageFile = pageFile;
+        this.keySerializer = keySerializer;
+        this.valueSerializer = valueSerializer;
+        this.size = PagedNode.nodeSizeOf(pageFile.getPageSize(), keySerializer.size(), valueSerializer.size());
+        if (size <= 2) {
+            throw new IllegalArgumentException("页面大小" + pageFile.getPageSize() + "容纳不下阶大于2的节点");
+        }
+        this.pathNodes = new PagedNode[4];
+        this.pathIndexes = new int[4];
+        this.bufferPool = new BufferPool<>(pageFile, keySerializer, valueSerializer, size, memoryBudget, pinnedLevels, evictionPolicy);
+        if (pageFile.isCreated()) {
+            pageFile.setEntrySize(keySerializer.size(), valueSerializer.size());
+            PagedNode<K, V> root = newNode(true, 0);
+            rootPage = root.getPageId();
+            height = 1;
+            pageFile.setRoot(rootPage, height);
+            bufferPool.endOperation();
+        } else {
+            if (pageFile.getKeySize() != keySerializer.size() || pageFile.getValueSize() != valueSerializer.size()) {
+                throw new IllegalArgumentException("序列化长度与文件不一致,文件中key:" + pageFile.getKeySize() + ",value:" + pageFile.getValueSize());
+            }
+            rootPage = pageFile.getRootPage();
+            height = pageFile.getHeight();
+        }
+    }
+
+    /**
+     * 打开（不存在时创建）分页B树，使用默认页面大小
+     *
+     * @param file            页面文件
+     * @param keySerializer   key序列化器
+     * @param valueSerializer value序列化器
+     * @return 分页B树
+     * @throws IOException 读写文件失败
+     */
+    public static <K extends Comparable<K>, V> PagedBTree<K, V> open(Path file, Serializer<K> keySerializer, Serializer<V> valueSerializer) throws IOException {
+        return open(file, DEFAULT_PAGE_SIZE, keySerializer, valueSerializer);
+    }
+
+    /**
+     * 打开（不存在时创建）分页B树
+     *
+     * @param file            页面文件
+     * @param pageSize        页面大小，打开已有文件时必须与创建时一致
+     * @param keySerializer   key序列化器，打开已有文件时序列化长度必须与创建时一致
+     * @param valueSerializer value序列化器
+     * @return 分页B树
+     * @throws IOException 读写文件失败
+     */
+    public static <K extends Comparable<K>, V> PagedBTree<K, V> open(Path file, int pageSize, Serializer<K> keySerializer, Serializer<V> valueSerializer) throws IOException {
+        return open(file, pageSize, keySerializer, valueSerializer, DEFAULT_MEMORY_BUDGET, DEFAULT_PINNED_LEVELS, EvictionPolicy.clock());
+    }
+
+    /**
+     * 打开（不存在时创建）分页B树，并指定缓冲池配置
+     *
+     * @param file            页面文件
+     * @param pageSize        页面大小，打开已有文件时必须与创建时一致
+     * @param keySerializer   key序列化器，打开已有文件时序列化长度必须与创建时一致
+     * @param valueSerializer value序列化器
+     * @param memoryBudget    缓冲池内存预算（堆内存字节数），除以每个解码后节点的堆内存估计值得到缓存的节点数量，不包括常驻节点
+     * @param pinnedLevels    从根节点开始常驻内存的层数
+     * @param evictionPolicy  淘汰策略，见{@link EvictionPolicy#clock()}、{@link EvictionPolicy#lruK(int)}
+     * @return 分页B树
+     * @throws IOException 读写文件失败
+     */
+    public static <K extends Comparable<K>, V> PagedBTree<K, V> open(Path file, int pageSize, Serializer<K> keySerializer, Serializer<V> valueSerializer,
+                                                                     long memoryBudget, int pinnedLevels, EvictionPolicy evictionPolicy) throws IOException {
+        PageFile pageFile = new PageFile(file, pageSize);
+        try {
+            return new PagedBTree<>(pageFile, keySerializer, valueSerializer, memoryBudget, pinnedLevels, evictionPolicy);
+        } catch (RuntimeException e) {
+            pageFile.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 由页面大小计算得到的树的阶
+     */
+    public int getOrder() {
+        return size;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * 缓冲池，可以获取命中、未命中、淘汰、写回次数
+     */
+    public BufferPool<K, V> getBufferPool() {
+        return bufferPool;
+    }
+
+    /**
+     * 查找B树，获取指定key对应的value，经过的节点按需从页面中读取
+     *
+     * @param key 指定的key
+     * @return 对应的value，没有返回null
+     */
+    public V find(K key) {
+        PagedNode<K, V> node = node(rootPage, 0);
+        int depth = 0;
+        V value = null;
+        while (true) {
+            int index = node.searchKey(key);
+            if (index >= 0) {
+                value = node.getValue(index);
+                break;
+            }
+            if (node.isLeafNode()) {
+                break;
+            }
+            node = node(node.getChild(-index - 1), ++depth);
+        }
+        bufferPool.endOperation();
+        return value;
+    }
+
+    /**
+     * 新增数据
+     *
+     * @param key   指定key
+     * @param value 指定的value
+     * @return true:不存在该元素，已经新增进去  false:该元素已经存在树中，用新元素替换旧元素
+     */
+    public boolean insert(K key, V value) {
+        PagedNode<K, V> node = node(rootPage, 0);
+        int depth = 0;
+        while (true) {
+            int index = node.searchKey(key);
+            if (index >= 0) {//替换模式,只需要替换元素的值
+                node.setValue(index, value);
+                node.markDirty();
+                bufferPool.endOperation();
+                return false;
+            }
+            int insertIndex = -index - 1;
+            if (node.isLeafNode()) {
+                node.insertElement(insertIndex, key, value, PageFile.NO_PAGE);
+                node.markDirty();
+                afterElementInsert(node, depth);
+                bufferPool.endOperation();
+                return true;
+            }
+            pushPath(depth++, node, insertIndex);
+            node = node(node.getChild(insertIndex), depth);
+        }
+    }
+
+    /**
+     * 删除数据
+     *
+     * @param key 要删除的key
+     * @return true:删除成功  false:不存在该元素
+     */
+    public boolean delete(K key) {
+        PagedNode<K, V> node = node(rootPage, 0);
+        int depth = 0;
+        int index;
+        while ((index = node.searchKey(key)) < 0) {
+            if (node.isLeafNode()) {
+                bufferPool.endOperation();
+                return false;
+            }
+            int childIndex = -index - 1;
+            pushPath(depth++, node, childIndex);
+            node = node(node.getChild(childIndex), depth);
+        }
+        if (!node.isLeafNode()) {//内部节点，使用前驱元素替换，实际删除的是叶子节点中的前驱元素
+            pushPath(depth++, node, index);
+            PagedNode<K, V> predecessorNode = node(node.getChild(index), depth);
+            while (!predecessorNode.isLeafNode()) {
+                int last = predecessorNode.getElementNum();
+                pushPath(depth++, predecessorNode, last);
+                predecessorNode = node(predecessorNode.getChild(last), depth);
+            }
+            int maxIndex = predecessorNode.getElementNum() - 1;
+            node.replaceElement(index, predecessorNode.getKey(maxIndex), predecessorNode.getValue(maxIndex));
+            node.markDirty();
+            node = predecessorNode;
+            index = maxIndex;
+        }
+        node.deleteElement(index);
+        node.markDirty();
+        afterElementDelete(node, depth);
+        bufferPool.endOperation();
+        return true;
+    }
+
+    /**
+     * 元素插入后节点超出容量时分裂，中间元素上升到父节点，父节点继续判断（与BTree相同）
+     */
+    private void afterElementInsert(PagedNode<K, V> node, int depth) {
+        while (node.needDivide()) {
+            int middleIndex = node.getElementNum() / 2;
+            K middleKey = node.getKey(middleIndex);
+            V middleValue = node.getValue(middleIndex);
+            PagedNode<K, V> newRightNode = newNode(node.isLeafNode(), depth);
+            node.moveRightHalfTo(middleIndex, newRightNode);
+            if (depth == 0) {//根节点分裂，生成新的根节点
+                PagedNode<K, V> newRoot = newNode(false, 0);
+                newRoot.setChild(0, node.getPageId());
+                newRoot.insertElement(0, middleKey, middleValue, newRightNode.getPageId());
+                setRoot(newRoot.getPageId(), height + 1);
+                return;
+            }
+            depth--;
+            PagedNode<K, V> parentNode = pathNodes[depth];
+            parentNode.insertElement(pathIndexes[depth], middleKey, middleValue, newRightNode.getPageId());
+            parentNode.markDirty();
+            node = parentNode;
+        }
+    }
+
+    /**
+     * 元素删除后节点低于下限时，从兄弟节点借元素或者与兄弟节点合并，合并后父节点继续判断（与BTree相同）
+     */
+    private void afterElementDelete(PagedNode<K, V> currentNode, int depth) {
+        while (depth > 0 && currentNode.lowerThanEleLowestLimit()) {
+            depth--;
+            PagedNode<K, V> parentNode = pathNodes[depth];
+            int childIndex = pathIndexes[depth];
+            PagedNode<K, V> leftSibling = childIndex > 0 ? node(parentNode.getChild(childIndex - 1), depth + 1) : null;
+            if (leftSibling != null && leftSibling.moreThanLowestLimit()) {//从左侧借，右旋转
+                rotateRight(leftSibling, parentNode, childIndex - 1, currentNode);
+                return;
+            }
+            PagedNode<K, V> rightSibling = childIndex < parentNode.getElementNum() ? node(parentNode.getChild(childIndex + 1), depth + 1) : null;
+            if (rightSibling != null && rightSibling.moreThanLowestLimit()) {//从右侧借,左旋转
+                rotateLeft(rightSibling, parentNode, childIndex, currentNode);
+                return;
+            }
+            if (leftSibling != null) {
+                elementUnderflow(leftSibling, parentNode, childIndex - 1, currentNode);
+            } else if (rightSibling != null) {
+                elementUnderflow(currentNode, parentNode, childIndex, rightSibling);
+            } else {
+                throw new IllegalArgumentException("当前树存在问题,无法删除元素");
+            }
+            currentNode = parentNode;
+        }
+    }
+
+    /**
+     * 父节点中的中间元素下降，与左右两个子节点合并为左侧节点，右侧节点的页面被释放
+     */
+    private void elementUnderflow(PagedNode<K, V> leftChildNode, PagedNode<K, V> parentNode, int middleIndex, PagedNode<K, V> rightChildNode) {
+        leftChildNode.appendElements(parentNode.getKey(middleIndex), parentNode.getValue(middleIndex), rightChildNode);
+        parentNode.deleteElement(middleIndex);
+        leftChildNode.markDirty();
+        parentNode.markDirty();
+        freeNode(rightChildNode);
+        if (parentNode.getPageId() == rootPage && !parentNode.hasElement()) {//根节点没有元素，合并生成的节点升为根节点
+            freeNode(parentNode);
+            setRoot(leftChildNode.getPageId(), height - 1);
+        }
+    }
+
+    private void rotateRight(PagedNode<K, V> fromNode, PagedNode<K, V> parentNode, int middleIndex, PagedNode<K, V> destinationNode) {
+        int maxIndex = fromNode.getElementNum() - 1;
+        int maxRightChild = fromNode.isLeafNode() ? PageFile.NO_PAGE : fromNode.getChild(maxIndex + 1);
+        destinationNode.insertFirstElement(parentNode.getKey(middleIndex), parentNode.getValue(middleIndex), maxRightChild);
+        parentNode.replaceElement(middleIndex, fromNode.getKey(maxIndex), fromNode.getValue(maxIndex));
+        fromNode.deleteElement(maxIndex);
+        fromNode.markDirty();
+        parentNode.markDirty();
+        destinationNode.markDirty();
+    }
+
+    private void rotateLeft(PagedNode<K, V> fromNode, PagedNode<K, V> parentNode, int middleIndex, PagedNode<K, V> destinationNode) {
+        int miniLeftChild = fromNode.isLeafNode() ? PageFile.NO_PAGE : fromNode.getChild(0);
+        destinationNode.insertElement(destinationNode.getElementNum(), parentNode.getKey(middleIndex), parentNode.getValue(middleIndex), miniLeftChild);
+        parentNode.replaceElement(middleIndex, fromNode.getKey(0), fromNode.getValue(0));
+        fromNode.deleteFirstElement();
+        fromNode.markDirty();
+        parentNode.markDirty();
+        destinationNode.markDirty();
+    }
+
+    /**
+     * 通过缓冲池获取指定页面中的节点
+     *
+     * @param pageId 页号
+     * @param depth  节点在树中的深度
+     */
+    private PagedNode<K, V> node(int pageId, int depth) {
+        return bufferPool.get(pageId, depth);
+    }
+
+    /**
+     * 分配页面并创建空节点
+     */
+    private PagedNode<K, V> newNode(boolean leafNode, int depth) {
+        PagedNode<K, V> node = new PagedNode<>(pageFile.allocate(), size, leafNode);
+        node.markDirty();
+        bufferPool.add(node, depth);
+        return node;
+    }
+
+    /**
+     * 释放节点的页面，节点不再写回
+     */
+    private void freeNode(PagedNode<K, V> node) {
+        bufferPool.remove(node);
+        pageFile.free(node.getPageId());
+    }
+
+    private void setRoot(int rootPage, int height) {
+        this.rootPage = rootPage;
+        this.height = height;
+        pageFile.setRoot(rootPage, height);
+        bufferPool.heightChanged();
+    }
+
+    private void pushPath(int depth, PagedNode<K, V> node, int index) {
+        if (depth == pathNodes.length) {
+            pathNodes = Arrays.copyOf(pathNodes, depth * 2);
+            pathIndexes = Arrays.copyOf(pathIndexes, depth * 2);
+        }
+        pathNodes[depth] = node;
+        pathIndexes[depth] = index;
+    }
+
+    /**
+     * 将缓冲池中的脏节点写回页面，并将修改过的页面写入磁盘
+     */
+    public void flush() {
+        bufferPool.flush();
+        pageFile.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        bufferPool.flush();
+        pageFile.close();
+    }
+}
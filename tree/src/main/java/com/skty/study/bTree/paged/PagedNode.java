@@ -0,0 +1,351 @@
+package com.skty.study.bTree.paged;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * 分页B树的节点，从页面中解码到堆上进行查找和修改，修改后标记为脏节点，再编码写回页面。子节点保存为页号
+ * <pre>
+ * 页面布局：leaf(1) elementNum(2) keys[阶-1] values[阶-1] children[阶]（叶子节点不使用children区域）
+ * </pre>
+ * elementNum按无符号的2字节保存，阶最大为{@link #MAX_NODE_SIZE}，页面更大时多出的空间不使用
+ *
+ * @author skty
+ */
+class PagedNode<K extends Comparable<K>, V> {
+
+    /**
+     * 页面中keys区域的起始位置
+     */
+    static final int KEYS_OFFSET = 3;
+
+    /**
+     * 阶的上限：页面中的元素数最多为 阶-1，需要能用无符号的2字节保存
+     */
+    static final int MAX_NODE_SIZE = 0xFFFF + 1;
+
+    /**
+     * 节点对象本身在堆上占用的字节数（估计值）
+     */
+    private static final int OBJECT_HEAP_SIZE = 40;
+
+    /**
+     * 数组对象头的字节数
+     */
+    private static final int ARRAY_HEADER_SIZE = 16;
+
+    /**
+     * 节点所在的页号
+     */
+    private final int pageId;
+
+    /**
+     * 树的阶，当前节点所能容纳所有元素的大小（多出的一个位置用于分裂前的临时插入，不会写入页面）
+     */
+    private final int nodeSize;
+
+    private final Object[] keys;
+
+    private final Object[] values;
+
+    /**
+     * 子节点页号，叶子节点为null
+     */
+    private final int[] children;
+
+    private int elementNum;
+
+    /**
+     * 解码或者写回页面之后是否被修改过
+     */
+    private boolean dirty;
+
+    PagedNode(int pageId, int nodeSize, boolean leafNode) {
+        this.pageId = pageId;
+        this.nodeSize = nodeSize;
+        this.keys = new Object[nodeSize];
+        this.values = new Object[nodeSize];
+        this.children = leafNode ? null : new int[nodeSize + 1];
+    }
+
+    /**
+     * 从页面中解码节点
+     *
+     * @param pageId          页号
+     * @param page            页面视图
+     * @param nodeSize        树的阶
+     * @param keySerializer   key序列化器
+     * @param valueSerializer value序列化器
+     * @return 解码后的节点
+     */
+    static <K extends Comparable<K>, V> PagedNode<K, V> decode(int pageId, ByteBuffer page, int nodeSize,
+                                                              Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+        PagedNode<K, V> node = new PagedNode<>(pageId, nodeSize, page.get(0) == 1);
+        int elementNum = page.getShort(1) & 0xFFFF;
+        page.position(KEYS_OFFSET);
+        for (int i = 0; i < elementNum; i++) {
+            node.keys[i] = keySerializer.read(page);
+        }
+        page.position(KEYS_OFFSET + (nodeSize - 1) * keySerializer.size());
+        for (int i = 0; i < elementNum; i++) {
+            node.values[i] = valueSerializer.read(page);
+        }
+        if (node.children != null) {
+            page.position(KEYS_OFFSET + (nodeSize - 1) * (keySerializer.size() + valueSerializer.size()));
+            for (int i = 0; i <= elementNum; i++) {
+                node.children[i] = page.getInt();
+            }
+        }
+        node.elementNum = elementNum;
+        return node;
+    }
+
+    /**
+     * 将节点编码写入页面，写入后节点不再是脏节点
+     *
+     * @param page            页面视图
+     * @param keySerializer   key序列化器
+     * @param valueSerializer value序列化器
+     */
+    @SuppressWarnings("unchecked")
+    void encode(ByteBuffer page, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+        page.put(0, (byte) (children == null ? 1 : 0));
+        page.putShort(1, (short) elementNum);
+        page.position(KEYS_OFFSET);
+        for (int i = 0; i < elementNum; i++) {
+            keySerializer.write(page, (K) keys[i]);
+        }
+        page.position(KEYS_OFFSET + (nodeSize - 1) * keySerializer.size());
+        for (int i = 0; i < elementNum; i++) {
+            valueSerializer.write(page, (V) values[i]);
+        }
+        if (children != null) {
+            page.position(KEYS_OFFSET + (nodeSize - 1) * (keySerializer.size() + valueSerializer.size()));
+            for (int i = 0; i <= elementNum; i++) {
+                page.putInt(children[i]);
+            }
+        }
+        dirty = false;
+    }
+
+    /**
+     * 根据页面大小计算树的阶：页面需要容纳 阶-1 个key和value以及 阶 个子节点页号，不超过{@link #MAX_NODE_SIZE}
+     *
+     * @return 阶
+     */
+    static int nodeSizeOf(int pageSize, int keySize, int valueSize) {
+        int nodeSize = (pageSize - KEYS_OFFSET + keySize + valueSize) / (keySize + valueSize + Integer.BYTES);
+        return Math.min(nodeSize, MAX_NODE_SIZE);
+    }
+
+    /**
+     * 估计一个装满的节点解码后在堆上占用的字节数（按压缩指针计算）：节点对象，keys、values、children数组，
+     * 以及 阶-1 个key和value对象
+     *
+     * @param nodeSize      树的阶
+     * @param keyHeapSize   每个key对象的字节数
+     * @param valueHeapSize 每个value对象的字节数
+     * @return 字节数
+     */
+    static long heapSizeOf(int nodeSize, int keyHeapSize, int valueHeapSize) {
+        long arrays = 2 * (ARRAY_HEADER_SIZE + (long) Integer.BYTES * nodeSize) + ARRAY_HEADER_SIZE + (long) Integer.BYTES * (nodeSize + 1);
+        return OBJECT_HEAP_SIZE + arrays + (long) (nodeSize - 1) * (keyHeapSize + valueHeapSize);
+    }
+
+    int getPageId() {
+        return pageId;
+    }
+
+    boolean isDirty() {
+        return dirty;
+    }
+
+    void markDirty() {
+        dirty = true;
+    }
+
+    int getElementNum() {
+        return elementNum;
+    }
+
+    boolean isLeafNode() {
+        return children == null;
+    }
+
+    boolean hasElement() {
+        return elementNum > 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    K getKey(int index) {
+        return (K) keys[index];
+    }
+
+    @SuppressWarnings("unchecked")
+    V getValue(int index) {
+        return (V) values[index];
+    }
+
+    void setValue(int index, V value) {
+        values[index] = value;
+    }
+
+    void replaceElement(int index, Object key, Object value) {
+        keys[index] = key;
+        values[index] = value;
+    }
+
+    int getChild(int index) {
+        return children[index];
+    }
+
+    void setChild(int index, int childPage) {
+        children[index] = childPage;
+    }
+
+    /**
+     * 二分查找指定的key
+     *
+     * @return 找到时返回元素所在的索引；没找到时返回 -(插入位置) - 1
+     */
+    @SuppressWarnings("unchecked")
+    int searchKey(K key) {
+        int low = 0;
+        int high = elementNum - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int compare = ((K) keys[mid]).compareTo(key);
+            if (compare < 0) {
+                low = mid + 1;
+            } else if (compare > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    boolean needDivide() {
+        return elementNum > nodeSize - 1;
+    }
+
+    int lowestLimit() {
+        return (nodeSize - 1) / 2;
+    }
+
+    boolean lowerThanEleLowestLimit() {
+        return elementNum < lowestLimit();
+    }
+
+    boolean moreThanLowestLimit() {
+        return elementNum > lowestLimit();
+    }
+
+    /**
+     * 在指定的位置插入元素，原有元素和后面元素后移
+     *
+     * @param rightChild 插入元素的右子树页号（叶子节点忽略）
+     */
+    void insertElement(int index, Object key, Object value, int rightChild) {
+        int moveNum = elementNum - index;
+        System.arraycopy(keys, index, keys, index + 1, moveNum);
+        System.arraycopy(values, index, values, index + 1, moveNum);
+        keys[index] = key;
+        values[index] = value;
+        if (children != null) {
+            System.arraycopy(children, index + 1, children, index + 2, moveNum);
+            children[index + 1] = rightChild;
+        }
+        elementNum++;
+    }
+
+    /**
+     * 在最前面插入元素
+     *
+     * @param leftChild 插入元素的左子树页号（叶子节点忽略）
+     */
+    void insertFirstElement(Object key, Object value, int leftChild) {
+        System.arraycopy(keys, 0, keys, 1, elementNum);
+        System.arraycopy(values, 0, values, 1, elementNum);
+        keys[0] = key;
+        values[0] = value;
+        if (children != null) {
+            System.arraycopy(children, 0, children, 1, elementNum + 1);
+            children[0] = leftChild;
+        }
+        elementNum++;
+    }
+
+    /**
+     * 删除指定位置的元素以及它的右子树
+     */
+    void deleteElement(int deleteIndex) {
+        int moveNum = elementNum - deleteIndex - 1;
+        System.arraycopy(keys, deleteIndex + 1, keys, deleteIndex, moveNum);
+        System.arraycopy(values, deleteIndex + 1, values, deleteIndex, moveNum);
+        keys[elementNum - 1] = null;
+        values[elementNum - 1] = null;
+        if (children != null) {
+            System.arraycopy(children, deleteIndex + 2, children, deleteIndex + 1, moveNum);
+        }
+        elementNum--;
+    }
+
+    /**
+     * 删除第一个元素以及它的左子树
+     */
+    void deleteFirstElement() {
+        System.arraycopy(keys, 1, keys, 0, elementNum - 1);
+        System.arraycopy(values, 1, values, 0, elementNum - 1);
+        keys[elementNum - 1] = null;
+        values[elementNum - 1] = null;
+        if (children != null) {
+            System.arraycopy(children, 1, children, 0, elementNum);
+        }
+        elementNum--;
+    }
+
+    /**
+     * 节点分裂：将index之后的元素和对应子树移动到空节点target中，index位置的元素由调用方先取出并上升到父节点
+     */
+    void moveRightHalfTo(int index, PagedNode<K, V> target) {
+        int moveNum = elementNum - index - 1;
+        System.arraycopy(keys, index + 1, target.keys, 0, moveNum);
+        System.arraycopy(values, index + 1, target.values, 0, moveNum);
+        Arrays.fill(keys, index, elementNum, null);
+        Arrays.fill(values, index, elementNum, null);
+        if (children != null) {
+            System.arraycopy(children, index + 1, target.children, 0, moveNum + 1);
+        }
+        target.elementNum = moveNum;
+        elementNum = index;
+    }
+
+    /**
+     * 节点合并：将父节点下降的中间元素和右侧节点的所有元素（包括子树）追加到当前节点后面
+     */
+    void appendElements(Object middleKey, Object middleValue, PagedNode<K, V> rightNode) {
+        keys[elementNum] = middleKey;
+        values[elementNum] = middleValue;
+        int rightNum = rightNode.elementNum;
+        System.arraycopy(rightNode.keys, 0, keys, elementNum + 1, rightNum);
+        System.arraycopy(rightNode.values, 0, values, elementNum + 1, rightNum);
+        if (children != null) {
+            System.arraycopy(rightNode.children, 0, children, elementNum + 1, rightNum + 1);
+        }
+        elementNum += rightNum + 1;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < elementNum; i++) {
+            if (i > 0) {
+                builder.append(';');
+            }
+            builder.append(keys[i]);
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,124 @@
+package com.skty.study.bTree.paged;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 定长序列化器，将key或value写入页面中的固定长度区域。
+ * 页面中每个位置的长度固定，才能根据页面大小计算出树的阶
+ *
+ * @author skty
+ */
+public interface Serializer<T> {
+
+    /**
+     * 序列化后的字节数，每个对象都占用这个长度
+     */
+    int size();
+
+    /**
+     * 从buffer的当前位置写入对象，写入size()个字节
+     */
+    void write(ByteBuffer buffer, T value);
+
+    /**
+     * 从buffer的当前位置读取对象，读取size()个字节
+     */
+    T read(ByteBuffer buffer);
+
+    /**
+     * 反序列化得到的对象在堆上占用的字节数（估计值），缓冲池按它和树的阶计算内存预算能容纳的节点数。
+     * 默认为对象头加上序列化后的长度
+     */
+    default int heapSize() {
+        return 16 + size();
+    }
+
+    Serializer<Long> LONG = new Serializer<Long>() {
+        @Override
+        public int size() {
+            return Long.BYTES;
+        }
+
+        @Override
+        public void write(ByteBuffer buffer, Long value) {
+            buffer.putLong(value);
+        }
+
+        @Override
+        public Long read(ByteBuffer buffer) {
+            return buffer.getLong();
+        }
+
+        @Override
+        public int heapSize() {
+            return 24;
+        }
+    };
+
+    Serializer<Integer> INTEGER = new Serializer<Integer>() {
+        @Override
+        public int size() {
+            return Integer.BYTES;
+        }
+
+        @Override
+        public void write(ByteBuffer buffer, Integer value) {
+            buffer.putInt(value);
+        }
+
+        @Override
+        public Integer read(ByteBuffer buffer) {
+            return buffer.getInt();
+        }
+
+        @Override
+        public int heapSize() {
+            return 16;
+        }
+    };
+
+    /**
+     * UTF-8字符串，编码后最多maxBytes个字节；前两个字节保存实际长度，剩余部分补0
+     *
+     * @param maxBytes 编码后的最大字节数
+     */
+    static Serializer<String> utf8(int maxBytes) {
+        if (maxBytes <= 0 || maxBytes > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("字符串最大字节数必须在(0, " + Short.MAX_VALUE + "]之间");
+        }
+        return new Serializer<String>() {
+            @Override
+            public int size() {
+                return Short.BYTES + maxBytes;
+            }
+
+            @Override
+            public void write(ByteBuffer buffer, String value) {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                if (bytes.length > maxBytes) {
+                    throw new IllegalArgumentException("字符串编码后超过" + maxBytes + "个字节:" + value);
+                }
+                buffer.putShort((short) bytes.length);
+                buffer.put(bytes);
+                for (int i = bytes.length; i < maxBytes; i++) {
+                    buffer.put((byte) 0);
+                }
+            }
+
+            @Override
+            public String read(ByteBuffer buffer) {
+                byte[] bytes = new byte[buffer.getShort()];
+                buffer.get(bytes);
+                buffer.position(buffer.position() + maxBytes - bytes.length);
+                return new String(bytes, StandardCharsets.UTF_8);
+            }
+
+            @Override
+            public int heapSize() {
+                //String对象加上字符数组，按每个字节一个char估计
+                return 24 + 16 + 2 * maxBytes;
+            }
+        };
+    }
+}
@@ -0,0 +1,115 @@
+package com.skty.study.bTree.wal;
+
+import com.skty.study.bTree.BTree;
+import com.skty.study.bTree.BTreeSnapshot;
+import com.skty.study.bTree.Codec;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 检查点文件，保存某个LSN时树中的全部元素，恢复时自底向上构建树，再重放之后的日志。
+ * 先写临时文件并落盘，再原子重命名为检查点文件，宕机时要么是旧的检查点，要么是完整的新检查点
+ * <pre>
+ * magic(4) version(4) lsn(8) 之后为{@link BTree#writeTo}格式的数据
+ * </pre>
+ *
+ * @author skty
+ */
+class CheckpointFile<K extends Comparable<K>, V> {
+
+    private static final int MAGIC = 0x42545743;
+
+    private static final int VERSION = 2;
+
+    private static final int HEADER_SIZE = 16;
+
+    private static final String FILE_NAME = "checkpoint.dat";
+
+    private static final String TEMP_FILE_NAME = "checkpoint.tmp";
+
+    /**
+     * 检查点包含的最后一条日志记录的LSN，没有检查点为0
+     */
+    final long lsn;
+
+    /**
+     * 从检查点构建的树
+     */
+    final BTree<K, V> tree;
+
+    private CheckpointFile(long lsn, BTree<K, V> tree) {
+        this.lsn = lsn;
+        this.tree = tree;
+    }
+
+    /**
+     * 把快照写入检查点文件
+     *
+     * @param directory 数据目录
+     * @param snapshot  检查点的快照
+     * @param lsn       快照包含的最后一条日志记录的LSN
+     */
+    static <K extends Comparable<K>, V> void write(Path directory, BTreeSnapshot<K, V> snapshot, long lsn,
+                                                   Codec<K> keyCodec, Codec<V> valueCodec) throws IOException {
+        Path tempFile = directory.resolve(TEMP_FILE_NAME);
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putLong(lsn).flip();
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            snapshot.writeTo(channel, keyCodec, valueCodec);
+            channel.force(true);
+        }
+        Files.move(tempFile, directory.resolve(FILE_NAME), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        forceDirectory(directory);
+    }
+
+    /**
+     * 读取检查点文件并构建树，没有检查点时返回空树
+     *
+     * @param directory 数据目录
+     * @param size      树的阶
+     */
+    static <K extends Comparable<K>, V> CheckpointFile<K, V> read(Path directory, int size, Codec<K> keyCodec, Codec<V> valueCodec) throws IOException {
+        Files.deleteIfExists(directory.resolve(TEMP_FILE_NAME));
+        Path file = directory.resolve(FILE_NAME);
+        if (!Files.exists(file)) {
+            return new CheckpointFile<>(0, new BTree<K, V>(size));
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining()) {
+                if (channel.read(header) < 0) {
+                    throw new IllegalStateException("检查点文件不完整:" + file);
+                }
+            }
+            header.flip();
+            if (header.getInt() != MAGIC) {
+                throw new IllegalStateException("不是检查点文件:" + file);
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IllegalStateException("不支持的检查点文件版本:" + version);
+            }
+            long lsn = header.getLong();
+            return new CheckpointFile<>(lsn, BTree.readFrom(channel, size, keyCodec, valueCodec));
+        }
+    }
+
+    /**
+     * 目录落盘，保证重命名持久化（有的平台不支持打开目录，忽略）
+     */
+    private static void forceDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.skty.study.bTree.wal;
+
+import com.skty.study.bTree.BTree;
+import com.skty.study.bTree.BTreeSnapshot;
+import com.skty.study.bTree.Codec;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 带预写日志的内存B树，插入、删除返回时修改已经持久化，不需要把节点写回磁盘：
+ * 1.修改先编码为日志记录追加到日志缓冲区，再应用到内存中的树（在写锁内，日志顺序与修改顺序一致）
+ * 2.释放写锁后等待日志落盘，并发的写入者通过组提交共用一次force
+ * 3.checkpoint时在写锁内创建树的快照并切换日志文件，在锁外把快照写入检查点文件，完成后删除旧日志
+ * 4.打开时读取最近的检查点，重放其后的日志；没有检查点时重放全部日志重建树
+ * <p>
+ * 可以被多个线程同时使用，查找使用读锁
+ *
+ * @author skty
+ */
+public class DurableBTree<K extends Comparable<K>, V> implements Closeable {
+
+    private final Path directory;
+
+    private final BTree<K, V> tree;
+
+    private final Codec<K> keyCodec;
+
+    private final Codec<V> valueCodec;
+
+    private final WriteAheadLog<K, V> log;
+
+    private final ReentrantReadWriteLock treeLock = new ReentrantReadWriteLock();
+
+    /**
+     * 同一时间只允许一个检查点
+     */
+    private final Object checkpointLock = new Object();
+
+    private DurableBTree(Path directory, BTree<K, V> tree, Codec<K> keyCodec, Codec<V> valueCodec, WriteAheadLog<K, V> log) {
+        this.directory = directory;
+        this.tree = tree;
+        this.keyCodec = keyCodec;
+        this.valueCodec = valueCodec;
+        this.log = log;
+    }
+
+    /**
+     * 打开（不存在时创建）数据目录，从检查点和日志恢复树
+     *
+     * @param directory  数据目录，保存日志文件和检查点文件
+     * @param size       树的阶，大于2
+     * @param keyCodec   key编解码器
+     * @param valueCodec value编解码器
+     * @return 恢复后的树
+     * @throws IOException 读写文件失败
+     */
+    public static <K extends Comparable<K>, V> DurableBTree<K, V> open(Path directory, int size, Codec<K> keyCodec, Codec<V> valueCodec) throws IOException {
+        Files.createDirectories(directory);
+        CheckpointFile<K, V> checkpoint = CheckpointFile.read(directory, size, keyCodec, valueCodec);
+        WriteAheadLog<K, V> log = new WriteAheadLog<>(directory, keyCodec, valueCodec);
+        log.recover(checkpoint.tree, checkpoint.lsn);
+        return new DurableBTree<>(directory, checkpoint.tree, keyCodec, valueCodec, log);
+    }
+
+    /**
+     * 查找指定key对应的value
+     *
+     * @param key 指定的key
+     * @return 对应的value，没有返回null
+     */
+    public V find(K key) {
+        treeLock.readLock().lock();
+        try {
+            return tree.find(key);
+        } finally {
+            treeLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 新增数据，返回时日志已经落盘
+     *
+     * @param key   指定key
+     * @param value 指定的value
+     * @return true:不存在该元素，已经新增进去  false:该元素已经存在树中，用新元素替换旧元素
+     */
+    public boolean insert(K key, V value) {
+        if (key == null) {
+            throw new IllegalArgumentException("key不能为null");
+        }
+        long lsn;
+        boolean inserted;
+        treeLock.writeLock().lock();
+        try {
+            lsn = log.appendInsert(key, value);
+            inserted = tree.insert(key, value);
+        } catch (IOException e) {
+            throw new IllegalStateException("写入日志失败", e);
+        } finally {
+            treeLock.writeLock().unlock();
+        }
+        sync(lsn);
+        return inserted;
+    }
+
+    /**
+     * 删除数据，返回时日志已经落盘（key不存在时也会记录日志）
+     *
+     * @param key 要删除的key
+     * @return true:删除成功  false:不存在该元素
+     */
+    public boolean delete(K key) {
+        if (key == null) {
+            throw new IllegalArgumentException("key不能为null");
+        }
+        long lsn;
+        boolean deleted;
+        treeLock.writeLock().lock();
+        try {
+            lsn = log.appendDelete(key);
+            deleted = tree.delete(key);
+        } catch (IOException e) {
+            throw new IllegalStateException("写入日志失败", e);
+        } finally {
+            treeLock.writeLock().unlock();
+        }
+        sync(lsn);
+        return deleted;
+    }
+
+    private void sync(long lsn) {
+        try {
+            log.sync(lsn);
+        } catch (IOException e) {
+            throw new IllegalStateException("日志落盘失败", e);
+        }
+    }
+
+    /**
+     * 创建当前树的只读快照，见{@link BTree#snapshot()}
+     */
+    public BTreeSnapshot<K, V> snapshot() {
+        treeLock.writeLock().lock();
+        try {
+            return tree.snapshot();
+        } finally {
+            treeLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 创建检查点：快照写入检查点文件后，删除检查点之前的日志文件，缩短恢复时需要重放的日志。
+     * 只在创建快照、切换日志文件时短暂持有写锁，写检查点文件期间不阻塞读写
+     *
+     * @return 检查点包含的最后一条日志记录的LSN
+     * @throws IOException 读写文件失败
+     */
+    public long checkpoint() throws IOException {
+        synchronized (checkpointLock) {
+            BTreeSnapshot<K, V> snapshot;
+            long lsn;
+            treeLock.writeLock().lock();
+            try {
+                snapshot = tree.snapshot();
+                lsn = log.rotate();
+            } finally {
+                treeLock.writeLock().unlock();
+            }
+            CheckpointFile.write(directory, snapshot, lsn, keyCodec, valueCodec);
+            log.deleteFilesBefore(lsn);
+            return lsn;
+        }
+    }
+
+    /**
+     * 最后一条日志记录的LSN
+     */
+    public long getLastLsn() {
+        treeLock.readLock().lock();
+        try {
+            return log.getLastLsn();
+        } finally {
+            treeLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 已经落盘的最后一条日志记录的LSN
+     */
+    public long getDurableLsn() {
+        return log.getDurableLsn();
+    }
+
+    /**
+     * 日志force的次数，与写入次数的比值即组提交平均每批的记录数的倒数
+     */
+    public long getSyncCount() {
+        return log.getSyncCount();
+    }
+
+    /**
+     * 剩余的日志落盘后关闭，不创建检查点
+     */
+    @Override
+    public void close() throws IOException {
+        treeLock.writeLock().lock();
+        try {
+            log.close();
+        } finally {
+            treeLock.writeLock().unlock();
+        }
+    }
+}
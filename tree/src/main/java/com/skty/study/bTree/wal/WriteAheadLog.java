@@ -0,0 +1,454 @@
+package com.skty.study.bTree.wal;
+
+import com.skty.study.bTree.BTree;
+import com.skty.study.bTree.Codec;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * 只追加的预写日志，按逻辑操作记录插入和删除，每条记录有连续递增的日志序号（LSN）。
+ * <p>
+ * 组提交：append只把记录编码到内存缓冲区，调用sync等待记录落盘。第一个等待的线程成为leader，
+ * 取走缓冲区中目前所有的记录一次写入并force，其他线程继续向另一个缓冲区追加并等待，
+ * leader完成后由下一批中的一个线程接着写，多个写入者共用一次force。
+ * <p>
+ * 日志分为多个文件，文件名为 wal-第一条记录的LSN.log，检查点时切换到新文件，检查点完成后删除旧文件。
+ * <pre>
+ * 记录：length(4) crc32(4) | lsn(8) type(1) key value（删除没有value）
+ * </pre>
+ * 恢复时逐条校验，最后一个文件末尾不完整或者校验失败的记录（写入一半时宕机）被截断
+ *
+ * @author skty
+ */
+class WriteAheadLog<K extends Comparable<K>, V> implements Closeable {
+
+    private static final String FILE_PREFIX = "wal-";
+
+    private static final String FILE_SUFFIX = ".log";
+
+    private static final byte INSERT = 1;
+
+    private static final byte DELETE = 2;
+
+    /**
+     * 记录头：length(4) crc32(4)
+     */
+    private static final int RECORD_HEADER_SIZE = 8;
+
+    private final Path directory;
+
+    private final Codec<K> keyCodec;
+
+    private final Codec<V> valueCodec;
+
+    /**
+     * 当前追加的文件
+     */
+    private FileChannel channel;
+
+    /**
+     * 当前文件中第一条记录的LSN
+     */
+    private long fileFirstLsn;
+
+    /**
+     * 正在追加的缓冲区
+     */
+    private RecordBuffer pending = new RecordBuffer();
+
+    /**
+     * 备用缓冲区，leader写入期间为null（被leader取走的缓冲区写完后成为备用缓冲区）
+     */
+    private RecordBuffer spare = new RecordBuffer();
+
+    private final CRC32 crc = new CRC32();
+
+    /**
+     * 最后一条追加的记录的LSN
+     */
+    private long lastLsn;
+
+    /**
+     * 已经落盘的最后一条记录的LSN
+     */
+    private long durableLsn;
+
+    /**
+     * 是否有leader正在写入
+     */
+    private boolean flushing;
+
+    /**
+     * 写入失败的异常，失败后日志不再可用（内存中的树已经包含了没有落盘的修改）
+     */
+    private IOException failure;
+
+    private boolean closed;
+
+    /**
+     * force的次数
+     */
+    private long syncCount;
+
+    WriteAheadLog(Path directory, Codec<K> keyCodec, Codec<V> valueCodec) {
+        this.directory = directory;
+        this.keyCodec = keyCodec;
+        this.valueCodec = valueCodec;
+    }
+
+    /**
+     * 按顺序重放全部日志文件中LSN大于检查点的记录，截断最后一个文件末尾不完整的记录，然后打开最后一个文件继续追加
+     *
+     * @param tree          从检查点恢复的树
+     * @param checkpointLsn 检查点包含的最后一条记录的LSN，没有检查点为0
+     * @throws IOException 读写文件失败
+     */
+    void recover(BTree<K, V> tree, long checkpointLsn) throws IOException {
+        List<Long> files = listFiles();
+        lastLsn = checkpointLsn;
+        for (int i = 0; i < files.size(); i++) {
+            long firstLsn = files.get(i);
+            if (firstLsn > lastLsn + 1) {
+                throw new IllegalStateException("日志不连续,缺少LSN " + (lastLsn + 1) + " 到 " + (firstLsn - 1) + " 的记录");
+            }
+            lastLsn = firstLsn - 1;
+            replayFile(file(firstLsn), i == files.size() - 1, tree, checkpointLsn);
+        }
+        if (lastLsn < checkpointLsn) {
+            throw new IllegalStateException("日志缺少检查点之前的记录,日志到LSN " + lastLsn + ",检查点LSN " + checkpointLsn);
+        }
+        durableLsn = lastLsn;
+        if (files.isEmpty() || files.get(files.size() - 1) > lastLsn) {//没有日志文件，或者最后一个文件为空
+            openFile(lastLsn + 1);
+        } else {//继续追加到最后一个文件
+            fileFirstLsn = files.get(files.size() - 1);
+            channel = FileChannel.open(file(fileFirstLsn), StandardOpenOption.WRITE);
+            channel.position(channel.size());
+        }
+    }
+
+    private void replayFile(Path file, boolean lastFile, BTree<K, V> tree, long checkpointLsn) throws IOException {
+        try (FileChannel fileChannel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = fileChannel.size();
+            long position = 0;
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(fileChannel), 1 << 16));
+            while (position + RECORD_HEADER_SIZE <= size) {
+                int length = in.readInt();
+                int checksum = in.readInt();
+                if (length <= 0 || position + RECORD_HEADER_SIZE + length > size) {
+                    break;
+                }
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+                crc.reset();
+                crc.update(payload, 0, length);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                DataInputStream record = new DataInputStream(new ByteArrayInputStream(payload));
+                long lsn = record.readLong();
+                if (lsn != lastLsn + 1) {
+                    break;
+                }
+                byte type = record.readByte();
+                K key = keyCodec.read(record);
+                if (type == INSERT) {
+                    V value = valueCodec.read(record);
+                    if (lsn > checkpointLsn) {
+                        tree.insert(key, value);
+                    }
+                } else if (type == DELETE) {
+                    if (lsn > checkpointLsn) {
+                        tree.delete(key);
+                    }
+                } else {
+                    throw new IllegalStateException("未知的日志记录类型:" + type);
+                }
+                lastLsn = lsn;
+                position += RECORD_HEADER_SIZE + length;
+            }
+            if (position < size) {
+                if (!lastFile) {
+                    throw new IllegalStateException("日志文件损坏:" + file + ",位置:" + position);
+                }
+                //宕机时写了一半的记录，这些记录的写入者没有收到成功的返回，直接丢弃
+                fileChannel.truncate(position);
+                fileChannel.force(true);
+            }
+        }
+    }
+
+    /**
+     * 追加插入记录，记录只在内存中，需要调用sync等待落盘
+     *
+     * @return 记录的LSN
+     */
+    synchronized long appendInsert(K key, V value) throws IOException {
+        return append(INSERT, key, value);
+    }
+
+    /**
+     * 追加删除记录，记录只在内存中，需要调用sync等待落盘
+     *
+     * @return 记录的LSN
+     */
+    synchronized long appendDelete(K key) throws IOException {
+        return append(DELETE, key, null);
+    }
+
+    private long append(byte type, K key, V value) throws IOException {
+        checkUsable();
+        RecordBuffer buffer = pending;
+        int start = buffer.size();
+        try {
+            DataOutputStream out = buffer.out;
+            out.writeLong(0);//记录头，编码完成后回填
+            out.writeLong(lastLsn + 1);
+            out.writeByte(type);
+            keyCodec.write(out, key);
+            if (type == INSERT) {
+                valueCodec.write(out, value);
+            }
+        } catch (IOException | RuntimeException e) {//编码失败，丢弃写了一半的记录
+            buffer.truncate(start);
+            throw e;
+        }
+        buffer.seal(start, crc);
+        return ++lastLsn;
+    }
+
+    /**
+     * 等待指定LSN之前（包括）的记录全部落盘，见类注释中的组提交
+     *
+     * @param lsn append返回的LSN
+     * @throws IOException 写入失败，或者等待时被中断
+     */
+    void sync(long lsn) throws IOException {
+        RecordBuffer buffer;
+        FileChannel target;
+        long targetLsn;
+        synchronized (this) {
+            while (true) {
+                if (failure != null) {
+                    throw new IOException("日志写入失败", failure);
+                }
+                if (durableLsn >= lsn) {
+                    return;
+                }
+                if (!flushing) {
+                    break;
+                }
+                waitFlush();
+            }
+            //成为leader，取走缓冲区中的全部记录，其他线程追加到另一个缓冲区
+            flushing = true;
+            buffer = pending;
+            pending = spare;
+            spare = null;
+            target = channel;
+            targetLsn = lastLsn;
+        }
+        IOException error = null;
+        try {
+            write(target, buffer);
+            target.force(false);
+        } catch (IOException e) {
+            error = e;
+        }
+        synchronized (this) {
+            buffer.reset();
+            spare = buffer;
+            flushing = false;
+            if (error == null) {
+                durableLsn = targetLsn;
+                syncCount++;
+            } else {
+                failure = error;
+            }
+            notifyAll();
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * 切换到新的日志文件：当前缓冲区中的记录写入当前文件并落盘，之后的记录写入新文件。
+     * 调用时不能有并发的append（由调用者的写锁保证），检查点包含的就是返回的LSN之前的全部记录
+     *
+     * @return 切换前最后一条记录的LSN
+     * @throws IOException 写入失败
+     */
+    synchronized long rotate() throws IOException {
+        while (flushing) {
+            waitFlush();
+        }
+        checkUsable();
+        try {
+            write(channel, pending);
+            channel.force(false);
+            pending.reset();
+            durableLsn = lastLsn;
+            syncCount++;
+            if (fileFirstLsn <= lastLsn) {//当前文件为空时不需要切换
+                channel.close();
+                openFile(lastLsn + 1);
+            }
+        } catch (IOException e) {
+            failure = e;
+            throw e;
+        }
+        return lastLsn;
+    }
+
+    /**
+     * 删除只包含指定LSN之前（包括）的记录的日志文件，在检查点落盘后调用
+     */
+    synchronized void deleteFilesBefore(long lsn) throws IOException {
+        for (long firstLsn : listFiles()) {
+            if (firstLsn <= lsn && firstLsn < fileFirstLsn) {
+                Files.delete(file(firstLsn));
+            }
+        }
+    }
+
+    private void waitFlush() throws InterruptedIOException {
+        try {
+            wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("等待日志落盘时被中断");
+        }
+    }
+
+    private void checkUsable() throws IOException {
+        if (closed) {
+            throw new IllegalStateException("日志已经关闭");
+        }
+        if (failure != null) {
+            throw new IOException("日志写入失败", failure);
+        }
+    }
+
+    private static void write(FileChannel channel, RecordBuffer buffer) throws IOException {
+        ByteBuffer byteBuffer = buffer.toByteBuffer();
+        while (byteBuffer.hasRemaining()) {
+            channel.write(byteBuffer);
+        }
+    }
+
+    private void openFile(long firstLsn) throws IOException {
+        fileFirstLsn = firstLsn;
+        channel = FileChannel.open(file(firstLsn), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    private Path file(long firstLsn) {
+        return directory.resolve(String.format("%s%020d%s", FILE_PREFIX, firstLsn, FILE_SUFFIX));
+    }
+
+    /**
+     * 目录中全部日志文件的第一条记录的LSN，从小到大排序
+     */
+    private List<Long> listFiles() throws IOException {
+        List<Long> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, FILE_PREFIX + "*" + FILE_SUFFIX)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                files.add(Long.parseLong(name.substring(FILE_PREFIX.length(), name.length() - FILE_SUFFIX.length())));
+            }
+        }
+        files.sort(null);
+        return files;
+    }
+
+    long getLastLsn() {
+        return lastLsn;
+    }
+
+    synchronized long getDurableLsn() {
+        return durableLsn;
+    }
+
+    synchronized long getSyncCount() {
+        return syncCount;
+    }
+
+    /**
+     * 缓冲区中剩余的记录落盘后关闭文件
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        while (flushing) {
+            waitFlush();
+        }
+        closed = true;
+        try {
+            if (failure == null) {
+                write(channel, pending);
+                channel.force(false);
+                durableLsn = lastLsn;
+            }
+        } finally {
+            channel.close();
+            notifyAll();
+        }
+    }
+
+    /**
+     * 记录缓冲区，可以回填记录头、直接以ByteBuffer写入文件
+     */
+    private static final class RecordBuffer extends ByteArrayOutputStream {
+
+        private final DataOutputStream out = new DataOutputStream(this);
+
+        RecordBuffer() {
+            super(1 << 16);
+        }
+
+        void truncate(int size) {
+            count = size;
+        }
+
+        /**
+         * 回填从start开始的记录的记录头（长度和校验和）
+         */
+        void seal(int start, CRC32 crc) {
+            int length = count - start - RECORD_HEADER_SIZE;
+            crc.reset();
+            crc.update(buf, start + RECORD_HEADER_SIZE, length);
+            putInt(start, length);
+            putInt(start + 4, (int) crc.getValue());
+        }
+
+        private void putInt(int index, int value) {
+            buf[index] = (byte) (value >>> 24);
+            buf[index + 1] = (byte) (value >>> 16);
+            buf[index + 2] = (byte) (value >>> 8);
+            buf[index + 3] = (byte) value;
+        }
+
+        ByteBuffer toByteBuffer() {
+            return ByteBuffer.wrap(buf, 0, count);
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.skty.study.bTree;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * B树快照：创建之后树继续插入、删除（分裂、旋转、合并，回收的节点被再次使用），快照的内容保持不变
+ *
+ * @author skty
+ */
+public class BTreeSnapshotTest {
+
+    private static final int KEY_RANGE = 3000;
+
+    @Test
+    public void snapshotsUnchangedByLaterWrites() {
+        for (int order = 3; order <= 6; order++) {
+            checkSnapshots(order);
+        }
+    }
+
+    /**
+     * 每轮创建一个快照，之后随机修改树；每轮结束时检查之前所有的快照仍然与创建时的内容一致
+     */
+    private static void checkSnapshots(int order) {
+        Random random = new Random(order);
+        BTree<Integer, Integer> tree = new BTree<>(order);
+        TreeMap<Integer, Integer> expected = new TreeMap<>();
+        List<BTreeSnapshot<Integer, Integer>> snapshots = new ArrayList<>();
+        List<TreeMap<Integer, Integer>> snapshotContents = new ArrayList<>();
+        for (int round = 0; round < 24; round++) {
+            snapshots.add(tree.snapshot());
+            snapshotContents.add(new TreeMap<>(expected));
+            //前半部分以插入为主，后半部分以删除为主，节点反复分裂、合并
+            boolean growing = round < 12;
+            for (int i = 0; i < 400; i++) {
+                int key = random.nextInt(KEY_RANGE);
+                if (random.nextInt(10) < (growing ? 7 : 3)) {
+                    assertEquals(expected.put(key, round) == null, tree.insert(key, round));
+                } else {
+                    assertEquals(expected.remove(key) != null, tree.delete(key));
+                }
+            }
+            Map<Integer, Integer> batch = new HashMap<>();
+            for (int i = 0; i < 50; i++) {
+                batch.put(random.nextInt(KEY_RANGE), -round);
+            }
+            tree.insertAll(batch);
+            expected.putAll(batch);
+            List<Integer> deleteKeys = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                deleteKeys.add(random.nextInt(KEY_RANGE));
+            }
+            tree.deleteAll(deleteKeys);
+            expected.keySet().removeAll(deleteKeys);
+
+            for (int i = 0; i < snapshots.size(); i++) {
+                assertSnapshot(snapshots.get(i), snapshotContents.get(i));
+            }
+            assertEquals(expected.size(), tree.count());
+        }
+    }
+
+    /**
+     * 快照之后的修改只回收当前写入代数的节点：与右兄弟节点合并时右兄弟节点没有复制，仍然被快照引用，
+     * 不能进入回收列表被清空、再被分裂复用
+     */
+    @Test
+    public void freedNodesNotReusedFromSnapshot() {
+        TreeMap<Integer, Integer> expected = new TreeMap<>();
+        for (int key = 0; key < KEY_RANGE; key++) {
+            expected.put(key, key);
+        }
+        //按最低填充率构建，所有节点的元素数都在下限，删除即合并
+        BTree<Integer, Integer> tree = BTree.fromSorted(5, expected.entrySet().iterator(), 0.01);
+        BTreeSnapshot<Integer, Integer> snapshot = tree.snapshot();
+        TreeMap<Integer, Integer> snapshotContent = new TreeMap<>(expected);
+        for (int round = 0; round < 5; round++) {
+            //从小到大删除，最左侧的叶子节点不断与右兄弟节点合并；删除一半之后插入回去，分裂时复用回收的节点
+            for (int key = 0; key < KEY_RANGE / 2; key++) {
+                assertTrue(tree.delete(key));
+            }
+            assertSnapshot(snapshot, snapshotContent);
+            Map<Integer, Integer> batch = new HashMap<>();
+            for (int key = 0; key < KEY_RANGE / 2; key++) {
+                batch.put(key, -key);
+            }
+            assertEquals(KEY_RANGE / 2, tree.insertAll(batch));
+            for (int key = KEY_RANGE / 2; key < KEY_RANGE; key++) {
+                tree.insert(key + KEY_RANGE * (round + 1), key);
+            }
+            assertSnapshot(snapshot, snapshotContent);
+        }
+        for (int key = 0; key < KEY_RANGE / 2; key++) {
+            assertEquals(Integer.valueOf(-key), tree.find(key));
+        }
+        assertTrue(tree.analyze().isHealthy());
+    }
+
+    /**
+     * 读线程不加锁地遍历快照，同时写线程继续修改树
+     */
+    @Test
+    public void snapshotReadConcurrentlyWithWriter() throws Exception {
+        BTree<Integer, Integer> tree = new BTree<>(5);
+        Random random = new Random(11);
+        for (int i = 0; i < KEY_RANGE; i++) {
+            int key = random.nextInt(KEY_RANGE);
+            tree.insert(key, key);
+        }
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        AtomicBoolean writing = new AtomicBoolean(true);
+        for (int round = 0; round < 10; round++) {
+            BTreeSnapshot<Integer, Integer> snapshot = tree.snapshot();
+            List<Map.Entry<Integer, Integer>> content = snapshot.stream().collect(Collectors.toList());
+            writing.set(true);
+            Thread reader = new Thread(() -> {
+                try {
+                    while (writing.get()) {
+                        assertEquals(content, snapshot.stream().collect(Collectors.toList()));
+                        for (Map.Entry<Integer, Integer> entry : content) {
+                            assertEquals(entry.getValue(), snapshot.find(entry.getKey()));
+                        }
+                    }
+                } catch (Throwable e) {
+                    error.compareAndSet(null, e);
+                }
+            });
+            reader.start();
+            for (int i = 0; i < 20000; i++) {
+                int key = random.nextInt(KEY_RANGE);
+                if (random.nextBoolean()) {
+                    tree.insert(key, -key);
+                } else {
+                    tree.delete(key);
+                }
+            }
+            writing.set(false);
+            reader.join();
+            if (error.get() != null) {
+                throw new AssertionError(error.get());
+            }
+        }
+    }
+
+    private static void assertSnapshot(BTreeSnapshot<Integer, Integer> snapshot, TreeMap<Integer, Integer> expected) {
+        assertEquals(expected.size(), snapshot.count());
+        for (int key = 0; key < KEY_RANGE; key++) {
+            assertEquals(expected.get(key), snapshot.find(key));
+        }
+        Cursor<Integer, Integer> cursor = snapshot.cursor();
+        for (Map.Entry<Integer, Integer> entry : expected.entrySet()) {
+            assertTrue(cursor.next());
+            assertEquals(entry.getKey(), cursor.getKey());
+            assertEquals(entry.getValue(), cursor.getValue());
+        }
+        assertTrue(!cursor.next());
+        assertEquals(new ArrayList<>(expected.entrySet()), snapshot.stream().collect(Collectors.toList()));
+        int from = KEY_RANGE / 4;
+        int to = KEY_RANGE / 2;
+        assertEquals(new ArrayList<>(expected.subMap(from, true, to, false).entrySet()),
+                snapshot.stream(from, true, to, false).collect(Collectors.toList()));
+        assertEquals(expected.subMap(from, true, to, false).size(), snapshot.count(from, true, to, false));
+        assertEquals(expected.headMap(to).size(), snapshot.rank(to));
+        if (!expected.isEmpty()) {
+            int index = expected.size() / 2;
+            assertEquals(new ArrayList<>(expected.keySet()).get(index), snapshot.select(index));
+        }
+        assertTrue(snapshot.analyzer(1, 0).run().isHealthy());
+    }
+}
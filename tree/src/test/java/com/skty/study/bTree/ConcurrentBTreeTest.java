@@ -0,0 +1,229 @@
+package com.skty.study.bTree;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 线程安全的B树：多个线程并发插入、删除（包括删空叶子节点、降低树高），结果与模型一致，
+ * 读线程在整个过程中只能读到不存在或者正确的value
+ *
+ * @author skty
+ */
+public class ConcurrentBTreeTest {
+
+    private static final int THREAD_NUM = 8;
+
+    private static final int ORDER = 5;
+
+    /**
+     * 每个线程只修改自己的key范围，每个范围用各自的TreeMap作为模型，结束时与树逐个比较
+     */
+    @Test
+    public void disjointRanges() throws Exception {
+        ConcurrentBTree<Integer, Integer> tree = new ConcurrentBTree<>(ORDER);
+        int range = 2000;
+        List<TreeMap<Integer, Integer>> models = new ArrayList<>();
+        List<Runnable> writers = new ArrayList<>();
+        for (int t = 0; t < THREAD_NUM; t++) {
+            TreeMap<Integer, Integer> model = new TreeMap<>();
+            models.add(model);
+            int base = t * range;
+            Random random = new Random(t);
+            writers.add(() -> {
+                for (int i = 0; i < 60000; i++) {
+                    int key = base + random.nextInt(range);
+                    //先集中插入再集中删除，让叶子节点删空、树高来回变化
+                    boolean insert = (i / 5000) % 2 == 0 ? random.nextInt(4) > 0 : random.nextInt(4) == 0;
+                    if (insert) {
+                        assertEquals(model.put(key, key) == null, tree.insert(key, key));
+                    } else {
+                        assertEquals(model.remove(key) != null, tree.delete(key));
+                    }
+                    assertEquals(model.get(key), tree.find(key));
+                }
+            });
+        }
+        runWithReaders(tree, writers, THREAD_NUM * range);
+        for (int t = 0; t < THREAD_NUM; t++) {
+            for (int key = t * range; key < (t + 1) * range; key++) {
+                assertEquals(models.get(t).get(key), tree.find(key));
+            }
+        }
+        assertNoEmptyLeaf(tree);
+    }
+
+    /**
+     * 所有线程修改同一批key：每个key成功插入的次数减去成功删除的次数只能是0或者1，并且与最终是否存在一致
+     */
+    @Test
+    public void overlappingRanges() throws Exception {
+        ConcurrentBTree<Integer, Integer> tree = new ConcurrentBTree<>(ORDER);
+        int keyNum = 3000;
+        AtomicIntegerArray balance = new AtomicIntegerArray(keyNum);
+        List<Runnable> writers = new ArrayList<>();
+        for (int t = 0; t < THREAD_NUM; t++) {
+            Random random = new Random(100 + t);
+            writers.add(() -> {
+                for (int i = 0; i < 60000; i++) {
+                    int key = random.nextInt(keyNum);
+                    boolean insert = (i / 5000) % 2 == 0 ? random.nextInt(4) > 0 : random.nextInt(4) == 0;
+                    if (insert) {
+                        if (tree.insert(key, key)) {
+                            balance.incrementAndGet(key);
+                        }
+                    } else if (tree.delete(key)) {
+                        balance.decrementAndGet(key);
+                    }
+                }
+            });
+        }
+        runWithReaders(tree, writers, keyNum);
+        for (int key = 0; key < keyNum; key++) {
+            int count = balance.get(key);
+            assertTrue("key " + key + " balance " + count, count == 0 || count == 1);
+            assertEquals(count == 1 ? Integer.valueOf(key) : null, tree.find(key));
+        }
+        assertNoEmptyLeaf(tree);
+    }
+
+    /**
+     * 并发插入到多层之后并发删除全部key：每个key只能被删除成功一次，删空后只剩一个空的叶子根节点
+     */
+    @Test
+    public void drainCollapsesRoot() throws Exception {
+        ConcurrentBTree<Integer, Integer> tree = new ConcurrentBTree<>(ORDER);
+        int keyNum = 50000;
+        AtomicIntegerArray inserted = new AtomicIntegerArray(keyNum);
+        AtomicIntegerArray deleted = new AtomicIntegerArray(keyNum);
+        List<Runnable> inserters = new ArrayList<>();
+        List<Runnable> deleters = new ArrayList<>();
+        for (int t = 0; t < THREAD_NUM; t++) {
+            List<Integer> keys = shuffledKeys(keyNum, 200 + t);
+            inserters.add(() -> {
+                for (int key : keys) {
+                    if (tree.insert(key, key)) {
+                        inserted.incrementAndGet(key);
+                    }
+                }
+            });
+            List<Integer> deleteKeys = shuffledKeys(keyNum, 300 + t);
+            deleters.add(() -> {
+                for (int key : deleteKeys) {
+                    if (tree.delete(key)) {
+                        deleted.incrementAndGet(key);
+                    }
+                }
+            });
+        }
+        runWithReaders(tree, inserters, keyNum);
+        assertTrue(tree.getHeight() > 3);
+        for (int key = 0; key < keyNum; key++) {
+            assertEquals(1, inserted.get(key));
+            assertEquals(Integer.valueOf(key), tree.find(key));
+        }
+        runWithReaders(tree, deleters, keyNum);
+        for (int key = 0; key < keyNum; key++) {
+            assertEquals(1, deleted.get(key));
+            assertNull(tree.find(key));
+        }
+        assertEquals(1, tree.getHeight());
+        assertEquals("", tree.printBTree());
+        //删空之后仍然可以正常使用
+        for (int key = 0; key < 1000; key++) {
+            assertTrue(tree.insert(key, key));
+        }
+        for (int key = 0; key < 1000; key++) {
+            assertEquals(Integer.valueOf(key), tree.find(key));
+        }
+        assertNoEmptyLeaf(tree);
+    }
+
+    private static List<Integer> shuffledKeys(int keyNum, long seed) {
+        List<Integer> keys = new ArrayList<>(keyNum);
+        for (int key = 0; key < keyNum; key++) {
+            keys.add(key);
+        }
+        Collections.shuffle(keys, new Random(seed));
+        return keys;
+    }
+
+    /**
+     * 并发执行全部写线程，同时两个读线程不断查找[0, keyNum)，value只能是null或者等于key
+     */
+    private static void runWithReaders(ConcurrentBTree<Integer, Integer> tree, List<Runnable> writers, int keyNum) throws Exception {
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        AtomicBoolean writing = new AtomicBoolean(true);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> writerThreads = new ArrayList<>();
+        for (Runnable writer : writers) {
+            writerThreads.add(new Thread(() -> {
+                try {
+                    start.await();
+                    writer.run();
+                } catch (Throwable e) {
+                    error.compareAndSet(null, e);
+                }
+            }));
+        }
+        List<Thread> readerThreads = new ArrayList<>();
+        for (int r = 0; r < 2; r++) {
+            long seed = r;
+            readerThreads.add(new Thread(() -> {
+                Random random = new Random(seed);
+                try {
+                    start.await();
+                    while (writing.get()) {
+                        int key = random.nextInt(keyNum);
+                        Integer value = tree.find(key);
+                        if (value != null && value != key) {
+                            throw new AssertionError("key " + key + " 读到了错误的value " + value);
+                        }
+                    }
+                } catch (Throwable e) {
+                    error.compareAndSet(null, e);
+                }
+            }));
+        }
+        writerThreads.forEach(Thread::start);
+        readerThreads.forEach(Thread::start);
+        start.countDown();
+        for (Thread thread : writerThreads) {
+            thread.join();
+        }
+        writing.set(false);
+        for (Thread thread : readerThreads) {
+            thread.join();
+        }
+        if (error.get() != null) {
+            throw new AssertionError(error.get());
+        }
+    }
+
+    /**
+     * 删空的叶子节点已经从树中摘除：最下层（叶子层）没有空节点，只有树为空时根节点是空的叶子节点
+     */
+    private static void assertNoEmptyLeaf(ConcurrentBTree<Integer, Integer> tree) {
+        String[] levels = tree.printBTree().split("\n");
+        assertEquals(tree.getHeight(), levels.length);
+        if (tree.getHeight() == 1) {
+            return;
+        }
+        for (String leaf : levels[levels.length - 1].split("\t\t", -1)) {
+            assertFalse(leaf.isEmpty());
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.skty.study.bTree;
+
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 延迟删除的B树：反复删除、插入同一批key时等待整理的队列不增长，整理前后内容与TreeMap一致
+ *
+ * @author skty
+ */
+public class LazyDeleteBTreeTest {
+
+    private static final int HOT_KEY_NUM = 100;
+
+    /**
+     * 删除后马上重新插入，墓碑数量一直接近0，不会触发整理；等待整理的key不能随操作次数增长
+     */
+    @Test
+    public void deleteReinsertChurnKeepsQueueBounded() {
+        try (LazyDeleteBTree<Integer, Integer> tree = new LazyDeleteBTree<>(16)) {
+            tree.startCompactor(10);
+            for (int i = 0; i < HOT_KEY_NUM; i++) {
+                assertTrue(tree.insert(i, i));
+            }
+            for (int round = 0; round < 10000; round++) {
+                for (int i = 0; i < HOT_KEY_NUM; i++) {
+                    assertTrue(tree.delete(i));
+                    assertTrue(tree.insert(i, round));
+                }
+            }
+            assertEquals(0, tree.getTombstoneCount());
+            assertTrue(tree.getPendingKeyCount() <= HOT_KEY_NUM);
+            assertEquals(HOT_KEY_NUM, tree.count());
+            for (int i = 0; i < HOT_KEY_NUM; i++) {
+                assertEquals(Integer.valueOf(9999), tree.find(i));
+            }
+        }
+    }
+
+    /**
+     * 使用比较器时按比较器判断key是否已经在等待整理
+     */
+    @Test
+    public void pendingKeysFollowComparator() {
+        LazyDeleteBTree<String, Integer> tree = new LazyDeleteBTree<>(8, String.CASE_INSENSITIVE_ORDER, 1 << 20, 1, 16);
+        tree.insert("a", 1);
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(tree.delete(i % 2 == 0 ? "a" : "A"));
+            assertTrue(tree.insert("a", i));
+        }
+        assertEquals(1, tree.getPendingKeyCount());
+        assertTrue(tree.delete("A"));
+        assertEquals(1, tree.compact());
+        assertEquals(0, tree.getPendingKeyCount());
+        assertNull(tree.find("a"));
+        assertEquals(0, tree.count());
+    }
+
+    @Test
+    public void insertReportsTombstoneOverwriteAsNew() {
+        LazyDeleteBTree<Integer, Integer> tree = new LazyDeleteBTree<>(4);
+        assertTrue(tree.insert(1, 1));
+        assertFalse(tree.insert(1, 2));
+        assertTrue(tree.delete(1));
+        assertFalse(tree.delete(1));
+        assertEquals(1, tree.getTombstoneCount());
+        assertTrue(tree.insert(1, 3));
+        assertEquals(0, tree.getTombstoneCount());
+        assertEquals(Integer.valueOf(3), tree.find(1));
+        assertEquals(1, tree.count());
+    }
+
+    @Test
+    public void randomOperationsMatchTreeMap() {
+        Random random = new Random(24);
+        TreeMap<Integer, Integer> expected = new TreeMap<>();
+        LazyDeleteBTree<Integer, Integer> tree = new LazyDeleteBTree<>(5, null, 64, 0.5, 8);
+        for (int i = 0; i < 200000; i++) {
+            int key = random.nextInt(2000);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key) != null, tree.delete(key));
+            } else {
+                assertEquals(expected.put(key, i) == null, tree.insert(key, i));
+            }
+            if (i % 997 == 0) {
+                tree.compact();
+                assertEquals(0, tree.getPendingKeyCount());
+            }
+            assertTrue(tree.getPendingKeyCount() <= expected.size() + tree.getTombstoneCount());
+        }
+        assertEquals(expected.size(), tree.count());
+        Map<Integer, Integer> actual = tree.stream().collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+        assertEquals(expected, actual);
+        tree.compact();
+        assertEquals(0, tree.getTombstoneCount());
+        for (int key = 0; key < 2000; key++) {
+            assertEquals(expected.get(key), tree.find(key));
+        }
+    }
+}
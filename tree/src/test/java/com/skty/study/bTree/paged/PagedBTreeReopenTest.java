@@ -0,0 +1,83 @@
+package com.skty.study.bTree.paged;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * 分页B树关闭后重新打开，内容与关闭前一致
+ *
+ * @author skty
+ */
+public class PagedBTreeReopenTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void reopenDefaultPageSize() throws IOException {
+        roundTrip(PagedBTree.DEFAULT_PAGE_SIZE, 20000);
+    }
+
+    @Test
+    public void reopenSmallPageSize() throws IOException {
+        roundTrip(64, 5000);
+    }
+
+    /**
+     * 阶超过Short.MAX_VALUE时，元素数按有符号的2字节保存会变成负数
+     */
+    @Test
+    public void reopenLargePageSize() throws IOException {
+        roundTrip(1 << 20, 40000);
+    }
+
+    private void roundTrip(int pageSize, int keyNum) throws IOException {
+        Path file = folder.newFile().toPath();
+        TreeMap<Integer, Integer> expected = new TreeMap<>();
+        try (PagedBTree<Integer, Integer> tree = open(file, pageSize)) {
+            for (int i = 0; i < keyNum; i++) {
+                tree.insert(i, i * 2);
+                expected.put(i, i * 2);
+            }
+        }
+        Random random = new Random(pageSize);
+        try (PagedBTree<Integer, Integer> tree = open(file, pageSize)) {
+            assertContent(tree, expected, keyNum);
+            for (int i = 0; i < keyNum / 4; i++) {
+                int key = random.nextInt(keyNum);
+                assertEquals(expected.remove(key) != null, tree.delete(key));
+            }
+        }
+        try (PagedBTree<Integer, Integer> tree = open(file, pageSize)) {
+            assertContent(tree, expected, keyNum);
+            for (Integer key : expected.keySet()) {
+                tree.delete(key);
+            }
+            expected.clear();
+        }
+        try (PagedBTree<Integer, Integer> tree = open(file, pageSize)) {
+            assertContent(tree, expected, keyNum);
+        }
+    }
+
+    private static PagedBTree<Integer, Integer> open(Path file, int pageSize) throws IOException {
+        return PagedBTree.open(file, pageSize, Serializer.INTEGER, Serializer.INTEGER);
+    }
+
+    private static void assertContent(PagedBTree<Integer, Integer> tree, Map<Integer, Integer> expected, int keyNum) {
+        for (int i = 0; i < keyNum; i++) {
+            assertEquals(expected.get(i), tree.find(i));
+        }
+        assertNull(tree.find(keyNum));
+    }
+}
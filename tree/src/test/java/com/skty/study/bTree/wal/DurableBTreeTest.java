@@ -0,0 +1,359 @@
+package com.skty.study.bTree.wal;
+
+import com.skty.study.bTree.BTree;
+import com.skty.study.bTree.Codec;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 预写日志和检查点：宕机后重新打开，内容与最后一次返回成功的修改一致
+ *
+ * @author skty
+ */
+public class DurableBTreeTest {
+
+    private static final int ORDER = 8;
+
+    private static final int KEY_RANGE = 5000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * 最后一个日志文件末尾写了一半的记录被截断，之后可以继续追加
+     */
+    @Test
+    public void tornTailIsTruncated() throws IOException {
+        Path directory = folder.newFolder().toPath();
+        TreeMap<Integer, Integer> expected = new TreeMap<>();
+        try (DurableBTree<Integer, Integer> tree = open(directory)) {
+            applyRandom(tree, expected, 3000, new Random(1));
+        }
+        Path logFile = last(walFiles(directory));
+        long size = Files.size(logFile);
+        //记录头声明100字节的内容，实际只写了10字节
+        ByteBuffer torn = ByteBuffer.allocate(18);
+        torn.putInt(100).putInt(0).put(new byte[10]).flip();
+        appendBytes(logFile, torn);
+
+        try (DurableBTree<Integer, Integer> tree = open(directory)) {
+            assertEquals(size, Files.size(logFile));
+            assertContent(tree, expected);
+            applyRandom(tree, expected, 1000, new Random(2));
+        }
+        try (DurableBTree<Integer, Integer> tree = open(directory)) {
+            assertContent(tree, expected);
+        }
+    }
+
+    /**
+     * 最后一条记录的校验和不对（内容写了一半），这条记录被丢弃
+     */
+    @Test
+    public void corruptLastRecordIsDropped() throws IOException {
+        Path directory = folder.newFolder().toPath();
+        long lastLsn;
+        try (DurableBTree<Integer, Integer> tree = open(directory)) {
+            for (int i = 0; i < 100; i++) {
+                tree.insert(i, i);
+            }
+            lastLsn = tree.getLastLsn();
+        }
+        Path logFile = last(walFiles(directory));
+        flipLastByte(logFile);
+
+        try (DurableBTree<Integer, Integer> tree = open(directory)) {
+            assertEquals(lastLsn - 1, tree.getLastLsn());
+            for (int i = 0; i < 99; i++) {
+                assertEquals(Integer.valueOf(i), tree.find(i));
+            }
+            assertNull(tree.find(99));
+        }
+    }
+
+    /**
+     * 不是最后一个日志文件的文件损坏时不能截断（后面的记录依赖它），打开失败
+     */
+    @Test
+    public void corruptNonLastFileThrows() throws IOException {
+        Path directory = folder.newFolder().toPath();
+        try (WriteAheadLog<Integer, Integer> log = recoverLog(directory, new BTree<Integer, Integer>(ORDER), 0)) {
+            for (int i = 0; i < 100; i++) {
+                log.appendInsert(i, i);
+            }
+            log.rotate();
+            for (int i = 100; i < 200; i++) {
+                log.sync(log.appendInsert(i, i));
+            }
+        }
+        List<Path> files = walFiles(directory);
+        assertEquals(2, files.size());
+        flipLastByte(files.get(0));
+        try {
+            open(directory).close();
+            fail("损坏的日志文件没有被发现");
+        } catch (IllegalStateException expected) {
+            assertTrue(expected.getMessage().contains(files.get(0).getFileName().toString()));
+        }
+    }
+
+    /**
+     * 检查点之后的修改通过重放日志恢复，检查点之前的日志文件被删除
+     */
+    @Test
+    public void checkpointThenReplay() throws IOException {
+        Path directory = folder.newFolder().toPath();
+        TreeMap<Integer, Integer> expected = new TreeMap<>();
+        Random random = new Random(3);
+        long checkpointLsn;
+        try (DurableBTree<Integer, Integer> tree = open(directory)) {
+            applyRandom(tree, expected, 4000, random);
+            checkpointLsn = tree.checkpoint();
+            assertEquals(tree.getLastLsn(), checkpointLsn);
+            assertEquals(1, walFiles(directory).size());
+            applyRandom(tree, expected, 2000, random);
+        }
+        try (DurableBTree<Integer, Integer> tree = open(directory)) {
+            assertContent(tree, expected);
+            assertEquals(checkpointLsn + 2000, tree.getLastLsn());
+            tree.checkpoint();
+            applyRandom(tree, expected, 500, random);
+            tree.checkpoint();
+        }
+        try (DurableBTree<Integer, Integer> tree = open(directory)) {
+            assertContent(tree, expected);
+        }
+    }
+
+    /**
+     * 切换日志文件之后、检查点文件重命名之前宕机：旧检查点加上两个日志文件恢复出全部修改，临时文件被清除
+     */
+    @Test
+    public void crashBeforeCheckpointRename() throws IOException {
+        Path directory = folder.newFolder().toPath();
+        TreeMap<Integer, Integer> expected = new TreeMap<>();
+        Random random = new Random(4);
+        try (DurableBTree<Integer, Integer> tree = open(directory)) {
+            applyRandom(tree, expected, 2000, random);
+            tree.checkpoint();
+            applyRandom(tree, expected, 2000, random);
+        }
+        //模拟checkpoint：切换了日志文件，检查点只写了一部分临时文件
+        CheckpointFile<Integer, Integer> checkpoint = CheckpointFile.read(directory, ORDER, Codec.INTEGER, Codec.INTEGER);
+        try (WriteAheadLog<Integer, Integer> log = recoverLog(directory, checkpoint.tree, checkpoint.lsn)) {
+            log.rotate();
+            for (int i = 0; i < 100; i++) {
+                int key = random.nextInt(KEY_RANGE);
+                log.sync(log.appendDelete(key));
+                expected.remove(key);
+            }
+        }
+        Path tempFile = directory.resolve("checkpoint.tmp");
+        Files.write(tempFile, new byte[]{1, 2, 3});
+        assertEquals(2, walFiles(directory).size());
+
+        try (DurableBTree<Integer, Integer> tree = open(directory)) {
+            assertFalse(Files.exists(tempFile));
+            assertContent(tree, expected);
+        }
+    }
+
+    /**
+     * 检查点文件重命名之后、删除旧日志之前宕机：重放时跳过检查点已经包含的记录
+     */
+    @Test
+    public void crashBeforeOldLogsDeleted() throws IOException {
+        Path directory = folder.newFolder().toPath();
+        TreeMap<Integer, Integer> expected = new TreeMap<>();
+        Random random = new Random(5);
+        try (DurableBTree<Integer, Integer> tree = open(directory)) {
+            applyRandom(tree, expected, 3000, random);
+        }
+        CheckpointFile<Integer, Integer> checkpoint = CheckpointFile.read(directory, ORDER, Codec.INTEGER, Codec.INTEGER);
+        try (WriteAheadLog<Integer, Integer> log = recoverLog(directory, checkpoint.tree, checkpoint.lsn)) {
+            long lsn = log.rotate();
+            CheckpointFile.write(directory, checkpoint.tree.snapshot(), lsn, Codec.INTEGER, Codec.INTEGER);
+            for (int i = 0; i < 100; i++) {
+                int key = random.nextInt(KEY_RANGE);
+                log.sync(log.appendInsert(key, -i));
+                expected.put(key, -i);
+            }
+        }
+        assertEquals(2, walFiles(directory).size());
+
+        try (DurableBTree<Integer, Integer> tree = open(directory)) {
+            assertContent(tree, expected);
+            assertEquals(3100, tree.getLastLsn());
+        }
+    }
+
+    /**
+     * 一次sync把缓冲区中之前追加的记录全部落盘，之后等待这些记录的sync直接返回
+     */
+    @Test
+    public void syncCoversEarlierRecords() throws IOException {
+        Path directory = folder.newFolder().toPath();
+        try (WriteAheadLog<Integer, Integer> log = recoverLog(directory, new BTree<Integer, Integer>(ORDER), 0)) {
+            long first = log.appendInsert(1, 1);
+            log.appendInsert(2, 2);
+            long last = log.appendDelete(1);
+            log.sync(last);
+            assertEquals(1, log.getSyncCount());
+            assertEquals(last, log.getDurableLsn());
+            log.sync(first);
+            assertEquals(1, log.getSyncCount());
+        }
+    }
+
+    /**
+     * 多个写入者并发修改（key范围互不相交），同时不断创建检查点；重新打开后每个写入者的修改都在
+     */
+    @Test
+    public void concurrentWritersWithCheckpoints() throws Exception {
+        Path directory = folder.newFolder().toPath();
+        int writerNum = 8;
+        int opsPerWriter = 2000;
+        Map<Integer, Integer> expected = new ConcurrentHashMap<>();
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        AtomicBoolean writing = new AtomicBoolean(true);
+        try (DurableBTree<Integer, Integer> tree = open(directory)) {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Thread> threads = new ArrayList<>();
+            for (int w = 0; w < writerNum; w++) {
+                int writer = w;
+                threads.add(new Thread(() -> {
+                    Random random = new Random(writer);
+                    try {
+                        start.await();
+                        for (int i = 0; i < opsPerWriter; i++) {
+                            int key = writer * KEY_RANGE + random.nextInt(500);
+                            if (random.nextInt(4) == 0) {
+                                assertEquals(expected.remove(key) != null, tree.delete(key));
+                            } else {
+                                assertEquals(expected.put(key, i) == null, tree.insert(key, i));
+                            }
+                            //返回时记录已经落盘
+                            assertTrue(tree.getDurableLsn() > 0);
+                        }
+                    } catch (Throwable e) {
+                        error.compareAndSet(null, e);
+                    }
+                }));
+            }
+            Thread checkpointer = new Thread(() -> {
+                try {
+                    start.await();
+                    while (writing.get()) {
+                        tree.checkpoint();
+                        Thread.sleep(1);
+                    }
+                } catch (Throwable e) {
+                    error.compareAndSet(null, e);
+                }
+            });
+            threads.forEach(Thread::start);
+            checkpointer.start();
+            start.countDown();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            writing.set(false);
+            checkpointer.join();
+            if (error.get() != null) {
+                throw new AssertionError(error.get());
+            }
+            long ops = (long) writerNum * opsPerWriter;
+            assertEquals(ops, tree.getLastLsn());
+            assertEquals(ops, tree.getDurableLsn());
+        }
+        try (DurableBTree<Integer, Integer> tree = open(directory)) {
+            for (int w = 0; w < writerNum; w++) {
+                for (int key = w * KEY_RANGE; key < w * KEY_RANGE + 500; key++) {
+                    assertEquals(expected.get(key), tree.find(key));
+                }
+            }
+        }
+    }
+
+    private static DurableBTree<Integer, Integer> open(Path directory) throws IOException {
+        return DurableBTree.open(directory, ORDER, Codec.INTEGER, Codec.INTEGER);
+    }
+
+    private static WriteAheadLog<Integer, Integer> recoverLog(Path directory, BTree<Integer, Integer> tree, long checkpointLsn) throws IOException {
+        WriteAheadLog<Integer, Integer> log = new WriteAheadLog<>(directory, Codec.INTEGER, Codec.INTEGER);
+        log.recover(tree, checkpointLsn);
+        return log;
+    }
+
+    private static void applyRandom(DurableBTree<Integer, Integer> tree, TreeMap<Integer, Integer> expected, int ops, Random random) {
+        for (int i = 0; i < ops; i++) {
+            int key = random.nextInt(KEY_RANGE);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key) != null, tree.delete(key));
+            } else {
+                int value = random.nextInt();
+                assertEquals(expected.put(key, value) == null, tree.insert(key, value));
+            }
+        }
+    }
+
+    private static void assertContent(DurableBTree<Integer, Integer> tree, Map<Integer, Integer> expected) {
+        for (int key = 0; key < KEY_RANGE; key++) {
+            assertEquals(expected.get(key), tree.find(key));
+        }
+    }
+
+    /**
+     * 目录中的日志文件，按第一条记录的LSN排序
+     */
+    private static List<Path> walFiles(Path directory) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "wal-*.log")) {
+            stream.forEach(files::add);
+        }
+        files.sort(null);
+        return files;
+    }
+
+    private static Path last(List<Path> files) {
+        return files.get(files.size() - 1);
+    }
+
+    private static void appendBytes(Path file, ByteBuffer bytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+        }
+    }
+
+    private static void flipLastByte(Path file) throws IOException {
+        byte[] content = Files.readAllBytes(file);
+        content[content.length - 1] ^= 0x5A;
+        Files.write(file, content);
+    }
+}